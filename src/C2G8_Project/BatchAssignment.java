@@ -0,0 +1,168 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  Assigns the requests waiting for an elevator all together instead of one at a time. Every round builds a cost matrix of the waiting
+ *  requests against the elevators (from DispatchPolicy.cost) and matches them with the Hungarian algorithm so the total cost of the
+ *  round is the lowest possible, where assigning one at a time, oldest first, gives each request the elevator that's best for it even
+ *  if a younger request needed that elevator more.
+ *
+ * More details:
+ *  A round gives each elevator at most one request, since taking a request changes which requests an elevator is eligible for. Rounds
+ *  repeat with the requests that are left until a round assigns nothing. Each round is O(elevators^2 * requests).
+ *
+ *  The rounds stop when the time budget runs out, and the requests that are left are assigned one at a time with DispatchPolicy.assign
+ *  like before, so a large backlog can't keep the scheduler from its messages. The budget is timed on the scheduler's clock, so on a
+ *  DiscreteEventSimulator (where no time passes during an event) it never runs out and a run always assigns the same way.
+ */
+final class BatchAssignment {
+
+	private static final long UNAVAILABLE_COST = 1L << 40;	// Matrix cost of an elevator that can't take a request, more than any real total
+
+	/*** Assigns a request to an elevator, returning true if it was assigned (Scheduler.assignRequestToAnActiveElevatorAndNotify) ***/
+	@FunctionalInterface
+	interface Assigner {
+		boolean assign(RequestData request, int elevatorID);
+	}
+
+	private BatchAssignment() {}
+
+
+
+	/*
+	 * Assigns as many of the awaiting requests as possible, without changing the awaiting list.
+	 * INPUT: awaiting - the requests waiting for an elevator, oldest first. budgetNanos - how long the rounds can take on the clock.
+	 * OUTPUT: The requests that were assigned, in the order they were assigned.
+	 */
+	static ArrayList<RequestData> assign(List<RequestData> awaiting, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData, DispatchPolicy policy, SimulationClock clock, long budgetNanos, Assigner assigner) {
+		ArrayList<RequestData> assigned = new ArrayList<RequestData>();
+		ArrayList<RequestData> remaining = new ArrayList<RequestData>(awaiting);
+		int elevators = elevatorLatestData.size();
+		long deadline = clock.nanoTime() + budgetNanos;
+
+		while (!remaining.isEmpty() && clock.nanoTime() - deadline < 0) {
+
+			// Cost of every elevator (row) taking every request (column)
+			long[][] cost = new long[elevators][remaining.size()];
+			boolean anyAvailable = false;
+			for (int elevatorID = 1; elevatorID <= elevators; elevatorID++) {
+				for (int i = 0; i < remaining.size(); i++) {
+					int c = policy.cost(remaining.get(i), elevatorID, requestsActive, elevatorLatestData);
+					cost[elevatorID-1][i] = (c == DispatchPolicy.UNAVAILABLE) ? UNAVAILABLE_COST : c;
+					anyAvailable |= c != DispatchPolicy.UNAVAILABLE;
+				}
+			}
+			if (!anyAvailable) { break; }
+
+			// Elevator matched to each request, or 0. Requests are assigned oldest first so they stay in that order in the active lists
+			int[] requestToElevator = new int[remaining.size()];
+			int[] elevatorToRequest = solve(cost);
+			for (int row = 0; row < elevators; row++) {
+				int column = elevatorToRequest[row];
+				if (column != -1 && cost[row][column] != UNAVAILABLE_COST) { requestToElevator[column] = row + 1; }
+			}
+			boolean assignedThisRound = false;
+			for (int i = 0; i < remaining.size(); i++) {
+				if (requestToElevator[i] != 0 && assigner.assign(remaining.get(i), requestToElevator[i])) {
+					assigned.add(remaining.get(i));
+					requestToElevator[i] = -1;	// Marks it for removal
+					assignedThisRound = true;
+				}
+			}
+			if (!assignedThisRound) { break; }
+			int kept = 0;
+			for (int i = 0; i < remaining.size(); i++) {
+				if (requestToElevator[i] != -1) { remaining.set(kept++, remaining.get(i)); }
+			}
+			remaining.subList(kept, remaining.size()).clear();
+		}
+
+		// Out of time, the rest are assigned one at a time
+		if (!remaining.isEmpty() && clock.nanoTime() - deadline >= 0) {
+			for (RequestData request : remaining) {
+				int elevatorID = policy.assign(request, requestsActive, elevatorLatestData);
+				if (elevatorID != -1 && assigner.assign(request, elevatorID)) {
+					assigned.add(request);
+				}
+			}
+		}
+		return assigned;
+	}
+
+
+
+	/*
+	 * The Hungarian algorithm (with potentials) for a rectangular cost matrix. Matches every row of the smaller side to a different
+	 * column so the total cost is the lowest possible.
+	 * INPUT: cost[row][column], every row the same length.
+	 * OUTPUT: The column matched to each row, -1 if the row wasn't matched (only when there are more rows than columns).
+	 */
+	static int[] solve(long[][] cost) {
+		int rows = cost.length;
+		int columns = (rows == 0) ? 0 : cost[0].length;
+		int[] rowToColumn = new int[rows];
+		Arrays.fill(rowToColumn, -1);
+		if (rows == 0 || columns == 0) { return rowToColumn; }
+
+		// The algorithm needs rows <= columns, so a tall matrix is solved on its side
+		boolean transposed = rows > columns;
+		int n = transposed ? columns : rows;
+		int m = transposed ? rows : columns;
+
+		long inf = Long.MAX_VALUE / 4;
+		long[] u = new long[n+1];	// Row potentials
+		long[] v = new long[m+1];	// Column potentials
+		int[] p = new int[m+1];		// The row matched to each column (1-based, 0 for none)
+		int[] way = new int[m+1];
+		long[] minv = new long[m+1];
+		boolean[] used = new boolean[m+1];
+
+		for (int i = 1; i <= n; i++) {
+			p[0] = i;
+			int j0 = 0;
+			Arrays.fill(minv, inf);
+			Arrays.fill(used, false);
+			do {
+				used[j0] = true;
+				int i0 = p[j0];
+				long delta = inf;
+				int j1 = 0;
+				for (int j = 1; j <= m; j++) {
+					if (used[j]) { continue; }
+					long current = (transposed ? cost[j-1][i0-1] : cost[i0-1][j-1]) - u[i0] - v[j];
+					if (current < minv[j]) { minv[j] = current; way[j] = j0; }
+					if (minv[j] < delta) { delta = minv[j]; j1 = j; }
+				}
+				for (int j = 0; j <= m; j++) {
+					if (used[j]) { u[p[j]] += delta; v[j] -= delta; }
+					else { minv[j] -= delta; }
+				}
+				j0 = j1;
+			} while (p[j0] != 0);
+
+			// Flip the matches along the augmenting path
+			do {
+				int j1 = way[j0];
+				p[j0] = p[j1];
+				j0 = j1;
+			} while (j0 != 0);
+		}
+
+		for (int j = 1; j <= m; j++) {
+			if (p[j] == 0) { continue; }
+			if (transposed) { rowToColumn[j-1] = p[j]-1; }
+			else { rowToColumn[p[j]-1] = j-1; }
+		}
+		return rowToColumn;
+	}
+}
@@ -0,0 +1,419 @@
+package C2G8_Project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A compact binary wire format for the messages sent most often between the systems.
+ *
+ * ElevatorSignal, FloorSignal, RawFloorRequest, ViewData and ViewDelta are written field by field and are decoded
+ * straight into their records, so the receiving DispatchConsumer does not need to parse them again.
+ * Any other data is carried as a JSON string inside the binary frame.
+ *
+ * Frame layout: MAGIC, VERSION, topic, payload type, payload.
+ * Strings are a length followed by UTF-8 bytes, enums are their ordinal and a length
+ * or ordinal of -1 represents null. Both ends must use the same enum definitions which
+ * is why the version must match.
+ *
+ * @author agent
+ *
+ */
+final class BinaryDispatchCodec implements DispatchCodec {
+	static final byte MAGIC = (byte) 0xC2;
+	static final byte VERSION = 1;
+
+	private static final byte TYPE_NONE = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_JSON = 2;
+	private static final byte TYPE_ELEVATOR_SIGNAL = 3;
+	private static final byte TYPE_FLOOR_SIGNAL = 4;
+	private static final byte TYPE_RAW_FLOOR_REQUEST = 5;
+	private static final byte TYPE_VIEW_DATA = 6;
+	private static final byte TYPE_VIEW_DELTA = 7;
+
+	private static final int MIN_REQUEST_BYTES = 2*Integer.BYTES + 3; //Request ID, floor request flag, elevator ID and two flags
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final ElevatorStates[] ELEVATOR_STATES = ElevatorStates.values();
+	private static final FloorSignals[] FLOOR_SIGNALS = FloorSignals.values();
+	private static final ScenarioFaults[] SCENARIO_FAULTS = ScenarioFaults.values();
+
+	private final ObjectMapper objMap = new ObjectMapper();
+
+	@Override
+	public byte[] encode(String topic, Object data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(MAGIC);
+		out.writeByte(VERSION);
+		writeString(out,topic);
+
+		if(data == null) {
+			out.writeByte(TYPE_NONE);
+		}
+		else if(data instanceof String stringData) {
+			out.writeByte(TYPE_STRING);
+			writeString(out,stringData);
+		}
+		else if(data instanceof ElevatorSignal signal) {
+			out.writeByte(TYPE_ELEVATOR_SIGNAL);
+			writeElevatorSignal(out,signal);
+		}
+		else if(data instanceof FloorSignal signal) {
+			out.writeByte(TYPE_FLOOR_SIGNAL);
+			writeEnum(out,signal.signal());
+			out.writeInt(signal.floor());
+			writeEnum(out,signal.direction());
+		}
+		else if(data instanceof RawFloorRequest request) {
+			out.writeByte(TYPE_RAW_FLOOR_REQUEST);
+			out.writeInt(request.reqestFloor());
+			out.writeInt(request.targetFloor());
+			writeEnum(out,request.direction());
+			writeEnum(out,request.fault());
+		}
+		else if(data instanceof ViewData view) {
+			out.writeByte(TYPE_VIEW_DATA);
+			writeViewData(out,view);
+		}
+		else if(data instanceof ViewDelta delta) {
+			out.writeByte(TYPE_VIEW_DELTA);
+			writeViewDelta(out,delta);
+		}
+		else {
+			out.writeByte(TYPE_JSON);
+			writeString(out,objMap.writeValueAsString(data));
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public DispatcherMessage decode(ByteBuffer frame) throws IOException {
+		try {
+			if(frame.get() != MAGIC) {
+				throw new IOException("Frame is not a binary dispatcher frame.");
+			}
+			byte version = frame.get();
+			if(version != VERSION) {
+				throw new IOException(String.format("Binary frame version %d is not supported. Expected version %d.", version,VERSION));
+			}
+			String topic = readString(frame);
+
+			byte type = frame.get();
+			return switch(type) {
+				case TYPE_NONE -> new DispatcherMessage(topic,"");
+				case TYPE_STRING -> new DispatcherMessage(topic,readString(frame));
+				case TYPE_JSON -> new DispatcherMessage(topic,readString(frame));
+				case TYPE_ELEVATOR_SIGNAL -> new DispatcherMessage(topic,null,readElevatorSignal(frame));
+				case TYPE_FLOOR_SIGNAL -> new DispatcherMessage(topic,null,
+						new FloorSignal(readEnum(frame,FLOOR_SIGNALS),frame.getInt(),readEnum(frame,DIRECTIONS)));
+				case TYPE_RAW_FLOOR_REQUEST -> new DispatcherMessage(topic,null,
+						new RawFloorRequest(frame.getInt(),frame.getInt(),readEnum(frame,DIRECTIONS),readEnum(frame,SCENARIO_FAULTS)));
+				case TYPE_VIEW_DATA -> new DispatcherMessage(topic,null,readViewData(frame));
+				case TYPE_VIEW_DELTA -> new DispatcherMessage(topic,null,readViewDelta(frame));
+				default -> throw new IOException(String.format("Binary frame payload type %d is not recognized.", type));
+			};
+		}
+		catch(BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Binary frame is truncated or corrupted.",e);
+		}
+	}
+
+	/*** Writers ***/
+
+	private static void writeString(DataOutputStream out,String value) throws IOException {
+		if(value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(encoded.length);
+		out.write(encoded);
+	}
+
+	private static void writeEnum(DataOutputStream out,Enum<?> value) throws IOException {
+		out.writeByte(value == null ? -1 : value.ordinal());
+	}
+
+	private static void writeIntegers(DataOutputStream out,Collection<Integer> values) throws IOException {
+		if(values == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.size());
+		for(Integer value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static void writeElevatorSignal(DataOutputStream out,ElevatorSignal signal) throws IOException {
+		out.writeBoolean(signal != null);
+		if(signal == null) {
+			return;
+		}
+		writeEnum(out,signal.state());
+		out.writeInt(signal.id());
+		out.writeInt(signal.location());
+		writeIntegers(out,signal.newCarBttns());
+		writeIntegers(out,signal.carBttns());
+		writeEnum(out,signal.faultType());
+	}
+
+	private static void writeRequests(DataOutputStream out,Collection<ViewRequestData> requests) throws IOException {
+		if(requests == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(requests.size());
+		for(ViewRequestData request : requests) {
+			out.writeInt(request.requestID());
+			FloorRequest floorRequest = request.request();
+			out.writeBoolean(floorRequest != null);
+			if(floorRequest != null) {
+				out.writeInt(floorRequest.reqestFloor());
+				out.writeInt(floorRequest.targetFloor());
+				writeEnum(out,floorRequest.direction());
+				ElevatorFault fault = floorRequest.fault();
+				out.writeBoolean(fault != null);
+				if(fault != null) {
+					writeEnum(out,fault.faultType());
+					out.writeBoolean(fault.isFaultHandled());
+				}
+			}
+			out.writeInt(request.elevatorID());
+			out.writeBoolean(request.pickedUpPassenger());
+			out.writeBoolean(request.requestComplete());
+		}
+	}
+
+	private static void writeLamps(DataOutputStream out,FloorLampState lamps) throws IOException {
+		if(lamps == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(lamps.floors());	// The number of words follows from the number of floors
+		for(long word : lamps.mask()) {
+			out.writeLong(word);
+		}
+		for(long word : lamps.lamps()) {
+			out.writeLong(word);
+		}
+	}
+
+	private static void writeActiveRequests(DataOutputStream out,Map<Integer,ArrayList<ViewRequestData>> active) throws IOException {
+		out.writeInt(active == null ? -1 : active.size());
+		if(active != null) {
+			for(Map.Entry<Integer,ArrayList<ViewRequestData>> entry : active.entrySet()) {
+				out.writeInt(entry.getKey());
+				writeRequests(out,entry.getValue());
+			}
+		}
+	}
+
+	private static void writeElevators(DataOutputStream out,Map<Integer,ViewElevatorData> elevators) throws IOException {
+		out.writeInt(elevators == null ? -1 : elevators.size());
+		if(elevators != null) {
+			for(Map.Entry<Integer,ViewElevatorData> entry : elevators.entrySet()) {
+				out.writeInt(entry.getKey());
+				ViewElevatorData elevator = entry.getValue();
+				out.writeBoolean(elevator != null);
+				if(elevator != null) {
+					writeElevatorSignal(out,elevator.signal());
+					writeIntegers(out,elevator.targetLocations());
+				}
+			}
+		}
+	}
+
+	private static void writeViewData(DataOutputStream out,ViewData view) throws IOException {
+		writeRequests(out,view.requestsAwaitingElevatorAssignment());
+		writeActiveRequests(out,view.requestsActive());
+		writeRequests(out,view.requestsComplete());
+		writeElevators(out,view.elevatorLatestData());
+		writeLamps(out,view.floorButtonLamp());
+		writeLamps(out,view.floorDirectionLamp());
+	}
+
+	private static void writeViewDelta(DataOutputStream out,ViewDelta delta) throws IOException {
+		out.writeLong(delta.sequence());
+		out.writeBoolean(delta.keyframe());
+		writeRequests(out,delta.requestsAwaitingElevatorAssignment());
+		writeActiveRequests(out,delta.requestsActive());
+		writeRequests(out,delta.requestsComplete());
+		writeIntegers(out,delta.requestsRemoved());
+		writeElevators(out,delta.elevatorLatestData());
+		writeLamps(out,delta.floorButtonLamp());
+		writeLamps(out,delta.floorDirectionLamp());
+	}
+
+	/*** Readers ***/
+
+	/**
+	 * Reads the number of elements that follow, rejecting a count that could not fit in the rest of the frame
+	 * before anything is allocated for it
+	 * @param minBytes The fewest bytes one element is written with
+	 * @return The count, negative for null
+	 * @throws IOException If the count is larger than the rest of the frame could hold
+	 */
+	private static int readCount(ByteBuffer in,int minBytes) throws IOException {
+		int count = in.getInt();
+		if(count > in.remaining()/minBytes) {
+			throw new IOException(String.format("Binary frame claims %d elements but only %d bytes remain.",count,in.remaining()));
+		}
+		return count;
+	}
+
+	private static String readString(ByteBuffer in) throws IOException {
+		int length = readCount(in,1);
+		if(length < 0) {
+			return null;
+		}
+		String value;
+		if(in.hasArray()) {
+			value = new String(in.array(),in.arrayOffset()+in.position(),length,StandardCharsets.UTF_8);
+			in.position(in.position()+length);
+		}
+		else {
+			byte[] encoded = new byte[length];
+			in.get(encoded);
+			value = new String(encoded,StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	private static <T extends Enum<T>> T readEnum(ByteBuffer in,T[] values) {
+		byte ordinal = in.get();
+		return ordinal < 0 ? null : values[ordinal];
+	}
+
+	private static <C extends Collection<Integer>> C readIntegers(ByteBuffer in,C values) throws IOException {
+		int size = readCount(in,Integer.BYTES);
+		if(size < 0) {
+			return null;
+		}
+		for(int i=0;i<size;++i) {
+			values.add(in.getInt());
+		}
+		return values;
+	}
+
+	private static ElevatorSignal readElevatorSignal(ByteBuffer in) throws IOException {
+		if(in.get() == 0) {
+			return null;
+		}
+		ElevatorStates state = readEnum(in,ELEVATOR_STATES);
+		int id = in.getInt();
+		int location = in.getInt();
+		ArrayList<Integer> newCarBttns = readIntegers(in,new ArrayList<Integer>());
+		HashSet<Integer> carBttns = readIntegers(in,new HashSet<Integer>());
+		return new ElevatorSignal(state,id,location,newCarBttns,carBttns,readEnum(in,SCENARIO_FAULTS));
+	}
+
+	private static ArrayList<ViewRequestData> readRequests(ByteBuffer in) throws IOException {
+		int size = readCount(in,MIN_REQUEST_BYTES);
+		if(size < 0) {
+			return null;
+		}
+		ArrayList<ViewRequestData> requests = new ArrayList<ViewRequestData>(size);
+		for(int i=0;i<size;++i) {
+			int requestID = in.getInt();
+			FloorRequest floorRequest = null;
+			if(in.get() != 0) {
+				int requestFloor = in.getInt();
+				int targetFloor = in.getInt();
+				Direction direction = readEnum(in,DIRECTIONS);
+				ElevatorFault fault = null;
+				if(in.get() != 0) {
+					fault = new ElevatorFault(readEnum(in,SCENARIO_FAULTS),in.get() != 0);
+				}
+				floorRequest = new FloorRequest(requestFloor,targetFloor,direction,fault);
+			}
+			requests.add(new ViewRequestData(requestID,floorRequest,in.getInt(),in.get() != 0,in.get() != 0));
+		}
+		return requests;
+	}
+
+	private static FloorLampState readLamps(ByteBuffer in) throws IOException {
+		int floors = in.getInt();
+		if(floors < 0) {
+			return null;
+		}
+		if(2L*FloorLampState.wordsFor(floors)*Long.BYTES > in.remaining()) {	// Both arrays must be in the frame before they are allocated
+			throw new IOException(String.format("Binary frame claims lamps for %d floors but only %d bytes remain.",floors,in.remaining()));
+		}
+		FloorLampState lamps = new FloorLampState(floors);
+		for(int i=0;i<lamps.mask().length;++i) {
+			lamps.mask()[i] = in.getLong();
+		}
+		for(int i=0;i<lamps.lamps().length;++i) {
+			lamps.lamps()[i] = in.getLong();
+		}
+		return lamps;
+	}
+
+	private static HashMap<Integer,ArrayList<ViewRequestData>> readActiveRequests(ByteBuffer in) throws IOException {
+		int size = in.getInt();
+		if(size < 0) {
+			return null;
+		}
+		HashMap<Integer,ArrayList<ViewRequestData>> active = new HashMap<Integer,ArrayList<ViewRequestData>>();
+		for(int i=0;i<size;++i) {
+			int elevatorID = in.getInt();
+			active.put(elevatorID,readRequests(in));
+		}
+		return active;
+	}
+
+	private static HashMap<Integer,ViewElevatorData> readElevators(ByteBuffer in) throws IOException {
+		int size = in.getInt();
+		if(size < 0) {
+			return null;
+		}
+		HashMap<Integer,ViewElevatorData> elevators = new HashMap<Integer,ViewElevatorData>();
+		for(int i=0;i<size;++i) {
+			int elevatorID = in.getInt();
+			ViewElevatorData elevator = null;
+			if(in.get() != 0) {
+				ElevatorSignal signal = readElevatorSignal(in);
+				elevator = new ViewElevatorData(signal,readIntegers(in,new ArrayList<Integer>()));
+			}
+			elevators.put(elevatorID,elevator);
+		}
+		return elevators;
+	}
+
+	private static ViewData readViewData(ByteBuffer in) throws IOException {
+		ArrayList<ViewRequestData> awaiting = readRequests(in);
+		HashMap<Integer,ArrayList<ViewRequestData>> active = readActiveRequests(in);
+		ArrayList<ViewRequestData> complete = readRequests(in);
+		HashMap<Integer,ViewElevatorData> elevators = readElevators(in);
+		FloorLampState buttonLamps = readLamps(in);
+		FloorLampState directionLamps = readLamps(in);
+		return new ViewData(awaiting,active,complete,elevators,buttonLamps,directionLamps);
+	}
+
+	private static ViewDelta readViewDelta(ByteBuffer in) throws IOException {
+		long sequence = in.getLong();
+		boolean keyframe = in.get() != 0;
+		ArrayList<ViewRequestData> awaiting = readRequests(in);
+		HashMap<Integer,ArrayList<ViewRequestData>> active = readActiveRequests(in);
+		ArrayList<ViewRequestData> complete = readRequests(in);
+		ArrayList<Integer> removed = readIntegers(in,new ArrayList<Integer>());
+		HashMap<Integer,ViewElevatorData> elevators = readElevators(in);
+		FloorLampState buttonLamps = readLamps(in);
+		FloorLampState directionLamps = readLamps(in);
+		return new ViewDelta(sequence,keyframe,awaiting,active,complete,removed,elevators,buttonLamps,directionLamps);
+	}
+}
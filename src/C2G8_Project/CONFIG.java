@@ -24,6 +24,33 @@ public final class CONFIG {
 	public static final int MINIMUM_PEOPLE_FOR_SCENARIO = 10; // Door stuck at 5, Floor Stuck at 10
 	public static final String ICON_FOLDER_URI = "/C2G8_Project/MonitorSystem/icons";
 	public static final String FXML_FOLDER_URI = "/C2G8_Project/MonitorSystem";
+	public static final boolean USE_VIRTUAL_THREADS = false; // Run the elevators and floors that have a thread each, and dispatch deliveries, on virtual threads (Java 21+, platform threads otherwise)
+	public static final DispatchExecutionModes DISPATCH_EXECUTION_MODE = USE_VIRTUAL_THREADS ? DispatchExecutionModes.VIRTUAL_THREAD_PER_TASK : DispatchExecutionModes.BOUNDED_POOL; // BOUNDED_POOL, VIRTUAL_THREAD_PER_TASK or CALLER_THREAD
+	public static final int DISPATCH_POOL_THREADS = 4; // Worker threads per Dispatcher when using BOUNDED_POOL
+	public static final int DISPATCH_POOL_QUEUE_CAPACITY = 1024; // Deliveries held per Dispatcher before BOUNDED_POOL rejects
+	public static final DispatchCodecs DISPATCH_CODEC = DispatchCodecs.BINARY; // Preferred wire format, JSON is used with destinations that do not also prefer it
+	public static final DispatchTransports DISPATCH_TRANSPORT = DispatchTransports.NIO_SELECTOR; // DATAGRAM_SOCKET or NIO_SELECTOR, LOOPBACK or LOOPBACK_MESSAGES when every system runs in one program
+	public static final boolean DISPATCH_BATCHING = false; // Pack messages bound for the same connected destination into one datagram
+	public static final int DISPATCH_BATCH_WINDOW_MILLS = 2; // Longest a batched message waits for others before it is sent
+	public static final int DISPATCH_BATCH_MAX_BYTES = 1472; // Largest batch datagram, the UDP payload of a 1500 byte Ethernet MTU
+	public static final boolean DISPATCH_RELIABLE = false; // Acknowledge and retransmit messages sent to connected destinations
+	public static final int DISPATCH_RELIABLE_INITIAL_RTO_MILLS = 200; // Retransmission timeout before the round trip time has been measured
+	public static final int DISPATCH_RELIABLE_MIN_RTO_MILLS = 10; // Smallest retransmission timeout
+	public static final int DISPATCH_RELIABLE_MAX_RTO_MILLS = 2000; // Largest retransmission timeout, including backoff
+	public static final int DISPATCH_RELIABLE_MAX_ATTEMPTS = 10; // Sends of a message before it is given up on
+	public static final int DISPATCH_RELIABLE_TICK_MILLS = 5; // How often unacknowledged messages are checked for retransmission
+	public static final int VIEW_FRAME_MILLS = 50; // Shortest time between two updates sent to the monitor, changes in between are sent together
+	public static final int VIEW_KEYFRAME_INTERVAL = 50; // Updates sent to the monitor as changes only before the entire state is sent again
+	public static final int VIEW_KEYFRAME_COMPLETE_REQUESTS = 20; // Most recently completed requests sent again in a keyframe, older ones are only sent when they complete
+	public static final int SCHEDULER_IDLE_WAKEUP_MILLS = 1000; // Longest the idle scheduler sleeps without a message before checking its state again
+	public static final DispatchPolicies DISPATCH_POLICY = DispatchPolicies.ON_THE_WAY; // ON_THE_WAY, NEAREST_CAR, ESTIMATED_TIME_TO_DESTINATION, ZONED or DESTINATION_DISPATCH. Compare them with DispatchPolicySimulator
+	public static final boolean SCHEDULER_BATCH_ASSIGNMENT = true; // Match the requests awaiting an elevator to elevators all together (BatchAssignment) instead of one at a time
+	public static final long SCHEDULER_BATCH_BUDGET_MICROS = 2000; // Longest BatchAssignment spends matching before the rest are assigned one at a time
+	public static final int SCHEDULER_PARALLEL_ELEVATORS = 64; // Elevators at which an assignment checks the elevators in parallel (ForkJoinPool), see SchedulingAlgorithmPerformanceTest for the crossover
+	public static final boolean ELEVATOR_TIMER_DRIVEN = true; // Elevators share a timer and run only when a signal arrives or a state's time is up, instead of a busy thread each
+	public static final int ELEVATOR_TIMER_THREADS = 2; // Threads of the timer the elevators of an ElevatorSystem share
+	public static final boolean FLOOR_TIMER_DRIVEN = true; // Floors schedule their passenger arrivals and handle their signals on a shared timer, instead of a busy thread each
+	public static final int FLOOR_TIMER_THREADS = 2; // Threads of the timer the floors of a FloorSystem share
 }
 
 /*** NOTE: Must delete "InputFile.txt" located at /SYSC3303_Project for any new file to be generated with the modified settings. ELEVATOR_SPEED_MULTIPLIER is an exception and will work regardless ***/
@@ -0,0 +1,100 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The original Dispatcher transport. A blocking DatagramSocket read by the thread running the Dispatcher.
+ *
+ * The receive buffer and packet are allocated once and reused for every datagram.
+ *
+ * @author agent
+ *
+ */
+final class DatagramSocketTransport implements DispatchTransport {
+	final private static Logger LOG =LogManager.getFormatterLogger(DatagramSocketTransport.class);
+	private final String name;
+	private final DatagramSocket socket;
+
+	/**
+	 * Binds the socket
+	 * @param name The name of the owning dispatcher used in logs
+	 * @param port The port to bind or Dispatcher.NO_PORT for any free port
+	 * @param timeOutMills How long a receive blocks before checking if the transport was closed
+	 * @throws SocketException If the socket could not be bound
+	 */
+	DatagramSocketTransport(final String name,final int port,final int timeOutMills) throws SocketException {
+		this.name = name;
+		if(port == Dispatcher.NO_PORT) {
+			socket = new DatagramSocket();
+		}
+		else {
+			socket = new DatagramSocket(port);
+		}
+		socket.setSoTimeout(timeOutMills); //Timeout interval. This prevents infinite blocking and making it more responsive to shutdown messages
+	}
+
+	@Override
+	public int getLocalPort() {
+		return socket.getLocalPort();
+	}
+
+	@Override
+	public InetAddress getLocalAddress() {
+		return socket.getLocalAddress();
+	}
+
+	@Override
+	public void send(ByteBuffer frame, InetSocketAddress destination) throws IOException {
+		DatagramPacket packet;
+		if(frame.hasArray()) {
+			packet = new DatagramPacket(frame.array(),frame.arrayOffset()+frame.position(),frame.remaining(),destination);
+		}
+		else {
+			byte[] buffer = new byte[frame.remaining()];
+			frame.duplicate().get(buffer);
+			packet = new DatagramPacket(buffer,buffer.length,destination);
+		}
+		socket.send(packet);
+	}
+
+	@Override
+	public void serve(FrameReceiver receiver) {
+		byte[] buffer = new byte[CONFIG.MAX_MESSAGE_BYTES];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		while(!socket.isClosed()) {
+			try {
+				packet.setLength(buffer.length);
+				socket.receive(packet);
+				receiver.receiveFrame(ByteBuffer.wrap(buffer,0,packet.getLength()),(InetSocketAddress) packet.getSocketAddress());
+			}
+			catch (SocketTimeoutException e) {
+				//Check if closed
+			}
+			catch (IOException e) {
+				if(!socket.isClosed()) {
+					LOG.error("%s: Transport encountered an error when receiving a packet and has dropped it.\n%s",name,e.getMessage());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		socket.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+}
@@ -0,0 +1,131 @@
+package C2G8_Project;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the destinations registered to a Dispatcher and the wire format
+ * and features negotiated with each of their addresses.
+ *
+ * Every change produces a new snapshot that the Dispatcher publishes atomically, so sending
+ * can read the endpoints of a destination without locking or copying them.
+ *
+ * @author agent
+ *
+ */
+final class DestinationRegistry {
+	static final DestinationRegistry EMPTY = new DestinationRegistry(new HashMap<Enum<?>,Endpoint[]>(),new HashMap<InetSocketAddress,Endpoint>());
+
+	private final Map<Enum<?>,Endpoint[]> destinations;
+	private final Map<InetSocketAddress,Endpoint> negotiated;
+
+	/**
+	 * An address of a destination, the wire format used when sending to it and the
+	 * DispatcherConnectRequest features it supports
+	 */
+	record Endpoint(InetSocketAddress address,DispatchCodecs codec,int features) {
+		/**
+		 * An address nothing was negotiated with
+		 */
+		Endpoint(InetSocketAddress address) {
+			this(address,DispatchCodecs.JSON,0);
+		}
+
+		boolean supports(int feature) {
+			return (features & feature) != 0;
+		}
+	}
+
+	private DestinationRegistry(Map<Enum<?>,Endpoint[]> destinations,Map<InetSocketAddress,Endpoint> negotiated) {
+		this.destinations = destinations;
+		this.negotiated = negotiated;
+	}
+
+	boolean contains(Enum<?> destination) {
+		return destinations.containsKey(destination);
+	}
+
+	/**
+	 * @param destination The destination identifier
+	 * @return The endpoints of the destination or null if it is not registered. The array is shared and must not be modified.
+	 */
+	Endpoint[] endpointsOf(Enum<?> destination) {
+		return destinations.get(destination);
+	}
+
+	/**
+	 * @param address An address
+	 * @return The endpoint negotiated with the address, a JSON endpoint without features if none was
+	 */
+	Endpoint endpointOf(InetSocketAddress address) {
+		Endpoint endpoint = negotiated.get(address);
+		return endpoint != null ? endpoint : new Endpoint(address);
+	}
+
+	/**
+	 * Adds an address to a destination, keeping anything already negotiated with the address
+	 * @param destination The destination identifier
+	 * @param address The address to add
+	 * @return A new registry containing the address
+	 */
+	DestinationRegistry withAddress(Enum<?> destination,InetSocketAddress address) {
+		return withEndpoint(destination,endpointOf(address),negotiated);
+	}
+
+	/**
+	 * Adds an address to a destination with the codec and features negotiated with it
+	 * @param destination The destination identifier
+	 * @param endpoint The negotiated endpoint
+	 * @return A new registry containing the endpoint
+	 */
+	DestinationRegistry withEndpoint(Enum<?> destination,Endpoint endpoint) {
+		HashMap<InetSocketAddress,Endpoint> newNegotiated = new HashMap<InetSocketAddress,Endpoint>(negotiated);
+		newNegotiated.put(endpoint.address(), endpoint);
+		return withEndpoint(destination,endpoint,newNegotiated);
+	}
+
+	private DestinationRegistry withEndpoint(Enum<?> destination,Endpoint endpoint,Map<InetSocketAddress,Endpoint> newNegotiated) {
+		InetSocketAddress address = endpoint.address();
+
+		//What was negotiated with an address is shared by every destination using it
+		HashMap<Enum<?>,Endpoint[]> newDestinations = new HashMap<Enum<?>,Endpoint[]>();
+		destinations.forEach((existing,endpoints) -> {
+			Endpoint[] updated = endpoints.clone();
+			for(int i=0;i<updated.length;++i) {
+				if(updated[i].address().equals(address)) {
+					updated[i] = endpoint;
+				}
+			}
+			newDestinations.put(existing, updated);
+		});
+
+		Endpoint[] oldEndpoints = newDestinations.getOrDefault(destination, new Endpoint[0]);
+		for(Endpoint existing : oldEndpoints) {
+			if(existing.address().equals(address)) {
+				return new DestinationRegistry(newDestinations,newNegotiated);
+			}
+		}
+		Endpoint[] newEndpoints = new Endpoint[oldEndpoints.length+1];
+		System.arraycopy(oldEndpoints, 0, newEndpoints, 0, oldEndpoints.length);
+		newEndpoints[oldEndpoints.length] = endpoint;
+		newDestinations.put(destination, newEndpoints);
+		return new DestinationRegistry(newDestinations,newNegotiated);
+	}
+
+	/**
+	 * @return A copy of the addresses of each destination
+	 */
+	HashMap<Enum<?>,HashSet<InetSocketAddress>> getDestinations() {
+		HashMap<Enum<?>,HashSet<InetSocketAddress>> copy = new HashMap<Enum<?>,HashSet<InetSocketAddress>>();
+		destinations.forEach((destination,endpoints) -> {
+			HashSet<InetSocketAddress> addresses = new HashSet<InetSocketAddress>();
+			for(Endpoint endpoint : endpoints) {
+				addresses.add(endpoint.address());
+			}
+			copy.put(destination, addresses);
+		});
+		return copy;
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  A virtual clock that runs scheduled tasks (events) in time order on one thread, jumping straight to the time of the next event
+ *  instead of waiting for it. Whatever runs on it takes no time as far as the clock can tell, so a whole day of a building can be
+ *  run in however long the events take to run.
+ *
+ * More details:
+ *  The events are kept in a priority queue ordered by their time, then by the order they were scheduled in, so two events due at
+ *  the same time always run in the same order and running the same events again gives the same result.
+ *
+ *  Systems cancel and reschedule their next step on every message, so cancelling only marks the event and runUntil() skips it when it
+ *  reaches the front of the queue, instead of searching the queue for it. Cancelled events are cleared out all at once when they
+ *  outnumber the live ones.
+ *
+ *  Events are run by whichever thread calls runUntil() or runUntilIdle(). Events can be scheduled from any thread (so systems can be
+ *  set up on other threads), but only ones scheduled while running are part of the deterministic order. isRunningOnThisThread() tells
+ *  the two apart.
+ */
+public final class DiscreteEventSimulator implements SimulationClock {
+	private static final Logger LOG = LogManager.getFormatterLogger(DiscreteEventSimulator.class);
+
+	private static final int MIN_CANCELLED_TO_COMPACT = 64;	// Below this, cancelled events are left for runUntil() to skip
+
+	private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+	private int cancelledCount = 0;	// Cancelled events still in the queue
+	private long now = 0;			// Virtual nanoseconds since the simulator was made
+	private long scheduledCount = 0;	// Breaks ties between events due at the same time
+	private long eventsRun = 0;
+	private volatile Thread runner = null;	// The thread running events, null when not running
+
+	/*** An event in the queue ***/
+	private final class Event implements Comparable<Event>, Scheduled {
+		private final long time;
+		private final long order;
+		private final Runnable task;
+		private boolean queued = true;	// False once run or cleared out of the queue
+		private boolean cancelled = false;
+
+		private Event(long time, long order, Runnable task) {
+			this.time = time;
+			this.order = order;
+			this.task = task;
+		}
+
+		@Override
+		public int compareTo(Event other) {
+			int byTime = Long.compare(time, other.time);
+			return (byTime != 0) ? byTime : Long.compare(order, other.order);
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (DiscreteEventSimulator.this) {
+				if (!queued || cancelled) { return; }
+				cancelled = true;
+				cancelledCount++;
+				if (cancelledCount >= MIN_CANCELLED_TO_COMPACT && cancelledCount * 2 > events.size()) {
+					compact();
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized long nanoTime() {
+		return now;
+	}
+
+	@Override
+	public synchronized Scheduled schedule(Runnable task, long delay, TimeUnit unit) {
+		Event event = new Event(now + Math.max(0, unit.toNanos(delay)), scheduledCount++, task);
+		events.add(event);
+		return event;
+	}
+
+	/*** Clears the cancelled events out of the queue. Caller must hold the lock ***/
+	private void compact() {
+		events.removeIf(event -> {
+			if (event.cancelled) { event.queued = false; }
+			return event.cancelled;
+		});
+		cancelledCount = 0;
+	}
+
+	/*** Number of events run so far ***/
+	public synchronized long getEventsRun() {
+		return eventsRun;
+	}
+
+	/*** Number of events waiting to run ***/
+	public synchronized int getPendingEvents() {
+		return events.size() - cancelledCount;
+	}
+
+	/*** True if called from an event (the thread in runUntil()) ***/
+	public boolean isRunningOnThisThread() {
+		return runner == Thread.currentThread();
+	}
+
+	/*
+	 * Runs the events due up to and including the given virtual time, in order, including any they schedule. The clock is left at the
+	 * time of the last event run.
+	 * INPUT: endNanos - the last virtual time to run events at.
+	 * OUTPUT: The number of events run.
+	 */
+	public long runUntil(long endNanos) {
+		long run = 0;
+		runner = Thread.currentThread();
+		try {
+			while (true) {
+				Event event;
+				synchronized (this) {
+					event = events.peek();
+					if (event == null || event.time > endNanos) { break; }
+					events.poll();
+					event.queued = false;
+					if (event.cancelled) {
+						cancelledCount--;
+						continue;
+					}
+					now = event.time;
+					eventsRun++;
+				}
+				run++;
+				try {
+					event.task.run();
+				} catch (RuntimeException e) {
+					LOG.error("Event at %d ns failed: %s", event.time, e);
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			runner = null;
+		}
+		return run;
+	}
+
+	/*** Runs events until there are none left (See runUntil()) ***/
+	public long runUntilIdle() {
+		return runUntil(Long.MAX_VALUE);
+	}
+}
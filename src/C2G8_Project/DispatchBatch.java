@@ -0,0 +1,121 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Packs several encoded frames bound for the same address into one datagram.
+ *
+ * Frame layout: MAGIC, frame count (unsigned short), then for each frame its length (unsigned short)
+ * followed by the frame exactly as its codec encoded it. The frames of a batch may use different codecs
+ * since each one is decoded on its own by the receiver.
+ *
+ * A batch is not thread safe, the Dispatcher synchronizes on it while adding or sending.
+ *
+ * @author agent
+ *
+ */
+final class DispatchBatch {
+	static final byte MAGIC = (byte) 0xC3; //Never the first byte of a JSON or binary frame
+	private static final int HEADER_BYTES = 3;
+	private static final int LENGTH_BYTES = 2;
+	private static final int MAX_FRAMES = 0xFFFF;
+
+	private final ByteBuffer buffer;
+	private int count = 0;
+
+	/**
+	 * @param maxBytes The largest datagram the batch may grow to
+	 */
+	DispatchBatch(int maxBytes) {
+		buffer = ByteBuffer.allocate(Math.min(maxBytes, CONFIG.MAX_MESSAGE_BYTES));
+		buffer.position(HEADER_BYTES);
+	}
+
+	/**
+	 * @param frameBytes The length of an encoded frame
+	 * @return True if the frame fits in an empty batch
+	 */
+	boolean canHold(int frameBytes) {
+		return HEADER_BYTES+LENGTH_BYTES+frameBytes <= buffer.capacity() && frameBytes <= 0xFFFF;
+	}
+
+	/**
+	 * Adds a frame to the batch
+	 * @param frame An encoded frame
+	 * @return False if the frame does not fit in the remaining space and was not added
+	 */
+	boolean add(byte[] frame) {
+		if(buffer.remaining() < LENGTH_BYTES+frame.length || count == MAX_FRAMES || !canHold(frame.length)) {
+			return false;
+		}
+		buffer.putShort((short) frame.length);
+		buffer.put(frame);
+		++count;
+		return true;
+	}
+
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	int size() {
+		return count;
+	}
+
+	/**
+	 * @return The batch as a datagram. Only valid until the batch is cleared.
+	 */
+	ByteBuffer frame() {
+		ByteBuffer datagram = buffer.duplicate();
+		datagram.flip();
+		datagram.put(0, MAGIC);
+		datagram.putShort(1, (short) count);
+		return datagram;
+	}
+
+	/**
+	 * Empties the batch so it can be reused
+	 */
+	void clear() {
+		buffer.clear();
+		buffer.position(HEADER_BYTES);
+		count = 0;
+	}
+
+	/**
+	 * @param datagram A received datagram between its position and limit
+	 * @return True if the datagram is a batch
+	 */
+	static boolean isBatch(ByteBuffer datagram) {
+		return datagram.hasRemaining() && datagram.get(datagram.position()) == MAGIC;
+	}
+
+	/**
+	 * Hands every frame of a received batch to a receiver, in the order they were added
+	 * @param datagram A received batch between its position and limit
+	 * @param source The address the batch was sent from
+	 * @param receiver The receiver of each frame. Frames are only valid for the duration of the call.
+	 * @throws IOException If the batch is corrupted. Frames before the corruption have already been received.
+	 */
+	static void unpack(ByteBuffer datagram,InetSocketAddress source,DispatchTransport.FrameReceiver receiver) throws IOException {
+		try {
+			datagram.get(); //MAGIC
+			int frames = Short.toUnsignedInt(datagram.getShort());
+			for(int i=0;i<frames;++i) {
+				int length = Short.toUnsignedInt(datagram.getShort());
+				if(length > datagram.remaining()) {
+					throw new IOException(String.format("Batch frame %d of %d is truncated.",i+1,frames));
+				}
+				ByteBuffer frame = datagram.slice(datagram.position(), length);
+				datagram.position(datagram.position()+length);
+				receiver.receiveFrame(frame, source);
+			}
+		}
+		catch(BufferUnderflowException e) {
+			throw new IOException("Batch is truncated.",e);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A wire format used by the Dispatcher to convert a topic and its data into a datagram
+ * and back into a DispatcherMessage.
+ *
+ * Every codec must produce frames whose first byte identifies the codec so that a Dispatcher
+ * can always decode a frame regardless of which codec the sender chose.
+ *
+ * @author agent
+ *
+ */
+interface DispatchCodec {
+	/**
+	 * Converts a message into the bytes of a single datagram
+	 * @param topic The topic of the message
+	 * @param data The data of the message. May be null, a String, or any object that can be converted to JSON
+	 * @return The encoded frame
+	 * @throws IOException If the data could not be encoded
+	 */
+	byte[] encode(String topic,Object data) throws IOException;
+
+	/**
+	 * Converts a received frame into a DispatcherMessage. The buffer's position is left after the frame.
+	 * @param frame The buffer containing the frame between its position and limit
+	 * @return The decoded message
+	 * @throws IOException If the frame is corrupted or not of this codec
+	 */
+	DispatcherMessage decode(ByteBuffer frame) throws IOException;
+}
@@ -0,0 +1,58 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The wire formats a Dispatcher can use to send messages.
+ *
+ * JSON: The original format. Readable in logs and understood by every Dispatcher.
+ * BINARY: A compact format for the most frequent messages. Only used with destinations that agreed to it
+ * when connecting through Dispatcher.connectNewDestination.
+ *
+ * A Dispatcher can always decode both formats.
+ *
+ * @author agent
+ *
+ */
+public enum DispatchCodecs {
+	JSON(new JsonDispatchCodec()),
+	BINARY(new BinaryDispatchCodec());
+
+	private final DispatchCodec codec;
+
+	private DispatchCodecs(DispatchCodec codec) {
+		this.codec = codec;
+	}
+
+	DispatchCodec codec() {
+		return codec;
+	}
+
+	/**
+	 * Decodes a frame of any supported format by inspecting its first byte
+	 * @param frame The buffer containing the frame between its position and limit
+	 * @return The decoded message
+	 * @throws IOException If the frame is corrupted
+	 */
+	static DispatcherMessage decodeFrame(ByteBuffer frame) throws IOException {
+		if(!frame.hasRemaining()) {
+			throw new IOException("Received an empty frame.");
+		}
+		if(frame.get(frame.position()) == BinaryDispatchCodec.MAGIC) {
+			return BINARY.codec.decode(frame);
+		}
+		return JSON.codec.decode(frame);
+	}
+
+	/**
+	 * Agrees on the format used between two Dispatchers. Anything other than JSON is
+	 * only used when both ends prefer it.
+	 * @param local The format preferred by this Dispatcher
+	 * @param remote The format preferred by the destination. Null if the destination did not state one.
+	 * @return The format to use when sending to the destination
+	 */
+	static DispatchCodecs negotiate(DispatchCodecs local,DispatchCodecs remote) {
+		return local == remote ? local : JSON;
+	}
+}
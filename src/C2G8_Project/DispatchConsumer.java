@@ -1,5 +1,7 @@
 package C2G8_Project;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 /**
  * This interface is used to identify an object that can
  * subscribe to the Dispatcher and forces them to implement
@@ -25,6 +27,25 @@ public interface DispatchConsumer {
 	 */
 	void receiveDispatch(String topic,String data);
 	
+	/**
+	 * Called by Dispatcher when a subscribed topic has received a message.
+	 * 
+	 * By default this passes the topic and JSON data to receiveDispatch(String,String).
+	 * DispatchConsumers that override this can use DispatcherMessage.payload to get the data
+	 * already decoded when the sender used a binary codec, avoiding a second conversion.
+	 * The same asynchronous design rules apply.
+	 * @param msg The message received
+	 */
+	default void receiveDispatch(DispatcherMessage msg) {
+		String data;
+		try {
+			data = msg.jsonData();
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(String.format("Unable to convert payload of topic %s to JSON", msg.topic()),e);
+		}
+		receiveDispatch(msg.topic(),data);
+	}
+	
 	/**
 	 * This is the name that will be used to identify this DispatchConsumer within the Dispatchers logs
 	 * @return The string name that will be used to represent this dispatch consmer in logs
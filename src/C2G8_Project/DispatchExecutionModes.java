@@ -0,0 +1,23 @@
+package C2G8_Project;
+
+/**
+ * The execution contexts a Dispatcher can use to deliver received messages
+ * to its DispatchConsumers.
+ *
+ * BOUNDED_POOL: A fixed number of worker threads fed from a bounded queue. When the queue is full
+ * the delivery is counted as a rejection and performed on the receiving thread instead so no message is lost.
+ *
+ * VIRTUAL_THREAD_PER_TASK: Each delivery runs on its own virtual thread. This requires a runtime that supports
+ * virtual threads and will fall back to BOUNDED_POOL if they are not available.
+ *
+ * CALLER_THREAD: Deliveries run on the Dispatcher's receiving thread. This has no hand-off cost but a slow
+ * DispatchConsumer will delay every message received after it.
+ *
+ * @author agent
+ *
+ */
+public enum DispatchExecutionModes {
+	BOUNDED_POOL,
+	VIRTUAL_THREAD_PER_TASK,
+	CALLER_THREAD
+}
@@ -0,0 +1,154 @@
+package C2G8_Project;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The execution engine used by the Dispatcher to deliver messages to its DispatchConsumers.
+ *
+ * Replaces starting a new thread for every packet received with one of the modes in DispatchExecutionModes
+ * and keeps track of how deep the delivery backlog is, how often the pool was saturated and how long
+ * messages waited between being received and being delivered.
+ * 
+ * The tasks run by this engine are the DispatchNotificationWorker lanes of each subscriber, so the queue depth
+ * counts messages waiting in any lane rather than tasks waiting for a thread.
+ *
+ * @author agent
+ *
+ */
+class DispatchExecutor {
+	final private static Logger LOG =LogManager.getFormatterLogger(DispatchExecutor.class);
+	private final String name;
+	private final DispatchExecutionModes mode;
+	private final ExecutorService executor;
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger peakQueueDepth = new AtomicInteger();
+	private final AtomicLong rejections = new AtomicLong();
+	private final AtomicLong deliveries = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	/**
+	 * Creates the execution engine for a dispatcher
+	 * @param name The name of the owning dispatcher, used for logs and thread names
+	 * @param requestedMode The mode requested. This may be downgraded if the runtime does not support it.
+	 * @param poolThreads The number of worker threads used by BOUNDED_POOL
+	 * @param queueCapacity The number of deliveries BOUNDED_POOL will hold before rejecting
+	 */
+	DispatchExecutor(final String name,final DispatchExecutionModes requestedMode,final int poolThreads,final int queueCapacity) {
+		this.name = name;
+		DispatchExecutionModes selectedMode = requestedMode;
+		ExecutorService selectedExecutor = null;
+
+		if(selectedMode == DispatchExecutionModes.VIRTUAL_THREAD_PER_TASK) {
+			selectedExecutor = VirtualThreads.newPerTaskExecutor();
+			if(selectedExecutor == null) {
+				LOG.warn("%s: Virtual threads are not supported by this runtime. Falling back to %s.",name,DispatchExecutionModes.BOUNDED_POOL);
+				selectedMode = DispatchExecutionModes.BOUNDED_POOL;
+			}
+		}
+
+		if(selectedMode == DispatchExecutionModes.BOUNDED_POOL) {
+			selectedExecutor = createBoundedPool(poolThreads,queueCapacity);
+		}
+
+		this.mode = selectedMode;
+		this.executor = selectedExecutor;
+		LOG.info("%s: Dispatch execution mode is %s",name,mode);
+	}
+
+	private ExecutorService createBoundedPool(final int poolThreads,final int queueCapacity) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(poolThreads, poolThreads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity),
+				r -> {
+					Thread td = new Thread(r);
+					td.setName(String.format("%s_DispatchWorker_%d", name,threadCount.incrementAndGet()));
+					td.setDaemon(true);
+					return td;
+				},
+				(r,ex) -> {
+					//Saturated pool: run on the receiving thread to apply back pressure rather than dropping the message
+					rejections.incrementAndGet();
+					LOG.warn("%s: Dispatch queue is full, delivering on the receiving thread. Rejections: %d",name,rejections.get());
+					if(!ex.isShutdown()) {
+						r.run();
+					}
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	public DispatchExecutionModes getMode() {
+		return mode;
+	}
+
+	/**
+	 * Schedules a task to be run within the selected execution context.
+	 * @param task The task to be run
+	 */
+	void execute(final Runnable task) {
+		if(executor == null) {
+			task.run();
+			return;
+		}
+
+		try {
+			executor.execute(task);
+		}
+		catch(RejectedExecutionException e) {
+			//Only reached once shutdown has started, the task will not be run
+			rejections.incrementAndGet();
+			LOG.warn("%s: Dispatch executor is shut down and rejected a delivery.",name);
+		}
+	}
+
+	/**
+	 * Records that a message has been queued for delivery to a subscriber
+	 */
+	void messageQueued() {
+		peakQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+	}
+
+	/**
+	 * Records that a queued message is being delivered to a subscriber
+	 * @param receivedNanos The System.nanoTime() when the message being delivered was received
+	 */
+	void messageDelivered(final long receivedNanos) {
+		queueDepth.decrementAndGet();
+		recordLatency(System.nanoTime() - receivedNanos);
+	}
+
+	private void recordLatency(final long latencyNanos) {
+		deliveries.incrementAndGet();
+		totalLatencyNanos.addAndGet(latencyNanos);
+		maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+	}
+
+	/**
+	 * @return A snapshot of the current metrics of this execution engine
+	 */
+	DispatchMetrics getMetrics() {
+		long delivered = deliveries.get();
+		long averageMicros = delivered == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get() / delivered);
+		return new DispatchMetrics(mode,queueDepth.get(),peakQueueDepth.get(),rejections.get(),delivered,averageMicros,TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get()));
+	}
+
+	/**
+	 * Stops accepting new deliveries. Deliveries already queued will still be completed.
+	 */
+	void shutdown() {
+		if(executor != null) {
+			executor.shutdown();
+		}
+		LOG.info("%s: Dispatch executor shutdown. %s",name,getMetrics());
+	}
+}
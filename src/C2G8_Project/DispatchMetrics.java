@@ -0,0 +1,20 @@
+package C2G8_Project;
+
+/**
+ * A point in time snapshot of the delivery metrics of a Dispatcher's execution engine.
+ *
+ * Latencies measure the time between a packet being received from the network and
+ * a DispatchConsumer's receiveDispatch being called with it.
+ *
+ * @author agent
+ *
+ */
+public record DispatchMetrics(
+	DispatchExecutionModes mode,
+	int queueDepth,
+	int peakQueueDepth,
+	long rejections,
+	long deliveries,
+	long averageLatencyMicros,
+	long maxLatencyMicros
+) {}
@@ -1,14 +1,20 @@
 package C2G8_Project;
 
-import java.util.HashSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
- * Dispatch worker thread notifies observers via separate thread to prevent
+ * Dispatch worker is the delivery lane of a single DispatchConsumer. Messages for the consumer are placed
+ * in its mailbox and the worker drains them within the Dispatcher's execution engine to prevent
  * case where calling observer's receiveDispatch function delays or causes a message to be missed.
- * 
+ *
+ * At most one drain of a lane runs at a time so a consumer always receives its messages in the order
+ * they arrived, while lanes of different consumers are drained in parallel.
+ *
  * If we  where to make this production ready these calls should be guarded by an execution time limit
  * that logs an error if an algorithm is greedy. Alternately callback could be implemented.
  * @author Jayson Mendoza
@@ -16,27 +22,66 @@ import org.apache.logging.log4j.Logger;
  */
 public class DispatchNotificationWorker implements Runnable {
 	final private static Logger LOG =LogManager.getFormatterLogger(DispatchNotificationWorker.class);
-	private final HashSet<DispatchConsumer> dispatchList;
-	private final DispatcherMessage msg;
-	
+	private static final int MAX_DELIVERIES_PER_DRAIN = 64; //Lets other lanes use the worker thread when this one is busy
+	private final DispatchConsumer consumer;
+	private final DispatchExecutor executor;
+	private final Queue<PendingDelivery> mailbox = new ConcurrentLinkedQueue<PendingDelivery>();
+	private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+	private record PendingDelivery(DispatcherMessage msg,long receivedNanos) {}
+
 	/**
 	 * Creates a DispatchNotificationWorker using a specific context for distribution.
-	 * @param dispatchList The distribution list to be used
-	 * @param msg The message to be dispatched to the distribution list
+	 * @param consumer The subscriber this lane delivers to
+	 * @param executor The execution engine used to drain the lane
 	 */
-	DispatchNotificationWorker(HashSet<DispatchConsumer> dispatchList,DispatcherMessage msg) {
-		this.msg = msg;
-		this.dispatchList = dispatchList;
+	DispatchNotificationWorker(DispatchConsumer consumer,DispatchExecutor executor) {
+		this.consumer = consumer;
+		this.executor = executor;
 	}
-	
+
 	/**
-	 * Dispatches the message to all observers then terminates
+	 * Adds a message to the end of this lane and schedules a drain if one is not already running
+	 * @param msg The message to be dispatched to the consumer
+	 * @param receivedNanos The System.nanoTime() when the message was received
+	 */
+	void enqueue(DispatcherMessage msg,long receivedNanos) {
+		executor.messageQueued();
+		mailbox.add(new PendingDelivery(msg,receivedNanos));
+		if(isScheduled.compareAndSet(false, true)) {
+			executor.execute(this);
+		}
+	}
+
+	/**
+	 * Dispatches the queued messages to the consumer in order then terminates
 	 */
 	@Override
 	public void run() {
-		for(DispatchConsumer c : dispatchList) {
-			c.receiveDispatch(msg.topic(),msg.data());
-			LOG.info("Dispatch to %s with topic %s",c.getSubscriberNameIdentifier(),msg.topic());
+		int delivered = 0;
+		PendingDelivery next;
+		while((next = mailbox.poll()) != null) {
+			executor.messageDelivered(next.receivedNanos());
+			try {
+				consumer.receiveDispatch(next.msg());
+				LOG.info("Dispatch to %s with topic %s",consumer.getSubscriberNameIdentifier(),next.msg().topic());
+			}
+			catch(RuntimeException e) {
+				//A failing consumer must not stall the rest of its lane
+				LOG.error("Dispatch to %s with topic %s failed. %s",consumer.getSubscriberNameIdentifier(),next.msg().topic(),e.getMessage());
+				e.printStackTrace();
+			}
+
+			if(++delivered == MAX_DELIVERIES_PER_DRAIN && !mailbox.isEmpty()) {
+				executor.execute(this); //Still scheduled, continue the drain from the back of the executor's queue
+				return;
+			}
+		}
+
+		isScheduled.set(false);
+		//A message may have been added after the last poll but before the flag was cleared
+		if(!mailbox.isEmpty() && isScheduled.compareAndSet(false, true)) {
+			executor.execute(this);
 		}
 	}
 }
@@ -0,0 +1,147 @@
+/**
+ * 
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+/**
+ * @author agent
+ * 
+ * Overview:
+ *  The dispatch policies the scheduler can use, selected by CONFIG.DISPATCH_POLICY. DispatchPolicySimulator runs each of them
+ *  through the same passengers to compare their wait times.
+ * 
+ * More details:
+ *  Every policy follows the eligibility rules in SchedulingAlgorithm (an elevator handling an error never gets a request, and an elevator
+ *  with active requests only gets requests on the way in the same direction) since the scheduler's states rely on them. They only
+ *  differ in which eligible elevator they pick. A tie goes to the lowest elevatorID.
+ *  
+ *  ON_THE_WAY: The original algorithm. The elevator that picks the passenger up soonest.
+ *  NEAREST_CAR: The elevator the fewest floors away, not counting the stops it makes on the way.
+ *  ESTIMATED_TIME_TO_DESTINATION: The elevator that drops the passenger off soonest, counting the stops it makes on the way to the
+ *                                 passenger and while carrying them.
+ *  ZONED: The floors are split into one band of floors per elevator. An elevator whose band holds the request floor is picked if one
+ *         is eligible (the soonest pickup of them), otherwise the soonest pickup of the rest.
+ *  DESTINATION_DISPATCH: Uses the target floor to keep the total trip time of everyone low. The elevator that adds the least trip
+ *                        time: the passenger's own trip (with every stop on the way), plus the time every passenger already assigned
+ *                        to the elevator is held up by the stops it has to add. An elevator already stopping at the passenger's floors
+ *                        adds no stops, so passengers going to the same or nearby floors end up together, which is what moves a lobby
+ *                        quickly during up-peak.
+ */
+public enum DispatchPolicies {
+	ON_THE_WAY(SchedulingAlgorithm.TIME_TO_PICK_UP),
+	NEAREST_CAR(DispatchPolicies::floorsToRequest),
+	ESTIMATED_TIME_TO_DESTINATION(DispatchPolicies::timeToDestination),
+	ZONED(DispatchPolicies::timeToPickUpInZone),
+	DESTINATION_DISPATCH(DispatchPolicies::addedTripTime);
+	
+	private static final int OUT_OF_ZONE_COST = 1000000;	// Added to an elevator outside the request floor's zone, more than any pickup takes
+	private static final int ADDED_STOP_TIME = (ElevatorTimes.STOP - ElevatorTimes.MOVING_MAX) + (ElevatorTimes.MOVING - ElevatorTimes.MOVING_MAX) + 2 * ElevatorTimes.DOORS;	// Slowing down, opening/closing the doors and speeding up again, compared to passing the floor
+	
+	private final DispatchPolicy policy;
+	
+	private DispatchPolicies(SchedulingAlgorithm.ElevatorCost elevatorCost) {
+		this(elevators -> elevatorCost);
+	}
+	
+	/*** For a policy whose cost depends on the number of elevators in the bank it is assigning for ***/
+	private DispatchPolicies(IntFunction<SchedulingAlgorithm.ElevatorCost> elevatorCostForBank) {
+		this.policy = new DispatchPolicy() {
+			@Override
+			public int assign(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
+				return SchedulingAlgorithm.assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, elevatorCostForBank.apply(elevatorLatestData.size()));
+			}
+			
+			@Override
+			public int cost(RequestData request, int elevatorID, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
+				return SchedulingAlgorithm.costOfEligibleElevator(request, elevatorID, requestsActive, elevatorLatestData, elevatorCostForBank.apply(elevatorLatestData.size()));
+			}
+		};
+	}
+	
+	DispatchPolicy policy() {
+		return policy;
+	}
+	
+	/*** NEAREST_CAR: Floors between the elevator and the request floor ***/
+	private static int floorsToRequest(RequestData request, int elevatorID, ElevatorData elevator, ArrayList<RequestData> activeRequests, int timeToPickUp) {
+		return Math.abs(elevator.location() - request.requestFloor());
+	}
+	
+	/*
+	 * ESTIMATED_TIME_TO_DESTINATION: The time to pick the passenger up, open and close the doors, then travel to the target floor while
+	 * stopping for every active request whose next floor is between the two.
+	 */
+	private static int timeToDestination(RequestData request, int elevatorID, ElevatorData elevator, ArrayList<RequestData> activeRequests, int timeToPickUp) {
+		int low = Math.min(request.requestFloor(), request.targetFloor());
+		int high = Math.max(request.requestFloor(), request.targetFloor());
+		int stopsOnTheTrip = 0;
+		for (int i = 0; i < activeRequests.size(); i++) {
+			RequestData activeRequest = activeRequests.get(i);
+			if (activeRequest.requestComplete()) { continue; }
+			int nextFloor = activeRequest.pickedUpPassenger() ? activeRequest.targetFloor() : activeRequest.requestFloor();
+			if (low < nextFloor && nextFloor < high) { stopsOnTheTrip++; }
+		}
+		return timeToPickUp + SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors()
+				+ SchedulingAlgorithm.calculateTimeTakenToMove(request.requestFloor(), request.targetFloor())
+				+ stopsOnTheTrip * SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors();
+	}
+	
+	/*** ZONED: The time to pick the passenger up, with elevators outside the request floor's zone only picked when none inside are eligible ***/
+	private static SchedulingAlgorithm.ElevatorCost timeToPickUpInZone(int elevators) {
+		return (request, elevatorID, elevator, activeRequests, timeToPickUp) -> zoneOf(request.requestFloor(), elevators) == elevatorID ? timeToPickUp : OUT_OF_ZONE_COST + timeToPickUp;
+	}
+	
+	/*
+	 * DESTINATION_DISPATCH: The trip time the request adds to the elevator.
+	 *  - The passenger's own trip: the time to pick them up, then ride to the target floor with ADDED_STOP_TIME for every floor in between
+	 *    the elevator stops at (to pick up or drop off).
+	 *  - ADDED_STOP_TIME for every passenger of the elevator that rides past a stop it doesn't already make, which is each one whose
+	 *    target floor is further along than the new stop.
+	 */
+	private static int addedTripTime(RequestData request, int elevatorID, ElevatorData elevator, ArrayList<RequestData> activeRequests, int timeToPickUp) {
+		int low = Math.min(request.requestFloor(), request.targetFloor());
+		int high = Math.max(request.requestFloor(), request.targetFloor());
+		int stopsOnTheTrip = 0;
+		for (int floor = low + 1; floor < high; floor++) {
+			if (isStop(activeRequests, floor)) { stopsOnTheTrip++; }
+		}
+		
+		int heldUp = 0;
+		boolean stopsAtRequestFloor = isStop(activeRequests, request.requestFloor());
+		boolean stopsAtTargetFloor = isStop(activeRequests, request.targetFloor());
+		for (int i = 0; i < activeRequests.size(); i++) {
+			RequestData activeRequest = activeRequests.get(i);
+			if (activeRequest.requestComplete()) { continue; }
+			if (!stopsAtRequestFloor && isFurtherAlong(elevator.location(), request.requestFloor(), activeRequest.targetFloor())) { heldUp++; }
+			if (!stopsAtTargetFloor && isFurtherAlong(elevator.location(), request.targetFloor(), activeRequest.targetFloor())) { heldUp++; }
+		}
+		
+		return timeToPickUp + SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors()
+				+ SchedulingAlgorithm.calculateTimeTakenToMove(request.requestFloor(), request.targetFloor()) + stopsOnTheTrip * ADDED_STOP_TIME
+				+ heldUp * ADDED_STOP_TIME;
+	}
+	
+	/*** True if the elevator stops at the floor for one of its active requests, to pick the passenger up or drop them off ***/
+	private static boolean isStop(ArrayList<RequestData> activeRequests, int floor) {
+		for (int i = 0; i < activeRequests.size(); i++) {
+			RequestData activeRequest = activeRequests.get(i);
+			if (activeRequest.requestComplete()) { continue; }
+			if (activeRequest.targetFloor() == floor || (!activeRequest.pickedUpPassenger() && activeRequest.requestFloor() == floor)) { return true; }
+		}
+		return false;
+	}
+	
+	/*** True if, going from location past stop, the elevator reaches floor after stop ***/
+	private static boolean isFurtherAlong(int location, int stop, int floor) {
+		return (stop >= location) ? floor > stop : floor < stop;
+	}
+	
+	/*** The elevator whose zone holds a floor. Each of the bank's elevators gets a band of CONFIG.FLOORS / elevators floors, elevator 1 the lowest ***/
+	static int zoneOf(int floor, int elevators) {
+		return 1 + (floor - 1) * elevators / CONFIG.FLOORS;
+	}
+}
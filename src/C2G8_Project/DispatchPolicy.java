@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author agent
+ * 
+ * Overview:
+ *  Decides which elevator takes a passenger request. The scheduler uses the policy selected by CONFIG.DISPATCH_POLICY when it
+ *  starts, both when a request arrives and when an elevator goes IDLE with requests still waiting for an elevator.
+ * 
+ * More details:
+ *  A policy only picks the elevator, the scheduler does the assigning. The lists it is given are the scheduler's "Master Sheet"
+ *  and must not be changed. The policies that come with the system are in DispatchPolicies.
+ *  
+ *  When CONFIG.SCHEDULER_BATCH_ASSIGNMENT is on, the requests waiting for an elevator are matched to the elevators all together by
+ *  BatchAssignment using cost() instead of assign(). A policy that doesn't say what each elevator costs is only willing to use the
+ *  elevator assign() picks.
+ */
+@FunctionalInterface
+public interface DispatchPolicy {
+	int UNAVAILABLE = Integer.MAX_VALUE;	// The cost of an elevator that can't take the request
+	
+	/**
+	 * Picks the elevator that should take a request.
+	 * @param request The request waiting for an elevator
+	 * @param requestsActive The requests assigned to each elevator, by elevatorID
+	 * @param elevatorLatestData The latest data from each elevator, by elevatorID
+	 * @return The elevatorID of the chosen elevator, or -1 if no elevator can take the request right now
+	 */
+	int assign(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData);
+	
+	/**
+	 * What it costs for one elevator to take a request, lower is better.
+	 * @param request The request waiting for an elevator
+	 * @param elevatorID The elevator that would take it
+	 * @param requestsActive The requests assigned to each elevator, by elevatorID
+	 * @param elevatorLatestData The latest data from each elevator, by elevatorID
+	 * @return The cost, or UNAVAILABLE if the elevator can't take the request right now
+	 */
+	default int cost(RequestData request, int elevatorID, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
+		return (assign(request, requestsActive, elevatorLatestData) == elevatorID) ? 0 : UNAVAILABLE;
+	}
+}
@@ -0,0 +1,320 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  Runs a DispatchPolicy over a list of passengers in a simulated building, without the elevator, floor or scheduler systems, and
+ *  reports the percentiles of how long passengers waited for an elevator and how long their trips took. Every policy is given the same
+ *  passengers so the policies can be compared for a building. Run main to compare every policy in DispatchPolicies.
+ *
+ * More details:
+ *  The simulation moves in steps of 1 second. Passengers waiting for an elevator are offered to the policy, oldest first, every second
+ *  (the scheduler offers them every time an elevator goes IDLE, which is at least as often as they can be taken). An elevator moves one
+ *  floor at a time towards the next floor in its sorted active requests, taking ElevatorTimes.MOVING for the first floor, MOVING_MAX for
+ *  the floors after it and STOP for the floor it stops at, so a trip takes what SchedulingAlgorithm.calculateTimeTakenToMove() says. At
+ *  a stop it opens and closes its doors, dropping off and picking up every passenger of its own at that floor.
+ *
+ *  Elevators never fail and have no limit on passengers, so the results are for comparing policies rather than predicting the system.
+ *  A passenger's wait is from their arrival until the doors open to pick them up, and their trip is from their arrival until the doors
+ *  open at their target floor.
+ */
+public class DispatchPolicySimulator {
+
+	private static final int MAX_SECONDS_AFTER_LAST_ARRIVAL = 24 * 60 * 60;	// Passengers not delivered by then are counted as not served
+
+	/*** A passenger arriving at requestFloor at arrivalSecond to go to targetFloor ***/
+	public record Passenger(int arrivalSecond, int requestFloor, int targetFloor) {}
+
+	/*** The wait and trip times, in seconds, of the passengers delivered by a policy ***/
+	public record Result(
+			String policy,
+			int    passengers,
+			int    served,
+			int    waitP50,
+			int    waitP90,
+			int    waitP99,
+			int    waitMax,
+			double waitAverage,
+			int    tripP50,
+			int    tripP90,
+			int    tripP99,
+			int    lastDropOffSecond
+	) {
+		public static String header() {
+			return String.format("%-36s %7s %7s %7s %7s %7s %7s %7s %7s %7s", "POLICY", "SERVED", "WAIT50", "WAIT90", "WAIT99", "WAITMAX", "WAITAVG", "TRIP50", "TRIP90", "TRIP99");
+		}
+
+		public String row() {
+			return String.format("%-36s %3d/%-3d %7d %7d %7d %7d %7.1f %7d %7d %7d", policy, served, passengers, waitP50, waitP90, waitP99, waitMax, waitAverage, tripP50, tripP90, tripP99);
+		}
+	}
+
+	/*** An elevator in the simulation ***/
+	private static final class Car {
+		final int id;
+		int location = 1;
+		ElevatorStates state = ElevatorStates.IDLE;
+		boolean moving = false;	// Moving at full speed (already accelerated)
+		int busyUntil = 0;		// The second its current step ends
+
+		Car(int id) {
+			this.id = id;
+		}
+
+		ElevatorData data() {
+			return new ElevatorData(new ElevatorSignal(state, id, location, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE));
+		}
+	}
+
+	private final int floors;
+	private final int elevators;
+
+	public DispatchPolicySimulator(int floors, int elevators) {
+		this.floors = floors;
+		this.elevators = elevators;
+	}
+
+
+
+	/*
+	 * Makes a repeatable list of passengers arriving at random times over durationSeconds, sorted by arrival. Half of them go to or from
+	 * floor 1 (the lobby), the rest go between two random floors.
+	 */
+	public static ArrayList<Passenger> randomPassengers(long seed, int count, int durationSeconds, int floors) {
+		Random random = new Random(seed);
+		ArrayList<Passenger> passengers = new ArrayList<Passenger>(count);
+		for (int i = 0; i < count; i++) {
+			int arrivalSecond = random.nextInt(durationSeconds);
+			int requestFloor = 1 + random.nextInt(floors);
+			int targetFloor = 1 + random.nextInt(floors - 1);
+			if (targetFloor >= requestFloor) { targetFloor++; }		// Never the request floor
+			if (random.nextBoolean()) {
+				if (random.nextBoolean()) { requestFloor = 1; targetFloor = 2 + random.nextInt(floors - 1); }	// Going up from the lobby
+				else { targetFloor = 1; requestFloor = 2 + random.nextInt(floors - 1); }						// Going down to the lobby
+			}
+			passengers.add(new Passenger(arrivalSecond, requestFloor, targetFloor));
+		}
+		passengers.sort((a, b) -> Integer.compare(a.arrivalSecond(), b.arrivalSecond()));
+		return passengers;
+	}
+
+
+
+	/*
+	 * Makes a repeatable list of up-peak passengers (the morning rush), all arriving at floor 1 (the lobby) over durationSeconds and
+	 * going to random floors above it, sorted by arrival.
+	 */
+	public static ArrayList<Passenger> upPeakPassengers(long seed, int count, int durationSeconds, int floors) {
+		Random random = new Random(seed);
+		ArrayList<Passenger> passengers = new ArrayList<Passenger>(count);
+		for (int i = 0; i < count; i++) {
+			passengers.add(new Passenger(random.nextInt(durationSeconds), 1, 2 + random.nextInt(floors - 1)));
+		}
+		passengers.sort((a, b) -> Integer.compare(a.arrivalSecond(), b.arrivalSecond()));
+		return passengers;
+	}
+
+
+
+	/*
+	 * Runs every policy in DispatchPolicies over the same passengers, assigning them one at a time and then with BatchAssignment
+	 * (the policy's name ends in "+BATCH").
+	 */
+	public ArrayList<Result> compare(List<Passenger> passengers) {
+		ArrayList<Result> results = new ArrayList<Result>();
+		for (DispatchPolicies policy : DispatchPolicies.values()) {
+			results.add(run(policy.name(), policy.policy(), passengers, false));
+			results.add(run(policy.name() + "+BATCH", policy.policy(), passengers, true));
+		}
+		return results;
+	}
+
+
+
+	/*
+	 * Runs one policy over the passengers, which must be sorted by arrival. With batch, the waiting passengers are assigned together
+	 * by BatchAssignment (with no time budget) like the scheduler does when CONFIG.SCHEDULER_BATCH_ASSIGNMENT is on.
+	 */
+	public Result run(String name, DispatchPolicy policy, List<Passenger> passengers, boolean batch) {
+		HashMap<Integer, ArrayList<RequestData>> requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		HashMap<Integer, ElevatorData> elevatorLatestData = new HashMap<Integer, ElevatorData>();
+		Car[] cars = new Car[elevators + 1];
+		for (int elevatorID = 1; elevatorID <= elevators; elevatorID++) {
+			cars[elevatorID] = new Car(elevatorID);
+			requestsActive.put(elevatorID, new RequestList());
+			elevatorLatestData.put(elevatorID, cars[elevatorID].data());
+		}
+
+		RequestList waiting = new RequestList();
+		int[] waits = new int[passengers.size()];
+		int[] trips = new int[passengers.size()];
+		int served = 0;
+		int lastDropOffSecond = 0;
+		int nextPassenger = 0;
+		int endSecond = passengers.isEmpty() ? 0 : passengers.get(passengers.size()-1).arrivalSecond() + MAX_SECONDS_AFTER_LAST_ARRIVAL;
+
+		for (int second = 0; served < passengers.size() && second <= endSecond; second++) {
+
+			// Passengers arriving this second press their floor's button. The requestID is the passenger's index + 1
+			while (nextPassenger < passengers.size() && passengers.get(nextPassenger).arrivalSecond() <= second) {
+				Passenger passenger = passengers.get(nextPassenger);
+				if (passenger.requestFloor() < 1 || passenger.requestFloor() > floors || passenger.targetFloor() < 1 || passenger.targetFloor() > floors || passenger.requestFloor() == passenger.targetFloor()) {
+					throw new IllegalArgumentException(String.format("%s is not a trip between two of the %d floors", passenger, floors));
+				}
+				Direction direction = (passenger.targetFloor() > passenger.requestFloor()) ? Direction.UP : Direction.DOWN;
+				waiting.add(new RequestData(new FloorRequest(passenger.requestFloor(), passenger.targetFloor(), direction, new ElevatorFault(ScenarioFaults.NONE)), ++nextPassenger));
+			}
+
+			// Offer the waiting passengers to the policy, all together or oldest first
+			if (batch) {
+				if (!waiting.isEmpty()) {
+					waiting.removeAll(BatchAssignment.assign(waiting, requestsActive, elevatorLatestData, policy, RealTimeClock.SYSTEM, Long.MAX_VALUE / 2, (request, elevatorID) -> {
+						request.setElevatorID(elevatorID);
+						return requestsActive.get(elevatorID).add(request);
+					}));
+				}
+			} else {
+				for (int i = 0; i < waiting.size(); i++) {
+					RequestData request = waiting.get(i);
+					int elevatorID = policy.assign(request, requestsActive, elevatorLatestData);
+					if (elevatorID != -1) {
+						request.setElevatorID(elevatorID);
+						requestsActive.get(elevatorID).add(request);
+						waiting.remove(i--);
+					}
+				}
+			}
+
+			// Every elevator that finished its last step takes its next one
+			for (int elevatorID = 1; elevatorID <= elevators; elevatorID++) {
+				Car car = cars[elevatorID];
+				if (second < car.busyUntil) { continue; }
+				ArrayList<RequestData> activeRequests = requestsActive.get(elevatorID);
+
+				// Stop here if a passenger is getting on or off
+				boolean stopping = false;
+				for (int i = 0; i < activeRequests.size(); i++) {
+					RequestData request = activeRequests.get(i);
+					if (!request.pickedUpPassenger() && request.requestFloor() == car.location) {
+						request.setPickedUpPassenger(true);
+						waits[request.requestID()-1] = second - passengers.get(request.requestID()-1).arrivalSecond();
+						stopping = true;
+					}
+					if (request.pickedUpPassenger() && request.targetFloor() == car.location) {
+						request.setRequestComplete(true);
+						trips[request.requestID()-1] = second - passengers.get(request.requestID()-1).arrivalSecond();
+						activeRequests.remove(i--);
+						served++;
+						lastDropOffSecond = second;
+						stopping = true;
+					}
+				}
+
+				if (stopping) {
+					car.state = ElevatorStates.OPEN_DOORS;
+					car.moving = false;
+					car.busyUntil = second + SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors();
+
+				// Move a floor towards the next floor the elevator stops at
+				} else if (!activeRequests.isEmpty()) {
+					RequestData next = SchedulingAlgorithm.sortSingleActiveRequestsList(activeRequests, elevatorLatestData.get(elevatorID)).get(0);
+					int nextFloor = next.pickedUpPassenger() ? next.targetFloor() : next.requestFloor();
+					car.state = (nextFloor > car.location) ? ElevatorStates.MOVING_UP : ElevatorStates.MOVING_DOWN;
+					car.location += (nextFloor > car.location) ? 1 : -1;
+					car.busyUntil = second + (isStop(activeRequests, car.location) ? ElevatorTimes.STOP : car.moving ? ElevatorTimes.MOVING_MAX : ElevatorTimes.MOVING);
+					car.moving = true;
+
+				} else {
+					car.state = ElevatorStates.IDLE;
+					car.moving = false;
+				}
+				elevatorLatestData.put(elevatorID, car.data());
+			}
+		}
+
+		// Only the delivered passengers' times are counted
+		int[] servedWaits = new int[served];
+		int[] servedTrips = new int[served];
+		int n = 0;
+		long totalWait = 0;
+		for (int i = 0; i < passengers.size(); i++) {
+			if (trips[i] > 0) {
+				servedWaits[n] = waits[i];
+				servedTrips[n++] = trips[i];
+				totalWait += waits[i];
+			}
+		}
+		Arrays.sort(servedWaits);
+		Arrays.sort(servedTrips);
+
+		return new Result(name, passengers.size(), served,
+				percentile(servedWaits, 50), percentile(servedWaits, 90), percentile(servedWaits, 99), percentile(servedWaits, 100),
+				(served == 0) ? 0 : (double) totalWait / served,
+				percentile(servedTrips, 50), percentile(servedTrips, 90), percentile(servedTrips, 99), lastDropOffSecond);
+	}
+
+
+
+	/*** True if the elevator picks up or drops off a passenger at the floor ***/
+	private static boolean isStop(ArrayList<RequestData> activeRequests, int floor) {
+		for (int i = 0; i < activeRequests.size(); i++) {
+			RequestData request = activeRequests.get(i);
+			if ((request.pickedUpPassenger() ? request.targetFloor() : request.requestFloor()) == floor) { return true; }
+		}
+		return false;
+	}
+
+
+
+	/*** The nearest-rank percentile of sorted values, 0 if there are none ***/
+	static int percentile(int[] sortedValues, int percent) {
+		if (sortedValues.length == 0) { return 0; }
+		int rank = (int) Math.ceil(percent / 100.0 * sortedValues.length);
+		return sortedValues[Math.max(rank, 1) - 1];
+	}
+
+
+
+	/*
+	 * Compares every policy on a building with CONFIG.FLOORS floors and CONFIG.ELEVATORS elevators.
+	 * Arguments (all optional): seed, number of passengers, seconds the passengers arrive over, UP_PEAK for only lobby passengers.
+	 */
+	public static void main(String[] args) {
+		long seed         = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+		int nPassengers   = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+		int arrivalPeriod = (args.length > 2) ? Integer.parseInt(args[2]) : 30 * 60;
+		boolean upPeak    = (args.length > 3) && args[3].equalsIgnoreCase("UP_PEAK");
+
+		DispatchPolicySimulator simulator = new DispatchPolicySimulator(CONFIG.FLOORS, CONFIG.ELEVATORS);
+		ArrayList<Passenger> passengers = upPeak ? upPeakPassengers(seed, nPassengers, arrivalPeriod, CONFIG.FLOORS) : randomPassengers(seed, nPassengers, arrivalPeriod, CONFIG.FLOORS);
+		ArrayList<Result> results = simulator.compare(passengers);
+
+		System.out.println(String.format("%d floors, %d elevators, %d %spassengers over %d seconds (seed %d). Times are in seconds.", CONFIG.FLOORS, CONFIG.ELEVATORS, nPassengers, upPeak ? "up-peak " : "", arrivalPeriod, seed));
+		System.out.println(Result.header());
+		Result bestWait = null;
+		Result bestTrip = null;
+		for (Result result : results) {
+			System.out.println(result.row());
+			if (bestWait == null || result.served() > bestWait.served() || (result.served() == bestWait.served() && result.waitP90() < bestWait.waitP90())) {
+				bestWait = result;
+			}
+			if (bestTrip == null || result.served() > bestTrip.served() || (result.served() == bestTrip.served() && result.tripP90() < bestTrip.tripP90())) {
+				bestTrip = result;
+			}
+		}
+		System.out.println(String.format("Lowest 90th percentile wait: %s", bestWait.policy()));
+		System.out.println(String.format("Lowest 90th percentile trip: %s", bestTrip.policy()));
+		System.out.println("Set CONFIG.DISPATCH_POLICY, and CONFIG.SCHEDULER_BATCH_ASSIGNMENT for +BATCH, to use one.");
+	}
+}
@@ -0,0 +1,172 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single selector thread that receives datagrams for every NioDatagramTransport in the program.
+ *
+ * All channels are read into one direct buffer owned by the selector thread. Each frame is copied into
+ * its channel's Inbox, so nothing a Dispatcher does with a frame (connection requests, CALLER_THREAD deliveries,
+ * deliveries run by a saturated pool) ever runs on the selector thread and holds up the other channels.
+ *
+ * When an inbox is full the selector stops reading its channel until the inbox is emptied and resumed, leaving
+ * frames in the channel's socket buffer like a busy DatagramSocket would, instead of blocking the selector.
+ *
+ * @author agent
+ *
+ */
+final class DispatchSelector implements Runnable {
+	final private static Logger LOG =LogManager.getFormatterLogger(DispatchSelector.class);
+	private static final int MAX_READS_PER_CHANNEL = 64; //Keeps a busy channel from starving the others sharing the selector
+	private static DispatchSelector shared = null;
+
+	private final Selector selector;
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(CONFIG.MAX_MESSAGE_BYTES);
+	private final Queue<Registration> pendingRegistrations = new ConcurrentLinkedQueue<Registration>();
+	private final Queue<SelectionKey> pendingResumes = new ConcurrentLinkedQueue<SelectionKey>();
+
+	/**
+	 * Where the frames of a channel are queued for the thread that receives them
+	 */
+	interface Inbox {
+		/**
+		 * @return True if no more frames should be queued until some are taken
+		 */
+		boolean isFull();
+
+		/**
+		 * Queues a copy of a frame, called on the selector thread
+		 * @param frame The frame between the buffer's position and limit, only valid for the duration of the call
+		 * @param source The address the frame was sent from
+		 */
+		void add(ByteBuffer frame,InetSocketAddress source);
+
+		/**
+		 * Called on the selector thread when it stops reading the channel because the inbox is full.
+		 * The inbox calls resume with the key once it has room again.
+		 * @param key The channel's key
+		 */
+		void paused(SelectionKey key);
+	}
+
+	private record Registration(DatagramChannel channel,Inbox inbox) {}
+
+	private DispatchSelector() throws IOException {
+		selector = Selector.open();
+	}
+
+	/**
+	 * Gets the selector shared by all NIO transports, starting its thread the first time it is used
+	 * @return The shared selector
+	 * @throws IOException If the selector could not be opened
+	 */
+	static synchronized DispatchSelector shared() throws IOException {
+		if(shared == null) {
+			shared = new DispatchSelector();
+			Thread td = new Thread(shared);
+			td.setName("DispatchSelector");
+			td.setDaemon(true);
+			td.start();
+		}
+		return shared;
+	}
+
+	/**
+	 * Starts queuing the frames received by a channel in an inbox
+	 * @param channel A non-blocking channel
+	 * @param inbox The inbox of the channel
+	 */
+	void register(DatagramChannel channel,Inbox inbox) {
+		pendingRegistrations.add(new Registration(channel,inbox));
+		selector.wakeup();
+	}
+
+	/**
+	 * Starts reading a channel paused because its inbox was full again
+	 * @param key The key given to Inbox.paused
+	 */
+	void resume(SelectionKey key) {
+		pendingResumes.add(key);
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		LOG.info("DispatchSelector STARTED!");
+		while(selector.isOpen()) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				LOG.error("DispatchSelector failed to select.\n%s",e.getMessage());
+				continue;
+			}
+
+			Registration registration;
+			while((registration = pendingRegistrations.poll()) != null) {
+				try {
+					registration.channel().register(selector, SelectionKey.OP_READ, registration.inbox());
+				} catch (ClosedChannelException e) {
+					LOG.warn("DispatchSelector could not register a channel that was already closed.");
+				}
+			}
+
+			SelectionKey resumed;
+			while((resumed = pendingResumes.poll()) != null) {
+				if(resumed.isValid()) {
+					resumed.interestOps(SelectionKey.OP_READ);
+				}
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while(keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if(key.isValid() && key.isReadable()) {
+					read(key);
+				}
+			}
+		}
+	}
+
+	private void read(SelectionKey key) {
+		DatagramChannel channel = (DatagramChannel) key.channel();
+		Inbox inbox = (Inbox) key.attachment();
+		for(int i=0;i<MAX_READS_PER_CHANNEL;++i) {
+			if(inbox.isFull()) {
+				key.interestOps(0);
+				inbox.paused(key);
+				return;
+			}
+
+			SocketAddress source;
+			try {
+				receiveBuffer.clear();
+				source = channel.receive(receiveBuffer);
+			} catch (IOException e) {
+				if(channel.isOpen()) {
+					LOG.error("DispatchSelector encountered an error when receiving a packet and has dropped it.\n%s",e.getMessage());
+				}
+				return;
+			}
+			if(source == null) {
+				return;
+			}
+
+			receiveBuffer.flip();
+			inbox.add(receiveBuffer,(InetSocketAddress) source);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package C2G8_Project;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every topic used in the program a compact integer ID so messages can be routed
+ * by array index instead of building, hashing and parsing topic strings for each message.
+ *
+ * Topics can be registered by name, by topic enum, or by topic enum and a parameter for the
+ * topics that include a floor or elevator number (Ex. FLOOR_SIGNAL_5 is FloorTopics.FLOOR_SIGNAL
+ * with parameter 5). The IDs of a topic enum's constants and of its parameterized topics are kept
+ * in arrays so looking them up when sending does not build a string.
+ *
+ * IDs are only meaningful within one program. Topics are still sent over the network by name
+ * and received names are resolved to their ID once when the message is decoded.
+ *
+ * @author agent
+ *
+ */
+public final class DispatchTopics {
+	public static final int NO_TOPIC = -1; //The ID of a received topic that was never registered in this program
+
+	private static final ConcurrentHashMap<String,Integer> ids = new ConcurrentHashMap<String,Integer>();
+	private static volatile Topic[] topics = new Topic[0];
+
+	/**
+	 * @param name The full name of the topic
+	 * @param baseId The ID of the topic without its parameter, its own ID if it has none
+	 */
+	private record Topic(String name,int baseId) {}
+
+	private static final ClassValue<int[]> ENUM_IDS = new ClassValue<int[]>() {
+		@Override
+		protected int[] computeValue(Class<?> type) {
+			Object[] constants = type.getEnumConstants();
+			int[] enumIds = new int[constants.length];
+			for(int i=0;i<constants.length;++i) {
+				enumIds[i] = idOf(((Enum<?>)constants[i]).name());
+			}
+			return enumIds;
+		}
+	};
+
+	private static final ClassValue<ParameterizedIds> PARAMETERIZED_IDS = new ClassValue<ParameterizedIds>() {
+		@Override
+		protected ParameterizedIds computeValue(Class<?> type) {
+			return new ParameterizedIds(type.getEnumConstants().length);
+		}
+	};
+
+	private static final ClassValue<Enum<?>[]> ENUM_BY_BASE_ID = new ClassValue<Enum<?>[]>() {
+		@Override
+		protected Enum<?>[] computeValue(Class<?> type) {
+			int[] enumIds = ENUM_IDS.get(type);
+			Object[] constants = type.getEnumConstants();
+			Enum<?>[] byBaseId = new Enum<?>[Arrays.stream(enumIds).max().orElse(-1)+1];
+			for(int i=0;i<constants.length;++i) {
+				byBaseId[enumIds[i]] = (Enum<?>)constants[i];
+			}
+			return byBaseId;
+		}
+	};
+
+	/**
+	 * The IDs of the parameterized topics of one topic enum indexed by ordinal then parameter
+	 */
+	private static final class ParameterizedIds {
+		private volatile int[][] byOrdinal;
+
+		ParameterizedIds(int constants) {
+			byOrdinal = new int[constants][0];
+		}
+
+		int idOf(Enum<?> topic,int parameter) {
+			int[] parameterIds = byOrdinal[topic.ordinal()];
+			if(parameter < parameterIds.length) {
+				return parameterIds[parameter];
+			}
+			return grow(topic,parameter);
+		}
+
+		private synchronized int grow(Enum<?> topic,int parameter) {
+			int[][] grown = byOrdinal.clone();
+			int[] oldIds = grown[topic.ordinal()];
+			if(parameter >= oldIds.length) {
+				int[] newIds = Arrays.copyOf(oldIds, Math.max(parameter+1, oldIds.length*2));
+				for(int i=oldIds.length;i<newIds.length;++i) {
+					newIds[i] = DispatchTopics.idOf(String.format("%s_%d",topic.name(),i));
+				}
+				grown[topic.ordinal()] = newIds;
+				byOrdinal = grown;
+			}
+			return byOrdinal[topic.ordinal()][parameter];
+		}
+	}
+
+	private DispatchTopics() {}
+
+	/**
+	 * Gets the ID of a topic, registering it if it is new
+	 * @param name The name of the topic
+	 * @return The ID of the topic
+	 */
+	public static int idOf(String name) {
+		Integer id = ids.get(name);
+		return id != null ? id : register(name);
+	}
+
+	/**
+	 * @param topic A topic enum constant
+	 * @return The ID of the topic
+	 */
+	public static int idOf(Enum<?> topic) {
+		return ENUM_IDS.get(topic.getDeclaringClass())[topic.ordinal()];
+	}
+
+	/**
+	 * Gets the ID of a topic that includes a number, Ex. FLOOR_SIGNAL_5
+	 * @param topic A topic enum constant
+	 * @param parameter The floor or elevator number of the topic
+	 * @return The ID of the topic named TOPIC_PARAMETER
+	 */
+	public static int idOf(Enum<?> topic,int parameter) {
+		if(parameter < 0) {
+			return idOf(String.format("%s_%d",topic.name(),parameter));
+		}
+		return PARAMETERIZED_IDS.get(topic.getDeclaringClass()).idOf(topic, parameter);
+	}
+
+	/**
+	 * Gets the ID of a topic without registering it
+	 * @param name The name of the topic
+	 * @return The ID of the topic or NO_TOPIC if it was never registered
+	 */
+	public static int find(String name) {
+		if(name == null) {
+			return NO_TOPIC;
+		}
+		Integer id = ids.get(name);
+		return id != null ? id : NO_TOPIC;
+	}
+
+	/**
+	 * @param id A topic ID
+	 * @return The name of the topic or an empty string if the ID is NO_TOPIC or was never assigned
+	 */
+	public static String nameOf(int id) {
+		Topic[] current = topics;
+		if(id < 0 || id >= current.length) {
+			return "";
+		}
+		return current[id].name();
+	}
+
+	/**
+	 * Converts a topic ID into the topic enum it belongs to, ignoring its parameter.
+	 * Ex. The ID of FLOOR_SIGNAL_5 is converted to FloorTopics.FLOOR_SIGNAL
+	 * @param <T> The topic enum type
+	 * @param id A topic ID
+	 * @param type The topic enum class
+	 * @return The topic enum constant or null if the topic is not one of the type
+	 */
+	public static <T extends Enum<T>> T enumOf(int id,Class<T> type) {
+		Topic[] current = topics;
+		if(id < 0 || id >= current.length) {
+			return null;
+		}
+		Enum<?>[] byBaseId = ENUM_BY_BASE_ID.get(type);
+		int baseId = current[id].baseId();
+		return baseId < byBaseId.length ? type.cast(byBaseId[baseId]) : null;
+	}
+
+	/**
+	 * Registers a topic. A name ending with _NUMBER also registers the name without it as the base of the topic
+	 * @param name The name of the topic
+	 * @return The ID of the topic
+	 */
+	private static synchronized int register(String name) {
+		Integer existing = ids.get(name);
+		if(existing != null) {
+			return existing;
+		}
+
+		int baseId = NO_TOPIC;
+		int separator = name.lastIndexOf('_');
+		if(separator > 0 && separator < name.length()-1 && isNumber(name,separator+1)) {
+			baseId = register(name.substring(0, separator));
+		}
+
+		int id = topics.length;
+		Topic[] grown = Arrays.copyOf(topics, id+1);
+		grown[id] = new Topic(name,baseId == NO_TOPIC ? id : baseId);
+		topics = grown; //Published before the ID so any thread that finds the ID can also read the topic
+		ids.put(name, id);
+		return id;
+	}
+
+	private static boolean isNumber(String name,int start) {
+		for(int i=start;i<name.length();++i) {
+			if(!Character.isDigit(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,82 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * The network endpoint a Dispatcher sends and receives its frames through.
+ *
+ * The transport only moves encoded frames, or for transports that carry messages within the program
+ * the messages themselves. Encoding, decoding and delivery to subscribers remain the Dispatcher's responsibility.
+ *
+ * @author agent
+ *
+ */
+interface DispatchTransport {
+
+	/**
+	 * Called by a transport for every frame received
+	 */
+	interface FrameReceiver {
+		/**
+		 * @param frame The frame between the buffer's position and limit. The buffer is reused by the transport
+		 * so it is only valid for the duration of the call.
+		 * @param source The address the frame was sent from
+		 */
+		void receiveFrame(ByteBuffer frame,InetSocketAddress source);
+
+		/**
+		 * Called by a transport that carries messages for every message received (see DispatchTransport.sendMessage)
+		 * @param message The message, as it was sent
+		 * @param source The address the message was sent from
+		 */
+		default void receiveMessage(DispatcherMessage message,InetSocketAddress source) {
+			throw new UnsupportedOperationException("This receiver only receives frames");
+		}
+	}
+
+	int getLocalPort();
+
+	InetAddress getLocalAddress();
+
+	/**
+	 * Sends a single frame as one datagram
+	 * @param frame The frame between the buffer's position and limit
+	 * @param destination The address to send to
+	 * @throws IOException If the frame could not be sent
+	 */
+	void send(ByteBuffer frame,InetSocketAddress destination) throws IOException;
+
+	/**
+	 * @return True if messages can be handed to the destination without being encoded, using sendMessage
+	 */
+	default boolean carriesMessages() {
+		return false;
+	}
+
+	/**
+	 * Sends a message without encoding it. Only supported when carriesMessages is true.
+	 * @param message The message, received as it is, so its data must not be shared with the sender
+	 * @param destination The address to send to
+	 * @throws IOException If the message could not be sent
+	 */
+	default void sendMessage(DispatcherMessage message,InetSocketAddress destination) throws IOException {
+		throw new UnsupportedOperationException(String.format("%s only sends frames", getClass().getSimpleName()));
+	}
+
+	/**
+	 * Delivers received frames to the receiver, blocking the calling thread until the transport is closed.
+	 * Frames may be delivered on the calling thread or on a thread owned by the transport.
+	 * @param receiver The receiver of the frames
+	 */
+	void serve(FrameReceiver receiver);
+
+	/**
+	 * Closes the transport and releases any thread blocked in serve
+	 */
+	void close();
+
+	boolean isClosed();
+}
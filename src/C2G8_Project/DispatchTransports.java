@@ -0,0 +1,23 @@
+package C2G8_Project;
+
+/**
+ * The transports a Dispatcher can send and receive its frames through.
+ *
+ * DATAGRAM_SOCKET: A blocking DatagramSocket read by the thread running the Dispatcher.
+ * NIO_SELECTOR: A non-blocking DatagramChannel read by a selector thread shared with every other Dispatcher in the program.
+ *
+ * LOOPBACK: Frames are handed directly to other LOOPBACK Dispatchers in the same program, no sockets are opened.
+ * LOOPBACK_MESSAGES: Like LOOPBACK, but messages are handed over as copies of their data instead of encoded frames (See LoopbackTransport).
+ *
+ * DATAGRAM_SOCKET and NIO_SELECTOR send ordinary UDP datagrams so Dispatchers using either can talk to each other.
+ * The loopback transports can talk to each other, but only within one program.
+ *
+ * @author agent
+ *
+ */
+public enum DispatchTransports {
+	DATAGRAM_SOCKET,
+	NIO_SELECTOR,
+	LOOPBACK,
+	LOOPBACK_MESSAGES
+}
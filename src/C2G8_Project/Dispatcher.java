@@ -1,19 +1,26 @@
 package C2G8_Project;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
-import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 
 /**
@@ -40,26 +47,60 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * DispatchConsumers can send messages to the dispatcher and do not need to convert their message. They simply provide the topic that will be used
  * and the data to be sent and it will be automatically converted into JSON and sent via UDP.
  * 
+ * Codecs:
+ * Destinations connected with connectNewDestination agree on a wire format during the connection request. When both ends prefer
+ * DispatchCodecs.BINARY the most frequent messages are sent in a compact binary form and arrive already decoded in
+ * DispatcherMessage.payload. Otherwise, and for destinations registered with registerDestination, messages are sent as JSON.
+ * 
+ * Batching:
+ * When batching is enabled every message bound for the same connected destination is held for up to CONFIG.DISPATCH_BATCH_WINDOW_MILLS
+ * and sent together in one datagram of at most CONFIG.DISPATCH_BATCH_MAX_BYTES. Calling flush sends everything held immediately, so a
+ * sender that produces its messages in passes can send one datagram per destination per pass. Receivers unpack batches transparently.
+ * 
+ * Reliable delivery:
+ * When reliable delivery is enabled every datagram sent to a connected destination, including batches, is acknowledged by the receiver
+ * and sent again if the acknowledgement does not arrive within a timeout adapted to the measured round trip time. Receivers drop
+ * the duplicates that retransmission causes. A datagram is given up on after CONFIG.DISPATCH_RELIABLE_MAX_ATTEMPTS sends. Connection
+ * requests are never sent reliably since they are already retried by connectNewDestination. See ReliableChannel.
+ * 
+ * Transports:
+ * Frames are sent and received through the transport chosen with DispatchTransports. The LOOPBACK transports only reach
+ * other Dispatchers in the same program. LOOPBACK_MESSAGES hands messages over without encoding them, so they are never
+ * batched or sent reliably and subscribers receive the sent object as the payload. See LoopbackTransport.
+ * 
  * @author Jayson Mendoza
  *
  */
 public class Dispatcher implements Runnable {
 	final public static int NO_PORT = -1;
 	final private static String CONNECT_TOPIC = "CONNECT_REQUEST";
+	final private static int CONNECT_TOPIC_ID = DispatchTopics.idOf(CONNECT_TOPIC);
+	final private static int FEATURES = DispatcherConnectRequest.FEATURE_BATCHES | DispatcherConnectRequest.FEATURE_RELIABLE; //Everything this version can receive
 	final private static Logger LOG =LogManager.getFormatterLogger(Dispatcher.class);
 	final  private int TIMEOUT_MILLS;
 	private ObjectMapper objMap;
 	private final String name;
 	private int port;
-	private DatagramSocket socket;
+	private final DispatchTransports transportType;
+	private DispatchTransport transport;
 	private volatile boolean isRunning = false;
 	private int packetsDropped = 0;
 	private int packetsProcessed = 0;
 	private final Destinations destinationID;
-	private volatile HashMap<Enum<?>,HashSet<InetSocketAddress>> destinations = new HashMap<Enum<?>,HashSet<InetSocketAddress>>();
-	private volatile HashMap<DispatchConsumer,HashSet<String>> subscribers = new HashMap<DispatchConsumer,HashSet<String>>();
-	private volatile HashMap<String,HashSet<DispatchConsumer>> topicSubscribers = new HashMap<String,HashSet<DispatchConsumer>>();
+	private final AtomicReference<DestinationRegistry> destinations = new AtomicReference<DestinationRegistry>(DestinationRegistry.EMPTY);
+	private final AtomicReference<SubscriptionRegistry> subscriptions = new AtomicReference<SubscriptionRegistry>(SubscriptionRegistry.EMPTY);
 	private volatile HashSet<Destinations> pendingDestinations = new HashSet<Destinations>();
+	private final DispatchExecutor dispatchExecutor;
+	private final DispatchCodecs codec;
+	private volatile boolean batching = CONFIG.DISPATCH_BATCHING;
+	private final ConcurrentHashMap<InetSocketAddress,DispatchBatch> pendingBatches = new ConcurrentHashMap<InetSocketAddress,DispatchBatch>();
+	private ScheduledExecutorService timer = null;
+	private final AtomicInteger packetsSent = new AtomicInteger(0);
+	private volatile boolean reliable = CONFIG.DISPATCH_RELIABLE;
+	private final ConcurrentHashMap<InetSocketAddress,ReliableChannel> reliableChannels = new ConcurrentHashMap<InetSocketAddress,ReliableChannel>();
+	private boolean retransmitting = false;
+	private final AtomicInteger packetsRetransmitted = new AtomicInteger(0);
+	private int duplicatesDropped = 0;
 	
 	/**
 	 * Creates Dispatcher bound to a specific port.
@@ -69,9 +110,28 @@ public class Dispatcher implements Runnable {
 	 * 
 	 * @param name The name of the dispatcher that will show in logs
 	 * @param port The port on the local machine where the socket will be bound and listen
+	 * @param executionMode The execution context used to deliver received messages to subscribers
+	 * @param codec The wire format this dispatcher would like to use with destinations it connects to
+	 * @param transportType The transport used to send and receive datagrams
 	 * @throws SocketException 
 	 */
-	public Dispatcher(final Destinations destinationIdentifier,final String name,final int port,final int timeOutMills) throws SocketException {
+	public Dispatcher(final Destinations destinationIdentifier,final String name,final int port,final int timeOutMills,final DispatchExecutionModes executionMode,final DispatchCodecs codec,final DispatchTransports transportType) throws SocketException {
+		this(destinationIdentifier,name,port,timeOutMills,executionMode,codec,transportType,null);
+	}
+	
+	/**
+	 * Creates a Dispatcher that sends and receives through a transport opened elsewhere, such as one on a SimulatedNetwork.
+	 * 
+	 * @param transport The transport used to send and receive frames. It is closed when the dispatcher shuts down.
+	 * @param executionMode The execution context used to deliver received messages to subscribers
+	 * @throws SocketException 
+	 */
+	Dispatcher(final Destinations destinationIdentifier,final String name,final DispatchTransport transport,final DispatchExecutionModes executionMode) throws SocketException {
+		this(destinationIdentifier,name,transport.getLocalPort(),500,executionMode,CONFIG.DISPATCH_CODEC,null,transport);
+	}
+	
+	private Dispatcher(final Destinations destinationIdentifier,final String name,final int port,final int timeOutMills,final DispatchExecutionModes executionMode,final DispatchCodecs codec,final DispatchTransports transportType,final DispatchTransport transport) throws SocketException {
+		this.transport = transport;
 		this.destinationID = destinationIdentifier;
 		this.port =  port;
 		
@@ -83,11 +143,26 @@ public class Dispatcher implements Runnable {
 		}
 		
 		this.TIMEOUT_MILLS = timeOutMills;
+		this.codec = codec;
+		this.transportType = transportType;
 		objMap = new ObjectMapper();
+		dispatchExecutor = new DispatchExecutor(this.name,executionMode,CONFIG.DISPATCH_POOL_THREADS,CONFIG.DISPATCH_POOL_QUEUE_CAPACITY);
 		LOG.info("%s: Dispatcher setup complete.",this.name);
 		init();
 	}
 	
+	public Dispatcher(final Destinations destinationIdentifier,final String name,final int port,final int timeOutMills,final DispatchExecutionModes executionMode,final DispatchCodecs codec) throws SocketException {
+		this(destinationIdentifier,name,port,timeOutMills,executionMode,codec,CONFIG.DISPATCH_TRANSPORT);
+	}
+	
+	public Dispatcher(final Destinations destinationIdentifier,final String name,final int port,final int timeOutMills,final DispatchExecutionModes executionMode) throws SocketException {
+		this(destinationIdentifier,name,port,timeOutMills,executionMode,CONFIG.DISPATCH_CODEC);
+	}
+	
+	public Dispatcher(final Destinations destinationIdentifier,final String name,final int port,final int timeOutMills) throws SocketException {
+		this(destinationIdentifier,name,port,timeOutMills,CONFIG.DISPATCH_EXECUTION_MODE);
+	}
+	
 	public Dispatcher(final String name,final int port) throws SocketException {
 		this(null,name,port,500);
 	}
@@ -125,69 +200,138 @@ public class Dispatcher implements Runnable {
 		return packetsProcessed;
 	}
 	
+	/**
+	 * @return The number of datagrams sent, a batch counts as one
+	 */
+	public int getPacketsSent() {
+		return packetsSent.get();
+	}
+	
+	public boolean isBatching() {
+		return batching;
+	}
+	
+	/**
+	 * Enables or disables batching of messages sent to connected destinations.
+	 * Messages already held are sent when batching is disabled.
+	 * @param batching True to batch messages
+	 */
+	public void setBatching(boolean batching) {
+		this.batching = batching;
+		if(!batching) {
+			flush();
+		}
+	}
+	
+	/**
+	 * @return The number of datagrams sent again because they were not acknowledged in time
+	 */
+	public int getPacketsRetransmitted() {
+		return packetsRetransmitted.get();
+	}
+	
+	/**
+	 * @return The number of received datagrams dropped because they had already been received
+	 */
+	public int getDuplicatesDropped() {
+		return duplicatesDropped;
+	}
+	
+	public boolean isReliable() {
+		return reliable;
+	}
+	
+	/**
+	 * Enables or disables reliable delivery of messages sent to connected destinations.
+	 * Messages already sent reliably are still retransmitted until acknowledged or given up on.
+	 * @param reliable True to acknowledge and retransmit messages
+	 */
+	public void setReliable(boolean reliable) {
+		this.reliable = reliable;
+	}
+	
+	/**
+	 * @param destination The destination to check
+	 * @return The wire format negotiated with a destination. JSON if it was registered without connecting.
+	 */
+	public <T extends Enum<?>> DispatchCodecs getDestinationCodec(T destination) {
+		DestinationRegistry.Endpoint[] endpoints = destinations.get().endpointsOf(destination);
+		if(endpoints == null || endpoints.length == 0) {
+			return DispatchCodecs.JSON;
+		}
+		return endpoints[0].codec();
+	}
+	
+	/**
+	 * @return A snapshot of the queue depth, rejections and receive to delivery latency of message deliveries
+	 */
+	public DispatchMetrics getDispatchMetrics() {
+		return dispatchExecutor.getMetrics();
+	}
+	
 	public InetAddress getLocalAddress() {
 		
-		if(socket==null) {
+		if(transport==null) {
 			return null;
 		}
-		return socket.getLocalAddress();
+		return transport.getLocalAddress();
 	}
 	
 	public <T extends Enum<?>> boolean isDestinationRegistered(T destination) {
-		boolean rc = false;
-		synchronized(destinations) {
-			rc=destinations.containsKey(destination);
-			destinations.notifyAll();
-		}
-		return rc;
+		return destinations.get().contains(destination);
 	}
 	
 	/**
 	 * EXPOSED FOR TESTING ONLY.
-	 * This method exposes data for testing and should not be used outside a test
-	 * environment or it could cause corruption if the data contain is changed.
+	 * This method copies the current registry for testing, changing the copy has no effect on the dispatcher.
 	 * @return 
 	 */
 	public HashMap<Enum<?>, HashSet<InetSocketAddress>> getDestinations() {
-		return destinations;
+		return destinations.get().getDestinations();
 	}
 	
 	/**
 	 * EXPOSED FOR TESTING ONLY.
-	 * This method exposes data for testing and should not be used outside a test
-	 * environment or it could cause corruption if the data contain is changed.
+	 * This method copies the current registry for testing, changing the copy has no effect on the dispatcher.
 	 * @return 
 	 */
 	public HashMap<DispatchConsumer, HashSet<String>> getSubscribers() {
-		return subscribers;
+		return subscriptions.get().getSubscribers();
 	}
 
 	/**
 	 * EXPOSED FOR TESTING ONLY.
-	 * This method exposes data for testing and should not be used outside a test
-	 * environment or it could cause corruption if the data contain is changed.
+	 * This method copies the current registry for testing, changing the copy has no effect on the dispatcher.
 	 * @return 
 	 */
 	public HashMap<String, HashSet<DispatchConsumer>> getTopicSubscribers() {
-		return topicSubscribers;
+		return subscriptions.get().getTopicSubscribers();
 	}
 	
 	public void init() throws SocketException {
+		if(transportType == null) {
+			LOG.info("%s listening on port %d using %s",name,transport.getLocalPort(),transport.getClass().getSimpleName());
+			return;
+		}
 		try {
-			if(port == NO_PORT) {
-				socket = new DatagramSocket();
-				port = socket.getLocalPort();
-			}
-			else {
-				socket = new DatagramSocket(port);				
+			switch(transportType) {
+				case NIO_SELECTOR -> transport = new NioDatagramTransport(port);
+				case LOOPBACK -> transport = new LoopbackTransport(port,false);
+				case LOOPBACK_MESSAGES -> transport = new LoopbackTransport(port,true);
+				default -> transport = new DatagramSocketTransport(name,port,TIMEOUT_MILLS);
 			}
-			socket.setSoTimeout(TIMEOUT_MILLS); //Timeout interval. This prevents infinite blocking and making it more responsive to shutdown messages
+			port = transport.getLocalPort();
 		} catch (SocketException e) {
 //			String errMsg = String.format("%s: Dispatcher encountered an error when binding to socket to port %d.\n%s",this.name,port,e.getMessage());
 			e.printStackTrace();
 			throw e;
+		} catch (IOException e) {
+			e.printStackTrace();
+			SocketException bindFailure = new SocketException(String.format("%s: Unable to bind %s transport to port %d. %s",name,transportType,port,e.getMessage()));
+			bindFailure.initCause(e);
+			throw bindFailure;
 		}
-		LOG.info("%s listening on port %d",name,socket.getLocalPort());
+		LOG.info("%s listening on port %d using %s",name,transport.getLocalPort(),transportType);
 	}
 
 	/**
@@ -199,17 +343,24 @@ public class Dispatcher implements Runnable {
 	public void run() {
 		LOG.info("%s: Dispatcher STARTED!",name);
 		isRunning = true;
-		while(!socket.isClosed() && isRunning) {
-			DispatcherMessage msg = receiveData();
-			if(msg!=null) {
-				dispatchMessageToSubscribers(msg);									
-			}
+		if(!transport.isClosed()) {
+			transport.serve(new DispatchTransport.FrameReceiver() {
+				@Override
+				public void receiveFrame(ByteBuffer frame,InetSocketAddress source) {
+					receiveData(frame,source);
+				}
+				
+				@Override
+				public void receiveMessage(DispatcherMessage message,InetSocketAddress source) {
+					receiveUnencoded(message,source);
+				}
+			});
 		}
 		
-		
-		if(!socket.isClosed()) {
-			socket.close();
+		if(!transport.isClosed()) {
+			transport.close();
 		}
+		dispatchExecutor.shutdown();
 	}
 	
 	/**
@@ -218,7 +369,14 @@ public class Dispatcher implements Runnable {
 	 */
 	public void shutdown() {
 		LOG.info("%s: Dispatcher SHUTDOWN!",name);
+		flush();
 		isRunning = false;
+		transport.close();
+		synchronized(pendingBatches) {
+			if(timer != null) {
+				timer.shutdownNow();
+			}
+		}
 	}
 	
 	
@@ -233,27 +391,25 @@ public class Dispatcher implements Runnable {
 			LOG.warn("%s: %s cannot subscribe to a null topic",name,subscriber.getSubscriberNameIdentifier());
 			return;
 		}
-		else if(subscriber == null) {
-			LOG.warn("%s: A null subscriber cannot subscribe to the topic \"%s\"",name,topic);
-			return;
-		}
 		
-		synchronized(subscribers) {
-			HashSet<String> topicList = subscribers.getOrDefault(subscriber, new HashSet<String>());
-			topicList.add(topic);
-			subscribers.put(subscriber, topicList);		
-			subscribers.notifyAll();
+		subscribe(DispatchTopics.idOf(topic),subscriber);
+	}
+	
+	/**
+	 * Subscribes a dispatcher to a topic
+	 * 
+	 * @param topicId The DispatchTopics ID of the topic to which this subscription applies
+	 * @param subscriber The DispatchConsumer that will be called when a message arrives with a subscribed topic
+	 */
+	public void subscribe(int topicId, DispatchConsumer subscriber) {
+		if(subscriber == null) {
+			LOG.warn("%s: A null subscriber cannot subscribe to the topic \"%s\"",name,DispatchTopics.nameOf(topicId));
+			return;
 		}
 		
+		subscriptions.updateAndGet(registry -> registry.withSubscription(topicId, subscriber, consumer -> new DispatchNotificationWorker(consumer,dispatchExecutor)));
 		
-		synchronized(topicSubscribers) {
-			HashSet<DispatchConsumer> subList = topicSubscribers.getOrDefault(topic, new HashSet<DispatchConsumer>());
-			subList.add(subscriber);
-			topicSubscribers.put(topic, subList);			
-			topicSubscribers.notifyAll();
-		}
-		
-		LOG.info("%s: Added subscription for subscriber %s to topic \"%s\"",name,subscriber.getSubscriberNameIdentifier(),topic);			
+		LOG.info("%s: Added subscription for subscriber %s to topic \"%s\"",name,subscriber.getSubscriberNameIdentifier(),DispatchTopics.nameOf(topicId));			
 	}
 	
 	/**
@@ -265,29 +421,29 @@ public class Dispatcher implements Runnable {
 	 * @param subscriber The DispatchConsumer to be called when the topic has been received
 	 */
 	public void unSubscribe(String topic, DispatchConsumer subscriber) {
-		if(topic=="") {
+		if(topic==null || topic=="") {
 			LOG.warn("%s: %s cannot unsubscribe from a null topic",name,subscriber.getSubscriberNameIdentifier());
 			return;
 		}
-		else if(subscriber == null) {
-			LOG.warn("%s: Cannot unsubscribe a null subscriber from topic \"%s\"",name,topic);
-			return;
-		}
-		
-		synchronized(subscribers) {
-			HashSet<String> topicList = subscribers.getOrDefault(subscriber, new HashSet<String>());
-			topicList.remove(topic);			
-			subscribers.notifyAll();
-		}
 		
-		synchronized(topicSubscribers) {
-			HashSet<DispatchConsumer> subList = topicSubscribers.getOrDefault(topic, new HashSet<DispatchConsumer>());
-			subList.remove(subscriber);			
-			topicSubscribers.notifyAll();
+		unSubscribe(DispatchTopics.idOf(topic),subscriber);
+	}
+	
+	/**
+	 * Removes a subscribers subscriptions for a given topic.
+	 * 
+	 * @param topicId The DispatchTopics ID of the topic that will trigger a dispatch to the DispatchConsumer
+	 * @param subscriber The DispatchConsumer to be called when the topic has been received
+	 */
+	public void unSubscribe(int topicId, DispatchConsumer subscriber) {
+		if(subscriber == null) {
+			LOG.warn("%s: Cannot unsubscribe a null subscriber from topic \"%s\"",name,DispatchTopics.nameOf(topicId));
+			return;
 		}
 		
-		LOG.info("%s: Removed any subscriptions for subscriber %s to topic \"%s\"",name,subscriber.getSubscriberNameIdentifier(),topic);			
+		subscriptions.updateAndGet(registry -> registry.withoutSubscription(topicId, subscriber));
 		
+		LOG.info("%s: Removed any subscriptions for subscriber %s to topic \"%s\"",name,subscriber.getSubscriberNameIdentifier(),DispatchTopics.nameOf(topicId));			
 	}
 	
 	/**
@@ -312,7 +468,8 @@ public class Dispatcher implements Runnable {
 		int attempt = 0;
 		
 		final InetSocketAddress dest = new InetSocketAddress(addr, port);
-		DispatcherConnectRequest data = new DispatcherConnectRequest(destinationID,destinationEnum);	
+		final DestinationRegistry.Endpoint[] endpoints = {new DestinationRegistry.Endpoint(dest)};
+		DispatcherConnectRequest data = new DispatcherConnectRequest(destinationID,destinationEnum,codec,FEATURES);	
 				
 		/**
 		 * This will send a request to the destination then wait until on  a timeout interval
@@ -323,9 +480,7 @@ public class Dispatcher implements Runnable {
 			
 			while(pendingDestinations.contains(destinationEnum) && attempt < maxAttempts) {
 				++attempt;
-				HashSet<InetSocketAddress> destList = new HashSet<InetSocketAddress>();
-				destList.add(dest);
-				sendData(destinationEnum,CONNECT_TOPIC,data,destList);
+				sendData(destinationEnum,CONNECT_TOPIC_ID,data,endpoints);
 				LOG.warn("%s: Attempting to connect to new destination %s@%s:%d from origin %s,attempt %d/%d", name, destinationEnum,addr,port,data.origin(),attempt,maxAttempts);
 				try {
 					pendingDestinations.wait(TIMEOUT_MILLS);
@@ -336,15 +491,7 @@ public class Dispatcher implements Runnable {
 			pendingDestinations.notifyAll();
 		}
 		
-		boolean hasFailed = false;
-		synchronized(destinations) {
-			if(!destinations.containsKey(destinationEnum)) {
-				hasFailed=true;
-			}			
-			destinations.notifyAll();
-		}
-		
-		if(hasFailed) {
+		if(!isDestinationRegistered(destinationEnum)) {
 			String failMsg = String.format("%s: Failed to connect to new destination %s@%s:%d. Destination not added.",name,destinationEnum,addr,port);
 			LOG.error(failMsg);
 			throw new UnknownHostException(failMsg);
@@ -366,12 +513,11 @@ public class Dispatcher implements Runnable {
 		}
 			
 			
-		synchronized(destinations) {
-			HashSet<InetSocketAddress> destinationList = destinations.getOrDefault(destToAdd, new HashSet<InetSocketAddress>());
-			destinationList.add(new InetSocketAddress(requestAddr,requestPort));
-			destinations.put(destToAdd,destinationList);
-			destinations.notifyAll();
-		}
+		final Destinations registeredDest = destToAdd;
+		final InetSocketAddress requestSocketAddr = new InetSocketAddress(requestAddr,requestPort);
+		final DispatchCodecs negotiatedCodec = DispatchCodecs.negotiate(codec, request.codec());
+		final DestinationRegistry.Endpoint endpoint = new DestinationRegistry.Endpoint(requestSocketAddr,negotiatedCodec,request.features());
+		destinations.updateAndGet(registry -> registry.withEndpoint(registeredDest, endpoint));
 
 		synchronized(pendingDestinations) {
 			pendingDestinations.remove(request.destination()); //This must happen AFTER the destination is registered successfully				
@@ -379,11 +525,11 @@ public class Dispatcher implements Runnable {
 		}
 		
 		if(destinationID != null && request.origin()==destinationID) {
-			LOG.info("%s: Destination %s@%s:%d has responded and was successfully registered as a destination.", name,request.destination(),requestAddr.toString(), requestPort);			
+			LOG.info("%s: Destination %s@%s:%d has responded and was successfully registered as a destination using codec %s.", name,request.destination(),requestAddr.toString(), requestPort,negotiatedCodec);			
 		}
 		else {
 			try {
-				sendData(request.origin(),CONNECT_TOPIC,request);
+				sendData(request.origin(),CONNECT_TOPIC_ID,new DispatcherConnectRequest(request.origin(),request.destination(),codec,FEATURES));
 				LOG.info("%s: Received a %s request from source %s@%s:%d. %s was successfully registered as a destination.", name,CONNECT_TOPIC,request.origin(),requestAddr.toString(), requestPort,request.origin());
 			} catch (UnregisteredDispatcherDestination e) {
 				LOG.error("%s: Failed to register %s as a destination. Received a %s request from source %s@%s:%d. ", name,request.origin(),CONNECT_TOPIC,request.origin(),requestAddr.toString(), requestPort);
@@ -414,31 +560,8 @@ public class Dispatcher implements Runnable {
 			return;
 		}
 		
-		synchronized(destinations) {
-			HashSet<InetSocketAddress> addressList = destinations.getOrDefault(destinationEnum, new HashSet<InetSocketAddress>());
-			addressList.add(destAddr);
-			HashSet<InetSocketAddress> old = destinations.put(destinationEnum,addressList);
-
-			LOG.info("%s: Provided destination %s added registered to new endpoint %s:%d, resolved=%s",name,destinationEnum,addr,port,!destAddr.isUnresolved());
-			
-			destinations.notifyAll();
-		}
-	}
-	
-	/**
-	 * Gets a destination from the mappings in a thread safe manner and then releases the lock
-	 * @param <E> The enum type of the destination
-	 * @param destination The destination identifier that has previously been registered
-	 * @return The destination found or null if it was not found
-	 */
-	private <E extends Enum<?>> HashSet<InetSocketAddress> getDestination(E destination) {
-		HashSet<InetSocketAddress> dest = null;
-		synchronized(destinations) {
-			dest = destinations.get(destination);
-			
-			destinations.notifyAll();
-		}
-		return dest;
+		destinations.updateAndGet(registry -> registry.withAddress(destinationEnum, destAddr));
+		LOG.info("%s: Provided destination %s added registered to new endpoint %s:%d, resolved=%s",name,destinationEnum,addr,port,!destAddr.isUnresolved());
 	}
 	
 	/**
@@ -480,13 +603,29 @@ public class Dispatcher implements Runnable {
 	 * @throws UnregisteredDispatcherDestination If the destination provided is not registered to this dispatcher
 	 */
 	public <E extends Enum<?>,T> void sendData(final E destination,final String topic,final T data) throws UnregisteredDispatcherDestination {
-		if(!destinations.containsKey(destination)) {
+		sendData(destination,DispatchTopics.idOf(topic),data);
+	}
+	
+	/**
+	 * 
+	 * Sends data with a topic identified by its DispatchTopics ID to an established destination registered to the dispatcher.
+	 * Senders should keep or look up the ID with DispatchTopics rather than building the topic name for every message.
+	 * 
+	 * @param <E> The destination enum type used to identify a registered to the destination.
+	 * @param <T> The type of the data to be sent
+	 * @param destination destination The destination enum identifying the message target that's registered to the dispatcher.
+	 * @param topicId The DispatchTopics ID of the topic used to identify the message, its data, and data type to the receiving system
+	 * @param data The data to be sent
+	 * @throws UnregisteredDispatcherDestination If the destination provided is not registered to this dispatcher
+	 */
+	public <E extends Enum<?>,T> void sendData(final E destination,final int topicId,final T data) throws UnregisteredDispatcherDestination {
+		DestinationRegistry.Endpoint[] endpoints = destinations.get().endpointsOf(destination);
+		if(endpoints == null) {
 			LOG.warn("%s: Provided destination %s was not found.",name,destination);
 			throw new UnregisteredDispatcherDestination(String.format("%s: Provided destination %s was not found.",name,destination));
 		}
 		
-		HashSet<InetSocketAddress> destAddr = new HashSet<InetSocketAddress>(getDestination(destination));
-		sendData(destination,topic,data,destAddr);
+		sendData(destination,topicId,data,endpoints);
 	}
 	
 	/**
@@ -502,39 +641,82 @@ public class Dispatcher implements Runnable {
 	 * @param  destAddr The address where the message should be sent
 	 */
 	public <E extends Enum<?>,T> void sendData(final E destination,final String topic,final T data, final HashSet<InetSocketAddress> destAddr) {
+		DestinationRegistry registry = destinations.get();
+		DestinationRegistry.Endpoint[] endpoints = new DestinationRegistry.Endpoint[destAddr.size()];
+		int i = 0;
+		for(InetSocketAddress addr : destAddr) {
+			endpoints[i++] = registry.endpointOf(addr);
+		}
+		sendData(destination,DispatchTopics.idOf(topic),data,endpoints);
+	}
+	
+	/**
+	 * Sends data to the endpoints of a destination, encoding it at most once per codec in use by the endpoints
+	 * @param destination The destination enum identifying the message target
+	 * @param topicId The DispatchTopics ID of the topic used to identify the message, its data, and data type to the receiving system
+	 * @param data The data to be sent
+	 * @param endpoints The endpoints where the message should be sent
+	 */
+	private <E extends Enum<?>,T> void sendData(final E destination,final int topicId,final T data, final DestinationRegistry.Endpoint[] endpoints) {
 		if(!isRunning) {
 			return;
 		}
-		else if(topic == "") {
+		
+		final String topic = DispatchTopics.nameOf(topicId);
+		if(topic.isEmpty()) {
 			LOG.warn("%s: Provided topic %s was null. Make sure this was intentional and the receiver has subscribed to an empty topic.",name);
 		}
 		
-		String jsonData = "";
-		String stringData = "";
-		try {
-			//This is to avoid the case where a string is passed and given an extra set of quotation marks
-			if(data instanceof String) {
-				stringData = (String)data;
+		//Frames are encoded at most once per codec in use by the addresses
+		byte[][] frames = new byte[DispatchCodecs.values().length][];
+		DispatcherMessage unencoded = null;
+		if(transport.carriesMessages() && topicId != CONNECT_TOPIC_ID) {
+			try {
+				unencoded = unencodedMessage(topic,topicId,data);
 			}
-			else if(data!=null) {
-				stringData = objMap.writeValueAsString(data);
+			catch (IOException e) {
+				LOG.error("%s: Failed to copy data for a message with topic %s. Send failed",name,topic);
+				e.printStackTrace();
+				return;
 			}
-			DispatcherMessage msg = new DispatcherMessage(topic,stringData);
-			jsonData = objMap.writeValueAsString(msg);			
-		}
-		catch (JsonProcessingException e) {
-			LOG.error("%s: Failed to convert data into JSON. Send failed",name);
-			e.printStackTrace();
-			return;
 		}
 		
-		byte[] buffer = jsonData.getBytes();
-		
-		for(InetSocketAddress addr : destAddr) {
+		for(DestinationRegistry.Endpoint endpoint : endpoints) {
+			InetSocketAddress addr = endpoint.address();
+			if(unencoded != null) {
+				try {
+					transport.sendMessage(unencoded, addr);
+					packetsSent.incrementAndGet();
+					LOG.info("Sent message with topic %s to %s:%d without encoding it, message Data: %s",topic,addr.getAddress().toString(),addr.getPort(),data);
+				} catch (IOException e) {
+					LOG.error("%s: Failed to send message to destination %s (%s:%d). Send failed",name,destination,addr.getAddress().toString(),addr.getPort());
+				}
+				continue;
+			}
+			//Connection requests are always JSON so any version of the Dispatcher can understand them
+			DispatchCodecs addrCodec = topicId == CONNECT_TOPIC_ID ? DispatchCodecs.JSON : endpoint.codec();
+			byte[] buffer = frames[addrCodec.ordinal()];
 			try {
-				DatagramPacket packet = new DatagramPacket(buffer,buffer.length,addr);
-				socket.send(packet);
-				LOG.info("Sent packet with topic %s to %s:%d. Bytes: %d, message Data: %s",topic,packet.getAddress().toString(),packet.getPort(),packet.getLength(),stringData);					
+				if(buffer == null) {
+					buffer = addrCodec.codec().encode(topic, data);
+					frames[addrCodec.ordinal()] = buffer;
+				}
+			}
+			catch (IOException e) {
+				LOG.error("%s: Failed to convert data into %s. Send failed",name,addrCodec);
+				e.printStackTrace();
+				return;
+			}
+			
+			if(batching && topicId != CONNECT_TOPIC_ID && endpoint.supports(DispatcherConnectRequest.FEATURE_BATCHES) && addToBatch(addr,buffer)) {
+				LOG.debug("Batched packet with topic %s to %s:%d. Bytes: %d, codec: %s, message Data: %s",topic,addr.getAddress().toString(),addr.getPort(),buffer.length,addrCodec,data);
+				continue;
+			}
+			
+			try {
+				flushBatch(addr); //Anything held for the address was sent first and must arrive first
+				sendDatagram(ByteBuffer.wrap(buffer), addr, topicId != CONNECT_TOPIC_ID && endpoint.supports(DispatcherConnectRequest.FEATURE_RELIABLE));
+				LOG.info("Sent packet with topic %s to %s:%d. Bytes: %d, codec: %s, message Data: %s",topic,addr.getAddress().toString(),addr.getPort(),buffer.length,addrCodec,data);					
 				
 			} catch (IOException e) {
 				LOG.error("%s: Failed to send message to destination %s (%s:%d). Send failed",name,destination,addr.getAddress().toString(),addr.getPort());
@@ -549,72 +731,292 @@ public class Dispatcher implements Runnable {
 	}
 
 	/**
-	 * Receives data from the DatagramSocket and converts it into a DispatcherMessage
-	 * @return The dispatcher message received from the socket
+	 * Makes the message the codecs would decode for some data, without encoding it. No data and strings are
+	 * kept as the message's data like the codecs do, anything else is copied into the payload, so the receiver
+	 * never shares a list or set the sender keeps changing.
+	 * @throws IOException If the data could not be copied
+	 */
+	private DispatcherMessage unencodedMessage(final String topic,final int topicId,final Object data) throws IOException {
+		if(data == null) {
+			return new DispatcherMessage(topic,"",null,topicId);
+		}
+		else if(data instanceof String stringData) {
+			return new DispatcherMessage(topic,stringData,null,topicId);
+		}
+		//Copied through Jackson's in-memory tokens, the same fields a codec would send without writing any bytes
+		TokenBuffer tokens = new TokenBuffer(objMap,false);
+		objMap.writeValue(tokens, data);
+		try(JsonParser parser = tokens.asParser()) {
+			return new DispatcherMessage(topic,null,objMap.readValue(parser, data.getClass()),topicId);
+		}
+	}
+
+	/**
+	 * Sends every message held for batching immediately
+	 */
+	public void flush() {
+		for(InetSocketAddress addr : pendingBatches.keySet()) {
+			try {
+				flushBatch(addr);
+			} catch (IOException e) {
+				LOG.error("%s: Failed to send batch to %s:%d. Send failed",name,addr.getAddress().toString(),addr.getPort());
+			}
+		}
+	}
+	
+	/**
+	 * Holds a frame in the batch of an address, sending the batch first if the frame does not fit
+	 * @param addr The address the frame is sent to
+	 * @param frame The encoded frame
+	 * @return False if the frame is too large to ever be batched and must be sent on its own
+	 */
+	private boolean addToBatch(InetSocketAddress addr,byte[] frame) {
+		DispatchBatch batch = pendingBatches.computeIfAbsent(addr, a -> new DispatchBatch(CONFIG.DISPATCH_BATCH_MAX_BYTES));
+		if(!batch.canHold(frame.length)) {
+			return false;
+		}
+		
+		synchronized(batch) {
+			if(!batch.add(frame)) {
+				try {
+					sendBatch(addr,batch);
+				} catch (IOException e) {
+					LOG.error("%s: Failed to send batch to %s:%d. Send failed",name,addr.getAddress().toString(),addr.getPort());
+				}
+				batch.add(frame);
+			}
+			
+			if(batch.size() == 1) {
+				getTimer().schedule(() -> {
+					try {
+						flushBatch(addr);
+					} catch (IOException e) {
+						LOG.error("%s: Failed to send batch to %s:%d. Send failed",name,addr.getAddress().toString(),addr.getPort());
+					}
+				}, CONFIG.DISPATCH_BATCH_WINDOW_MILLS, TimeUnit.MILLISECONDS);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Sends the batch held for an address if it has any messages
+	 * @param addr The address of the batch
+	 * @throws IOException If the batch could not be sent, its messages are dropped
+	 */
+	private void flushBatch(InetSocketAddress addr) throws IOException {
+		DispatchBatch batch = pendingBatches.get(addr);
+		if(batch == null) {
+			return;
+		}
+		synchronized(batch) {
+			sendBatch(addr,batch);
+		}
+	}
+	
+	/**
+	 * Sends a batch and empties it. The caller must hold the batch's lock.
+	 */
+	private void sendBatch(InetSocketAddress addr,DispatchBatch batch) throws IOException {
+		if(batch.isEmpty()) {
+			return;
+		}
+		try {
+			ByteBuffer datagram = batch.frame();
+			int bytes = datagram.remaining();
+			sendDatagram(datagram, addr, destinations.get().endpointOf(addr).supports(DispatcherConnectRequest.FEATURE_RELIABLE));
+			LOG.info("Sent batch of %d packets to %s:%d. Bytes: %d",batch.size(),addr.getAddress().toString(),addr.getPort(),bytes);
+		}
+		finally {
+			batch.clear();
+		}
+	}
+	
+	/**
+	 * Sends a datagram, through the reliable channel of the address if reliable delivery is enabled and the address supports it
+	 * @param datagram The datagram to send
+	 * @param addr The address the datagram is sent to
+	 * @param canBeReliable True if the address acknowledges reliable datagrams
+	 * @throws IOException If the datagram could not be sent. A reliable datagram will still be retransmitted.
+	 */
+	private void sendDatagram(ByteBuffer datagram,InetSocketAddress addr,boolean canBeReliable) throws IOException {
+		if(reliable && canBeReliable) {
+			datagram = ByteBuffer.wrap(channelOf(addr).send(datagram,System.nanoTime()));
+			startRetransmitting();
+		}
+		transport.send(datagram, addr);
+		packetsSent.incrementAndGet();
+	}
+	
+	private ReliableChannel channelOf(InetSocketAddress addr) {
+		return reliableChannels.computeIfAbsent(addr, a -> new ReliableChannel(CONFIG.DISPATCH_RELIABLE_INITIAL_RTO_MILLS,CONFIG.DISPATCH_RELIABLE_MIN_RTO_MILLS,CONFIG.DISPATCH_RELIABLE_MAX_RTO_MILLS,CONFIG.DISPATCH_RELIABLE_MAX_ATTEMPTS));
+	}
+	
+	/**
+	 * Starts checking for unacknowledged datagrams the first time one is sent reliably
+	 */
+	private void startRetransmitting() {
+		synchronized(pendingBatches) {
+			if(!retransmitting) {
+				retransmitting = true;
+				getTimer().scheduleAtFixedRate(this::retransmit, CONFIG.DISPATCH_RELIABLE_TICK_MILLS, CONFIG.DISPATCH_RELIABLE_TICK_MILLS, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+	
+	/**
+	 * Sends again every reliable datagram whose retransmission timeout has passed
+	 */
+	private void retransmit() {
+		long now = System.nanoTime();
+		ArrayList<byte[]> resend = new ArrayList<byte[]>();
+		for(Map.Entry<InetSocketAddress,ReliableChannel> entry : reliableChannels.entrySet()) {
+			InetSocketAddress addr = entry.getKey();
+			resend.clear();
+			int givenUp = entry.getValue().collectRetransmissions(now, resend);
+			if(givenUp > 0) {
+				LOG.error("%s: %d packets to %s:%d were never acknowledged after %d attempts and have been dropped.",name,givenUp,addr.getAddress().toString(),addr.getPort(),CONFIG.DISPATCH_RELIABLE_MAX_ATTEMPTS);
+			}
+			for(byte[] datagram : resend) {
+				try {
+					transport.send(ByteBuffer.wrap(datagram), addr);
+					packetsRetransmitted.incrementAndGet();
+					LOG.debug("%s: Retransmitted packet to %s:%d. Bytes: %d",name,addr.getAddress().toString(),addr.getPort(),datagram.length);
+				} catch (IOException e) {
+					LOG.error("%s: Failed to retransmit packet to %s:%d. %s",name,addr.getAddress().toString(),addr.getPort(),e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return The thread that sends batches once their window ends and retransmits reliable datagrams, started the first time it is needed
+	 */
+	private ScheduledExecutorService getTimer() {
+		synchronized(pendingBatches) {
+			if(timer == null) {
+				timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread td = new Thread(runnable);
+					td.setName(String.format("%s_DispatchTimer", name));
+					td.setDaemon(true);
+					return td;
+				});
+			}
+			return timer;
+		}
+	}
+
+	/**
+	 * Receives a frame from the transport, converts it into a DispatcherMessage and dispatches it.
+	 * A batch is unpacked and each of its frames received in order. A reliable datagram is acknowledged and received
+	 * unless it is a duplicate.
+	 * @param frame The received frame. Only valid for the duration of the call.
+	 * @param source The address the frame was sent from
 	 */
-	private DispatcherMessage receiveData() {
+	private void receiveData(ByteBuffer frame,InetSocketAddress source) {
+		if(ReliableChannel.isReliable(frame)) {
+			receiveReliable(frame,source);
+			return;
+		}
+		else if(DispatchBatch.isBatch(frame)) {
+			try {
+				DispatchBatch.unpack(frame, source, this::receiveData);
+			} catch (IOException e) {
+				LOG.error("%s: Dispatcher received a corrupted batch and has dropped the rest of it.\n%s",this.name,e.getMessage());
+				++packetsDropped;
+			}
+			return;
+		}
 		
-		byte[] buffer = new byte[CONFIG.MAX_MESSAGE_BYTES];
-		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		long receivedNanos = System.nanoTime();
+		int length = frame.remaining();
 		try {
-			socket.receive(packet);
-			DispatcherMessage msg = objMap.readValue(packet.getData(), DispatcherMessage.class);
-			LOG.info("Packet received from %s:%d with %d bytes and topic %s",packet.getAddress().toString(),packet.getPort(),packet.getLength(),msg.topic());
+			DispatcherMessage msg = DispatchCodecs.decodeFrame(frame);
+			LOG.info("Packet received from %s:%d with %d bytes and topic %s",source.getAddress().toString(),source.getPort(),length,msg.topic());
 			
-			if(msg.topic().equals(CONNECT_TOPIC)) {
-				DispatcherConnectRequest request = objMap.readValue(msg.data(), DispatcherConnectRequest.class);
-				handleConnectTopicMessage(request,packet.getAddress(),packet.getPort());
-				return null;
+			if(msg.topicId() == CONNECT_TOPIC_ID) {
+				DispatcherConnectRequest request = msg.payload(DispatcherConnectRequest.class, objMap);
+				handleConnectTopicMessage(request,source.getAddress(),source.getPort());
 			}
 			else {
-				return msg;
+				dispatchMessageToSubscribers(msg,receivedNanos);
 			}
 		}
-		catch (SocketTimeoutException e) {
-			return null;
-		}
 		catch (IOException e) {
 			LOG.error("%s: Dispatcher encountered an error when receiving a packet and has dropped it.\n%s",this.name,e.getMessage());
 			e.printStackTrace();
 			++packetsDropped;
-			return null;
 		}			
 	}
 	
 	/**
-	 * Retrieves all subscribers of a topic in a thread safe manner.
-	 * Separated so that lock is released before list processing starts.
-	 * @param topic The topic to query for subscribers
-	 * @return A list of DispatchConsumers subscribed to the topic. Will return an empty list if none are subscribed.
+	 * Dispatches a message received from a transport that carries messages without encoding them
+	 * @param msg The message, as it was sent
+	 * @param source The address the message was sent from
 	 */
-	private HashSet<DispatchConsumer> getDispatchList(String topic) {
-
-		HashSet<DispatchConsumer> dispatchList = null;
+	private void receiveUnencoded(DispatcherMessage msg,InetSocketAddress source) {
+		LOG.info("Message received from %s:%d with topic %s",source.getAddress().toString(),source.getPort(),msg.topic());
+		dispatchMessageToSubscribers(msg,System.nanoTime());
+	}
+	
+	/**
+	 * Handles an acknowledgement, or acknowledges a reliable datagram and receives the frame it carries if it is new
+	 * @param datagram The received reliable datagram. Only valid for the duration of the call.
+	 * @param source The address the datagram was sent from
+	 */
+	private void receiveReliable(ByteBuffer datagram,InetSocketAddress source) {
+		ReliableChannel channel = channelOf(source);
+		ReliableChannel.Receipt receipt;
+		try {
+			if(ReliableChannel.isAck(datagram)) {
+				channel.receiveAck(datagram, System.nanoTime());
+				return;
+			}
+			receipt = channel.receiveData(datagram);
+		} catch (IOException e) {
+			LOG.error("%s: Dispatcher received a corrupted reliable packet and has dropped it.\n%s",this.name,e.getMessage());
+			++packetsDropped;
+			return;
+		}
 		
-		synchronized(topicSubscribers) {
-			dispatchList = new HashSet<DispatchConsumer>(topicSubscribers.getOrDefault(topic, new HashSet<DispatchConsumer>()));			
+		if(receipt != ReliableChannel.Receipt.BEYOND_WINDOW) {
+			try {
+				transport.send(channel.ack(), source);
+			} catch (IOException e) {
+				LOG.error("%s: Failed to acknowledge packet from %s:%d. %s",name,source.getAddress().toString(),source.getPort(),e.getMessage());
+			}
+		}
+		
+		switch(receipt) {
+			case NEW -> receiveData(datagram,source);
+			case DUPLICATE -> {
+				++duplicatesDropped;
+				LOG.debug("%s: Dropped duplicate packet from %s:%d.",name,source.getAddress().toString(),source.getPort());
+			}
+			case BEYOND_WINDOW -> {
+				++packetsDropped;
+				LOG.warn("%s: Dropped packet from %s:%d that is too far ahead of the packets it is waiting for, it will be retransmitted.",name,source.getAddress().toString(),source.getPort());
+			}
 		}
-
-		return dispatchList;
 	}
 	
 	/**
-	 * Sends Message to all subscribers of a topic specified in DispatcherMessage
+	 * Sends Message to all subscribers of a topic specified in DispatcherMessage.
+	 * Each subscriber has its own delivery lane so it receives messages in the order
+	 * they arrived while different subscribers are delivered to in parallel.
+	 * 
+	 * The lanes are read from the current subscription snapshot, so no lock is taken and
+	 * nothing is copied regardless of how many subscribers there are.
+	 * Package-private so the dispatch cost can be measured without a network.
 	 * @param msg The DispatcherMessage containing a topic and data.
+	 * @param receivedNanos The System.nanoTime() when the message was received
 	 */
-	private void dispatchMessageToSubscribers(DispatcherMessage msg) {
-		HashSet<DispatchConsumer> dispatchList = null;
+	void dispatchMessageToSubscribers(DispatcherMessage msg,long receivedNanos) {
 		++packetsProcessed;
 		
-		dispatchList = getDispatchList(msg.topic());
-		DispatchNotificationWorker worker = new DispatchNotificationWorker(dispatchList,msg);
-		Thread workerThread = new Thread(worker);
-		workerThread.setName(String.format("DispatchNotificationWorkerThread_%d", packetsProcessed));
-//		for(DispatchConsumer c : dispatchList) {
-//			c.receiveDispatch(msg.topic(),msg.data());
-//			LOG.info("Dispatch to %s with topic %s",c.getSubscriberNameIdentifier(),msg.topic());
-//		}
-		workerThread.start();
+		for(DispatchNotificationWorker lane : subscriptions.get().lanesFor(msg.topicId())) {
+			lane.enqueue(msg,receivedNanos);
+		}
 	}
 
 }
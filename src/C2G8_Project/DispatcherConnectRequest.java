@@ -3,9 +3,21 @@ package C2G8_Project;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+/**
+ * Sent between Dispatchers to register each other as destinations.
+ * The codec is the wire format the sender would like to use. It is null
+ * when sent by a Dispatcher that only understands JSON.
+ * The features are a bitmask of the FEATURE_ flags the sender can receive, 0 when
+ * sent by a Dispatcher that does not state any.
+ */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 @JsonSerialize
 public record DispatcherConnectRequest(
 		Destinations origin,
-		Destinations destination
-		) {}
+		Destinations destination,
+		DispatchCodecs codec,
+		int features
+		) {
+	public static final int FEATURE_BATCHES = 1; //Can unpack DispatchBatch datagrams
+	public static final int FEATURE_RELIABLE = 2; //Acknowledges ReliableChannel datagrams and drops their duplicates
+}
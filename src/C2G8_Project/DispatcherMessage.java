@@ -1,14 +1,64 @@
 package C2G8_Project;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * A wrapper class for all messages that pass through the Dispatcher.
  * Each message must have a topic used to identify which subscribers
  * will receive it in the target system. It also contains data that
  * may be relevant to the message in JSON format.
+ *
+ * When a message was received with a codec that decodes its data directly
+ * the decoded object is kept in payload and data is null until it is asked for as JSON.
+ *
+ * The topicId is the DispatchTopics ID of the topic, resolved once when the message is created
+ * so it can be routed without hashing the topic again. It is DispatchTopics.NO_TOPIC when the
+ * topic was never registered in this program.
  * @author Jayson Mendoza
  *
  */
 public record DispatcherMessage(
 	String topic,
-	String data
-) {}
+	String data,
+	Object payload,
+	int topicId
+) {
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+	public DispatcherMessage(String topic,String data,Object payload) {
+		this(topic,data,payload,DispatchTopics.find(topic));
+	}
+
+	public DispatcherMessage(String topic,String data) {
+		this(topic,data,null);
+	}
+
+	/**
+	 * Gets the data of the message in JSON format, converting the payload if needed.
+	 * @return The data in JSON format
+	 * @throws JsonProcessingException If the payload could not be converted
+	 */
+	public String jsonData() throws JsonProcessingException {
+		if(data != null || payload == null) {
+			return data;
+		}
+		return JSON_MAPPER.writeValueAsString(payload);
+	}
+
+	/**
+	 * Gets the data of the message as the given type. The decoded payload is returned directly
+	 * when it already has that type, otherwise the JSON data is converted.
+	 * @param <T> The type of the data
+	 * @param type The class of the data
+	 * @param objMap The mapper used to convert the JSON data
+	 * @return The data of the message
+	 * @throws JsonProcessingException If the data cannot be converted to the type
+	 */
+	public <T> T payload(Class<T> type,ObjectMapper objMap) throws JsonProcessingException {
+		if(type.isInstance(payload)) {
+			return type.cast(payload);
+		}
+		return objMap.readValue(jsonData(), type);
+	}
+}
@@ -14,16 +14,16 @@ import java.util.Set;
  */
 public class ElevatorData {
 	private ElevatorSignal signal;
-	private ArrayList<Integer> targetLocations;
+	private StopList targetLocations;
 	
 	ElevatorData(ElevatorSignal _signal) {
 		signal = _signal;
-		targetLocations = new ArrayList<Integer>();
+		targetLocations = new StopList();
 	}
 	
 	ElevatorData(ElevatorSignal _signal, ArrayList<Integer> _targetLocations) {
 		signal = _signal;
-		targetLocations = _targetLocations;
+		targetLocations = StopList.of(_targetLocations);	// Lists from elsewhere are copied into a StopList
 	}
 	
 	/*** Getters ***/
@@ -34,7 +34,7 @@ public class ElevatorData {
     Set<Integer> carBttns()              { return signal.carBttns(); }
     ScenarioFaults faultType()           { return signal.faultType(); }
     ElevatorSignal signal()              { return signal; }
-    ArrayList<Integer> targetLocations() { return targetLocations; }
+    StopList targetLocations()           { return targetLocations; }
     public String toString()             { return String.format("ElevatorData[state=%s, id=%s, location=%s, newCarBttns=%s, carBttns=%s, targetLocations=%s]", signal.state(), signal.id(), signal.location(), signal.newCarBttns(), signal.carBttns(), targetLocations.toString()); }
 	
 }
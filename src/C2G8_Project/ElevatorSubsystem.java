@@ -6,11 +6,11 @@ import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import org.apache.commons.lang3.time.StopWatch;
-
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,6 +20,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * ElevatorSubsystem is a state driven elevator, that sends its information to the scheduler
  * each time a state is changed or a new floor is reached. The states only change by the Scheduler's command
  * unless the Elevator is changing its state due to the Error States handling
+ *
+ * The elevator is either run on its own thread (run()) or started on a clock shared by the elevators of its ElevatorSystem (start()).
+ * Either way it only runs when a signal arrives or when the time for its current state is up, so it doesn't use a core while it
+ * waits. Time is always read from the ElevatorSystem's SimulationClock, so on a DiscreteEventSimulator the elevator runs in virtual time.
+ *
+ * The elevator's state is guarded by a ReentrantLock rather than its monitor, so its thread can be a virtual thread
+ * (CONFIG.USE_VIRTUAL_THREADS) that leaves its carrier while it waits or sends.
  */
 public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	private final static Logger LOG = LogManager.getFormatterLogger(ElevatorSubsystem.class);
@@ -42,14 +49,20 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	
 	private int timeForAction;	//Time taken for a specific state to complete
 	
-	private StopWatch currTime; //Tracks time elapsed for current state
+	private SimulationStopWatch currTime; //Tracks time elapsed for current state
 
 	private Queue<ElevatorSignal> signalQueue = new ArrayDeque<ElevatorSignal>(); //New messages from Scheduler stored in here
-	private volatile boolean isSigQueueAvailable = true; //Assures only one thread accesses the signalQueue
+	private final ReentrantLock lock = new ReentrantLock(); //Guards the elevator's state and the signalQueue
+	private final Condition signalArrived = lock.newCondition(); //Wakes the elevator's own thread for a signal or shutdown
 
 	private ObjectMapper objMap;
 	private volatile boolean shutdown = false; //Elevator on/off
 
+	private SimulationClock timer; //Shared clock the elevator runs on when started with start(), null when it has its own thread
+	private SimulationClock.Scheduled nextStep; //The next time the elevator runs on the clock
+
+	private static final int MAX_STEPS_PER_WAKE_UP = 32; //Most state changes handled at once before letting the other elevators run
+
 	/**
 	 * 
 	 * @param id Unique Identifier for each elevator
@@ -67,7 +80,7 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 		signal = new ElevatorSignal(state, eid, currFloor, newCarBttns, carBttns, fault); // Changed carBttn to Set version
 		stateSent = false; // Assures States are only sent once
 		dispatcher = dispatch;
-		currTime = StopWatch.create();
+		currTime = new SimulationStopWatch(boundSystem.getClock());
 		objMap = new ObjectMapper();
 	}
 	
@@ -88,28 +101,153 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	 */
 	public void init() {
 		while (!dispatcher.isRunning()){}
-		dispatcher.subscribe(String.format("%s_%d", ElevatorTopics.ELEVATOR_SIGNAL.toString(), eid), this);
+		dispatcher.subscribe(DispatchTopics.idOf(ElevatorTopics.ELEVATOR_SIGNAL, eid), this);
 	}
 
 	/**
 	 * Keep processing states and extracting messages received by dispatcher (if any)
-	 * until and shutdown message is received
+	 * until and shutdown message is received. Between them the thread waits for a signal
+	 * or for the time of the current state to be up.
 	 */
 	@Override
 	public void run() {
 		init();
 		while (!shutdown) {
-			if (!signalQueue.isEmpty()) {
+			lock.lock();
+			try {
+				long delay = handleSignalsAndStates();
+				if (delay != 0 && signalQueue.isEmpty() && !shutdown) {
+					if (delay < 0) {
+						signalArrived.await();
+					} else {
+						signalArrived.await(delay, TimeUnit.MILLISECONDS);
+					}
+				}
+			} catch (InterruptedException e) {
+				continue;
+			} finally {
+				lock.unlock();
+			}
+		}
+		LOG.info("SHUTTING DOWN");
+	}
+
+	/**
+	 * Runs the elevator on a clock shared with other elevators instead of its own thread. The elevator runs when a signal arrives
+	 * and when the time for its current state is up, see step().
+	 * @param sharedTimer The clock to run on
+	 */
+	public void start(SimulationClock sharedTimer) {
+		lock.lock();
+		try {
+			timer = sharedTimer;
+			init();
+			scheduleStep(0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the elevator on the timer until nothing more can happen before time passes or a signal arrives, then schedules the
+	 * next run for when the time for its current state is up. The same states are handled as the loop in run() handles them.
+	 */
+	void step() {
+		lock.lock();
+		try {
+			if (shutdown) {
+				return;
+			}
+			long delay = handleSignalsAndStates();
+			if (delay >= 0) {
+				scheduleStep(delay);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Handles the signals received and the states until nothing more can happen before time passes or a signal arrives,
+	 * or until MAX_STEPS_PER_WAKE_UP have been handled. Called with the lock held.
+	 * @return Milliseconds until there is more to do without a signal, 0 if there still is, -1 if nothing happens until a signal arrives
+	 */
+	private long handleSignalsAndStates() {
+		for (int i = 0; i < MAX_STEPS_PER_WAKE_UP; i++) {
+			boolean hadSignal = !signalQueue.isEmpty();
+			if (hadSignal) {
 				signal = extractNextSignal();
 			}
+			ElevatorStates stateBefore = state;
+			ElevatorStates stateBeforeStopBefore = stateBeforeStop;
+			int timeForActionBefore = timeForAction;
+			int floorBefore = currFloor;
+			boolean stateSentBefore = stateSent;
+			boolean timerStartedBefore = currTime.isStarted();
+
 			processNextSignal();
+
+			boolean changed = hadSignal || state != stateBefore || stateBeforeStop != stateBeforeStopBefore || timeForAction != timeForActionBefore
+					|| currFloor != floorBefore || stateSent != stateSentBefore || currTime.isStarted() != timerStartedBefore;
+			if (!changed && signalQueue.isEmpty()) {
+				return millisecondsUntilNextStep();
+			}
 		}
-		LOG.info("SHUTTING DOWN");
+		return 0;	// Still changing, let the other elevators on the timer have a turn first
+	}
+
+	/**
+	 * Milliseconds until processNextSignal() will do something without a new signal, -1 if nothing happens until a signal arrives.
+	 * These are the times processNextSignal() checks against currTime (the state's time, the extra millisecond before a fault,
+	 * and the emergency brakes).
+	 */
+	private long millisecondsUntilNextStep() {
+		if (!currTime.isStarted()) {
+			return -1;
+		}
+		long elapsed = currTime.getTime(TimeUnit.MILLISECONDS);
+		long[] deadlines;
+		if (state == ElevatorStates.START) {
+			deadlines = new long[] { TimeUnit.SECONDS.toMillis(timeForAction + 1) - 1 };	// Checked in whole seconds
+		} else {
+			deadlines = new long[] { getAdjustedTimeForActionMilliseconds(), getAdjustedTimeForActionMilliseconds() + 1, (long) getEmergencyStopMilliseconds() };
+		}
+		long delay = -1;
+		for (long deadline : deadlines) {
+			if (deadline >= elapsed && (delay == -1 || deadline + 1 - elapsed < delay)) {
+				delay = deadline + 1 - elapsed;	// processNextSignal() checks for more time than the deadline
+			}
+		}
+		return delay;
+	}
+
+	/**
+	 * Replaces the next run on the timer with one after the delay. Does nothing without a timer or after a shutdown.
+	 * Called with the lock held.
+	 */
+	private void scheduleStep(long delayMilliseconds) {
+		if (timer == null || shutdown) {
+			return;
+		}
+		if (nextStep != null) {
+			nextStep.cancel();
+		}
+		nextStep = timer.schedule(this::step, delayMilliseconds, TimeUnit.MILLISECONDS);
 	}
 
 	public void shutdown() {
 		LOG.info("SHUTDOWN SIGNAL RECEIVED");
-		shutdown = true;
+		lock.lock();
+		try {
+			shutdown = true;
+			if (nextStep != null) {
+				nextStep.cancel();
+				nextStep = null;
+			}
+			signalArrived.signalAll();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	public boolean getShutdown(){
@@ -122,7 +260,19 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	 * All States except START an*d MOVING_UP/DOWN are only sent once with the help of stateSent boolean
 	 * Once a state has been processed, the ElevatorSignal containing the state is sent to the scheduler
 	 */
-	public synchronized void processNextSignal() {
+	public void processNextSignal() {
+		lock.lock();
+		try {
+			handleState();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The state transition of processNextSignal(), called with the lock held
+	 */
+	private void handleState() {
 
 //		// Emergency Stop since next Floor is Limit
 //		if ((state == ElevatorStates.MOVING_DOWN && currFloor <= 2)
@@ -334,7 +484,7 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 		
 		// Set the Emergency Stop Time to at least 1/5th of the regular travel time of the MOVING (or MOVING_MAX) speed, and no more than 1 second. 
 		// Gives the scheduler some time to respond before imemdiately shutting on the emergency brakes (ideally we don't want to use emergency brakes).
-		float emergencyStopTime = (timeForAction > 0 && timeForAction/5 < 1) ? timeForAction/5 : 1;
+		float emergencyStopTime = getEmergencyStopMilliseconds();
 		// Emergency Stop since next Floor is Limit
 		if (currTime.getTime(TimeUnit.MILLISECONDS) > emergencyStopTime	 // Check that the scheduler has had time to respond before using emergency brakes
 				&& ((state == ElevatorStates.MOVING_DOWN && currFloor <= 2)
@@ -344,6 +494,10 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 		}
 	}
 
+	private float getEmergencyStopMilliseconds() {
+		return (timeForAction > 0 && timeForAction/5 < 1) ? timeForAction/5 : 1;
+	}
+
 	/**
 	 * In state Close_Doors the elevator receives the In-Elevator buttons pressed
 	 * This method removes any buttons currently already pressed and informs the
@@ -365,26 +519,21 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	 * Extracts Signal from Queue when available and updates elevator information
 	 * @return ElevatorSignal
 	 */
-	public synchronized ElevatorSignal extractNextSignal() {
-		while (!isSigQueueAvailable) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-
-		isSigQueueAvailable = false;
-		ElevatorSignal newSignal = signalQueue.remove();
-		isSigQueueAvailable = true;
+	public ElevatorSignal extractNextSignal() {
+		lock.lock();
+		try {
+			ElevatorSignal newSignal = signalQueue.remove();
 
-		state = newSignal.state();
-		newCarBttns = newSignal.newCarBttns();
-		carBttns = newSignal.carBttns();
-		fault = newSignal.faultType();
-		stateSent = false;
+			state = newSignal.state();
+			newCarBttns = newSignal.newCarBttns();
+			carBttns = newSignal.carBttns();
+			fault = newSignal.faultType();
+			stateSent = false;
 
-		return newSignal;
+			return newSignal;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -393,7 +542,7 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	public void sendMessage() {
 		signal = new ElevatorSignal(state, eid, currFloor, newCarBttns, carBttns, fault);
 		try {
-			dispatcher.sendData(Destinations.SCHEDULER, SchedulerTopics.ELEVATOR_SIGNAL.toString(), signal);
+			dispatcher.sendData(Destinations.SCHEDULER, DispatchTopics.idOf(SchedulerTopics.ELEVATOR_SIGNAL), signal);
 		} catch (UnregisteredDispatcherDestination e) {
 			LOG.error("[%s]: DispatcherUnable to convert data payload.");
 		}
@@ -405,23 +554,28 @@ public class ElevatorSubsystem implements Runnable, DispatchConsumer {
 	 * or send the shutdown signal if its a Scenario_end topic
 	 */
 	@Override
-	public synchronized void receiveDispatch(String topic, String data) {
-		LOG.info("%s receives topic %s with %s JSON data.", getSubscriberNameIdentifier(), topic, data);
+	public void receiveDispatch(String topic, String data) {
+		receiveDispatch(new DispatcherMessage(topic,data));
+	}
+
+	/**
+	 * Receives a message with its data already decoded when a binary codec was used
+	 */
+	@Override
+	public void receiveDispatch(DispatcherMessage msg) {
 		try {
-			ElevatorSignal signal = objMap.readValue(data, ElevatorSignal.class);
+			ElevatorSignal signal = msg.payload(ElevatorSignal.class, objMap);
+			LOG.info("%s receives topic %s with %s data.", getSubscriberNameIdentifier(), msg.topic(), signal);
 
-			while (!isSigQueueAvailable) {
-				try {
-					wait();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+			lock.lock();
+			try {
+				signalQueue.add(signal);
+				signalArrived.signal();	// Handle it now when running on its own thread
+				scheduleStep(0);	// or on the timer
+			} finally {
+				lock.unlock();
 			}
 
-			isSigQueueAvailable = false;
-			signalQueue.add(signal);
-			isSigQueueAvailable = true;
-
 		} catch (JsonMappingException e) {
 			LOG.error("[%s]: Unable to convert data payload.");
 		} catch (JsonProcessingException e) {
@@ -4,6 +4,9 @@ import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -12,6 +15,10 @@ import org.apache.logging.log4j.Logger;
  * @author JP
  * Elevator System builds all the elevators and assigns a thread for each one.
  * When all the elevators are shutdown, the ElevatorSystem will then shutdown
+ *
+ * With CONFIG.ELEVATOR_TIMER_DRIVEN the elevators instead share a RealTimeClock of CONFIG.ELEVATOR_TIMER_THREADS threads, and each
+ * one only runs when a signal arrives or the time for its state is up, so hundreds of elevators don't need hundreds of busy threads.
+ * SystemSimulation gives the elevators a DiscreteEventSimulator as their clock instead, to run them in virtual time.
  */
 public class ElevatorSystem implements Runnable, DispatchConsumer{
     final private static Logger LOG =LogManager.getFormatterLogger(ElevatorSystem.class);
@@ -21,10 +28,13 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
     private final int POLL_INTERVAL_MICROSECONDS; //Time for thread to sleep in run() while loop to reduce load on cpu
 
     private ArrayList<Thread> elevSubThreads = new ArrayList<Thread>();
+    private final SimulationClock clock; //The time the elevators run on
+    private final boolean clockDriven; //True if the elevators run on the clock instead of a thread each
+    private final boolean ownsClock; //True if the clock was made for this system and is shut down with it
     private ArrayList<ElevatorSubsystem> elevators = new ArrayList<ElevatorSubsystem>();
     private int numElevators;
 
-    private boolean isRunning = false; //Elevator System On/Off
+    private volatile boolean isRunning = false; //Elevator System On/Off
 
     /**
      * 
@@ -34,12 +44,41 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
      * @throws SocketException If any issues with the Port
      */
     public ElevatorSystem(final int numElevators,final int elevatorSystemPort,final int speedFactor) throws UnknownHostException, SocketException{
+        this(numElevators,speedFactor,new Dispatcher(Destinations.ELEVATOR_SYSTEM,elevatorSystemPort));
+    }
+
+    /**
+     * Creates an elevator system that sends and receives through the given dispatcher, such as one on a LOOPBACK transport
+     * @param numElevators Number of Elevators
+     * @param speedFactor timeAction divided by speedFactor
+     * @param dispatcher The dispatcher the elevators send and receive through
+     */
+    ElevatorSystem(final int numElevators,final int speedFactor,final Dispatcher dispatcher){
+        this(numElevators,speedFactor,dispatcher,
+                CONFIG.ELEVATOR_TIMER_DRIVEN ? new RealTimeClock("ElevatorTimer",CONFIG.ELEVATOR_TIMER_THREADS,false) : null,true);
+    }
+
+    /**
+     * Creates an elevator system whose elevators all run on the given clock
+     * @param numElevators Number of Elevators
+     * @param speedFactor timeAction divided by speedFactor
+     * @param dispatcher The dispatcher the elevators send and receive through
+     * @param clock The clock the elevators run on
+     */
+    ElevatorSystem(final int numElevators,final int speedFactor,final Dispatcher dispatcher,final SimulationClock clock){
+        this(numElevators,speedFactor,dispatcher,clock,false);
+    }
+
+    private ElevatorSystem(final int numElevators,final int speedFactor,final Dispatcher dispatcher,final SimulationClock clock,final boolean ownsClock){
         this.numElevators = numElevators;
         this.speedFactor = speedFactor;
-        dispatcher = new Dispatcher(Destinations.ELEVATOR_SYSTEM,elevatorSystemPort);
+        this.dispatcher = dispatcher;
         dispatchThread = new Thread(dispatcher);
         dispatchThread.setName(dispatcher.getName());
         POLL_INTERVAL_MICROSECONDS = 1000 / speedFactor;
+        this.clockDriven = clock != null;
+        this.clock = clockDriven ? clock : RealTimeClock.SYSTEM;
+        this.ownsClock = clockDriven && ownsClock;
         generateElevators();
     }
     
@@ -63,6 +102,17 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
     	return  speedFactor;
     }
 
+    public SimulationClock getClock() {
+    	return clock;
+    }
+
+    /**
+     * @return The threads of the elevators that run on a thread each, none when they run on the clock
+     */
+    List<Thread> getElevatorThreads() {
+        return Collections.unmodifiableList(elevSubThreads);
+    }
+
     /**
      * Makes numElevators amount of elevators each attached with a thread and added to a list
      * in order to start the threads later
@@ -73,11 +123,13 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
             elevators.add(e);
             System.out.println("Created Elevator ID: " + (i+1) + " at floor 1");
 
+            if(clockDriven){
+                continue; //Started on the clock in start()
+            }
+
             String elevName = String.format("ElevatorSubsystem %d", e.getId());
             
-            Thread th = new Thread(e);
-            th.setName(elevName);
-            elevSubThreads.add(th);     
+            elevSubThreads.add(VirtualThreads.newThread(elevName, e));     
         }
     }
 
@@ -85,23 +137,36 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
      * Starts the elevator threads and stops when shutdown() signal is sent
      */
     public void run(){
+        start();
+        while(isRunning && elevatorsAlive()){
+            try{
+                Thread.sleep(POLL_INTERVAL_MICROSECONDS);
+            }catch(InterruptedException e){
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Starts the dispatcher and the elevators without waiting for them to shutdown, for systems run on a DiscreteEventSimulator
+     */
+    void start(){
         dispatcher.subscribe(ElevatorTopics.SCENARIO_END.toString(), this);
         dispatchThread.start();
         
         for(Thread t: elevSubThreads){
             t.start();
         }
+        if(clockDriven){
+            while(!dispatcher.isRunning()){} //Elevators subscribe when started
+            for(ElevatorSubsystem e: elevators){
+                e.start(clock);
+            }
+        }
         
         LOG.info("%s is ready. Waiting for command from %s. Listening on port %d...",Destinations.ELEVATOR_SYSTEM,Destinations.SCHEDULER,dispatcher.getPort());	
 
         isRunning = true;
-        while(isRunning && elevatorsAlive()){
-            try{
-                Thread.sleep(POLL_INTERVAL_MICROSECONDS);
-            }catch(InterruptedException e){
-                continue;
-            }
-        }
     }
 
     /**
@@ -109,6 +174,14 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
      * @return True if all elevators alive, false otherwise
      */
     public boolean elevatorsAlive(){
+        if(clockDriven){
+            for(ElevatorSubsystem e: elevators){
+                if(e.getShutdown()){
+                    return false;
+                }
+            }
+            return true;
+        }
         for(Thread t: elevSubThreads){
             if(!t.isAlive()){
                 return false;
@@ -129,6 +202,9 @@ public class ElevatorSystem implements Runnable, DispatchConsumer{
         for(ElevatorSubsystem e: elevators){
             e.shutdown();
         }
+        if(ownsClock){
+            ((RealTimeClock) clock).shutdown();
+        }
         dispatcher.shutdown();
         isRunning = false;
     }
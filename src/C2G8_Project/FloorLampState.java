@@ -0,0 +1,154 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The on/off state of one kind of floor lamp (button lamps or direction lamps) for every floor, two bits per floor (one for each
+ *  Direction), packed into longs. Replaces the "Master Sheet"'s HashMap<Integer, HashMap<Direction,Boolean>> so setting a lamp,
+ *  copying the lamps and finding which lamps changed only touch a few words no matter how many floors there are.
+ *
+ * More details:
+ *  Lamp (floor, direction) is bit (floor-1)*2 + direction.ordinal() of lamps. The mask says which lamps the state holds: a full state
+ *  (the scheduler's, or a keyframe's) holds every lamp, while the state made by changesSince only holds the lamps that changed and
+ *  is applied to a full state with apply. The arrays are written to the wire as is by both codecs. Not thread safe.
+ */
+public record FloorLampState(
+		int    floors,
+		long[] lamps,	// Bit set when the lamp is on
+		long[] mask		// Bit set when the state holds the lamp
+) {
+	private static final int BITS_PER_FLOOR = Direction.values().length;
+
+	public FloorLampState {
+		int words = wordsFor(floors);
+		if (lamps.length != words || mask.length != words) {
+			throw new IllegalArgumentException(String.format("%d floors of lamps need %d words, got lamps=%d mask=%d", floors, words, lamps.length, mask.length));
+		}
+	}
+
+	/*** A full state with every lamp off ***/
+	public FloorLampState(int floors) {
+		this(floors, new long[wordsFor(floors)], fullMask(floors));
+	}
+
+	/*** The number of words each of the lamps and mask arrays has for a number of floors ***/
+	static int wordsFor(int floors) {
+		return (int) (((long) floors * BITS_PER_FLOOR + Long.SIZE - 1) / Long.SIZE);
+	}
+
+	private static long[] fullMask(int floors) {
+		long[] mask = new long[wordsFor(floors)];
+		int bits = floors * BITS_PER_FLOOR;
+		for (int i = 0; i < mask.length; i++) {
+			int bitsInWord = Math.min(Long.SIZE, bits - i * Long.SIZE);
+			mask[i] = bitsInWord == Long.SIZE ? -1L : (1L << bitsInWord) - 1;
+		}
+		return mask;
+	}
+
+	private int bit(int floor, Direction direction) {
+		if (floor < 1 || floor > floors) {
+			throw new IllegalArgumentException(String.format("Floor %d is not between 1 and %d", floor, floors));
+		}
+		return (floor - 1) * BITS_PER_FLOOR + direction.ordinal();
+	}
+
+	/*** True if the lamp is on. Lamps the state doesn't hold are off ***/
+	public boolean isOn(int floor, Direction direction) {
+		int bit = bit(floor, direction);
+		return (lamps[bit / Long.SIZE] & (1L << bit)) != 0;
+	}
+
+	/*** True if the state holds the lamp, always true for a full state ***/
+	public boolean holds(int floor, Direction direction) {
+		int bit = bit(floor, direction);
+		return (mask[bit / Long.SIZE] & (1L << bit)) != 0;
+	}
+
+	/*** Turns a lamp on or off. Returns true if the lamp changed ***/
+	boolean set(int floor, Direction direction, boolean on) {
+		int bit = bit(floor, direction);
+		long before = lamps[bit / Long.SIZE];
+		lamps[bit / Long.SIZE] = on ? before | (1L << bit) : before & ~(1L << bit);
+		return lamps[bit / Long.SIZE] != before;
+	}
+
+	FloorLampState copy() {
+		return new FloorLampState(floors, lamps.clone(), mask.clone());
+	}
+
+	/**
+	 * The lamps that are different from a previous full state of the same floors, to be applied to a copy of the previous state.
+	 * @param previous The state to compare against, or null for a full copy of this state
+	 */
+	FloorLampState changesSince(FloorLampState previous) {
+		if (previous == null) {
+			return copy();
+		}
+		long[] changedMask = new long[lamps.length];
+		long[] changedLamps = new long[lamps.length];
+		for (int i = 0; i < lamps.length; i++) {
+			changedMask[i] = (lamps[i] ^ previous.lamps[i]) & mask[i];
+			changedLamps[i] = lamps[i] & changedMask[i];
+		}
+		return new FloorLampState(floors, changedLamps, changedMask);
+	}
+
+	/*** Sets the lamps held by changes to their values in changes, and leaves the rest as they are ***/
+	void apply(FloorLampState changes) {
+		for (int i = 0; i < lamps.length; i++) {
+			lamps[i] = (lamps[i] & ~changes.mask[i]) | (changes.lamps[i] & changes.mask[i]);
+			mask[i] |= changes.mask[i];
+		}
+	}
+
+	/*** True if the state holds no lamps (nothing changed) ***/
+	boolean isEmpty() {
+		for (long word : mask) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*** The floors with at least one lamp the state holds, lowest first ***/
+	ArrayList<Integer> heldFloors() {
+		ArrayList<Integer> held = new ArrayList<Integer>();
+		for (int floor = 1; floor <= floors; floor++) {
+			for (Direction direction : Direction.values()) {
+				if (holds(floor, direction)) {
+					held.add(floor);
+					break;
+				}
+			}
+		}
+		return held;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof FloorLampState state && floors == state.floors && Arrays.equals(lamps, state.lamps) && Arrays.equals(mask, state.mask);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * floors + Arrays.hashCode(lamps)) + Arrays.hashCode(mask);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("FloorLampState[");
+		for (int floor : heldFloors()) {
+			text.append(String.format("%d=(UP=%s, DOWN=%s) ", floor, isOn(floor, Direction.UP), isOn(floor, Direction.DOWN)));
+		}
+		return text.toString().trim() + "]";
+	}
+}
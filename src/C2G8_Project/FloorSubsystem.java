@@ -15,11 +15,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Queue;
 import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Jayson Mendoza
  * FloorSubsystem: A class that reads the initial test script for the simulation, sends off the requests from the script to the Scheduler
  * in the order that they are read, and waits for all of the requests sent off to return before sending a quit / shutdown message.
+ * 
+ * A floor either runs on its own thread (run()) or is started on a clock (start()), where each passenger arrival is scheduled
+ * on the clock and received signals are handed to the clock to be handled in order, by one of its threads at a time.
+ * On its own thread the floor waits for a signal or its next passenger instead of checking over and over, and it uses a
+ * ReentrantLock rather than its monitor so the thread can be a virtual thread (CONFIG.USE_VIRTUAL_THREADS).
  */
 class FloorSubsystem implements Runnable, DispatchConsumer {
 	private final static Logger LOG =LogManager.getFormatterLogger(FloorSubsystem.class);
@@ -30,11 +38,15 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	private final FloorSystem parent;
 	private volatile boolean isRunning;
 	private Queue<FloorSignal> sigQueue = new ArrayDeque<FloorSignal>();
-	private volatile boolean isSigQueueAvailable = true;
+	private final ReentrantLock lock = new ReentrantLock(); //Guards the sigQueue and the scheduling of the floor's tasks
+	private final Condition signalArrived = lock.newCondition(); //Wakes the floor's own thread for a signal or shutdown
 	private final Direction[] supportedDirections;
 	private HashMap<Direction,Boolean> directionLampOn;
 	private HashMap<Direction,Boolean> directionBtnOn;
 	private final Stack<PassengerRequest> requests = new Stack<PassengerRequest>();
+	private SimulationClock clock = null; //Set when started on a clock instead of a thread
+	private SimulationClock.Scheduled nextArrival = null;
+	private boolean signalsScheduled = false; //True while the clock has been handed the signals to process, guarded by lock
 	
 	/**
 	 * Sets up a new FloorSubsystem representing a floor and its components within the system.
@@ -84,7 +96,7 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 		
 		//Subscribe to all topics for Floor system
 		for(FloorTopics topic : FloorTopics.values()) {
-			dispatcher.subscribe(String.format("%s_%d",topic.toString(),floorNum), this);
+			dispatcher.subscribe(DispatchTopics.idOf(topic,floorNum), this);
 		}
 		
 		Collections.sort(requests,Collections.reverseOrder());
@@ -94,7 +106,7 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	/**
 	 * Main run loop for Subsystem thread checks for a signal and processes it if found. It will then
 	 * check scenario time and send requests to the scheduler for any new passengers that have arrived
-	 * within the cycle.
+	 * within the cycle. It then waits until a signal arrives or the next passenger is due.
 	 */
 	@Override
 	public void run() {
@@ -104,31 +116,94 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 		while(isRunning) {
 			
 			//Process any new signals received by the Scheduler
-			if(!sigQueue.isEmpty()) {
-				processNextSignal();
-			}
+			processNextSignal();
 			
 			//Check to see if any passenger requests should be triggered in this cycle based on scenario time.
-			while(!requests.isEmpty() && requests.peek().getScenarioDurationMills() <= parent.getScenarioTimeMilliseconds()) {
-				sendRequest(requests.pop());
-				if(requests.isEmpty()) {
-					LOG.info("%s has no more requests. Reporting back to FloorSystem.",name);
-					parent.reportRequestsEmpty(this);
-				}
-			}
+			sendDueRequests();
+			
+			lock.lock();
 			try {
-				Thread.sleep(parent.getPOLL_INTERVAL_MICROSECONDS());
+				if(isRunning && sigQueue.isEmpty()) {
+					if(requests.isEmpty()) {
+						signalArrived.await();
+					}
+					else {
+						signalArrived.await(parent.millisecondsUntilScenarioTime(requests.peek().getScenarioDurationMills()), TimeUnit.MILLISECONDS);
+					}
+				}
 			} catch (InterruptedException e) {
 				continue;
+			} finally {
+				lock.unlock();
 			}
 		}
 	}
 	
+	/**
+	 * Runs the floor on a clock instead of its own thread. Each passenger arrival is scheduled on the clock for its scenario time,
+	 * and received signals are processed on the clock straight away.
+	 * @param clock The clock to run on, the same one the FloorSystem's scenario time is on
+	 */
+	public void start(SimulationClock clock) {
+		lock.lock();
+		try {
+			init();
+			this.clock = clock;
+			isRunning = true;
+			scheduleNextArrival();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Sends the requests of every passenger that has arrived by the current scenario time
+	 */
+	private void sendDueRequests() {
+		while(!requests.isEmpty() && requests.peek().getScenarioDurationMills() <= parent.getScenarioTimeMilliseconds()) {
+			sendRequest(requests.pop());
+			if(requests.isEmpty()) {
+				LOG.info("%s has no more requests. Reporting back to FloorSystem.",name);
+				parent.reportRequestsEmpty(this);
+			}
+		}
+	}
+	
+	/**
+	 * Schedules the next passenger arrival on the clock
+	 */
+	private void scheduleNextArrival() {
+		lock.lock();
+		try {
+			if(!isRunning || requests.isEmpty()) {
+				nextArrival = null;
+				return;
+			}
+			long delay = parent.millisecondsUntilScenarioTime(requests.peek().getScenarioDurationMills());
+			nextArrival = clock.schedule(() -> {
+				sendDueRequests();
+				scheduleNextArrival();
+			}, delay, TimeUnit.MILLISECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
 	/**
 	 * Shuts down floorSubsystem on the next execution cycle
 	 */
 	public void shutdown() {
-		isRunning = false;
+		lock.lock();
+		try {
+			isRunning = false;
+			if(nextArrival != null) {
+				nextArrival.cancel();
+				nextArrival = null;
+			}
+			signalArrived.signalAll();
+		} finally {
+			lock.unlock();
+		}
 		LOG.info("[%s]: IS SHUTTING DOWN!", name);
 	}
 	
@@ -166,7 +241,7 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	private void sendRequest(PassengerRequest request) {
 		RawFloorRequest requestData = new RawFloorRequest(request.getCurrentFloor(),request.getTargetFloor(),request.getDirection(),request.getFaultType());
 		try {
-			dispatcher.sendData(Destinations.SCHEDULER, SchedulerTopics.FLOOR_REQUEST.toString(), requestData);
+			dispatcher.sendData(Destinations.SCHEDULER, DispatchTopics.idOf(SchedulerTopics.FLOOR_REQUEST), requestData);
 		} catch (UnregisteredDispatcherDestination e) {
 			LOG.error("%s: Unable to dispatch request to destination %s, endpoint is not registered with dispatcher.Request skipped.",name,Destinations.SCHEDULER);
 			e.printStackTrace();
@@ -182,22 +257,41 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	 * unable to process message until it concludes.
 	 * 
 	 * The signal queue passes responsibility of the signal processing
-	 * to the thread.
+	 * to the thread, or to the clock when started on one.
 	 * @param signal The signal to be processed.
 	 */
-	public synchronized void receiveSignal(FloorSignal signal) {
-
-		while(!isSigQueueAvailable) {
+	public void receiveSignal(FloorSignal signal) {
+		lock.lock();
+		try {
+			sigQueue.add(signal);
+			signalArrived.signal();
+			
+			if(clock != null && !signalsScheduled) {
+				signalsScheduled = true; //No thread of its own to hand it to
+				clock.schedule(this::processSignals, 0, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Processes the signals received until there are none left, for floors started on a clock.
+	 * Only one of these is scheduled at a time so the signals are processed in the order they were received.
+	 */
+	private void processSignals() {
+		while(true) {
+			lock.lock();
 			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+				if(sigQueue.isEmpty()) {
+					signalsScheduled = false;
+					return;
+				}
+			} finally {
+				lock.unlock();
 			}
+			processNextSignal();
 		}
-		isSigQueueAvailable = false;
-		sigQueue.add(signal);
-		isSigQueueAvailable = true;
-		notifyAll();
 	}
 	
 	/**
@@ -205,21 +299,15 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	 * queue in a thread safe way. Isolated into its 
 	 * own function for performance so lock is released
 	 * as soon as data has been retrieved.
-	 * @return The next Floor Signal to  be processed.
+	 * @return The next Floor Signal to  be processed, null if there are none.
 	 */
-	private synchronized FloorSignal nextSignal() {
-		while(!isSigQueueAvailable) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+	private FloorSignal nextSignal() {
+		lock.lock();
+		try {
+			return sigQueue.poll();
+		} finally {
+			lock.unlock();
 		}
-		isSigQueueAvailable = false;
-		FloorSignal sig = sigQueue.remove();
-		isSigQueueAvailable = true;
-		notifyAll();
-		return sig;
 	}
 	
 	/**
@@ -229,11 +317,11 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	 * other end of the queue.
 	 */
 	private void processNextSignal() {
-		if(sigQueue.isEmpty()) {
+		FloorSignal sig = nextSignal();
+		if(sig == null) {
 			return;
 		}
 		
-		FloorSignal sig = nextSignal();
 		LOG.info("[%s] Processing sig: %s", name, sig.signal());
 		
 		switch(sig.signal()) {
@@ -292,14 +380,24 @@ class FloorSubsystem implements Runnable, DispatchConsumer {
 	 */
 	@Override
 	public void receiveDispatch(String topic, String data) {
-		
-		
+		receiveDispatch(new DispatcherMessage(topic,data));
+	}
+	
+	/**
+	 * Receives a message with its data already decoded when a binary codec was used
+	 */
+	@Override
+	public void receiveDispatch(DispatcherMessage msg) {
 		try {
-			FloorTopics convTopic = FloorTopics.valueOf(topic.substring(0, topic.lastIndexOf("_")));
-			LOG.info("%s receives topic %s with %s JSON data.", name,convTopic,data);
+			FloorTopics convTopic = DispatchTopics.enumOf(msg.topicId(), FloorTopics.class);
+			if(convTopic == null) {
+				LOG.warn("[%s] received an unrecognized topic %s. Ignored.",name,msg.topic());
+				return;
+			}
+			LOG.info("%s receives topic %s with %s data.", name,convTopic,msg.payload() != null ? msg.payload() : msg.data());
 			switch(convTopic) {
 				case FLOOR_SIGNAL:
-					FloorSignal signal = objMap.readValue(data, FloorSignal.class);
+					FloorSignal signal = msg.payload(FloorSignal.class, objMap);
 					receiveSignal(signal);
 					break;
 				default:
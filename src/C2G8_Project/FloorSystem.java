@@ -6,12 +6,14 @@ import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -30,6 +32,10 @@ import org.apache.logging.log4j.Logger;
  * will assume the scheduler will use the local host. The ports used are predetermined by the program
  * configuration.
  * 
+ * The floors share a timer (CONFIG.FLOOR_TIMER_DRIVEN) instead of running a thread each. Each floor schedules its passenger
+ * arrivals on the timer and its signals are handled by the timer's threads, so a floor only uses a thread while it has
+ * something to do. SystemSimulation runs the floors the same way on a DiscreteEventSimulator's clock.
+ * 
  * @author Jayson Mendoza
  *
  */
@@ -44,10 +50,13 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 	final private Thread dispatchThread;
 	private volatile boolean isRunning = false;
 	private volatile boolean isScenarioRunning = false;
-	private volatile boolean isHasRequestsLocked = false;
+	final private ReentrantLock hasRequestsLock = new ReentrantLock(); //Not the monitor, so floors on virtual threads don't pin their carrier while reporting
 	private final int ACCELERATION_MULTIPLIER;
 	public final int POLL_INTERVAL_MICROSECONDS;
-	private StopWatch watch; 
+	private SimulationStopWatch watch; 
+	private final SimulationClock clock; //The time the scenario runs on
+	private final boolean clockDriven; //True if the floors schedule their arrivals on the clock instead of running a thread each
+	private final boolean ownsClock; //True if the clock was made for this system and is shut down with it
 	
 	/**
 	 * Creates a new FloorSystem and connects it to the scheduler specified. It will generate a number
@@ -71,15 +80,49 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 	 * @throws IncompatableInputFile 
 	 */
 	public FloorSystem(final int numFloors,final int floorSystemPort,final int acclerationMultiplier) throws UnknownHostException, SocketException, IncompatableInputFile {
+		this(numFloors,acclerationMultiplier,new Dispatcher("FloorSystemDispatcher",floorSystemPort),PassengerRequest.loadScenario());
+	}
+	
+	/**
+	 * Creates a FloorSystem for a given scenario that sends and receives through the given dispatcher, such as one on a LOOPBACK transport.
+	 * The floors share a timer of their own when CONFIG.FLOOR_TIMER_DRIVEN is set, otherwise they run on a thread each.
+	 * 
+	 * @param numFloors The number of floors to create for the scenario
+	 * @param acclerationMultiplier How many times faster than real time the scenario runs
+	 * @param dispatcher The dispatcher used to communicate with the scheduler
+	 * @param scenario The passenger requests of the scenario
+	 */
+	FloorSystem(final int numFloors,final int acclerationMultiplier,final Dispatcher dispatcher,final ArrayList<PassengerRequest> scenario) {
+		this(numFloors,acclerationMultiplier,dispatcher,
+				CONFIG.FLOOR_TIMER_DRIVEN ? new RealTimeClock("FloorTimer",CONFIG.FLOOR_TIMER_THREADS,false) : null,true,scenario);
+	}
+	
+	/**
+	 * Creates a FloorSystem for a given scenario whose floors schedule their passenger arrivals on the given clock.
+	 * 
+	 * @param numFloors The number of floors to create for the scenario
+	 * @param acclerationMultiplier How many times faster than real time the scenario runs
+	 * @param dispatcher The dispatcher used to communicate with the scheduler
+	 * @param clock The clock the scenario runs on, null to run each floor on its own thread in real time
+	 * @param scenario The passenger requests of the scenario
+	 */
+	FloorSystem(final int numFloors,final int acclerationMultiplier,final Dispatcher dispatcher,final SimulationClock clock,final ArrayList<PassengerRequest> scenario) {
+		this(numFloors,acclerationMultiplier,dispatcher,clock,false,scenario);
+	}
+	
+	private FloorSystem(final int numFloors,final int acclerationMultiplier,final Dispatcher dispatcher,final SimulationClock clock,final boolean ownsClock,final ArrayList<PassengerRequest> scenario) {
 		this.ACCELERATION_MULTIPLIER =  acclerationMultiplier;
 		POLL_INTERVAL_MICROSECONDS = this.ACCELERATION_MULTIPLIER/CONFIG.SCENARIO_ACCELERATION_MULTIPLIER;
-		dispatcher = new Dispatcher("FloorSystemDispatcher",floorSystemPort);
+		this.dispatcher = dispatcher;
 		dispatchThread = new Thread(dispatcher);
 		dispatchThread.setName(dispatcher.getName());
+		this.clockDriven = clock != null;
+		this.clock = clockDriven ? clock : RealTimeClock.SYSTEM;
+		this.ownsClock = clockDriven && ownsClock;
 		generateFloors(numFloors);
-		watch = StopWatch.create();
+		watch = new SimulationStopWatch(this.clock);
 
-		initRequestSequence();
+		initRequestSequence(scenario);
 	}
 	
 	/**
@@ -123,6 +166,20 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 	
 	
 
+	/**
+	 * @return The clock the scenario runs on, a RealTimeClock of its own when the floors share a timer
+	 */
+	SimulationClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return The threads of the floors that run on a thread each, none when they run on the clock
+	 */
+	Collection<Thread> getFloorThreads() {
+		return Collections.unmodifiableCollection(threads.values());
+	}
+
 	public int getPOLL_INTERVAL_MICROSECONDS() {
 		return POLL_INTERVAL_MICROSECONDS;
 	}
@@ -137,6 +194,15 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 		return watch.getTime(TimeUnit.MILLISECONDS)*ACCELERATION_MULTIPLIER;
 	}
 	
+	/**
+	 * @param scenarioTimeMilliseconds A scenario time
+	 * @return The milliseconds of clock time until the scenario reaches the given time, 0 if it already has
+	 */
+	long millisecondsUntilScenarioTime(final long scenarioTimeMilliseconds) {
+		long remaining = scenarioTimeMilliseconds - getScenarioTimeMilliseconds();
+		return remaining <= 0 ? 0 : (remaining + ACCELERATION_MULTIPLIER - 1) / ACCELERATION_MULTIPLIER;
+	}
+	
 	
 
 	public boolean isRunning() {
@@ -180,15 +246,7 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 	 */
 	@Override
 	public void run() {
-		
-		dispatchThread.start();
-		dispatcher.subscribe(FloorTopics.SCENARIO_START.toString(), this);
-		dispatcher.subscribe(FloorTopics.SCENARIO_END.toString(), this);
-
-		while(!dispatcher.isRunning() && dispatchThread.isAlive()) {};
-
-		isRunning = true;
-		LOG.info("%s is ready. Waiting for %s command from %s. Listening on port%d...",FLOOR_SYSTEM_NAME,FloorTopics.SCENARIO_START,Destinations.SCHEDULER,dispatcher.getPort());			
+		start();
 		
 		//This loop prevents the program from ending until the simulation is finished. 
 		while(isRunning) {
@@ -203,6 +261,20 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 		}
 	}
 	
+	/**
+	 * Starts the dispatcher and waits for the scenario start command without waiting for the shutdown, for floors run on a DiscreteEventSimulator
+	 */
+	void start() {
+		dispatchThread.start();
+		dispatcher.subscribe(FloorTopics.SCENARIO_START.toString(), this);
+		dispatcher.subscribe(FloorTopics.SCENARIO_END.toString(), this);
+
+		while(!dispatcher.isRunning() && dispatchThread.isAlive()) {};
+
+		isRunning = true;
+		LOG.info("%s is ready. Waiting for %s command from %s. Listening on port%d...",FLOOR_SYSTEM_NAME,FloorTopics.SCENARIO_START,Destinations.SCHEDULER,dispatcher.getPort());			
+	}
+	
 	/**
 	 * Start scenario once appropriate message received from Scheduler. This should happen only once.
 	 * @throws UnregisteredDispatcherDestination 
@@ -217,10 +289,15 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 		}
 		
 		LOG.info("%s command received from Scheduler. Starting %s...",FloorTopics.SCENARIO_START,FLOOR_SYSTEM_NAME);
+		watch.start();
+		if(clockDriven) {
+			for(FloorSubsystem floor : floors) {
+				floor.start(clock);
+			}
+		}
 		for(Thread th : threads.values()) {
 			th.start();
 		}
-		watch.start();
 		isScenarioRunning = true;
 		try {
 			String topic =  SchedulerTopics.SCENARIO_STARTED.toString();
@@ -261,19 +338,19 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 		for(FloorSubsystem floor : floors) {
 			floor.shutdown();
 		}
+		if(ownsClock) {
+			((RealTimeClock) clock).shutdown();
+		}
 		dispatcher.shutdown();
 		isRunning=false;
 	}
 	
 	
 	/**
-	 * Initializes a scenario but creating a request sequence from the file specified in CONFIG.
-	 * If the file is missing a new scenario is generated and saved.
-	 * @throws IncompatableInputFile 
+	 * Initializes a scenario by handing each passenger request to the floor it starts on.
+	 * The public constructors load it from the file specified in CONFIG, which is generated and saved if it is missing.
 	 */
-	private void initRequestSequence() throws IncompatableInputFile {
-		//TODO Switch to make input form file the default option
-		ArrayList<PassengerRequest> reqList = PassengerRequest.loadScenario();
+	private void initRequestSequence(final ArrayList<PassengerRequest> reqList) {
 		LOG.info("Scenario Schedule (%d requests)",reqList.size());
 		
 		//Assumes data in descending order so oldest will be at the bottom of stack
@@ -303,10 +380,11 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 			String floorName = String.format("%s %d", FLOOR_THREAD_PREFIX,i+1);
 			
 			FloorSubsystem fs = new FloorSubsystem(floorName,i+1,this,dispatcher,supportedDirections);
-			Thread th = new Thread(fs);
-			th.setName(floorName);
 			floors.add(fs);
-			threads.put(fs,th);
+			if(clockDriven) {
+				continue; //Started on the clock in startScenario()
+			}
+			threads.put(fs,VirtualThreads.newThread(floorName, fs));
 			
 		}
 	}
@@ -330,22 +408,16 @@ public class FloorSystem implements Runnable, DispatchConsumer {
 	 * This function is called by FloorSubysystems to indicate its exhausted its scenario requests
 	 * @param fs The floor subsystem that is reporting in
 	 */
-	public synchronized void reportRequestsEmpty(FloorSubsystem fs) {
-		
-		while(isHasRequestsLocked) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+	public void reportRequestsEmpty(FloorSubsystem fs) {
+		hasRequestsLock.lock();
+		try {
+			hasRequests.remove(fs);
+			if(hasRequests.isEmpty()) {
+				scenarioComplete();
 			}
+		} finally {
+			hasRequestsLock.unlock();
 		}
-		isHasRequestsLocked = true;
-		hasRequests.remove(fs);
-		if(hasRequests.isEmpty()) {
-			scenarioComplete();
-		}
-		isHasRequestsLocked=false;
-		notifyAll();
 	}
 
 }
@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  An ArrayList that keeps an index of its elements up to date as it is changed, so the "Master Sheet" can be looked up without
+ *  scanning its lists. It is still an ArrayList so the states, the algorithm and the tests can keep using it the way they always have.
+ *
+ * More details:
+ *  Subclasses say how an element is indexed and unindexed. Appending or removing an element only touches that element's index entries.
+ *  Changes that move elements around (inserting in the middle, set, sort, bulk removes) rebuild the index, so anything the index keeps
+ *  in list order stays in list order. Sub lists can't be changed since changes through them would skip the index. Not thread safe.
+ */
+abstract class IndexedList<E> extends ArrayList<E> {
+	private static final long serialVersionUID = 1L;
+
+	/*** Adds an element to the index. Called after the element was added to the list ***/
+	protected abstract void index(E element);
+
+	/*** Removes an element from the index. Called after the element was removed from the list ***/
+	protected abstract void unindex(E element);
+
+	/*** Empties the index ***/
+	protected abstract void clearIndex();
+
+	/*** Rebuilds the index from the list ***/
+	protected void reindex() {
+		clearIndex();
+		for (E element : this) {
+			index(element);
+		}
+	}
+
+	@Override
+	public boolean add(E element) {
+		super.add(element);
+		index(element);
+		return true;
+	}
+
+	@Override
+	public void add(int i, E element) {
+		super.add(i, element);
+		if (i == size()-1) { index(element); }
+		else { reindex(); }
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> elements) {
+		int start = size();
+		boolean changed = super.addAll(elements);
+		for (int i = start; i < size(); i++) {
+			index(get(i));
+		}
+		return changed;
+	}
+
+	@Override
+	public boolean addAll(int i, Collection<? extends E> elements) {
+		boolean changed = super.addAll(i, elements);
+		if (changed) { reindex(); }
+		return changed;
+	}
+
+	@Override
+	public E set(int i, E element) {
+		E old = super.set(i, element);
+		reindex();
+		return old;
+	}
+
+	@Override
+	public E remove(int i) {
+		E element = super.remove(i);
+		unindex(element);
+		return element;
+	}
+
+	@Override
+	public boolean remove(Object element) {
+		int i = indexOf(element);
+		if (i == -1) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		clearIndex();
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		boolean changed = super.removeIf(filter);
+		if (changed) { reindex(); }
+		return changed;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> elements) {
+		boolean changed = super.removeAll(elements);
+		if (changed) { reindex(); }
+		return changed;
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> elements) {
+		boolean changed = super.retainAll(elements);
+		if (changed) { reindex(); }
+		return changed;
+	}
+
+	@Override
+	protected void removeRange(int from, int to) {
+		super.removeRange(from, to);
+		reindex();
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<E> operator) {
+		super.replaceAll(operator);
+		reindex();
+	}
+
+	@Override
+	public void sort(Comparator<? super E> comparator) {
+		super.sort(comparator);
+		reindex();
+	}
+
+	@Override
+	public List<E> subList(int from, int to) {
+		return Collections.unmodifiableList(super.subList(from, to));
+	}
+
+	/*** A clone would share this list's index ***/
+	@Override
+	public Object clone() {
+		throw new UnsupportedOperationException("IndexedList can't be cloned, copy it with its constructor instead");
+	}
+}
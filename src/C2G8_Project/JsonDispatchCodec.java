@@ -0,0 +1,52 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * The original Dispatcher wire format. The data is converted to JSON and placed
+ * in a JSON object along with the topic.
+ *
+ * This is the format every Dispatcher falls back to when a destination has not
+ * negotiated anything else, and it is always used for connection requests.
+ *
+ * @author agent
+ *
+ */
+final class JsonDispatchCodec implements DispatchCodec {
+	private final ObjectMapper objMap = new ObjectMapper();
+
+	/**
+	 * The JSON layout of a message on the wire
+	 */
+	private record JsonFrame(String topic,String data) {}
+
+	@Override
+	public byte[] encode(String topic, Object data) throws IOException {
+		String stringData = "";
+		//This is to avoid the case where a string is passed and given an extra set of quotation marks
+		if(data instanceof String) {
+			stringData = (String)data;
+		}
+		else if(data!=null) {
+			stringData = objMap.writeValueAsString(data);
+		}
+		return objMap.writeValueAsBytes(new JsonFrame(topic,stringData));
+	}
+
+	@Override
+	public DispatcherMessage decode(ByteBuffer frame) throws IOException {
+		JsonFrame jsonFrame;
+		if(frame.hasArray()) {
+			jsonFrame = objMap.readValue(frame.array(), frame.arrayOffset()+frame.position(), frame.remaining(), JsonFrame.class);
+			frame.position(frame.limit());
+		}
+		else {
+			jsonFrame = objMap.readValue(new ByteBufferBackedInputStream(frame), JsonFrame.class);
+		}
+		return new DispatcherMessage(jsonFrame.topic(),jsonFrame.data());
+	}
+}
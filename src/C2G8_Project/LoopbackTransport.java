@@ -0,0 +1,151 @@
+package C2G8_Project;
+
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A Dispatcher transport that hands frames or messages directly to other loopback transports in the same program,
+ * without a socket or the kernel's network stack.
+ *
+ * Every loopback transport in the program is bound to a port of one shared, in-memory network. Ports are separate
+ * from the machine's UDP ports, so a loopback Dispatcher can only talk to other loopback Dispatchers in the same program,
+ * whatever address is used to reach them. Anything sent to a port nobody is bound to is dropped like a datagram would be.
+ *
+ * Received frames and messages are queued and delivered in order by the thread running the Dispatcher, just like the
+ * DATAGRAM_SOCKET transport, so a sender never runs the receiver's subscribers on its own thread.
+ *
+ * When created to carry messages (LOOPBACK_MESSAGES) the Dispatcher hands the message objects over without encoding
+ * them into frames (see carriesMessages). The Dispatcher copies the data into the message first, so the sender can keep
+ * changing what it sent. Otherwise (LOOPBACK) frames are encoded and copied like they would be over UDP. Either way every
+ * system's data stays its own. Connection requests are always sent as frames.
+ *
+ * @author agent
+ *
+ */
+final class LoopbackTransport implements DispatchTransport {
+	private static final int FIRST_FREE_PORT = 49152; //Start of the ephemeral range, used for Dispatcher.NO_PORT
+	private static final int LAST_PORT = 65535;
+	private static final ConcurrentHashMap<Integer,LoopbackTransport> BOUND = new ConcurrentHashMap<Integer,LoopbackTransport>();
+	private static int nextFreePort = FIRST_FREE_PORT;
+
+	/**
+	 * Something received, a frame or a message
+	 */
+	private record Delivery(byte[] frame,DispatcherMessage message,InetSocketAddress source) {}
+	private static final Delivery CLOSED = new Delivery(null,null,null);
+
+	private final InetSocketAddress localAddress;
+	private final boolean carriesMessages;
+	private final LinkedBlockingQueue<Delivery> received = new LinkedBlockingQueue<Delivery>();
+	private volatile boolean closed = false;
+
+	/**
+	 * Binds the transport to a port of the loopback network
+	 * @param port The port to bind or Dispatcher.NO_PORT for any free port
+	 * @param carriesMessages True to hand messages over without encoding them
+	 * @throws BindException If another loopback transport is bound to the port
+	 */
+	LoopbackTransport(final int port,final boolean carriesMessages) throws BindException {
+		this.carriesMessages = carriesMessages;
+		this.localAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(),bind(port));
+	}
+
+	private int bind(final int port) throws BindException {
+		if(port != Dispatcher.NO_PORT && port != 0) {
+			if(BOUND.putIfAbsent(port, this) != null) {
+				throw new BindException(String.format("Loopback port %d is already in use", port));
+			}
+			return port;
+		}
+
+		synchronized(BOUND) {
+			for(int i = FIRST_FREE_PORT; i <= LAST_PORT; ++i) {
+				int candidate = nextFreePort;
+				nextFreePort = candidate == LAST_PORT ? FIRST_FREE_PORT : candidate+1;
+				if(BOUND.putIfAbsent(candidate, this) == null) {
+					return candidate;
+				}
+			}
+		}
+		throw new BindException("No free loopback ports");
+	}
+
+	@Override
+	public int getLocalPort() {
+		return localAddress.getPort();
+	}
+
+	@Override
+	public InetAddress getLocalAddress() {
+		return localAddress.getAddress();
+	}
+
+	@Override
+	public void send(final ByteBuffer frame,final InetSocketAddress destination) {
+		LoopbackTransport target = BOUND.get(destination.getPort());
+		if(target == null) {
+			return;
+		}
+		byte[] data = new byte[frame.remaining()];
+		frame.get(data);
+		target.receive(new Delivery(data,null,localAddress));
+	}
+
+	@Override
+	public boolean carriesMessages() {
+		return carriesMessages;
+	}
+
+	@Override
+	public void sendMessage(final DispatcherMessage message,final InetSocketAddress destination) {
+		LoopbackTransport target = BOUND.get(destination.getPort());
+		if(target != null) {
+			target.receive(new Delivery(null,message,localAddress));
+		}
+	}
+
+	private void receive(final Delivery delivery) {
+		if(!closed) {
+			received.add(delivery);
+		}
+	}
+
+	@Override
+	public void serve(final FrameReceiver receiver) {
+		while(!closed) {
+			Delivery delivery;
+			try {
+				delivery = received.take();
+			} catch (InterruptedException e) {
+				continue; //Keep serving until closed
+			}
+
+			if(delivery == CLOSED) {
+				break;
+			}
+			else if(delivery.message() != null) {
+				receiver.receiveMessage(delivery.message(), delivery.source());
+			}
+			else {
+				receiver.receiveFrame(ByteBuffer.wrap(delivery.frame()), delivery.source());
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		BOUND.remove(getLocalPort(), this);
+		received.clear();
+		received.add(CLOSED);
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -10,6 +10,7 @@ import org.apache.logging.log4j.Logger;
 import C2G8_Project.CONFIG;
 import C2G8_Project.Direction;
 import C2G8_Project.ElevatorStates;
+import C2G8_Project.FloorLampState;
 import C2G8_Project.ViewData;
 import C2G8_Project.ViewElevatorData;
 import javafx.application.Platform;
@@ -264,41 +265,42 @@ public class MainWindow extends VBox {
 	 * @param newState Data to update the Floor View
 	 */
 	public void updateFloor(ViewData newState) {
-		for(Map.Entry<Integer, HashMap<Direction,Boolean>> e : newState.floorButtonLamp().entrySet()) {
+		FloorLampState btnLamps = newState.floorButtonLamp();
+		FloorLampState dirLamps = newState.floorDirectionLamp();
+		for(int floor = 1; floor <= btnLamps.floors(); floor++) {
 			
-			HashMap<Direction,Boolean> dirStates = newState.floorDirectionLamp().get(e.getKey());
-			boolean isUpBtnUpLampOn = e.getValue().getOrDefault(Direction.UP, false);
-			boolean isUpBtnDownLampOn = e.getValue().getOrDefault(Direction.DOWN, false);
-			boolean isUpDirUpLampOn = dirStates.getOrDefault(Direction.UP, false);
-			boolean isUpDirDownLampOn = dirStates.getOrDefault(Direction.DOWN, false);
-			LOG.debug("[%d] BtnLamps(UP: %s, DOWN: %s) DirLamps(UP: %s, DOWN: %s)", e.getKey(), isUpBtnUpLampOn, isUpBtnDownLampOn, isUpDirUpLampOn, isUpDirDownLampOn);
+			boolean isUpBtnUpLampOn = btnLamps.isOn(floor, Direction.UP);
+			boolean isUpBtnDownLampOn = btnLamps.isOn(floor, Direction.DOWN);
+			boolean isUpDirUpLampOn = dirLamps.isOn(floor, Direction.UP);
+			boolean isUpDirDownLampOn = dirLamps.isOn(floor, Direction.DOWN);
+			LOG.debug("[%d] BtnLamps(UP: %s, DOWN: %s) DirLamps(UP: %s, DOWN: %s)", floor, isUpBtnUpLampOn, isUpBtnDownLampOn, isUpDirUpLampOn, isUpDirDownLampOn);
 //			floorBtnLamps;
 			if(isUpBtnUpLampOn && isUpBtnDownLampOn) {
-				floorBtnLamps.get(e.getKey()).setImage(buttonImages.get("BOTH"));
+				floorBtnLamps.get(floor).setImage(buttonImages.get("BOTH"));
 			}
 			else if(isUpBtnUpLampOn) {
-				floorBtnLamps.get(e.getKey()).setImage(buttonImages.get(Direction.UP.toString()));
+				floorBtnLamps.get(floor).setImage(buttonImages.get(Direction.UP.toString()));
 			}
 			else if(isUpBtnDownLampOn) {
-				floorBtnLamps.get(e.getKey()).setImage(buttonImages.get(Direction.DOWN.toString()));
+				floorBtnLamps.get(floor).setImage(buttonImages.get(Direction.DOWN.toString()));
 			}
 			else {
-				floorBtnLamps.get(e.getKey()).setImage(buttonImages.get("NONE"));
+				floorBtnLamps.get(floor).setImage(buttonImages.get("NONE"));
 			}
 			
 			
 			if(isUpDirUpLampOn && isUpDirDownLampOn) {
 				
-				floorDirLamps.get(e.getKey()).setImage(directionImages.get("BOTH"));
+				floorDirLamps.get(floor).setImage(directionImages.get("BOTH"));
 			}
 			else if(isUpDirUpLampOn) {
-				floorDirLamps.get(e.getKey()).setImage(directionImages.get(Direction.UP.toString()));
+				floorDirLamps.get(floor).setImage(directionImages.get(Direction.UP.toString()));
 			}
 			else if(isUpDirDownLampOn) {
-				floorDirLamps.get(e.getKey()).setImage(directionImages.get(Direction.DOWN.toString()));
+				floorDirLamps.get(floor).setImage(directionImages.get(Direction.DOWN.toString()));
 			}
 			else {
-				floorDirLamps.get(e.getKey()).setImage(directionImages.get("NONE"));
+				floorDirLamps.get(floor).setImage(directionImages.get("NONE"));
 			}
 		}
 	}
@@ -16,10 +16,14 @@ import C2G8_Project.CONFIG;
 import C2G8_Project.Destinations;
 import C2G8_Project.DispatchConsumer;
 import C2G8_Project.Dispatcher;
+import C2G8_Project.DispatcherMessage;
 import C2G8_Project.FloorSignal;
 import C2G8_Project.FloorTopics;
+import C2G8_Project.SchedulerTopics;
 import C2G8_Project.UnregisteredDispatcherDestination;
 import C2G8_Project.ViewData;
+import C2G8_Project.ViewDelta;
+import C2G8_Project.ViewReplica;
 import C2G8_Project.ViewRequestData;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -53,6 +57,7 @@ public class MonitorController implements DispatchConsumer {
 	private Scene mainScene;
 	private String connectionStatus;
 	private ObjectMapper objMap;
+	private final ViewReplica replica;
 	private ViewData lastState;
 	
 	/**
@@ -94,6 +99,7 @@ public class MonitorController implements DispatchConsumer {
         isConnected = false;
         this.connectionStatus = "Not Connected";
         objMap = new ObjectMapper();
+        replica = new ViewReplica();
         lastState =  null;
         init();
 	}
@@ -113,16 +119,38 @@ public class MonitorController implements DispatchConsumer {
 	/**
 	 * Handles updates from subscribed messages to dipatcher. This is generally
 	 * new state updates from the scheduler.
+	 * 
+	 * The scheduler only sends what changed since its last update. The changes are applied
+	 * to a replica of the scheduler's state, and when one is found to be missing the scheduler
+	 * is asked for its entire state.
 	 */
 	@Override
 	public void receiveDispatch(String topic, String data) {
+		receiveDispatch(new DispatcherMessage(topic,data));
+	}
+	
+	/**
+	 * Receives a message with its data already decoded when a binary codec was used
+	 */
+	@Override
+	public void receiveDispatch(DispatcherMessage msg) {
+		String topic = msg.topic();
+		Object data = msg.payload() != null ? msg.payload() : msg.data();
 		try {
 				MonitorTopics recTopic = MonitorTopics.valueOf(topic);
 				if(recTopic == MonitorTopics.SCHEDULER_UPDATE){
-					lastState = objMap.readValue(data, ViewData.class);
-					mainWindow.updateState(lastState);
-					mainWindow.updateFloor(lastState);
-					LOG.debug("ViewData  : %s", data);
+					ViewDelta delta = msg.payload(ViewDelta.class, objMap);
+					LOG.debug("ViewDelta  : %s", data);
+					if(!replica.apply(delta)) {
+						LOG.warn("Missed scheduler update before %d. Requesting the entire state.", delta.sequence());
+						requestSchedulerState();
+						return;
+					}
+					if(replica.isSynchronized() && replica.getSequence() == delta.sequence()) {
+						lastState = replica.toViewData();
+						mainWindow.updateState(lastState);
+						mainWindow.updateFloor(lastState);
+					}
 				}else{
 					LOG.warn("Unexpected Message Topic Ignored: %s, Data: %s", topic, data);
 				}
@@ -199,6 +227,7 @@ public class MonitorController implements DispatchConsumer {
 			LOG.info("Connection to %s:%d successful? %s", address, schedulerPort,isConnected);
 			connectionStatus = String.format("Connected: %s:%d", address, schedulerPort);
 			mainWindow.getLblFooterLeftStatus().setText(connectionStatus);
+			requestSchedulerState();
 		} catch (UnknownHostException e) {
 			String errMsg = String.format("Unable to connect to scheduler at address %s:%d", address,schedulerPort);
 			LOG.warn(errMsg);
@@ -210,4 +239,16 @@ public class MonitorController implements DispatchConsumer {
 			e.printStackTrace();
 		}
 	}
+	
+	/**
+	 * Asks the scheduler to send its entire state instead of only the changes, so the replica
+	 * can start over after a missed update.
+	 */
+	private void requestSchedulerState() {
+		try {
+			dispatch.sendData(Destinations.SCHEDULER, SchedulerTopics.MONITOR_SCHEDULER_UPDATE_REQUEST.toString());
+		} catch (UnregisteredDispatcherDestination e) {
+			LOG.warn("Unable to request the scheduler's state, not connected to the scheduler.");
+		}
+	}
 }
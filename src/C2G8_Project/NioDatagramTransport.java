@@ -0,0 +1,194 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A Dispatcher transport built on a non-blocking DatagramChannel.
+ *
+ * Frames are received by the shared DispatchSelector thread, so one selector thread serves every Dispatcher
+ * in the program. The selector copies each frame into a free buffer from the transport's fixed pool and queues it,
+ * and the thread running the Dispatcher decodes and delivers the frames in order, like the DATAGRAM_SOCKET transport,
+ * so a slow subscriber only holds up its own Dispatcher. A buffer is returned to the pool once its frame has been
+ * decoded, so once the pool is warm receiving allocates nothing but the source address. While every buffer is in use
+ * the selector leaves this channel's frames in its socket buffer.
+ *
+ * Sends retry while the socket's send buffer is full, since a non-blocking send does nothing then, so a burst is sent
+ * in full like it is by a blocking DatagramSocket. A send that still finds the buffer full after SEND_TIMEOUT fails.
+ *
+ * @author agent
+ *
+ */
+final class NioDatagramTransport implements DispatchTransport {
+	final private static Logger LOG =LogManager.getFormatterLogger(NioDatagramTransport.class);
+	private static final int POOLED_FRAMES = 1024; //Frames held before the selector stops reading the channel
+	private static final int INITIAL_FRAME_BYTES = 2048; //Pooled buffers grow to the largest frame they have held
+	private static final long SEND_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50); //First wait when the send buffer is full, doubled after each try
+	private static final long MAX_SEND_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SEND_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * A pooled buffer and the source of the frame it holds
+	 */
+	private static final class Frame {
+		private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_FRAME_BYTES);
+		private InetSocketAddress source;
+	}
+	private static final Frame CLOSED = new Frame();
+
+	private final DatagramChannel channel;
+	private final InetSocketAddress localAddress;
+	private final ArrayBlockingQueue<Frame> free = new ArrayBlockingQueue<Frame>(POOLED_FRAMES);
+	private int pooledFrames = 0; //Frames created so far, only used by the selector thread
+	private final ArrayBlockingQueue<Frame> received = new ArrayBlockingQueue<Frame>(POOLED_FRAMES+1); //Room for CLOSED
+	private final AtomicReference<SelectionKey> pausedKey = new AtomicReference<SelectionKey>(); //Set while the selector waits for a free buffer
+	private volatile DispatchSelector selector;
+	private volatile boolean closed = false;
+
+	/**
+	 * Binds the channel
+	 * @param port The port to bind or Dispatcher.NO_PORT for any free port
+	 * @throws IOException If the channel could not be bound
+	 */
+	NioDatagramTransport(final int port) throws IOException {
+		channel = DatagramChannel.open();
+		try {
+			channel.bind(new InetSocketAddress(port == Dispatcher.NO_PORT ? 0 : port));
+			channel.configureBlocking(false);
+			localAddress = (InetSocketAddress) channel.getLocalAddress();
+		}
+		catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int getLocalPort() {
+		return localAddress.getPort();
+	}
+
+	@Override
+	public InetAddress getLocalAddress() {
+		return localAddress.getAddress();
+	}
+
+	@Override
+	public void send(ByteBuffer frame, InetSocketAddress destination) throws IOException {
+		long wait = SEND_RETRY_NANOS;
+		long deadline = System.nanoTime() + SEND_TIMEOUT_NANOS;
+		while(channel.send(frame, destination) == 0) {
+			if(!channel.isOpen()) {
+				throw new ClosedChannelException();
+			}
+			if(System.nanoTime() - deadline >= 0) {
+				throw new IOException(String.format("Send buffer of port %d stayed full for %d ms, datagram to %s dropped.",getLocalPort(),TimeUnit.NANOSECONDS.toMillis(SEND_TIMEOUT_NANOS),destination));
+			}
+			LockSupport.parkNanos(wait); //Send buffer is full, wait for the socket to drain it
+			wait = Math.min(wait*2, MAX_SEND_RETRY_NANOS);
+		}
+	}
+
+	@Override
+	public void serve(FrameReceiver receiver) {
+		try {
+			selector = DispatchSelector.shared();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open the dispatch selector.",e);
+		}
+		selector.register(channel, new DispatchSelector.Inbox() {
+			@Override
+			public boolean isFull() {
+				return free.isEmpty() && pooledFrames == POOLED_FRAMES;
+			}
+
+			@Override
+			public void add(ByteBuffer frame, InetSocketAddress source) {
+				Frame pooled = free.poll();
+				if(pooled == null) {
+					pooled = new Frame(); //The pool is filled as it is first needed, isFull was checked first
+					++pooledFrames;
+				}
+				if(pooled.buffer.capacity() < frame.remaining()) {
+					pooled.buffer = ByteBuffer.allocate(frame.remaining());
+				}
+				pooled.buffer.clear();
+				pooled.buffer.put(frame).flip();
+				pooled.source = source;
+				received.add(pooled);
+			}
+
+			@Override
+			public void paused(SelectionKey key) {
+				pausedKey.set(key);
+				if(!isFull()) {
+					resumePaused(); //A buffer was returned before the key was set
+				}
+			}
+		});
+
+		while(!closed) {
+			Frame frame;
+			try {
+				frame = received.take();
+			} catch (InterruptedException e) {
+				continue; //Keep serving until closed
+			}
+
+			if(frame == CLOSED) {
+				break;
+			}
+			try {
+				receiver.receiveFrame(frame.buffer, frame.source);
+			}
+			catch(RuntimeException e) {
+				LOG.error("Receiver on port %d failed to handle a frame.\n%s",getLocalPort(),e.getMessage());
+				e.printStackTrace();
+			}
+			finally {
+				frame.source = null;
+				free.add(frame);
+				resumePaused();
+			}
+		}
+	}
+
+	/**
+	 * Has the selector read the channel again if it stopped because no buffer was free
+	 */
+	private void resumePaused() {
+		SelectionKey paused = pausedKey.getAndSet(null);
+		if(paused != null) {
+			selector.resume(paused);
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			//Closing anyway
+		}
+		received.clear();
+		received.add(CLOSED);
+	}
+
+	@Override
+	public boolean isClosed() {
+		return !channel.isOpen();
+	}
+}
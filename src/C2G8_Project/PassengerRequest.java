@@ -98,10 +98,22 @@ final class PassengerRequest implements Serializable, Comparable<PassengerReques
      * @throws IncompatableInputFile 
      */
     public static ArrayList<PassengerRequest> generateScenario(final int numPeople,final long scenarioDurationMills) throws IncompatableInputFile {
+    	return generateScenario(numPeople,scenarioDurationMills,new Random());
+    }
+    
+    /**
+     * Generates a scenario like generateScenario(numPeople,scenarioDurationMills) from the given random numbers,
+     * so the same seed always gives the same scenario
+     * @param numPeople The number of passengers throughout the scenario
+     * @param scenarioDurationMills The duration of the scenario in Milliseconds
+     * @param rnd The random numbers the passengers are made from
+     * @return A sorted list of PassengerRequests
+     * @throws IncompatableInputFile 
+     */
+    static ArrayList<PassengerRequest> generateScenario(final int numPeople,final long scenarioDurationMills,final Random rnd) throws IncompatableInputFile {
     	final ArrayList<PassengerRequest> scenario  = new ArrayList<PassengerRequest>();
     	
     	for(int i=0;i<numPeople;++i) {
-    		Random rnd = new Random();
     		long durationIndex = rnd.nextLong(0, scenarioDurationMills);
     		int currFloor = CONFIG.FLOORS == 1 ? 1 : rnd.nextInt(1,CONFIG.FLOORS+1);
     		int targetFloor=0;
@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The wall clock (System.nanoTime()), with tasks run on a ScheduledThreadPoolExecutor when their delay has passed.
+ *
+ * More details:
+ *  The executor's threads are only made when something is first scheduled, so a clock that's only used to read the time (like
+ *  SYSTEM for the stop watches of the scheduler and floors) doesn't start any. Tasks scheduled after shutdown() are ignored.
+ */
+public final class RealTimeClock implements SimulationClock {
+	private static final Logger LOG = LogManager.getFormatterLogger(RealTimeClock.class);
+	public static final RealTimeClock SYSTEM = new RealTimeClock("RealTimeClock", 1, true);	// Shared, for anything that doesn't have its own
+
+	private final String name;
+	private final ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * @param name The name of the threads, numbered "name 1", "name 2", ...
+	 * @param threads The threads the tasks run on
+	 * @param daemon True if the threads shouldn't keep the program running
+	 */
+	public RealTimeClock(String name, int threads, boolean daemon) {
+		this.name = name;
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ScheduledThreadPoolExecutor(threads, r -> {
+			Thread th = new Thread(r);
+			th.setName(String.format("%s %d", name, threadCount.incrementAndGet()));
+			th.setDaemon(daemon);
+			return th;
+		});
+		executor.setRemoveOnCancelPolicy(true);	// Tasks are often replaced before they run (an elevator's next step when a signal arrives)
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);	// Or a task far in the future keeps non daemon threads alive after shutdown()
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public Scheduled schedule(Runnable task, long delay, TimeUnit unit) {
+		try {
+			ScheduledFuture<?> future = executor.schedule(task, delay, unit);
+			return () -> future.cancel(false);
+		} catch (RejectedExecutionException e) {
+			LOG.info("%s is shut down, task ignored", name);
+			return () -> {};
+		}
+	}
+
+	/*** The threads the clock's tasks are running on, at most the number it was made with ***/
+	public int getPoolSize() {
+		return executor.getPoolSize();
+	}
+
+	/*** Stops running tasks, the ones not yet run are dropped (a task already running finishes) ***/
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
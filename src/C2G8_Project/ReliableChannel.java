@@ -0,0 +1,301 @@
+package C2G8_Project;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The reliable delivery state a Dispatcher keeps for one peer address.
+ *
+ * Sending: every datagram is given a sequence number and kept until the peer acknowledges it.
+ * Datagrams that are not acknowledged within the retransmission timeout are sent again with the
+ * timeout doubled each attempt, and given up on after a maximum number of attempts. The timeout adapts
+ * to the measured round trip time using the Jacobson/Karels estimator, sampling only datagrams that
+ * were sent once (Karn's algorithm).
+ *
+ * Receiving: each datagram is acknowledged with the highest sequence number below which everything has
+ * arrived and a bitmap of the 64 sequence numbers after it, so the sender only resends what was lost.
+ * Sequence numbers already received are reported as duplicates so they are not delivered twice.
+ * Datagrams are delivered as they arrive, reliability does not reorder them.
+ *
+ * Frame layout:
+ * DATA: MAGIC, TYPE_DATA, session, sequence, lowest unacknowledged sequence, frame
+ * ACK: MAGIC, TYPE_ACK, session, cumulative sequence, bitmap
+ *
+ * The session is chosen at random by the sender so a peer that restarts on the same address is not
+ * mistaken for a stream of duplicates. The lowest unacknowledged sequence lets the receiver skip
+ * sequence numbers the sender has given up on.
+ *
+ * @author agent
+ *
+ */
+final class ReliableChannel {
+	static final byte MAGIC = (byte) 0xC4; //Never the first byte of a JSON, binary or batch frame
+	private static final byte TYPE_DATA = 0;
+	private static final byte TYPE_ACK = 1;
+	private static final int DATA_HEADER_BYTES = 14;
+	private static final int ACK_BYTES = 18;
+	private static final int WINDOW = Long.SIZE;
+
+	/**
+	 * The result of receiving a DATA datagram
+	 */
+	enum Receipt {
+		NEW, //Deliver it
+		DUPLICATE, //Already delivered, acknowledge again but drop it
+		BEYOND_WINDOW //Too far ahead to track, drop it without acknowledging so it is resent later
+	}
+
+	/**
+	 * A datagram waiting to be acknowledged
+	 */
+	private static final class Outstanding {
+		final byte[] datagram;
+		final long firstSentNanos;
+		long deadlineNanos;
+		int attempts = 1;
+
+		Outstanding(byte[] datagram,long sentNanos,long deadlineNanos) {
+			this.datagram = datagram;
+			this.firstSentNanos = sentNanos;
+			this.deadlineNanos = deadlineNanos;
+		}
+	}
+
+	private final long minRtoNanos;
+	private final long maxRtoNanos;
+	private final int maxAttempts;
+
+	//Sending
+	private final int sendSession = ThreadLocalRandom.current().nextInt();
+	private int nextSequence = 0;
+	private final LinkedHashMap<Integer,Outstanding> outstanding = new LinkedHashMap<Integer,Outstanding>(); //In sequence order
+	private long srttNanos = -1;
+	private long rttvarNanos = 0;
+	private long rtoNanos;
+
+	//Receiving
+	private boolean hasReceived = false;
+	private int receiveSession;
+	private int cumulative; //Every sequence up to and including this one has been received
+	private long receivedAhead; //Bit i is set when cumulative+1+i has been received
+
+	/**
+	 * @param initialRtoMills The retransmission timeout used before the round trip time is measured
+	 * @param minRtoMills The smallest retransmission timeout
+	 * @param maxRtoMills The largest retransmission timeout, including backoff
+	 * @param maxAttempts The number of times a datagram is sent before it is given up on
+	 */
+	ReliableChannel(int initialRtoMills,int minRtoMills,int maxRtoMills,int maxAttempts) {
+		this.rtoNanos = millsToNanos(initialRtoMills);
+		this.minRtoNanos = millsToNanos(minRtoMills);
+		this.maxRtoNanos = millsToNanos(maxRtoMills);
+		this.maxAttempts = maxAttempts;
+	}
+
+	private static long millsToNanos(int mills) {
+		return mills * 1000000L;
+	}
+
+	/**
+	 * @param datagram A received datagram between its position and limit
+	 * @return True if the datagram belongs to a reliable channel
+	 */
+	static boolean isReliable(ByteBuffer datagram) {
+		return datagram.hasRemaining() && datagram.get(datagram.position()) == MAGIC;
+	}
+
+	/**
+	 * @param datagram A received reliable datagram
+	 * @return True if it is an acknowledgement, false if it carries data
+	 */
+	static boolean isAck(ByteBuffer datagram) {
+		return datagram.remaining() > 1 && datagram.get(datagram.position()+1) == TYPE_ACK;
+	}
+
+	/**
+	 * Wraps a datagram so it is delivered reliably and keeps it until it is acknowledged
+	 * @param frame The datagram to send between its position and limit, it is not modified
+	 * @param nowNanos The current System.nanoTime()
+	 * @return The datagram to send
+	 */
+	synchronized byte[] send(ByteBuffer frame,long nowNanos) {
+		int sequence = nextSequence++;
+		int lowestUnacked = outstanding.isEmpty() ? sequence : outstanding.keySet().iterator().next();
+
+		ByteBuffer datagram = ByteBuffer.allocate(DATA_HEADER_BYTES+frame.remaining());
+		datagram.put(MAGIC);
+		datagram.put(TYPE_DATA);
+		datagram.putInt(sendSession);
+		datagram.putInt(sequence);
+		datagram.putInt(lowestUnacked);
+		datagram.put(frame.duplicate());
+
+		outstanding.put(sequence, new Outstanding(datagram.array(),nowNanos,nowNanos+rtoNanos));
+		return datagram.array();
+	}
+
+	/**
+	 * Collects the datagrams whose retransmission timeout has passed
+	 * @param nowNanos The current System.nanoTime()
+	 * @param resend Receives the datagrams to send again
+	 * @return The number of datagrams given up on after their last attempt
+	 */
+	synchronized int collectRetransmissions(long nowNanos,List<byte[]> resend) {
+		int givenUp = 0;
+		Iterator<Outstanding> it = outstanding.values().iterator();
+		while(it.hasNext()) {
+			Outstanding next = it.next();
+			if(nowNanos - next.deadlineNanos < 0) {
+				continue;
+			}
+			if(next.attempts >= maxAttempts) {
+				it.remove();
+				++givenUp;
+				continue;
+			}
+			++next.attempts;
+			next.deadlineNanos = nowNanos + Math.min(rtoNanos << (next.attempts-1), maxRtoNanos);
+			resend.add(next.datagram);
+		}
+		return givenUp;
+	}
+
+	/**
+	 * Removes the datagrams covered by an acknowledgement and updates the round trip estimate
+	 * @param ack A received acknowledgement
+	 * @param nowNanos The current System.nanoTime()
+	 * @throws IOException If the acknowledgement is corrupted
+	 */
+	synchronized void receiveAck(ByteBuffer ack,long nowNanos) throws IOException {
+		int session;
+		int ackCumulative;
+		long ackAhead;
+		try {
+			ack.position(ack.position()+2);
+			session = ack.getInt();
+			ackCumulative = ack.getInt();
+			ackAhead = ack.getLong();
+		}
+		catch(BufferUnderflowException e) {
+			throw new IOException("Acknowledgement is truncated.",e);
+		}
+		if(session != sendSession) {
+			return; //Meant for an earlier run of this program
+		}
+
+		Iterator<Map.Entry<Integer,Outstanding>> it = outstanding.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Integer,Outstanding> next = it.next();
+			int offset = next.getKey() - ackCumulative - 1;
+			if(offset < 0 || (offset < WINDOW && (ackAhead & (1L << offset)) != 0)) {
+				if(next.getValue().attempts == 1) {
+					sampleRtt(nowNanos - next.getValue().firstSentNanos);
+				}
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Jacobson/Karels round trip estimation
+	 */
+	private void sampleRtt(long rttNanos) {
+		if(srttNanos < 0) {
+			srttNanos = rttNanos;
+			rttvarNanos = rttNanos/2;
+		}
+		else {
+			rttvarNanos = (3*rttvarNanos + Math.abs(srttNanos - rttNanos))/4;
+			srttNanos = (7*srttNanos + rttNanos)/8;
+		}
+		rtoNanos = Math.max(minRtoNanos, Math.min(maxRtoNanos, srttNanos + 4*rttvarNanos));
+	}
+
+	/**
+	 * Records a received DATA datagram and positions the buffer at the frame it carries
+	 * @param datagram A received DATA datagram, on return its position is at the start of the wrapped frame
+	 * @return Whether the frame should be delivered
+	 * @throws IOException If the datagram is corrupted
+	 */
+	synchronized Receipt receiveData(ByteBuffer datagram) throws IOException {
+		int session;
+		int sequence;
+		int lowestUnacked;
+		try {
+			datagram.position(datagram.position()+2);
+			session = datagram.getInt();
+			sequence = datagram.getInt();
+			lowestUnacked = datagram.getInt();
+		}
+		catch(BufferUnderflowException e) {
+			throw new IOException("Reliable datagram is truncated.",e);
+		}
+
+		if(!hasReceived || session != receiveSession) {
+			hasReceived = true;
+			receiveSession = session;
+			cumulative = lowestUnacked-1;
+			receivedAhead = 0;
+		}
+
+		//The sender has given up on everything before its lowest unacknowledged sequence
+		int skipped = (lowestUnacked-1) - cumulative;
+		if(skipped > 0) {
+			receivedAhead = skipped >= WINDOW ? 0 : receivedAhead >>> skipped;
+			cumulative += skipped;
+			advance();
+		}
+
+		int offset = sequence - cumulative - 1;
+		if(offset < 0 || (offset < WINDOW && (receivedAhead & (1L << offset)) != 0)) {
+			return Receipt.DUPLICATE;
+		}
+		else if(offset >= WINDOW) {
+			return Receipt.BEYOND_WINDOW;
+		}
+		receivedAhead |= 1L << offset;
+		advance();
+		return Receipt.NEW;
+	}
+
+	private void advance() {
+		while((receivedAhead & 1) != 0) {
+			receivedAhead >>>= 1;
+			++cumulative;
+		}
+	}
+
+	/**
+	 * @return An acknowledgement of everything received so far
+	 */
+	synchronized ByteBuffer ack() {
+		ByteBuffer ack = ByteBuffer.allocate(ACK_BYTES);
+		ack.put(MAGIC);
+		ack.put(TYPE_ACK);
+		ack.putInt(receiveSession);
+		ack.putInt(cumulative);
+		ack.putLong(receivedAhead);
+		ack.flip();
+		return ack;
+	}
+
+	/**
+	 * @return The number of datagrams waiting to be acknowledged
+	 */
+	synchronized int getOutstanding() {
+		return outstanding.size();
+	}
+
+	/**
+	 * @return The current retransmission timeout in milliseconds
+	 */
+	synchronized double getRtoMills() {
+		return rtoNanos/1000000.0;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  A list of the requests active for an elevator in the "Master Sheet" that can look requests up by
+ *  the floor they are picked up or dropped off at without scanning the list.
+ *
+ * More details:
+ *  The floors a request is picked up and dropped off at never change, so they are indexed when the request is added. The requests at
+ *  a floor are kept in list order, so the states see them in the same order a scan of the list would. Nulls can be added (some tests
+ *  do) but are not indexed.
+ */
+class RequestList extends IndexedList<RequestData> {
+	private static final long serialVersionUID = 1L;
+
+	private final HashMap<Integer, ArrayList<RequestData>> byRequestFloor = new HashMap<Integer, ArrayList<RequestData>>();	// Pickup floor -> requests
+	private final HashMap<Integer, ArrayList<RequestData>> byTargetFloor = new HashMap<Integer, ArrayList<RequestData>>();	// Drop-off floor -> requests
+
+	RequestList() {
+		super();
+	}
+
+	RequestList(Collection<? extends RequestData> requests) {
+		super();
+		addAll(requests);
+	}
+
+	/*** The requests picked up at a floor, in list order. The returned list can't be changed ***/
+	List<RequestData> pickupsAt(int floor) {
+		return bucket(byRequestFloor, floor);
+	}
+
+	/*** The requests dropped off at a floor, in list order. The returned list can't be changed ***/
+	List<RequestData> dropOffsAt(int floor) {
+		return bucket(byTargetFloor, floor);
+	}
+
+	/*** The direction of the last request picked up at a floor, or null if nobody is picked up there ***/
+	Direction pickupDirectionAt(int floor) {
+		List<RequestData> pickups = pickupsAt(floor);
+		return pickups.isEmpty() ? null : pickups.get(pickups.size()-1).direction();
+	}
+
+	private static List<RequestData> bucket(HashMap<Integer, ArrayList<RequestData>> index, int floor) {
+		ArrayList<RequestData> requests = index.get(floor);
+		return requests == null ? Collections.emptyList() : Collections.unmodifiableList(requests);
+	}
+
+	@Override
+	protected void index(RequestData request) {
+		if (request == null) {
+			return;
+		}
+		byRequestFloor.computeIfAbsent(request.requestFloor(), floor -> new ArrayList<RequestData>()).add(request);
+		byTargetFloor.computeIfAbsent(request.targetFloor(), floor -> new ArrayList<RequestData>()).add(request);
+	}
+
+	@Override
+	protected void unindex(RequestData request) {
+		if (request == null) {
+			return;
+		}
+		removeFromBucket(byRequestFloor, request.requestFloor(), request);
+		removeFromBucket(byTargetFloor, request.targetFloor(), request);
+	}
+
+	private static void removeFromBucket(HashMap<Integer, ArrayList<RequestData>> index, int floor, RequestData request) {
+		ArrayList<RequestData> requests = index.get(floor);
+		if (requests != null) {
+			requests.remove(request);
+			if (requests.isEmpty()) { index.remove(floor); }
+		}
+	}
+
+	@Override
+	protected void clearIndex() {
+		byRequestFloor.clear();
+		byTargetFloor.clear();
+	}
+}
@@ -9,7 +9,10 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.logging.log4j.LogManager;
@@ -41,7 +44,8 @@ class Scheduler implements Runnable, DispatchConsumer {
 	/*** Variables ***/
 	private volatile SchedulerState state;	// For state machine
 	final static Logger LOG =LogManager.getFormatterLogger(Scheduler.class);
-	protected volatile StopWatch timer;
+	protected volatile SimulationStopWatch timer;
+	protected final SimulationClock clock;	// The time the scheduler's timers run on, RealTimeClock.SYSTEM unless run on a DiscreteEventSimulator
 	
 	/*** Variables used in UDP networking (With dispatcher) ***/
 	public static final String SCHEDULER_NAME = "Scheduler";
@@ -53,40 +57,54 @@ class Scheduler implements Runnable, DispatchConsumer {
 	protected volatile boolean tryingToStartAllSystems = false;	// trying to start communication between all systems
 	protected volatile boolean allSystemsStarted = false;	// has communication started between all systems yet
 	protected volatile boolean allScenariosReceivedFromFloor = false;	// When the floor has sent all the scenarios and is waiting to shutdown, this is true
+	protected volatile int scenarioRequests = CONFIG.MAX_PEOPLE;	// Requests in the scenario, all must be complete before shutting down
 	
 	
 	/*** Variables dealing with sending/receiving requests from floor and elevator systems, as well as the GUI (View)***/
 	protected volatile ArrayList<RequestData> signalsToSendToView;
 	protected volatile Queue<FloorSignal> signalsToSendToFloor;
 	protected volatile Queue<ElevatorSignal> signalsToSendToElevator;
-	protected volatile Queue<FloorRequest> floorRequestQueue;	// Incoming floor request end up here
-	protected volatile boolean isFloorRequestQueueAvailable;
-	protected volatile Queue<ElevatorSignal> elevatorSignalQueue;	// Incoming elevator signals end up here
-	protected volatile boolean isElevatorSignalQueueAvailable;
+	protected final ConcurrentLinkedQueue<FloorRequest> floorRequestQueue = new ConcurrentLinkedQueue<FloorRequest>();	// Incoming floor request end up here. Lock-free so dispatcher workers add while the states drain it.
+	protected final ConcurrentLinkedQueue<ElevatorSignal> elevatorSignalQueue = new ConcurrentLinkedQueue<ElevatorSignal>();	// Incoming elevator signals end up here. Lock-free so dispatcher workers add while the states drain it.
 	
 	/*** Scheduler "MASTER SHEET" Variables ***/
 	protected volatile int requestIDCounter;
 	protected volatile ArrayList<RequestData>                       requestsAwaitingElevatorAssignment;
-	protected volatile HashMap<Integer, ArrayList<RequestData>>     requestsActive;
+	protected volatile HashMap<Integer, RequestList>                requestsActive;
 	protected volatile ArrayList<RequestData>                       requestsComplete;
 	protected volatile HashMap<Integer, ElevatorData>               elevatorLatestData;
-	protected volatile HashMap<Integer, HashMap<Direction,Boolean>> floorButtonLamp;	// Changes when button pressed by passengers
-	protected volatile HashMap<Integer, HashMap<Direction,Boolean>> floorDirectionLamp;	// Changes on arrival/departure of elevator
+	protected volatile FloorLampState                               floorButtonLamp;	// Changes when button pressed by passengers
+	protected volatile FloorLampState                               floorDirectionLamp;	// Changes on arrival/departure of elevator
+	protected final ViewDeltaTracker viewDeltas = new ViewDeltaTracker();	// What the view/monitor was last sent of the "Master Sheet"
+	protected final ViewPublisher viewPublisher;	// Sends the view/monitor updates on its own thread, at most once per CONFIG.VIEW_FRAME_MILLS
+	protected final DispatchPolicy dispatchPolicy = CONFIG.DISPATCH_POLICY.policy();	// Picks the elevator for each request, selected when the scheduler starts
 	
 	/*** Variables used to measure performance of the Scheduler ***/
 	protected final boolean trackPerformance = false;	// Only set to true to see the scheduler state performance data.
 	protected volatile StopWatch performanceTimer;
 	protected volatile HashMap<String, ArrayList<Long>> performanceTracker;
 	
+	/*** Variables used to sleep the main loop until there is something to do ***/
+	private final ReentrantLock workLock = new ReentrantLock();
+	private final Condition workArrived = workLock.newCondition();
+	private boolean hasPendingWork = false;	// Set when a message arrives, guarded by workLock
+	private boolean runsOnClock = false;	// Set by start(), the main loop runs as steps scheduled on the clock instead of on a thread. Guarded by workLock
+	private SimulationClock.Scheduled nextStep = null;	// The next step when runsOnClock, guarded by workLock
+	protected static final long START_PING_NANOS = TimeUnit.SECONDS.toNanos(2);	// The LISTENING state pings the floor when its timer passes 1 whole second
+	
 
 	/*** Constructor 
 	 * @throws SocketException ***/
 	public Scheduler(final String floorSystemAddress, final int floorSystemPort, final String elevatorSystemAddress, final int elevatorSystemPort, final int schedulerListenPort) throws SocketException {
+		this(floorSystemAddress, floorSystemPort, elevatorSystemAddress, elevatorSystemPort, new Dispatcher(Destinations.SCHEDULER,schedulerListenPort), RealTimeClock.SYSTEM);
+	}
+	
+	/*** Constructor for a scheduler that sends and receives through the given dispatcher, with its timers on the given clock (See start()) ***/
+	Scheduler(final String floorSystemAddress, final int floorSystemPort, final String elevatorSystemAddress, final int elevatorSystemPort, final Dispatcher dispatcher, final SimulationClock clock) {
 		state = null;
-		timer = new StopWatch();
-		timer = StopWatch.create();
-		timer.reset();
-		dispatcher = new Dispatcher(Destinations.SCHEDULER,schedulerListenPort);
+		this.clock = clock;
+		timer = new SimulationStopWatch(clock);
+		this.dispatcher = dispatcher;
 		dispatcherThread = new Thread(dispatcher);
 		dispatcherThread.setName(name+" Dispatcher");
 		dispatcherThread.start();
@@ -97,9 +115,10 @@ class Scheduler implements Runnable, DispatchConsumer {
 			dispatcher.connectNewDestination(Destinations.ELEVATOR_SYSTEM, elevatorSystemAddress, elevatorSystemPort);
 			dispatcher.connectNewDestination(Destinations.FLOOR_SYSTEM, floorSystemAddress, floorSystemPort);
 			System.out.println(String.format("\n%s: IP Communication between all systems is complete. Moving on...\n", name));
-			dispatcher.subscribe(SchedulerTopics.SCENARIO_STARTED.toString(), this);
-			dispatcher.subscribe(SchedulerTopics.FLOOR_REQUEST.toString(), this);
-			dispatcher.subscribe(SchedulerTopics.ELEVATOR_SIGNAL.toString(), this);
+			dispatcher.subscribe(DispatchTopics.idOf(SchedulerTopics.SCENARIO_STARTED), this);
+			dispatcher.subscribe(DispatchTopics.idOf(SchedulerTopics.FLOOR_REQUEST), this);
+			dispatcher.subscribe(DispatchTopics.idOf(SchedulerTopics.ELEVATOR_SIGNAL), this);
+			dispatcher.subscribe(DispatchTopics.idOf(SchedulerTopics.MONITOR_SCHEDULER_UPDATE_REQUEST), this);
 		} catch (UnknownHostException e) {
 			// TODO Auto-generated catch block
 			LOG.error("Invalid Port.");
@@ -107,30 +126,17 @@ class Scheduler implements Runnable, DispatchConsumer {
 			System.exit(1);
 		}
 		objMap = new ObjectMapper();
+		viewPublisher = new ViewPublisher(name, viewDeltas, CONFIG.VIEW_FRAME_MILLS, () -> dispatcher.isDestinationRegistered(Destinations.MONITOR_SYSTEMS), this::sendViewDelta);
 		signalsToSendToView = new ArrayList<RequestData>();
 		signalsToSendToFloor = new ArrayDeque<FloorSignal>();
 		signalsToSendToElevator = new ArrayDeque<ElevatorSignal>();
-		floorRequestQueue = new ArrayDeque<FloorRequest>();
-		isFloorRequestQueueAvailable = true;
-		elevatorSignalQueue = new ArrayDeque<ElevatorSignal>();
-		isElevatorSignalQueueAvailable = true;
 		requestIDCounter = 0;
 		requestsAwaitingElevatorAssignment = new ArrayList<RequestData>();
-		requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		requestsActive = new HashMap<Integer, RequestList>();
 		requestsComplete = new ArrayList<RequestData>();
 		elevatorLatestData = new HashMap<Integer, ElevatorData>();
-		floorButtonLamp = new HashMap<Integer, HashMap<Direction, Boolean>>();
-		floorDirectionLamp = new HashMap<Integer, HashMap<Direction, Boolean>>();
-		for (int floorNumber = 1; floorNumber <= CONFIG.FLOORS; floorNumber++) {	// Initializing floor maps
-			HashMap<Direction, Boolean> tempMap1 = new HashMap<Direction, Boolean>();	// Used to initialize floor maps
-			HashMap<Direction, Boolean> tempMap2 = new HashMap<Direction, Boolean>();	// Used to initialize floor maps
-			for (Direction direction : Direction.values()) {
-				tempMap1.put(direction, false);
-				tempMap2.put(direction, false);
-			}
-			floorButtonLamp.put(floorNumber, tempMap1);
-			floorDirectionLamp.put(floorNumber, tempMap2);
-		}
+		floorButtonLamp = new FloorLampState(CONFIG.FLOORS);	// Every lamp starts off
+		floorDirectionLamp = new FloorLampState(CONFIG.FLOORS);
 		if (trackPerformance) {	// Performance tracking variables
 			performanceTimer = new StopWatch();
 			performanceTimer = StopWatch.create();
@@ -145,19 +151,135 @@ class Scheduler implements Runnable, DispatchConsumer {
 	@Override
 	public void run() {
 		
+		startRunning();
+		
+		// Main loop. A state that doesn't transition is waiting for something to happen, so sleep until a message or timer wakes it.
+		while(isRunning) {
+			SchedulerState previousState = state;
+			doAction();
+			if (isRunning && state == previousState) {
+				awaitWork(nanosUntilNextTimer());
+			}
+		}
+	}
+	
+	
+	
+	/*
+	 * Runs the main loop on the scheduler's clock instead of a thread of its own, so a DiscreteEventSimulator can run the scheduler in
+	 * virtual time. Each step runs the states like run() does until one is waiting for something, then schedules the next step for
+	 * when a message arrives (signalWork()) or a timer is due (nanosUntilNextTimer()).
+	 */
+	void start() {
+		startRunning();
+		workLock.lock();
+		try {
+			runsOnClock = true;
+		} finally {
+			workLock.unlock();
+		}
+		scheduleStep(0);
+	}
+	
+	
+	
+	/*** Enters the first state and marks the scheduler as running, for both run() and start() ***/
+	private void startRunning() {
 		System.out.println("Running Scheduler");
 		setState(new Listening());
 		if (trackPerformance) { performanceTrackerHandleEnterState(); }	// For the performance tracker (starting timer)
-		
-		// Main loop
 		isRunning = true;
+	}
+	
+	
+	
+	/*** One step of the main loop when running on the clock (See start()) ***/
+	private void step() {
+		workLock.lock();
+		try {
+			hasPendingWork = false;
+		} finally {
+			workLock.unlock();
+		}
 		while(isRunning) {
+			SchedulerState previousState = state;
 			doAction();
+			if (isRunning && state == previousState) {
+				workLock.lock();
+				try {
+					if (hasPendingWork) {	// Work arrived during the step, like awaitWork() returning immediately
+						hasPendingWork = false;
+						continue;
+					}
+				} finally {
+					workLock.unlock();
+				}
+				scheduleStep(nanosUntilNextTimer());
+				return;
+			}
+		}
+	}
+	
+	
+	
+	/*** Replaces the next step on the clock with one after the delay ***/
+	private void scheduleStep(long delayNanos) {
+		workLock.lock();
+		try {
+			if (nextStep != null) { nextStep.cancel(); }
+			nextStep = isRunning ? clock.schedule(this::step, delayNanos, TimeUnit.NANOSECONDS) : null;
+		} finally {
+			workLock.unlock();
 		}
 	}
 	
 	
 	
+	/*** Blocks the main loop until work is signalled, the timeout passes, or the scheduler stops. Returns immediately if work arrived since the last wait. ***/
+	protected void awaitWork(long timeoutNanos) {
+		workLock.lock();
+		try {
+			while (!hasPendingWork && isRunning && timeoutNanos > 0) {
+				timeoutNanos = workArrived.awaitNanos(timeoutNanos);
+			}
+			hasPendingWork = false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			workLock.unlock();
+		}
+	}
+	
+	
+	
+	/*** Wakes the main loop because a message arrived or something changed that a state should look at ***/
+	protected void signalWork() {
+		boolean step;
+		workLock.lock();
+		try {
+			hasPendingWork = true;
+			workArrived.signal();
+			step = runsOnClock;
+		} finally {
+			workLock.unlock();
+		}
+		if (step) { scheduleStep(0); }
+	}
+	
+	
+	
+	/*** How long the main loop can sleep before a timer in the LISTENING state or the next view/monitor update is due (Capped at CONFIG.SCHEDULER_IDLE_WAKEUP_MILLS in case a change is never signalled) ***/
+	protected long nanosUntilNextTimer() {
+		long timeout = TimeUnit.MILLISECONDS.toNanos(CONFIG.SCHEDULER_IDLE_WAKEUP_MILLS);
+		if (tryingToStartAllSystems && !allScenariosReceivedFromFloor) {
+			timeout = timer.isStarted() ? Math.min(timeout, START_PING_NANOS - timer.getNanoTime()) : 0;	// Not started means a ping was just sent and LISTENING restarts the timer
+		}
+		timeout = Math.min(timeout, viewPublisher.nanosUntilFrame(clock.nanoTime()));
+		return timeout;
+	}
+	
+	
+	
 	/******************************************************************/
 	/*********************** STATE MACHINE CODE ***********************/
 	/******************************************************************/
@@ -364,8 +486,8 @@ class Scheduler implements Runnable, DispatchConsumer {
 		}
 	}
 	
-	/*** Sends a ViewData message to the appropriate monitor (to whoever is subscribed to the topic MonitorTopics.SCHEDULER_UPDATE) ***/
-	protected void sendViewMasterSheetData(ViewData data) {
+	/*** Sends a ViewDelta message to the appropriate monitor (to whoever is subscribed to the topic MonitorTopics.SCHEDULER_UPDATE) ***/
+	protected void sendViewDelta(ViewDelta data) {
 		try {
 			dispatcher.sendData(Destinations.MONITOR_SYSTEMS, MonitorTopics.SCHEDULER_UPDATE.toString(), data);
 		} catch (UnregisteredDispatcherDestination e) {
@@ -378,7 +500,7 @@ class Scheduler implements Runnable, DispatchConsumer {
 	/*** Sends a FloorSignal message to the appropriate floor (to whoever is subscribed to the topic FloorTopics.FLOOR_SIGNAL_<number>) ***/
 	protected void sendFloorSignal(FloorSignal signal) {
 		try {
-			dispatcher.sendData(Destinations.FLOOR_SYSTEM, String.format("%s_%d",FloorTopics.FLOOR_SIGNAL.toString(),signal.floor()), signal);
+			dispatcher.sendData(Destinations.FLOOR_SYSTEM, DispatchTopics.idOf(FloorTopics.FLOOR_SIGNAL,signal.floor()), signal);
 //			dispatcher.sendData(Destinations.MONITOR_SYSTEMS,MonitorTopics.FLOOR_SIGNAL_UPDATE.toString(), signal);
 		} catch (UnregisteredDispatcherDestination e) {
 			LOG.error("%s: Unable to dispatch request to destination %s, endpoint is not registered with dispatcher.Request skipped.",name,Destinations.SCHEDULER);
@@ -387,10 +509,15 @@ class Scheduler implements Runnable, DispatchConsumer {
 		}
 	}
 	
+	/*** Sends any messages the dispatcher is holding for batching, so each destination gets the messages of a pass in one packet ***/
+	protected void flushSentMessages() {
+		dispatcher.flush();
+	}
+	
 	/*** Sends an ElevatorSignal message to the appropriate elevator (to whoever is subscribed to the topic ElevatorTopics.ELEVATOR_SIGNAL_<number>) ***/
 	protected void sendElevatorSignal(ElevatorSignal signal) {
 		try {
-			dispatcher.sendData(Destinations.ELEVATOR_SYSTEM, String.format("%s_%d",ElevatorTopics.ELEVATOR_SIGNAL.toString(),signal.id()), signal);
+			dispatcher.sendData(Destinations.ELEVATOR_SYSTEM, DispatchTopics.idOf(ElevatorTopics.ELEVATOR_SIGNAL,signal.id()), signal);
 		} catch (UnregisteredDispatcherDestination e) {
 			LOG.error("%s: Unable to dispatch request to destination %s, endpoint is not registered with dispatcher.Request skipped.",name,Destinations.SCHEDULER);
 			e.printStackTrace();
@@ -398,38 +525,16 @@ class Scheduler implements Runnable, DispatchConsumer {
 		}
 	}
 	
-	/*** Receives a FloorRequest message from a floor and adds it to the appropriate queue ***/
-	public synchronized void receiveFloorRequest(FloorRequest request) {
-		// TODO Auto-generated method stub
-
-		while(!isFloorRequestQueueAvailable) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-		isFloorRequestQueueAvailable = false;
+	/*** Receives a FloorRequest message from a floor and adds it to the appropriate queue. Safe to call from any number of threads at once. ***/
+	public void receiveFloorRequest(FloorRequest request) {
 		floorRequestQueue.add(request);
-		isFloorRequestQueueAvailable = true;
-		notifyAll();
+		signalWork();
 	}
 	
-	/*** Receives a ElevatorSignal message from an elevator and adds it to the appropriate queue ***/
-	public synchronized void receiveElevatorSignal(ElevatorSignal signal) {
-		// TODO Auto-generated method stub
-
-		while(!isElevatorSignalQueueAvailable) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-		isElevatorSignalQueueAvailable = false;
+	/*** Receives a ElevatorSignal message from an elevator and adds it to the appropriate queue. Safe to call from any number of threads at once. ***/
+	public void receiveElevatorSignal(ElevatorSignal signal) {
 		elevatorSignalQueue.add(signal);
-		isElevatorSignalQueueAvailable = true;
-		notifyAll();
+		signalWork();
 	}
 
 	
@@ -441,44 +546,67 @@ class Scheduler implements Runnable, DispatchConsumer {
 	 *                      all requests have been service, the scheduler is free to shutdown all the systems.
 	 *  - FLOOR_REQUEST Is when the scheduler receives a floor request from a given FloorSubsystem.
 	 *  - ELEVATOR_SIGNAL Is when the scheduler receives a elevator "State" message from a givem ElevatorSubsystem.
+	 *  - MONITOR_SCHEDULER_UPDATE_REQUEST Is when a monitor has missed an update (or just connected) and needs the entire "Master Sheet".
 	 */
 	@Override
-	public synchronized void receiveDispatch(String topic, String data) {
-		// TODO Auto-generated method stub
-		LOG.info("%s receives topic %s with %s JSON data.", name,topic,data);
+	public void receiveDispatch(String topic, String data) {
+		receiveDispatch(new DispatcherMessage(topic,data));
+	}
+	
+	/*** Receives a message with its data already decoded when a binary codec was used.
+	 *   Not synchronized so messages are parsed in parallel on the dispatcher's workers, only the rare start/complete topics take the scheduler's lock. ***/
+	@Override
+	public void receiveDispatch(DispatcherMessage msg) {
+		String topic = msg.topic();
+		LOG.info("%s receives topic %s with %s data.", name,topic,msg.payload() != null ? msg.payload() : msg.data());
 		
 		try {
-			SchedulerTopics convTopic = SchedulerTopics.valueOf(topic);
+			SchedulerTopics convTopic = DispatchTopics.enumOf(msg.topicId(), SchedulerTopics.class);
+			if(convTopic == null) {
+				LOG.warn("%s received an unrecognized topic %s. Ignored.",name,topic);
+				return;
+			}
 			switch(convTopic) {
 				case SCENARIO_STARTED:
-					if (!allSystemsStarted) {	// So if any additional messages come in while starting, we only handle it once (don't reset variables)
-						dispatcher.subscribe(SchedulerTopics.SCENARIO_COMPLETE.toString(), this);
-						dispatcher.unSubscribe(SchedulerTopics.SCENARIO_STARTED.toString(), this);
-						allSystemsStarted = true;
-						tryingToStartAllSystems = false;
-						System.out.println("  Scenarios started. All systems should be up and running.");
+					synchronized (this) {
+						if (!allSystemsStarted) {	// So if any additional messages come in while starting, we only handle it once (don't reset variables)
+							dispatcher.subscribe(DispatchTopics.idOf(SchedulerTopics.SCENARIO_COMPLETE), this);
+							dispatcher.unSubscribe(DispatchTopics.idOf(SchedulerTopics.SCENARIO_STARTED), this);
+							allSystemsStarted = true;
+							tryingToStartAllSystems = false;
+							System.out.println("  Scenarios started. All systems should be up and running.");
+						}
 					}
+					signalWork();
 					break;
 					
 				case FLOOR_REQUEST:
-					RawFloorRequest rawRequest = objMap.readValue(data, RawFloorRequest.class);
+					RawFloorRequest rawRequest = msg.payload(RawFloorRequest.class, objMap);
 					FloorRequest request = new FloorRequest(rawRequest.reqestFloor(), rawRequest.targetFloor(), rawRequest.direction(), new ElevatorFault(rawRequest.fault()));
 					receiveFloorRequest(request);
 					break;
 				
 				case ELEVATOR_SIGNAL:
-					ElevatorSignal signal = objMap.readValue(data, ElevatorSignal.class);
+					ElevatorSignal signal = msg.payload(ElevatorSignal.class, objMap);
 					receiveElevatorSignal(signal);
 					break;
 				
 				case SCENARIO_COMPLETE:
 					LOG.info("Received SCENARIO_COMPLETE. Shutting down all systems once all requests are complete...");
-					allScenariosReceivedFromFloor = true;
-					dispatcher.unSubscribe(SchedulerTopics.SCENARIO_COMPLETE.toString(), this);
+					synchronized (this) {
+						allScenariosReceivedFromFloor = true;
+						dispatcher.unSubscribe(DispatchTopics.idOf(SchedulerTopics.SCENARIO_COMPLETE), this);
+					}
+					signalWork();
+					break;
+					
+				case MONITOR_SCHEDULER_UPDATE_REQUEST:
+					viewDeltas.requestKeyframe();	// Sent in the next frame by the UPDATE_VIEW state
+					signalWork();
 					break;
 			}
 		} catch (JsonMappingException e) {
-			LOG.error("[%s]: Unable to convert data payload1."+data);
+			LOG.error("[%s]: Unable to convert data payload1."+msg.data());
 		} catch (JsonProcessingException e) {
 			LOG.error("[%s]: Unable to convert data payload2.+data");
 			e.printStackTrace();
@@ -501,9 +629,11 @@ class Scheduler implements Runnable, DispatchConsumer {
 //		if (!timer.isStarted()) { timer.reset(); }
 //		while (timer.getTime(TimeUnit.SECONDS) <= 5) {}	// Wait some seconds to make sure the dispatcher isn't shut down before sending the shutdown messages.
 //		timer.stop();
+		viewPublisher.shutdown();
 		dispatcher.shutdown();
 		while(dispatcher.isRunning()) {}
 		isRunning = false;
+		signalWork();	// In case shutdown was called from another thread while the main loop sleeps
 		LOG.info("Shutting down ALL systems...");
 		if (trackPerformance) { performanceTrackerPrintDataInMilliSeconds(); }	// For performance tracker
 	}
@@ -532,9 +662,8 @@ class Scheduler implements Runnable, DispatchConsumer {
 	 * Sets the direction floor lamp "Master Sheet" variable to either on or off.
 	 */
 	protected void setFloorButtonLamp(int floorNumber, Direction direction, boolean state) {
-		HashMap<Direction, Boolean> buttonLamp = floorButtonLamp.get(floorNumber);
-		buttonLamp.put(direction, state);	// FloorSignals.BTN_LAMP_ON or FloorSignals.BTN_LAMP_OFF
-		floorButtonLamp.put(floorNumber, buttonLamp);
+		if (direction == null) { return; }	// A request without a direction has no lamp
+		floorButtonLamp.set(floorNumber, direction, state);	// FloorSignals.BTN_LAMP_ON or FloorSignals.BTN_LAMP_OFF
 	}
 	
 	
@@ -543,9 +672,8 @@ class Scheduler implements Runnable, DispatchConsumer {
 	 * Sets the direction floor lamp "Master Sheet" variable to either on or off.
 	 */
 	protected void setFloorDirectionLamp(int floorNumber, Direction direction, boolean state) {
-		HashMap<Direction, Boolean> directionLamp = floorDirectionLamp.get(floorNumber);
-		directionLamp.put(direction, state);	// FloorSignals.DIR_LAMP_ON or FloorSignals.DIR_LAMP_OFF
-		floorDirectionLamp.put(floorNumber, directionLamp);
+		if (direction == null) { return; }	// A request without a direction has no lamp
+		floorDirectionLamp.set(floorNumber, direction, state);	// FloorSignals.DIR_LAMP_ON or FloorSignals.DIR_LAMP_OFF
 	}
 	
 	
@@ -585,9 +713,7 @@ class Scheduler implements Runnable, DispatchConsumer {
 				ElevatorData elevator = elevatorLatestData.get(elevatorID);
 				if (elevator.state() == ElevatorStates.IDLE) {
 					ElevatorSignal tempSignal = new ElevatorSignal(elevator.state(), elevator.id(), elevator.location(), elevator.newCarBttns(), elevator.carBttns(), elevator.faultType());
-					synchronized (elevatorSignalQueue) {
-						if (!elevatorSignalQueue.contains(tempSignal)) { elevatorSignalQueue.add(tempSignal); }
-					}
+					if (!elevatorSignalQueue.contains(tempSignal)) { elevatorSignalQueue.add(tempSignal); }
 				}
 			}
 			return true;
@@ -6,6 +6,7 @@ package C2G8_Project;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -113,22 +114,19 @@ class Listening implements SchedulerState {
 //		context.LOG.info("STATE = '%s'", toString());
 		
 		// Timer created to track one iteration's worth of work. Because this state is often idling, this is the only way to test one iterations worth of work.
-		StopWatch timer = new StopWatch();
-		timer = StopWatch.create();
-		timer.reset();
-		timer.start();
+		// Only created when tracking performance since this runs every time the scheduler wakes up.
+		StopWatch timer = null;
+		if (context.trackPerformance) { timer = StopWatch.createStarted(); }
 		
 		SchedulerState state = null;
 		
 		// Listen for a message (Continuously)
 //		while (context.floorRequestQueue.isEmpty() && context.elevatorSignalQueue.isEmpty()) {}
 //		if (!context.floorRequestQueue.isEmpty() || !context.elevatorSignalQueue.isEmpty()) { state = new ProcessMessage(); }
-		synchronized(context.elevatorSignalQueue) {
-			if (!context.elevatorSignalQueue.isEmpty()) { state = new ProcessMessage(); }
-		}
-		synchronized(context.floorRequestQueue) {
-			if (!context.floorRequestQueue.isEmpty()) { state = new ProcessMessage(); }
-		}
+		if (!context.elevatorSignalQueue.isEmpty()) { state = new ProcessMessage(); }
+		if (!context.floorRequestQueue.isEmpty()) { state = new ProcessMessage(); }
+		// Changes held back for the view/monitor's next frame (or a keyframe it asked for) are ready to send, which UPDATE_VIEW does
+		if (state == null && context.viewPublisher.isFrameDue(context.clock.nanoTime())) { state = new UpdateView(); }
 		
 //		System.out.println(context.requestsActive.toString()); 
 //		System.out.println(context.requestsAwaitingElevatorAssignment.toString());
@@ -136,9 +134,7 @@ class Listening implements SchedulerState {
 		for (int i = 1; i < context.requestsActive.size()+1; i++) {
 			if (context.requestsActive.containsKey(i) && context.requestsActive.get(i).isEmpty() && !context.requestsAwaitingElevatorAssignment.isEmpty() && context.elevatorLatestData.get(i).state() != ElevatorStates.DEAD) {
 				ElevatorSignal tempSignal = new ElevatorSignal(ElevatorStates.IDLE, context.elevatorLatestData.get(i).id(), context.elevatorLatestData.get(i).location(), context.elevatorLatestData.get(i).newCarBttns(), context.elevatorLatestData.get(i).carBttns(), context.elevatorLatestData.get(i).faultType());
-				synchronized(context.elevatorSignalQueue) {
-					if (!context.elevatorSignalQueue.contains(tempSignal)) { context.elevatorSignalQueue.add(tempSignal); }
-				}
+				if (!context.elevatorSignalQueue.contains(tempSignal)) { context.elevatorSignalQueue.add(tempSignal); }
 				state = new ProcessMessage();
 			}
 		}
@@ -159,7 +155,7 @@ class Listening implements SchedulerState {
 		}
 		
 		// Listening for changes in the systems that indicate it's time to shutdown all of the system's communication
-		if (context.allScenariosReceivedFromFloor && context.requestsAwaitingElevatorAssignment.isEmpty() && context.requestsComplete.size() == CONFIG.MAX_PEOPLE) {
+		if (context.allScenariosReceivedFromFloor && context.requestsAwaitingElevatorAssignment.isEmpty() && context.requestsComplete.size() == context.scenarioRequests) {
 			boolean isNotEmpty = false;
 			for (ArrayList<RequestData> requestDataList : context.requestsActive.values()) {
 				if (!requestDataList.isEmpty()) { isNotEmpty = true; }
@@ -172,8 +168,10 @@ class Listening implements SchedulerState {
 		}
 		
 		// Stop the timer and track the timer IFF we are about to transition states.
-		timer.stop();
-		if (state != null && context.trackPerformance) { context.performanceTrackerHandleExitState("LISTENING_ONE_ITERATION_WITH_WORK", timer.getNanoTime()); }
+		if (timer != null) {
+			timer.stop();
+			if (state != null) { context.performanceTrackerHandleExitState("LISTENING_ONE_ITERATION_WITH_WORK", timer.getNanoTime()); }
+		}
 		
 		return state;	// Don't change states.
 		
@@ -206,17 +204,13 @@ class ProcessMessage implements SchedulerState {
 //		context.LOG.info("STATE = '%s'", toString());
 		
 		// If a floor message was received, transition to the appropriate state
-		synchronized(context.floorRequestQueue) {
-			if (!context.floorRequestQueue.isEmpty()) {
-				return new PrepareFloorMessage();
-			}
+		if (!context.floorRequestQueue.isEmpty()) {
+			return new PrepareFloorMessage();
 		}
 		
 		// If an elevator message was received, transition to the appropriate state
-		synchronized(context.elevatorSignalQueue) {
-			if (!context.elevatorSignalQueue.isEmpty()) {
-				return new PrepareElevatorStateMessage();
-			}
+		if (!context.elevatorSignalQueue.isEmpty()) {
+			return new PrepareElevatorStateMessage();
 		}
 		
 		// In the off chance that something happened and both queues are empty, just go back to LISTENING
@@ -247,17 +241,16 @@ class PrepareFloorMessage implements SchedulerState {
 		
 		// Only handle the request if the queue isn't empty (We know it shouldn't be empty if the code got to this state, but just in case)
 		RequestData request = null;
-		synchronized(context.floorRequestQueue) {
-			if (!context.floorRequestQueue.isEmpty()) {
-				request = new RequestData(context.floorRequestQueue.remove(), ++context.requestIDCounter);
-			}
+		FloorRequest received = context.floorRequestQueue.poll();
+		if (received != null) {
+			request = new RequestData(received, ++context.requestIDCounter);
 		}
 		
 		if (request != null) {
 			boolean requestHandled = false;
 			
 			// Determine which elevator is best suited for the request, if any 
-			int selectedElevatorID = SchedulingAlgorithm.assignSingleRequestToAnElevator(request, context.requestsActive, context.elevatorLatestData);
+			int selectedElevatorID = context.dispatchPolicy.assign(request, context.requestsActive, context.elevatorLatestData);
 			
 			// If an elevator was found, add the request to this elevator's active list
 			if (selectedElevatorID != -1) {
@@ -285,9 +278,7 @@ class PrepareFloorMessage implements SchedulerState {
 			// If the request hasn't been handled properly, then re-add it to the original queue.
 			if (!requestHandled) { 
 				context.LOG.warn("STATE = '%s'. Floor request not handled. Re-adding to 'received' queue. REQUEST = %s", toString(), request.request().toString()); 
-				synchronized(context.floorRequestQueue) {
-					context.floorRequestQueue.add(request.request());
-				}
+				context.floorRequestQueue.add(request.request());
 			
 			// Otherwise, create a Floor Signal message to turn on the appropriate "Button Lamp"
 			} else { 
@@ -342,12 +333,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 //		context.LOG.info("STATE = '%s'", toString());
 		
 		// Only handle the request if the queue isn't empty (We know it shouldn't be empty if the code got to this state, but just in case)
-		ElevatorSignal signal = null;
-		synchronized(context.elevatorSignalQueue) {
-			if (!context.elevatorSignalQueue.isEmpty()) {
-				signal = context.elevatorSignalQueue.remove();
-			}
-		}
+		ElevatorSignal signal = context.elevatorSignalQueue.poll();
 		
 		if (signal != null) {
 			// If the scheduler has never seen this elevator before, check if the signal is VALID (1 <= id <= CONFIG.ELEVATORS; State == "START")...
@@ -357,7 +343,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 				if ( (1 <= signal.id() && signal.id() <= CONFIG.ELEVATORS) && signal.state() == ElevatorStates.START ) {
 					ElevatorSignal startSignal = new ElevatorSignal(ElevatorStates.IDLE, signal.id(), signal.location(), signal.newCarBttns(), signal.carBttns(), signal.faultType());
 					context.elevatorLatestData.put(startSignal.id(), new ElevatorData(startSignal));
-					context.requestsActive.put(startSignal.id(), new ArrayList<RequestData>());
+					context.requestsActive.put(startSignal.id(), new RequestList());
 					context.signalsToSendToElevator.add(startSignal);
 					return new SendMessage();
 					
@@ -376,7 +362,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 				ArrayList<Integer> newCarBttns = signal.newCarBttns();
 				Set<Integer> carBttns = signal.carBttns();
 				ScenarioFaults fault = null;
-				ArrayList<Integer> targetLocations = elevatorLatestData.targetLocations();
+				StopList targetLocations = elevatorLatestData.targetLocations();
 				
 				// ***********************************************************************************************************************************************************
 				// NOTE: After the algorithm is done, revisit this switch statement and see if the targetFloor is at index 0 (it should be) instead of this min/max stuff.
@@ -406,7 +392,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 						// If the elevator signal is VALID: change the elevator state to IDLE, and add a spot in requestsActive "MASTER SHEET" list if it doesn't already exist for this elevator
 						if ((1 <= signal.id() && signal.id() <= CONFIG.ELEVATORS)) {
 							state = ElevatorStates.IDLE;
-							if (!context.requestsActive.containsKey(signal.id())) { context.requestsActive.put(signal.id(), new ArrayList<RequestData>()); }
+							if (!context.requestsActive.containsKey(signal.id())) { context.requestsActive.put(signal.id(), new RequestList()); }
 						}
 						break;
 				
@@ -418,32 +404,35 @@ class PrepareElevatorStateMessage implements SchedulerState {
 						if (context.requestsActive.get(signal.id()).isEmpty() && elevatorLatestData.targetLocations().isEmpty()) {
 							// Run Algorithm to see if a job is available, otherwise go to LISTENING
 							if (!context.requestsAwaitingElevatorAssignment.isEmpty()) {
-								ArrayList<Integer> toBeRemoved = new ArrayList<Integer>();
+								HashSet<RequestData> toBeRemoved = new HashSet<RequestData>();
 								
-								// Check ALL requests in Awaiting Assignment list
-								for (int i = 0; i < context.requestsAwaitingElevatorAssignment.size() ; i++) {
-									RequestData request = context.requestsAwaitingElevatorAssignment.get(i);
-									boolean requestHandled = false;
+								// Match ALL requests in Awaiting Assignment list to the elevators together
+								if (CONFIG.SCHEDULER_BATCH_ASSIGNMENT) {
+									toBeRemoved.addAll(BatchAssignment.assign(context.requestsAwaitingElevatorAssignment, context.requestsActive, context.elevatorLatestData, context.dispatchPolicy,
+											context.clock, TimeUnit.MICROSECONDS.toNanos(CONFIG.SCHEDULER_BATCH_BUDGET_MICROS), context::assignRequestToAnActiveElevatorAndNotify));
+								} else {
+									// Otherwise check ALL requests in Awaiting Assignment list one at a time, oldest first
+									for (int i = 0; i < context.requestsAwaitingElevatorAssignment.size() ; i++) {
+										RequestData request = context.requestsAwaitingElevatorAssignment.get(i);
+										boolean requestHandled = false;
 									
-									// Determine which elevator is best suited for the request, if any 
-									int selectedElevatorID = SchedulingAlgorithm.assignSingleRequestToAnElevator(request, context.requestsActive, context.elevatorLatestData);
+										// Determine which elevator is best suited for the request, if any 
+										int selectedElevatorID = context.dispatchPolicy.assign(request, context.requestsActive, context.elevatorLatestData);
 									
-									// If an elevator was found, add the request to this elevator's active list
-									if (selectedElevatorID != -1) {
-										requestHandled = context.assignRequestToAnActiveElevatorAndNotify(request, selectedElevatorID);
-//										System.out.println("\n\n\n  ====================================== " + selectedElevatorID+" in PrepareElevatorStateMessage() IDLE Case\n\n");
-									}
+										// If an elevator was found, add the request to this elevator's active list
+										if (selectedElevatorID != -1) {
+											requestHandled = context.assignRequestToAnActiveElevatorAndNotify(request, selectedElevatorID);
+//											System.out.println("\n\n\n  ====================================== " + selectedElevatorID+" in PrepareElevatorStateMessage() IDLE Case\n\n");
+										}
 									
-									// If the request was handled properly, then get ready to remove this element from the list
-									if (requestHandled) { toBeRemoved.add(i); }
+										// If the request was handled properly, then get ready to remove this element from the list
+										if (requestHandled) { toBeRemoved.add(request); }
+									}
 								}
 //								System.out.println("       toBeRemoved size="+toBeRemoved.size()+", "+toBeRemoved.toString());
 								
-								// Remove any handled requests from the list
-								for (int i = toBeRemoved.size()-1; i >= 0 ; i--) {
-									context.requestsAwaitingElevatorAssignment.remove( toBeRemoved.get(i).intValue() );
-//									System.out.println("   Removing..."+i+", "+toBeRemoved.get(i)+", "+context.requestsAwaitingElevatorAssignment.remove( toBeRemoved.get(i).intValue() ));
-								}
+								// Remove any handled requests from the list (in one pass, instead of shifting the list once for each request)
+								context.requestsAwaitingElevatorAssignment.removeIf(toBeRemoved::contains);
 							}
 //							// If no job was found from the algorithm, return to LISTENING (no response required) (currently handled below with requestsActive being empty)
 //							} else { state = null; }	// Returns to LISTENING by not packaging a message and going to SEND_MESSAGE.
@@ -496,9 +485,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 									context.setFloorDirectionLamp(requestFloor, direction, true);
 								}
 								// Remove this floor from targetLocations, regardless of whether its a pickup or drop-off location (NOTE: This is for the case where IDLE goes straight to OPEN_DOOR. the targetLocation needs to be removed here in that instance)
-								while (targetLocations.contains(signal.location())) {	// while instead of if just in case of duplicates.
-									targetLocations.remove(targetLocations.indexOf(signal.location()));
-								}
+								targetLocations.removeFloor(signal.location());	// Removes duplicates too
 							}
 							
 						// If the algorithm didn't find a job, return to LISTENING (no response required)
@@ -688,12 +675,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 							state = ElevatorStates.OPEN_DOORS;
 							
 							// Create a Floor Message turning off the button lamp and turning on the directional lamp
-							Direction direction = null;
-							for (int i = 0; i < context.requestsActive.get(signal.id()).size(); i++) {
-								if (context.requestsActive.get(signal.id()).get(i).requestFloor() == signal.location()) {
-									direction = context.requestsActive.get(signal.id()).get(i).direction();
-								}
-							}
+							Direction direction = context.requestsActive.get(signal.id()).pickupDirectionAt(signal.location());
 							if (direction != null) {
 								context.signalsToSendToFloor.add(new FloorSignal(FloorSignals.BTN_LAMP_OFF, signal.location(), direction));
 								context.signalsToSendToFloor.add(new FloorSignal(FloorSignals.DIR_LAMP_ON, signal.location(), direction));
@@ -708,10 +690,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 							}
 							
 							// Remove this floor from targetLocations, regardless of whether its a pickup or drop-off location
-							while (targetLocations.contains(signal.location())) {	// while instead of if just in case of duplicates.
-								targetLocations.remove(targetLocations.indexOf(signal.location()));
-								
-							}
+							targetLocations.removeFloor(signal.location());	// Removes duplicates too
 							
 						} else {
 							context.LOG.warn("STATE = '%s'. Elevator sent 'STOP' state, but has no target destinations. Continuing to next state, 'OPEN_DOOR'. SIGNAL = %s", toString(), signal);
@@ -727,9 +706,10 @@ class PrepareElevatorStateMessage implements SchedulerState {
 						// // If the elevator has an active request (target destination was removed in STOP case and could be empty), send the newCarBttns (that we don't know about) to the elevator
 						if (!context.requestsActive.get(signal.id()).isEmpty()) {
 							// If an active request's request location (source/pickup floor) is on the current floor, send the "unknown-to-scheduler" new target floors (destination/drop-off floors)
-							for (int i = context.requestsActive.get(signal.id()).size()-1; i >= 0; i--) {
-								if (context.requestsActive.get(signal.id()).get(i).requestFloor() == signal.location() && !context.requestsActive.get(signal.id()).get(i).pickedUpPassenger()) {
-									newCarBttns.add(context.requestsActive.get(signal.id()).get(i).targetFloor());
+							List<RequestData> pickups = context.requestsActive.get(signal.id()).pickupsAt(signal.location());
+							for (int i = pickups.size()-1; i >= 0; i--) {
+								if (!pickups.get(i).pickedUpPassenger()) {
+									newCarBttns.add(pickups.get(i).targetFloor());
 								}
 							}
 							
@@ -750,12 +730,7 @@ class PrepareElevatorStateMessage implements SchedulerState {
 						if (!context.requestsActive.get(signal.id()).isEmpty()) {
 							
 							// Create a Floor Message turning off the direction. The button lamp should be off but sending one again doesn't hurt.
-							Direction direction = null;
-							for (int i = 0; i < context.requestsActive.get(signal.id()).size(); i++) {
-								if (context.requestsActive.get(signal.id()).get(i).requestFloor() == signal.location()) {
-									direction = context.requestsActive.get(signal.id()).get(i).direction();
-								}
-							}
+							Direction direction = context.requestsActive.get(signal.id()).pickupDirectionAt(signal.location());
 							if (direction != null) {
 								context.signalsToSendToFloor.add(new FloorSignal(FloorSignals.BTN_LAMP_OFF, signal.location(), direction));
 								context.signalsToSendToFloor.add(new FloorSignal(FloorSignals.DIR_LAMP_OFF, signal.location(), direction));
@@ -764,29 +739,32 @@ class PrepareElevatorStateMessage implements SchedulerState {
 								context.setFloorDirectionLamp(signal.location(), direction, false);
 							}
 							
-							// Check every active request and update it accordingly
-							for (int i = context.requestsActive.get(signal.id()).size()-1; i >= 0; i--) {
-								
-								// If an active request's request location (source/pickup floor) is on the current floor and it was likely there before door closed, mark the passenger as picked up (typically newCarBttns works, unless target is already in carBttns. Then we check if pickedUpPassenger is false)
-								if (context.requestsActive.get(signal.id()).get(i).requestFloor() == signal.location() && (signal.newCarBttns().contains(context.requestsActive.get(signal.id()).get(i).targetFloor()) || !context.requestsActive.get(signal.id()).get(i).pickedUpPassenger()) ) {
-									context.requestsActive.get(signal.id()).get(i).setPickedUpPassenger(true);
-									context.signalsToSendToView.add( context.requestsActive.get(signal.id()).get(i) );	// Sends change in request/passenger data to View/Monitor
-//									carBttns.add(context.requestsActive.get(signal.id()).get(i).targetFloor());
-//									targetLocations.add(context.requestsActive.get(signal.id()).get(i).targetFloor());
-									System.out.println("     ~~~~~~PICKED UP PASSENGER~~~~~~ "+context.requestsActive.get(signal.id()).get(i).toString());
+							// Check every active request picked up or dropped off on the current floor and update it accordingly
+							RequestList activeRequests = context.requestsActive.get(signal.id());
+							
+							// If an active request's request location (source/pickup floor) is on the current floor and it was likely there before door closed, mark the passenger as picked up (typically newCarBttns works, unless target is already in carBttns. Then we check if pickedUpPassenger is false)
+							List<RequestData> pickups = activeRequests.pickupsAt(signal.location());
+							for (int i = pickups.size()-1; i >= 0; i--) {
+								RequestData request = pickups.get(i);
+								if (signal.newCarBttns().contains(request.targetFloor()) || !request.pickedUpPassenger()) {
+									request.setPickedUpPassenger(true);
+									context.signalsToSendToView.add(request);	// Sends change in request/passenger data to View/Monitor
+									System.out.println("     ~~~~~~PICKED UP PASSENGER~~~~~~ "+request.toString());
 								}
-								
-								// If an active request's target location (destination/drop-off floor) is on the current floor and they've been picked up, mark the request as completed
-								if (context.requestsActive.get(signal.id()).get(i).targetFloor() == signal.location() && context.requestsActive.get(signal.id()).get(i).pickedUpPassenger()) {
-									RequestData request = context.requestsActive.get(signal.id()).remove(i);
+							}
+							
+							// If an active request's target location (destination/drop-off floor) is on the current floor and they've been picked up, mark the request as completed
+							List<RequestData> dropOffs = new ArrayList<RequestData>(activeRequests.dropOffsAt(signal.location()));	// Copied since completed requests are removed from the index
+							for (int i = dropOffs.size()-1; i >= 0; i--) {
+								RequestData request = dropOffs.get(i);
+								if (request.pickedUpPassenger()) {
+									activeRequests.remove(request);
 									request.setRequestComplete(true);
-									int index = targetLocations.indexOf(request.targetFloor());
-									if (index != -1) { targetLocations.remove(index); };
+									targetLocations.remove(Integer.valueOf(request.targetFloor()));
 									context.requestsComplete.add(request);
 									context.signalsToSendToView.add(request);	// Sends change in request/passenger data to View/Monitor
 									System.out.println("     ~~~~~~DROPPED OFF PASSENGER~~~~~~ "+request.toString());
 								}
-								
 							}
 							
 							// Using the "new" target/destination/drop-off floors received from the elevator, update where the elevator is going (carBttns & targetLocations) 
@@ -1055,6 +1033,9 @@ class SendMessage implements SchedulerState {
 			context.sendElevatorSignal(context.signalsToSendToElevator.remove());
 		}
 		
+		// Sends the messages of this pass, only held by the dispatcher when batching is enabled
+		context.flushSentMessages();
+		
 //		// Sends prepared messages to the View/Monitor (only the updates variables)
 //		while (!context.signalsToSendToView.isEmpty()) {
 //			context.sendViewRequestData(context.signalsToSendToView.remove(0));
@@ -1083,6 +1064,8 @@ class SendMessage implements SchedulerState {
  * Overview:
  *  This class handles updating the data structures meant for the view/monitor and sending it off the the view/monitor. If there
  *  is no view/monitor listening for a message, the dispatcher will just not send anything, so nothing needs to change in this state.
+ *  Only the changes since the last update are sent (see ViewDeltaTracker), with the entire "Master Sheet" sent as a keyframe every
+ *  so often and whenever a monitor asks for it. Changes are sent at most once per frame and off the scheduler's thread (see ViewPublisher).
  */
 class UpdateView implements SchedulerState {
 
@@ -1091,57 +1074,16 @@ class UpdateView implements SchedulerState {
 		// TODO Auto-generated method stub
 //		context.LOG.info("STATE = '%s'", toString());
 		
-		// Change the data type of some "Master Sheet" variables to make it able to be sent via the dispatcher
-		// Converting the requestAwaitingElevatorAssignment list to something suitable to send to the view/monitor
-		ArrayList<ViewRequestData> viewRequestsAwaitingElevatorAssignment = new ArrayList<ViewRequestData>();
-		if (context.requestsAwaitingElevatorAssignment != null && !context.requestsAwaitingElevatorAssignment.isEmpty()) {
-			for (RequestData data : context.requestsAwaitingElevatorAssignment) {
-				viewRequestsAwaitingElevatorAssignment.add(new ViewRequestData(data.requestID(), data.request(), data.elevatorID(), data.pickedUpPassenger(), data.requestComplete()));
-			}
-		}
-		
-		// Converting the requestActive list to something suitable to send to the view/monitor
-		HashMap<Integer, ArrayList<ViewRequestData>> viewRequestsActive = new HashMap<Integer, ArrayList<ViewRequestData>>();
-		if (context.requestsActive != null && !context.requestsActive.isEmpty()) {
-			for (int elevatorID = 1; elevatorID <= context.requestsActive.size(); elevatorID++) {
-				ArrayList<ViewRequestData> list = new ArrayList<ViewRequestData>();
-				if (context.requestsActive.get(elevatorID) != null && !context.requestsActive.get(elevatorID).isEmpty()) {
-					for (RequestData data : context.requestsActive.get(elevatorID)) {
-						list.add(new ViewRequestData(data.requestID(), data.request(), data.elevatorID(), data.pickedUpPassenger(), data.requestComplete()));
-					}
-				}
-				viewRequestsActive.put(elevatorID, list);
-			}
-		}
-		
-		// Converting the requestComplete list to something suitable to send to the view/monitor
-		ArrayList<ViewRequestData> viewRequestsComplete = new ArrayList<ViewRequestData>();
-		if (context.requestsComplete != null && !context.requestsComplete.isEmpty()) {
-			for (RequestData data : context.requestsComplete) {
-				viewRequestsAwaitingElevatorAssignment.add(new ViewRequestData(data.requestID(), data.request(), data.elevatorID(), data.pickedUpPassenger(), data.requestComplete()));
-			}
-		}
-		
-		// Converting the elevatorLatestData list to something suitable to send to the view/monitor
-		HashMap<Integer, ViewElevatorData> viewElevatorLatestData = new HashMap<Integer, ViewElevatorData>();
-		if (context.elevatorLatestData != null && !context.elevatorLatestData.isEmpty()) {
-			for (int elevatorID : context.elevatorLatestData.keySet()) {
-				viewElevatorLatestData.put(elevatorID, new ViewElevatorData( context.elevatorLatestData.get(elevatorID).signal(), context.elevatorLatestData.get(elevatorID).targetLocations() ));
-			}
-		}
-		
-		
-		// Sends the entire scheduler's "Master Sheet" to the view, with updates variables for the view
-		context.sendViewMasterSheetData(
-				new ViewData(
-						viewRequestsAwaitingElevatorAssignment, 
-						viewRequestsActive, 
-						viewRequestsComplete, 
-						viewElevatorLatestData,
-						context.floorButtonLamp,
-						context.floorDirectionLamp
-						)
-				);
+		// Sends only what changed in the scheduler's "Master Sheet" since the last update, or all of it when a keyframe is due.
+		// The publisher holds the changes back until the next frame if one was just sent, and sends them on its own thread.
+		context.viewPublisher.publish(context.clock.nanoTime(), () -> context.viewDeltas.nextDelta(
+				context.requestsAwaitingElevatorAssignment, 
+				context.requestsActive, 
+				context.requestsComplete, 
+				context.elevatorLatestData,
+				context.floorButtonLamp,
+				context.floorDirectionLamp
+				));
 		
 		System.out.println("\n");	// Just here to separate sent messages
 		
@@ -4,12 +4,9 @@
 package C2G8_Project;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-
-import org.apache.commons.lang3.tuple.MutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * @author Jordan
@@ -37,6 +34,10 @@ import org.apache.commons.lang3.tuple.Pair;
  *  as they are moving in the correct direction to their desired floor, which they are). The impatience comes form waiting for the 
  *  elevator to arrive.
  *  
+ *  When the building has destination dispatch (passengers enter their target floor at the floor, which RawFloorRequest already carries),
+ *  the drop off location IS known at assignment time, and the DESTINATION_DISPATCH policy in DispatchPolicies uses it to put passengers
+ *  going to nearby floors in the same elevator and keep the total trip time low.
+ *  
  *  Note that, in order to ensure that requests are handled somewhat timely, requests are ordered in the requestsAwaitingElevatorAssignment
  *  list in the scheduler, and every assignment starts with the oldest requests, so that these requests dictate the rest of the 
  *  request assignments.
@@ -72,192 +73,300 @@ import org.apache.commons.lang3.tuple.Pair;
  */
 public class SchedulingAlgorithm {
 	
+	/*** Reusable buffers for sorting an elevator's active requests, one set per thread so assigning a request doesn't allocate ***/
+	private static final class Scratch {
+		int[] keys = new int[16];	// The next destination floor of each active request (by index in the active list)
+		int[] order = new int[16];	// Indexes into the active list, in the order the elevator will stop for them
+		int[] moved = new int[16];	// The requests behind the elevator, while they are moved to the end of order
+
+		void ensureCapacity(int size) {
+			if (keys.length < size) {
+				int capacity = Math.max(size, keys.length * 2);
+				keys = new int[capacity];
+				order = new int[capacity];
+				moved = new int[capacity];
+			}
+		}
+	}
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+	
+	
+	
+	/*
+	 * What it costs an eligible elevator to take a request. The eligible elevator with the lowest cost gets it.
+	 * timeToPickUp is the time the elevator takes to reach the request floor, stopping at the floors of its active requests on the way.
+	 */
+	@FunctionalInterface
+	public interface ElevatorCost {
+		int cost(RequestData request, int elevatorID, ElevatorData elevator, ArrayList<RequestData> activeRequests, int timeToPickUp);
+	}
+	
+	
+	
+	/*** The ON_THE_WAY cost: the time it takes to pick the passenger up ***/
+	public static final ElevatorCost TIME_TO_PICK_UP = (request, elevatorID, elevator, activeRequests, timeToPickUp) -> timeToPickUp;
+	
+	
+	
 	/*
 	 * The main portion of the algorithm. Essentially, given a single request and a list of elevator data and active requests, 
 	 * it will determine which elevator should deal with the request. It will return the elevatorID of the chosen elevator, 
 	 * and if nothing was chose, it will return -1.
+	 * 
+	 * This is the ON_THE_WAY DispatchPolicy: the eligible elevator that picks up the passenger soonest gets the request.
 	 */
-	public static int assignSingleRequestToAnElevator(RequestData request, HashMap<Integer, ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
-		int assignedElevatorID = -1;
+	public static int assignSingleRequestToAnElevator(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
+		return assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, TIME_TO_PICK_UP);
+	}
+	
+	
+	
+	/*
+	 * Finds the eligible elevators for a request using the rules above, and returns the elevatorID of the one with the lowest cost,
+	 * or -1 if no elevator is eligible. Every DispatchPolicy that follows the rules is this method with a different cost.
+	 * 
+	 * NOTE: This runs for every request waiting for an elevator, every time an elevator goes IDLE, so it doesn't build any lists.
+	 * The active requests are sorted as indexes in the thread's Scratch buffers, and the eligible elevator with the lowest cost is
+	 * found in the same pass that checks eligibility. A tie goes to the lowest ID.
+	 * 
+	 * With at least CONFIG.SCHEDULER_PARALLEL_ELEVATORS elevators (large banks in the simulator), the elevators are split into ranges
+	 * that are checked in parallel on the common ForkJoinPool, unless the pool only has one thread. Each elevator is checked on its own,
+	 * and the ranges are combined by lowest cost and then lowest ID, so the result is the same either way.
+	 */
+	public static int assignToCheapestEligibleElevator(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData, ElevatorCost elevatorCost) {
+		return assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, elevatorCost, PARALLEL_ELEVATORS);
+	}
+	
+	
+	
+	/*
+	 * assignToCheapestEligibleElevator() with the number of elevators at which the elevators are checked in parallel.
+	 */
+	static int assignToCheapestEligibleElevator(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData, ElevatorCost elevatorCost, int parallelElevators) {
 		
 		// If the request list and elevator list aren't the same size, something was added wrong. We won't proceed.
 		if (requestsActive.size() != elevatorLatestData.size()) {
 			System.out.println("   SCHEDULER ALGORITHM ERROR - assignSingleRequestToAnElevator(): Data passed in was invalid. The requests list is not the same size as the elevator list. Returning -1.");
-			return assignedElevatorID;
+			return -1;
 		}
 		
-		// Create a list of all the potential elevators to take this request
-		ArrayList<Integer> potentialElevators = new ArrayList<Integer>();
-		for (int elevatorID : elevatorLatestData.keySet()) {
-			potentialElevators.add(elevatorID);
-		}
+		int elevators = elevatorLatestData.size();
+		long cheapest = (elevators >= parallelElevators)
+				? ForkJoinPool.commonPool().invoke(new CheapestElevatorSearch(request, requestsActive, elevatorLatestData, elevatorCost, 1, elevators))
+				: cheapestInRange(request, requestsActive, elevatorLatestData, elevatorCost, 1, elevators);
 		
-		// Check for any eligible elevators (This is when an elevator is going to a request, and this new request is on the way, and the request directions are the same)
-		for (int elevatorID = elevatorLatestData.size(); elevatorID >= 1; elevatorID--) {
-			// Checking elevators with active requests (If it has no active requests, its eligible, so no need to try to remove it here)
-			if (!requestsActive.get(elevatorID).isEmpty() ) {
-				
-				ElevatorData elevator = elevatorLatestData.get(elevatorID);
-				ArrayList<RequestData> sortedRequestsActive = sortSingleActiveRequestsList(requestsActive.get(elevatorID), elevatorLatestData.get(elevatorID));
-				RequestData nextActiveRequest = sortedRequestsActive.get(0);
-				
-				
-				boolean onTheWay = false;
-				boolean sameDirection = true;	// Default true, changes to false when the direction isn't found
-				
-				// Variables used to see how the elevator should be moving when the state isnt MOVING_UP/DOWN
-				boolean shouldElevatorBeMovingUp   = SchedulingAlgorithm.shouldElevatorBeMovingUp(elevator, sortedRequestsActive, nextActiveRequest);
-				boolean shouldElevatorBeMovingDown = SchedulingAlgorithm.shouldElevatorBeMovingDown(elevator, sortedRequestsActive, nextActiveRequest);
-				
-				// If the elevator is ineligible due to being in the process of handling errors (either rebooting or dead/shutdown, remove it from the list of potential elevators 
-				// (because we don't know what will happen). NOTE: settin geither one of the onTheWay or sameDirection variables "false" will make the elevator ineligible.
-				if (isElevatorIneligibleDueToErrorHandling(elevator.state()) || elevator.state() == ElevatorStates.START) {
-					onTheWay = false;
-					sameDirection = false;
-					
-				// If the elevator is moving up, find the highest floor its going to.
-				} else if (elevator.state() == ElevatorStates.MOVING_UP || shouldElevatorBeMovingUp) {
-					
-					int highestFloor = -1;
-					int highestFloorIndex = -1;
-					
-					for (int i = 0; i < requestsActive.get(elevatorID).size(); i++) {
-						RequestData activeRequest = requestsActive.get(elevatorID).get(i);
-						// Handle pre-pickup (use requestFloor)
-						if (!activeRequest.pickedUpPassenger() && activeRequest.requestFloor() > highestFloor) {
-							highestFloor = activeRequest.requestFloor();
-							highestFloorIndex = i;
-							
-						// Handle post-pickup, pre-drop off (use targetFloor)
-						} else if (activeRequest.pickedUpPassenger() && activeRequest.targetFloor() > highestFloor) {
-							highestFloor = activeRequest.targetFloor();
-							highestFloorIndex = i;
-						}
-						
-						// Figure out if the request is going in the same direction
-//						System.out.println("SAME DIRECTION [UP] = "+sameDirection+", "+activeRequest.direction()+" != "+request.direction());
-						if (sameDirection && activeRequest.direction() != request.direction()) {
-							sameDirection = false;
-//							System.out.println("SAME DIRECTION [UP] (INNER) = "+sameDirection+", "+activeRequest.direction()+" != "+request.direction());
-						}
-					}
-					
-//					System.out.println("ON THE WAY [UP] = "+elevator.location()+" < "+request.requestFloor()+", "+request.requestFloor()+" <= "+highestFloor);
-					// Figure out if the request is on the way
-					if (shouldElevatorBeMovingUp && elevator.location() <= request.requestFloor() && request.requestFloor() <= highestFloor) { // when state != MOVING_UP (STOP, OPEN, CLOSE, IDLE)
-//						System.out.println("ON THE WAY [UP] (INNER1) = "+elevator.location()+" < "+request.requestFloor()+", "+request.requestFloor()+" <= "+highestFloor);
-						onTheWay = true;
-					} else if (elevator.location() < request.requestFloor() && request.requestFloor() <= highestFloor) {
-//						System.out.println("ON THE WAY [UP] (INNER2) = "+elevator.location()+" < "+request.requestFloor()+", "+request.requestFloor()+" <= "+highestFloor);
-						onTheWay = true;
-					}
-					
-					
-				// If the elevator is moving down, find the lowest floor its going to.
-				} else if (elevator.state() == ElevatorStates.MOVING_DOWN || shouldElevatorBeMovingDown) {
-					
-					int lowestFloor = 100;
-					int lowestFloorIndex = -1;
-					
-					for (int i = 0; i < requestsActive.get(elevatorID).size(); i++) {
-						RequestData activeRequest = requestsActive.get(elevatorID).get(i);
-//						System.out.println("THIS IS IT...: "+activeRequest.toString());
-						// Handle pre-pickup (use requestFloor)
-						if (!activeRequest.pickedUpPassenger() && activeRequest.requestFloor() < lowestFloor) {
-							lowestFloor = activeRequest.requestFloor();
-							lowestFloorIndex = i;
-							
-						// Handle post-pickup, pre-drop off (use targetFloor)
-						} else if (activeRequest.pickedUpPassenger() && activeRequest.targetFloor() < lowestFloor) {
-							lowestFloor = activeRequest.targetFloor();
-							lowestFloorIndex = i;
-						}
-						
-						// Figure out if the request is going in the same direction
-//						System.out.println("SAME DIRECTION [DOWN] = "+sameDirection+", "+activeRequest.direction()+" != "+request.direction()+", "+requestsActive.get(elevatorID).get(i).toString());
-						if (sameDirection && activeRequest.direction() != request.direction()) {
-							sameDirection = false;
-//							System.out.println("SAME DIRECTION [DOWN] (INNER) = "+sameDirection+", "+activeRequest.direction()+" != "+request.direction());
-						}
-					}
-					
-//					System.out.println("ON THE WAY [DOWN] = "+elevator.location()+" > "+request.requestFloor()+", "+request.requestFloor()+" >= "+lowestFloor);
-					// Figure out if the request is on the way
-					if (shouldElevatorBeMovingDown && elevator.location() >= request.requestFloor() && request.requestFloor() >= lowestFloor) {	// when state != MOVING_DOWN (STOP, OPEN, CLOSE, IDLE)
-//						System.out.println("ON THE WAY [DOWN] (INNER1) = "+elevator.location()+" > "+request.requestFloor()+", "+request.requestFloor()+" >= "+lowestFloor);
-						onTheWay = true;
-					} else if (elevator.location() > request.requestFloor() && request.requestFloor() >= lowestFloor) {
-//						System.out.println("ON THE WAY [DOWN] (INNER2) = "+elevator.location()+" > "+request.requestFloor()+", "+request.requestFloor()+" >= "+lowestFloor);
-						onTheWay = true;
-					}
-				}
-				
-				// If the request is both on the way and going in the same direction as all other active requests for this elevator. It is eligible. If either isn't true, remove it from the potentialElevators list
-				if (!onTheWay || !sameDirection) { potentialElevators.remove( potentialElevators.indexOf(elevatorID) ); }
-//				System.out.println(String.format("OnTheWay %s sameDirection %s, potentialElevators %s", onTheWay, sameDirection, potentialElevators));
-			}
+//		System.out.println(String.format("   ***Assigning request %s to elevator %s. %s", request.requestID(), assignedElevatorID, elevatorLatestData.get((assignedElevatorID != -1) ? assignedElevatorID : 1)));
+		return (cheapest == NO_ELEVATOR) ? -1 : (int) cheapest;
+	}
+	
+	
+	
+	private static final long NO_ELEVATOR = Long.MAX_VALUE;	// cheapestInRange() result when no elevator in the range is eligible
+	private static final int PARALLEL_ELEVATORS_PER_TASK = 16;	// CheapestElevatorSearch checks ranges of at most this many elevators itself
+	private static final int PARALLEL_ELEVATORS = (ForkJoinPool.getCommonPoolParallelism() > 1) ? CONFIG.SCHEDULER_PARALLEL_ELEVATORS : Integer.MAX_VALUE;	// Never in parallel without the processors for it
+	
+	/*
+	 * Helper for assignToCheapestEligibleElevator(). Checks the elevators from firstID to lastID (inclusive) in increasing ID order.
+	 * Returns the cheapest as (cost << 32 | elevatorID), so the lowest value is the lowest cost and then the lowest ID, or NO_ELEVATOR.
+	 */
+	private static long cheapestInRange(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData, ElevatorCost elevatorCost, int firstID, int lastID) {
+		Scratch scratch = SCRATCH.get();
+		long cheapest = NO_ELEVATOR;
+		
+		for (int elevatorID = firstID; elevatorID <= lastID; elevatorID++) {
+			ElevatorData elevator = elevatorLatestData.get(elevatorID);
+			ArrayList<RequestData> activeRequests = requestsActive.get(elevatorID);
 			
-			// If the elevator is ineligible due to its state, regardless of what it has in its queue, it is ineligible, so remove it.
-			if (isElevatorIneligibleDueToErrorHandling(elevatorLatestData.get(elevatorID).state())) {
-				if(potentialElevators.contains(elevatorID)) { 
-					potentialElevators.remove( potentialElevators.indexOf(elevatorID) ); 
-				}
+			int time = timeToPickUpIfEligible(scratch, request, elevator, activeRequests);
+			if (time == -1) { continue; }
+			
+			// Keep the elevator with the lowest cost
+			int cost = elevatorCost.cost(request, elevatorID, elevator, activeRequests, time);
+			if (cost == Integer.MAX_VALUE) { continue; }
+			long packed = ((long) cost << 32) | elevatorID;
+			if (packed < cheapest) { cheapest = packed; }
+		}
+		return cheapest;
+	}
+	
+	
+	
+	/*
+	 * Checks a range of elevators in parallel by splitting it in half until the ranges are small enough to check on one thread.
+	 * Only reads the lists, and each thread sorts with its own Scratch buffers.
+	 */
+	private static final class CheapestElevatorSearch extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+		
+		private final RequestData request;
+		private final HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive;
+		private final HashMap<Integer, ElevatorData> elevatorLatestData;
+		private final ElevatorCost elevatorCost;
+		private final int firstID;
+		private final int lastID;
+		
+		CheapestElevatorSearch(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData, ElevatorCost elevatorCost, int firstID, int lastID) {
+			this.request = request;
+			this.requestsActive = requestsActive;
+			this.elevatorLatestData = elevatorLatestData;
+			this.elevatorCost = elevatorCost;
+			this.firstID = firstID;
+			this.lastID = lastID;
+		}
+		
+		@Override
+		protected Long compute() {
+			if (lastID - firstID < PARALLEL_ELEVATORS_PER_TASK) {
+				return cheapestInRange(request, requestsActive, elevatorLatestData, elevatorCost, firstID, lastID);
 			}
+			int middle = (firstID + lastID) >>> 1;
+			CheapestElevatorSearch lower = new CheapestElevatorSearch(request, requestsActive, elevatorLatestData, elevatorCost, firstID, middle);
+			lower.fork();
+			long upper = new CheapestElevatorSearch(request, requestsActive, elevatorLatestData, elevatorCost, middle + 1, lastID).compute();
+			return Math.min(lower.join(), upper);
 		}
+	}
+	
+	
+	
+	/*
+	 * The cost of a single elevator taking a request, or DispatchPolicy.UNAVAILABLE if the elevator isn't eligible (or doesn't exist).
+	 * Used when the requests and elevators are matched together, instead of one request at a time.
+	 */
+	public static int costOfEligibleElevator(RequestData request, int elevatorID, HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData, ElevatorCost elevatorCost) {
+		ElevatorData elevator = elevatorLatestData.get(elevatorID);
+		ArrayList<RequestData> activeRequests = requestsActive.get(elevatorID);
+		if (elevator == null || activeRequests == null) { return DispatchPolicy.UNAVAILABLE; }
 		
-
+		int time = timeToPickUpIfEligible(SCRATCH.get(), request, elevator, activeRequests);
+		if (time == -1) { return DispatchPolicy.UNAVAILABLE; }
+		return Math.min(elevatorCost.cost(request, elevatorID, elevator, activeRequests, time), DispatchPolicy.UNAVAILABLE - 1);
+	}
+	
+	
+	
+	/*
+	 * Helper for assignToCheapestEligibleElevator(). Returns the time it takes the elevator to get to the request floor, or -1 if the
+	 * elevator isn't eligible to take the request.
+	 */
+	private static int timeToPickUpIfEligible(Scratch scratch, RequestData request, ElevatorData elevator, ArrayList<RequestData> activeRequests) {
 		
-		// From elegible elevators, calculate the distance/times to the new request floor (shortest times wins).
-		ArrayList<Pair<Integer, Integer>> timeForElevatorToGetToRequest = new ArrayList<Pair<Integer, Integer>>();
+		// If the elevator is ineligible due to its state, regardless of what it has in its queue, it is ineligible.
+		if (isElevatorIneligibleDueToErrorHandling(elevator.state())) { return -1; }
 		
-		for (int potentialElevatorsIndex = 0; potentialElevatorsIndex < potentialElevators.size(); potentialElevatorsIndex++) {
-			int elevatorID = potentialElevators.get(potentialElevatorsIndex); 
+		// If the elevator has no active requests, it's eligible. Calculate the time it takes to get to the request floor directly
+		if (activeRequests.isEmpty()) {
+			return calculateTimeTakenToMove(elevator, request.requestFloor());
+		}
+		
+		// If the elevator has some active requests, it's only eligible if the request is on the way and going in the same direction as all of them.
+		// If it is, calculate the time it takes to get to the request floor while stopping at the floors between
+		sortActiveRequests(scratch, activeRequests, elevator);
+		if (!isRequestOnTheWayInSameDirection(request, activeRequests, elevator, activeRequests.get(scratch.order[0]))) { return -1; }
+		return calculateTimeTakenToReachRequest(request, activeRequests, scratch.order, elevator);
+	}
+	
+	
+	
+	/*
+	 * Helper for assignSingleRequestToAnElevator(). Checks if an elevator with active requests can take the request: it has to be
+	 * on the way (between the elevator and the furthest floor it's going to) and going in the same direction as all of its requests.
+	 */
+	private static boolean isRequestOnTheWayInSameDirection(RequestData request, ArrayList<RequestData> activeRequests, ElevatorData elevator, RequestData nextActiveRequest) {
+		boolean onTheWay = false;
+		boolean sameDirection = true;	// Default true, changes to false when the direction isn't found
+		
+		// Variables used to see how the elevator should be moving when the state isnt MOVING_UP/DOWN
+		boolean shouldElevatorBeMovingUp   = SchedulingAlgorithm.shouldElevatorBeMovingUp(elevator, activeRequests, nextActiveRequest);
+		boolean shouldElevatorBeMovingDown = SchedulingAlgorithm.shouldElevatorBeMovingDown(elevator, activeRequests, nextActiveRequest);
+		
+		// If the elevator is ineligible due to being in the process of handling errors (either rebooting or dead/shutdown), or is still starting, it can't take the request
+		if (isElevatorIneligibleDueToErrorHandling(elevator.state()) || elevator.state() == ElevatorStates.START) {
+			return false;
 			
-			ElevatorData elevator = elevatorLatestData.get(elevatorID);
+		// If the elevator is moving up, find the highest floor its going to.
+		} else if (elevator.state() == ElevatorStates.MOVING_UP || shouldElevatorBeMovingUp) {
+			int highestFloor = -1;
 			
-			// If the elevator has no active requests, calculate the time it takes to get to the request floor directly ad save it
-			if (requestsActive.get(elevatorID).isEmpty()) {
-				int time = SchedulingAlgorithm.calculateTimeTakenToMove(elevator.location(), request.requestFloor());
-				timeForElevatorToGetToRequest.add(new MutablePair<Integer, Integer>(elevatorID, time));
-				
-			// If the elevator has some active requests, calculate the time it takes to get to the request floor while stopping at the floors between, and save it
-			} else {
-				ArrayList<RequestData> sortedRequestsActive = sortSingleActiveRequestsList(requestsActive.get(elevatorID), elevator);
-				int time = 0;
-				int previousLocation = elevator.location();
-				int desiredFloor = -1;
+			for (int i = 0; i < activeRequests.size(); i++) {
+				RequestData activeRequest = activeRequests.get(i);
+				// Handle pre-pickup (use requestFloor)
+				if (!activeRequest.pickedUpPassenger() && activeRequest.requestFloor() > highestFloor) {
+					highestFloor = activeRequest.requestFloor();
+					
+				// Handle post-pickup, pre-drop off (use targetFloor)
+				} else if (activeRequest.pickedUpPassenger() && activeRequest.targetFloor() > highestFloor) {
+					highestFloor = activeRequest.targetFloor();
+				}
 				
-				// Find the index of the last floor inbetween the elevator and the request floor
-				for (int i = 0; i < sortedRequestsActive.size(); i++) {
-					RequestData currentRequest = sortedRequestsActive.get(i);
-					desiredFloor = (!currentRequest.pickedUpPassenger()) ? currentRequest.requestFloor() : currentRequest.targetFloor();
+				// Figure out if the request is going in the same direction
+				if (activeRequest.direction() != request.direction()) { sameDirection = false; }
+			}
+			
+			// Figure out if the request is on the way
+			if (shouldElevatorBeMovingUp && elevator.location() <= request.requestFloor() && request.requestFloor() <= highestFloor) { // when state != MOVING_UP (STOP, OPEN, CLOSE, IDLE)
+				onTheWay = true;
+			} else if (elevator.location() < request.requestFloor() && request.requestFloor() <= highestFloor) {
+				onTheWay = true;
+			}
+			
+		// If the elevator is moving down, find the lowest floor its going to.
+		} else if (elevator.state() == ElevatorStates.MOVING_DOWN || shouldElevatorBeMovingDown) {
+			int lowestFloor = 100;
+			
+			for (int i = 0; i < activeRequests.size(); i++) {
+				RequestData activeRequest = activeRequests.get(i);
+				// Handle pre-pickup (use requestFloor)
+				if (!activeRequest.pickedUpPassenger() && activeRequest.requestFloor() < lowestFloor) {
+					lowestFloor = activeRequest.requestFloor();
 					
-					// If there is a stop between the elevator location and the request floor, calculate that time
-					if ( Math.abs(elevator.location() - desiredFloor) < Math.abs(elevator.location() - request.requestFloor()) ) {
-						time += SchedulingAlgorithm.calculateTimeTakenToMove(previousLocation, desiredFloor) + SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors();
-						previousLocation = desiredFloor;
-						
-					// Otherwise, calculate the time between the previous location and the request floor
-					} else { 
-						time += SchedulingAlgorithm.calculateTimeTakenToMove(previousLocation, request.requestFloor());
-						break; 
-					}
+				// Handle post-pickup, pre-drop off (use targetFloor)
+				} else if (activeRequest.pickedUpPassenger() && activeRequest.targetFloor() < lowestFloor) {
+					lowestFloor = activeRequest.targetFloor();
 				}
 				
-				// Save the calculated time
-				timeForElevatorToGetToRequest.add(new MutablePair<Integer, Integer>(elevatorID, time));
+				// Figure out if the request is going in the same direction
+				if (activeRequest.direction() != request.direction()) { sameDirection = false; }
+			}
+			
+			// Figure out if the request is on the way
+			if (shouldElevatorBeMovingDown && elevator.location() >= request.requestFloor() && request.requestFloor() >= lowestFloor) {	// when state != MOVING_DOWN (STOP, OPEN, CLOSE, IDLE)
+				onTheWay = true;
+			} else if (elevator.location() > request.requestFloor() && request.requestFloor() >= lowestFloor) {
+				onTheWay = true;
 			}
 		}
 		
+		return onTheWay && sameDirection;
+	}
+	
+	
+	
+	/*
+	 * Helper for assignSingleRequestToAnElevator(). Calculates the time it takes the elevator to get to the request floor, stopping at
+	 * every floor (from its sorted active requests) between the elevator and the request floor.
+	 */
+	private static int calculateTimeTakenToReachRequest(RequestData request, ArrayList<RequestData> activeRequests, int[] sortedOrder, ElevatorData elevator) {
+		TravelTimeTable travelTimes = TravelTimeTable.BUILDING;
+		int time = 0;
+		int previousLocation = elevator.location();
+		boolean firstLeg = true;	// Only the first leg can start at cruise, the elevator is at rest after every stop
 		
-		// Sort the list by shortest time to largest time, and take the first entry key to return
-		SchedulingAlgorithm.sortCollectionsIncreasingOrder(timeForElevatorToGetToRequest);
-		if (!timeForElevatorToGetToRequest.isEmpty()) {
-			assignedElevatorID = timeForElevatorToGetToRequest.get(0).getKey();
-		} 
-		
-//		System.out.println(String.format("   ***Assigning request %s to elevator %s. %s", request.requestID(), assignedElevatorID, elevatorLatestData.get((assignedElevatorID != -1) ? assignedElevatorID : 1)));
-		return assignedElevatorID;
+		for (int i = 0; i < activeRequests.size(); i++) {
+			RequestData currentRequest = activeRequests.get(sortedOrder[i]);
+			int desiredFloor = (!currentRequest.pickedUpPassenger()) ? currentRequest.requestFloor() : currentRequest.targetFloor();
+			
+			// If there is a stop between the elevator location and the request floor, calculate the time to it (and the doors).
+			// Otherwise, calculate the time between the previous location and the request floor
+			boolean stopOnTheWay = Math.abs(elevator.location() - desiredFloor) < Math.abs(elevator.location() - request.requestFloor());
+			int nextFloor = stopOnTheWay ? desiredFloor : request.requestFloor();
+			time += firstLeg ? calculateTimeTakenToMove(elevator, nextFloor) : travelTimes.fromRest(previousLocation, nextFloor);
+			if (!stopOnTheWay) { break; }
+			time += travelTimes.doors();
+			previousLocation = desiredFloor;
+			firstLeg = false;
+		}
+		return time;
 	}
 	
 	
@@ -397,7 +506,6 @@ public class SchedulingAlgorithm {
 	 * the order that the elevator will follow when stopping at floors.
 	 */
 	public static ArrayList<RequestData> sortSingleActiveRequestsList(ArrayList<RequestData> requestsActive, ElevatorData elevator) {
-		ArrayList<RequestData> sortedRequests = new ArrayList<RequestData>();
 		
 		// If the request list is empty or the elevator is null, return null.
 		if (requestsActive.isEmpty()) {
@@ -408,137 +516,98 @@ public class SchedulingAlgorithm {
 			return null;
 		}
 		
-		// For the pair: Pair<Index in requestActive list, next destination floor>. The floor is requestFloor is a passenger isn't picked up, and target floor if they are picked up. 
-		ArrayList<Pair<Integer, Integer>> nextDestination = new ArrayList<Pair<Integer, Integer>>();
-			
-		for (int requestIndex = 0; requestIndex < requestsActive.size(); requestIndex++) {
+		Scratch scratch = SCRATCH.get();
+		
+		// If the list wasn't sorted, we'll be returning the same list that was given originally
+		if (!sortActiveRequests(scratch, requestsActive, elevator)) {
+			return requestsActive;
+		}
+		
+		// Add the RequestData to the sorted list
+		ArrayList<RequestData> sortedRequests = new ArrayList<RequestData>(requestsActive.size());
+		for (int i = 0; i < requestsActive.size(); i++) { sortedRequests.add(requestsActive.get(scratch.order[i])); }
+		return sortedRequests;
+	}
+	
+	
+	
+	/*
+	 * Sorts a (non-empty) requestsActive list into scratch.order as indexes, without touching the list. Returns false if there was
+	 * no direction to sort by, in which case scratch.order is the list's own order.
+	 * 
+	 * Each request's next destination floor is the requestFloor if the passenger isn't picked up, the targetFloor if they are, and -1
+	 * if the request is complete. The floors are sorted in increasing order when the elevator is (or should be) going up and decreasing
+	 * order when it is going down, then the requests behind the elevator are moved to the end of the list, the closest one first.
+	 */
+	private static boolean sortActiveRequests(Scratch scratch, ArrayList<RequestData> requestsActive, ElevatorData elevator) {
+		int size = requestsActive.size();
+		scratch.ensureCapacity(size);
+		int[] keys = scratch.keys;
+		int[] order = scratch.order;
+		
+		for (int requestIndex = 0; requestIndex < size; requestIndex++) {
 			RequestData request = requestsActive.get(requestIndex);
-			//Pair<Integer, Integer> pair = new MutablePair<>(request.requestID(), -1);
-			Pair<Integer, Integer> pair = new MutablePair<>(requestIndex, -1);
+			order[requestIndex] = requestIndex;
 			
 			// If the request is complete, don't care about it because it's essentially useless (likely in STOP, OPEN_DOOR, or CLOSE_DOOR state).
-			if (request.requestComplete()) {
-				pair.setValue(-1);
-				
+			if (request.requestComplete()) { keys[requestIndex] = -1; }
+			
 			// If the request isn't complete, but a passenger has been picked up, then we want the target floor
-			} else if (request.pickedUpPassenger()) {
-				pair.setValue(request.targetFloor());
-				
-			// If the passenger hasn't been picked up, then we want the request floor
-			} else {
-				pair.setValue(request.requestFloor());
-			}
+			else if (request.pickedUpPassenger()) { keys[requestIndex] = request.targetFloor(); }
 			
-			nextDestination.add(pair);
+			// If the passenger hasn't been picked up, then we want the request floor
+			else { keys[requestIndex] = request.requestFloor(); }
 		}
 		
-//		System.out.println("BEFORE SORTING:\n"+nextDestination.toString());
-		
-		
-		// Sort the list according to the elevators state.
-		boolean sorted = false;
+		// Find which way the elevator is going. If it isn't moving, use the direction of a request that doesn't have the passenger picked up (Assuming the direction isn't null).
 		Direction direction = null;
 		if (elevator.state() == ElevatorStates.MOVING_UP) {
-			sortCollectionsIncreasingOrder(nextDestination);
-			sorted = true;
+			direction = Direction.UP;
 		} else if (elevator.state() == ElevatorStates.MOVING_DOWN) {
-			sortCollectionsDecreasingOrder(nextDestination);
-			sorted = true;
-			
-		// Otherwise, if the elevator is in a different state, find a request that doesn't have the passenger picked up, and use that direction (Assuming the direction isn't null).
+			direction = Direction.DOWN;
 		} else {
-			for (int requestIndex = 0; requestIndex < requestsActive.size(); requestIndex++) {
-				if (!requestsActive.get(requestIndex).pickedUpPassenger() && !requestsActive.get(requestIndex).requestComplete() && requestsActive.get(requestIndex).direction() != null) {
-					direction = requestsActive.get(requestIndex).direction();
+			for (int requestIndex = 0; requestIndex < size; requestIndex++) {
+				RequestData request = requestsActive.get(requestIndex);
+				if (!request.pickedUpPassenger() && !request.requestComplete() && request.direction() != null) {
+					direction = request.direction();
 					break;
 				}
 			}
-			
-			if (direction == Direction.UP) {
-				sortCollectionsIncreasingOrder(nextDestination);
-				sorted = true;
-			} else if (direction == Direction.DOWN) {
-				sortCollectionsDecreasingOrder(nextDestination);
-				sorted = true;
-			}
-//			System.out.println("DIRECTION = "+direction);
 		}
+		if (direction == null) {
+			return false;
+		}
+		boolean increasing = direction == Direction.UP;
 		
-//		System.out.println("AFTER SORTING:\n"+nextDestination.toString());
-		
-		
-		if (sorted) {
-			// If we were able to sort, then we will take all the requests that are currently past/behind (or in the opposite direction) of the elevator, and move them to the end of the list.
-			int nFloorsInOppositeDirectionOfElevator = 0;
-			if (elevator.state() == ElevatorStates.MOVING_UP || direction == Direction.UP) {
-				for (int i = 0; i < nextDestination.size(); i++) {
-					if (elevator.location() < nextDestination.get(i).getValue()) {
-//						System.out.println(elevator.location() +" < "+ nextDestination.get(i).getValue()+", "+i);
-						nFloorsInOppositeDirectionOfElevator = i;
-						break;
-					}
-				}
-			} else if (elevator.state() == ElevatorStates.MOVING_DOWN || direction == Direction.DOWN) {
-				for (int i = 0; i < nextDestination.size(); i++) {
-					if (elevator.location() > nextDestination.get(i).getValue()) {
-//						System.out.println(elevator.location() +" > "+ nextDestination.get(i).getValue()+", "+i);
-						nFloorsInOppositeDirectionOfElevator = i;
-						break;
-					}
-				}
+		// Insertion sort on the floors. It's stable (requests for the same floor stay in list order) and the lists are short.
+		for (int i = 1; i < size; i++) {
+			int index = order[i];
+			int key = keys[index];
+			int j = i;
+			while (j > 0 && (increasing ? keys[order[j-1]] > key : keys[order[j-1]] < key)) {
+				order[j] = order[j-1];
+				j--;
 			}
-			
-			// Move elements to the end of the list.
-			for (int i = nFloorsInOppositeDirectionOfElevator; i > 0; i--) {
-//				System.out.println(i-1);
-				nextDestination.add( nextDestination.remove(i-1) );
-			}
-			
-//			System.out.println("AFTER SECOND SORTING:\n"+nextDestination.toString());
-			
-			
-			// Add the RequestData to the sorted list
-			for (int i = 0; i < nextDestination.size(); i++) { sortedRequests.add(requestsActive.get(nextDestination.get(i).getKey())); }
-			
-//			System.out.println("FINAL:");
-//			for (int i = 0; i < sortedRequests.size(); i++) {
-//				System.out.println("  "+sortedRequests.get(i).toString());
-//			}
-//			System.out.println("");
-			return sortedRequests;
+			order[j] = index;
+		}
 		
+		// Find the requests that are currently past/behind (or in the opposite direction) of the elevator
+		int nFloorsInOppositeDirectionOfElevator = 0;
+		for (int i = 0; i < size; i++) {
+			if (increasing ? elevator.location() < keys[order[i]] : elevator.location() > keys[order[i]]) {
+				nFloorsInOppositeDirectionOfElevator = i;
+				break;
+			}
 		}
 		
-		// If the list wasn't sorted, we'll be returning the same list that was given originally
-		return requestsActive;
-	}
-	
-	
-	
-	/*
-	 * Helper for sortSingleActiveRequestsList(). Sorts the collection in increasing order (when state is MOVING_UP)
-	 */
-	private static void sortCollectionsIncreasingOrder(ArrayList<Pair<Integer, Integer>> nextDestination) {
-		Collections.sort(nextDestination, new Comparator<Pair<Integer, Integer>>() {
-		    @Override
-		    public int compare(Pair<Integer, Integer> p1, Pair<Integer, Integer> p2) {
-		        return p1.getValue() - p2.getValue();
-		    }
-		});
-	}
-	
-	
-	
-	/*
-	 * Helper for sortSingleActiveRequestsList(). Sorts the collection in decreasing order (when state is MOVING_DOWN)
-	 */
-	private static void sortCollectionsDecreasingOrder(ArrayList<Pair<Integer, Integer>> nextDestination) {
-		Collections.sort(nextDestination, new Comparator<Pair<Integer, Integer>>() {
-		    @Override
-		    public int compare(Pair<Integer, Integer> p1, Pair<Integer, Integer> p2) {
-		        return p2.getValue() - p1.getValue();
-		    }
-		});
+		// Move them to the end of the list, the one closest to the elevator first
+		int[] moved = scratch.moved;
+		System.arraycopy(order, 0, moved, 0, nFloorsInOppositeDirectionOfElevator);
+		System.arraycopy(order, nFloorsInOppositeDirectionOfElevator, order, 0, size - nFloorsInOppositeDirectionOfElevator);
+		for (int i = 0; i < nFloorsInOppositeDirectionOfElevator; i++) {
+			order[size-1-i] = moved[i];
+		}
+		return true;
 	}
 	
 	
@@ -547,7 +616,7 @@ public class SchedulingAlgorithm {
 	 * For each elevator, calculates the amount of time each individual active request that is assigned to that elevator will take.
 	 * Returns a HashMap in the format HashMap<Integer, ArrayList<Integer>>, or... HashMap<elevatorID, ArrayList<total time remaining per request>>
 	 */
-	public static HashMap<Integer, ArrayList<Integer>> calculateTripTimes(HashMap<Integer, ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
+	public static HashMap<Integer, ArrayList<Integer>> calculateTripTimes(HashMap<Integer, ? extends ArrayList<RequestData>> requestsActive, HashMap<Integer, ElevatorData> elevatorLatestData) {
 		HashMap<Integer, ArrayList<Integer>> requestsActiveTimes = new HashMap<Integer, ArrayList<Integer>>();
 		
 		// If the request list and elevator list aren't the same size, something was added wrong. We won't proceed.
@@ -594,24 +663,23 @@ public class SchedulingAlgorithm {
 	/*
 	 * Helper for calculateTripTimes(). Find the travel time to the next destination floor.
 	 * 
-	 * NOTE: Always assumes that the elevator is stationary (has to accelerate). Thus, may be 
-	 * off by (ElevatorTimes.MOVING - ElevatorTimes.MOVING_MAX) seconds (which is 2 seconds currently).
+	 * NOTE: Always assumes that the elevator is stationary (has to accelerate). When the elevator may already be moving, use
+	 * calculateTimeTakenToMove(ElevatorData, int), which is exact for an elevator already at full speed.
 	 */
 	public static int calculateTimeTakenToMove(int location, int destination) {
-		int time = 0;
-		int floorsToMove = Math.abs(destination - location);
-		
-		// Calculating time when we moving at least 2 floors. This means add acceleration time for 1 floor (MOVING), stop time for another (STOP), and max speed movement time for any other floors (MOVING_MAX)
-		if (floorsToMove >= 2) {
-			time += ElevatorTimes.MOVING + ElevatorTimes.STOP;
-			time += (floorsToMove - 2) * ElevatorTimes.MOVING_MAX;
-		
-		// If there's only 1 floor to move, then the time is only the stop time (STOP)
-		} else if (floorsToMove == 1) {
-			time += ElevatorTimes.STOP;
-		}
-		
-		return time;
+		return TravelTimeTable.BUILDING.fromRest(location, destination);
+	}
+	
+	
+	
+	/*
+	 * Find the travel time from where the elevator is to a floor. If the elevator is already moving towards the floor, it's at full
+	 * speed, which is (ElevatorTimes.MOVING - ElevatorTimes.MOVING_MAX) seconds quicker than starting from rest.
+	 */
+	public static int calculateTimeTakenToMove(ElevatorData elevator, int destination) {
+		boolean cruising = (elevator.state() == ElevatorStates.MOVING_UP && destination > elevator.location())
+				|| (elevator.state() == ElevatorStates.MOVING_DOWN && destination < elevator.location());
+		return cruising ? TravelTimeTable.BUILDING.atCruise(elevator.location(), destination) : TravelTimeTable.BUILDING.fromRest(elevator.location(), destination);
 	}
 	
 	
@@ -620,7 +688,7 @@ public class SchedulingAlgorithm {
 	 * Helper for calculateTripTimes(). Find the amount of time it takes to get the doors to open and close.
 	 */
 	public static int calculateTimeTakenToOpenAndCloseDoors() {
-		return 2 * ElevatorTimes.DOORS;
+		return TravelTimeTable.BUILDING.doors();
 	}
 	
 	
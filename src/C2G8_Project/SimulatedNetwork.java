@@ -0,0 +1,152 @@
+package C2G8_Project;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory network for Dispatchers running on a DiscreteEventSimulator.
+ *
+ * Each transport opened on the network gets its own made up port on the loopback address. A frame sent to that
+ * address is copied and delivered to the receiving transport as an event on the simulator after the network's
+ * latency, so messages between the systems take virtual time and arrive in a deterministic order.
+ *
+ * Frames sent from outside the simulator's events, which happens while the systems connect to each other before
+ * the simulation runs, are delivered immediately on the sending thread since the sender is usually blocked in
+ * Dispatcher.connectNewDestination waiting for the reply. Frames sent to an address with no transport are dropped like
+ * a datagram would be.
+ *
+ * @author agent
+ *
+ */
+final class SimulatedNetwork {
+	private final DiscreteEventSimulator simulator;
+	private final long latencyNanos;
+	private final HashMap<Integer,Transport> transports = new HashMap<Integer,Transport>();
+	private int nextPort = 1;
+
+	/**
+	 * @param simulator The simulator frames are delivered on
+	 * @param latency How long a frame takes to arrive
+	 * @param unit The unit of the latency
+	 */
+	SimulatedNetwork(final DiscreteEventSimulator simulator,final long latency,final TimeUnit unit) {
+		this.simulator = simulator;
+		this.latencyNanos = unit.toNanos(latency);
+	}
+
+	/**
+	 * @return A new transport with its own port, for a Dispatcher
+	 */
+	synchronized DispatchTransport open() {
+		Transport transport = new Transport(nextPort++);
+		transports.put(transport.getLocalPort(), transport);
+		return transport;
+	}
+
+	private synchronized Transport transportAt(final int port) {
+		return transports.get(port);
+	}
+
+	private synchronized void remove(final Transport transport) {
+		transports.remove(transport.getLocalPort());
+	}
+
+	/**
+	 * A transport on the simulated network
+	 */
+	private final class Transport implements DispatchTransport {
+		private final InetSocketAddress localAddress;
+		private FrameReceiver receiver = null;
+		private final ArrayList<Runnable> heldFrames = new ArrayList<Runnable>(); //Arrived before serve was called
+		private boolean closed = false;
+
+		private Transport(final int port) {
+			localAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(),port);
+		}
+
+		@Override
+		public int getLocalPort() {
+			return localAddress.getPort();
+		}
+
+		@Override
+		public InetAddress getLocalAddress() {
+			return localAddress.getAddress();
+		}
+
+		@Override
+		public void send(final ByteBuffer frame,final InetSocketAddress destination) {
+			final Transport target = transportAt(destination.getPort());
+			if(target == null) {
+				return;
+			}
+			final byte[] data = new byte[frame.remaining()];
+			frame.get(data);
+
+			if(simulator.isRunningOnThisThread()) {
+				simulator.schedule(() -> target.deliver(data,localAddress), latencyNanos, TimeUnit.NANOSECONDS);
+			}
+			else {
+				target.deliver(data,localAddress);
+			}
+		}
+
+		private void deliver(final byte[] data,final InetSocketAddress source) {
+			FrameReceiver current;
+			synchronized(this) {
+				if(closed) {
+					return;
+				}
+				if(receiver == null) {
+					heldFrames.add(() -> deliver(data,source));
+					return;
+				}
+				current = receiver;
+			}
+			current.receiveFrame(ByteBuffer.wrap(data),source);
+		}
+
+		@Override
+		public void serve(final FrameReceiver receiver) {
+			ArrayList<Runnable> held;
+			synchronized(this) {
+				this.receiver = receiver;
+				held = new ArrayList<Runnable>(heldFrames);
+				heldFrames.clear();
+			}
+			for(Runnable frame : held) {
+				frame.run();
+			}
+
+			//Frames are delivered by the simulator, this only blocks like the other transports until closed
+			synchronized(this) {
+				while(!closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized(this) {
+				closed = true;
+				notifyAll();
+			}
+			remove(this);
+		}
+
+		@Override
+		public synchronized boolean isClosed() {
+			return closed;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The time the systems run on, and a way to run something once a delay has passed on that time. RealTimeClock is the wall clock
+ *  with a ScheduledExecutorService, DiscreteEventSimulator is a virtual clock that jumps straight to the next thing due.
+ *
+ * More details:
+ *  Anything timed by the simulation (how long an elevator takes to move, when a passenger arrives, when the scheduler pings the
+ *  floor) reads the time from here and waits by scheduling, never by sleeping or spinning, so the same code runs in real time or
+ *  as fast as the CPU allows.
+ */
+public interface SimulationClock {
+
+	/*** Something scheduled to run, that can be cancelled before it does ***/
+	interface Scheduled {
+		void cancel();
+	}
+
+	/*** The time in nanoseconds, only meaningful compared to another time from the same clock (like System.nanoTime()) ***/
+	long nanoTime();
+
+	/*** Runs the task once the delay has passed (A delay of 0 or less runs it as soon as possible) ***/
+	Scheduled schedule(Runnable task, long delay, TimeUnit unit);
+}
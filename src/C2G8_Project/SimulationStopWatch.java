@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The parts of org.apache.commons.lang3.time.StopWatch the systems use, timed by a SimulationClock instead of the wall clock so a
+ *  DiscreteEventSimulator can run them in virtual time.
+ *
+ * More details:
+ *  Behaves like StopWatch: start() on a running or stopped watch throws IllegalStateException (reset() it first), getTime() is the
+ *  time since start() while running, the time between start() and stop() once stopped, and 0 before it starts.
+ */
+final class SimulationStopWatch {
+	private final SimulationClock clock;
+	private boolean started = false;
+	private boolean stopped = false;
+	private long startNanos;
+	private long stopNanos;
+
+	SimulationStopWatch(SimulationClock clock) {
+		this.clock = clock;
+	}
+
+	void start() {
+		if (started) { throw new IllegalStateException("Stopwatch already started."); }
+		if (stopped) { throw new IllegalStateException("Stopwatch must be reset before being restarted."); }
+		startNanos = clock.nanoTime();
+		started = true;
+	}
+
+	void stop() {
+		if (!started) { throw new IllegalStateException("Stopwatch is not running."); }
+		stopNanos = clock.nanoTime();
+		started = false;
+		stopped = true;
+	}
+
+	void reset() {
+		started = false;
+		stopped = false;
+	}
+
+	boolean isStarted() {
+		return started;
+	}
+
+	long getNanoTime() {
+		if (started) { return clock.nanoTime() - startNanos; }
+		if (stopped) { return stopNanos - startNanos; }
+		return 0;
+	}
+
+	long getTime(TimeUnit unit) {
+		return unit.convert(getNanoTime(), TimeUnit.NANOSECONDS);
+	}
+}
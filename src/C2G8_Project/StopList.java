@@ -0,0 +1,67 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The floors an elevator still has to stop at (its targetLocations), in the order they were added. Checking whether the elevator
+ *  stops at a floor and removing a floor don't scan the list.
+ *
+ * More details:
+ *  The list keeps a count of each floor in it since a floor can be added more than once. Nulls are not allowed.
+ */
+class StopList extends IndexedList<Integer> {
+	private static final long serialVersionUID = 1L;
+
+	private final HashMap<Integer, Integer> stops = new HashMap<Integer, Integer>();	// Floor -> number of times it is in the list
+
+	StopList() {
+		super();
+	}
+
+	StopList(Collection<Integer> floors) {
+		super();
+		addAll(floors);
+	}
+
+	/*** Wraps a list of target locations, which is returned as is if it is already a StopList ***/
+	static StopList of(Collection<Integer> floors) {
+		if (floors == null) {
+			return null;
+		}
+		return floors instanceof StopList stopList ? stopList : new StopList(floors);
+	}
+
+	@Override
+	public boolean contains(Object floor) {
+		return stops.containsKey(floor);
+	}
+
+	/*** Removes every stop at a floor. Returns true if the elevator was stopping there ***/
+	boolean removeFloor(int floor) {
+		return contains(floor) && removeIf(stop -> stop == floor);
+	}
+
+	@Override
+	protected void index(Integer floor) {
+		Objects.requireNonNull(floor, "A stop must be a floor");
+		stops.merge(floor, 1, Integer::sum);
+	}
+
+	@Override
+	protected void unindex(Integer floor) {
+		stops.computeIfPresent(floor, (key, count) -> count == 1 ? null : count - 1);
+	}
+
+	@Override
+	protected void clearIndex() {
+		stops.clear();
+	}
+}
@@ -0,0 +1,146 @@
+package C2G8_Project;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An immutable snapshot of a Dispatcher's subscriptions.
+ *
+ * Every change produces a new snapshot that the Dispatcher publishes atomically, so the packet
+ * path can look up the delivery lanes of a topic without locking or copying. The lanes are kept in
+ * an array indexed by DispatchTopics ID and are shared by every lookup until the subscriptions change again.
+ *
+ * @author agent
+ *
+ */
+final class SubscriptionRegistry {
+	static final SubscriptionRegistry EMPTY = new SubscriptionRegistry(new DispatchNotificationWorker[0][],new HashMap<DispatchConsumer,Subscription>());
+	private static final DispatchNotificationWorker[] NO_LANES = new DispatchNotificationWorker[0];
+
+	private final DispatchNotificationWorker[][] topicLanes;
+	private final Map<DispatchConsumer,Subscription> subscriptions;
+
+	/**
+	 * The delivery lane of a subscriber and the topics it is subscribed to
+	 */
+	private record Subscription(DispatchNotificationWorker lane,Set<Integer> topics) {}
+
+	private SubscriptionRegistry(DispatchNotificationWorker[][] topicLanes,Map<DispatchConsumer,Subscription> subscriptions) {
+		this.topicLanes = topicLanes;
+		this.subscriptions = subscriptions;
+	}
+
+	/**
+	 * @param topicId The DispatchTopics ID of the topic of a received message
+	 * @return The lanes of the subscribers of the topic. The array is shared and must not be modified.
+	 */
+	DispatchNotificationWorker[] lanesFor(int topicId) {
+		if(topicId < 0 || topicId >= topicLanes.length || topicLanes[topicId] == null) {
+			return NO_LANES;
+		}
+		return topicLanes[topicId];
+	}
+
+	/**
+	 * @param topic The DispatchTopics ID of the topic to subscribe to
+	 * @param subscriber The subscriber
+	 * @param laneFactory Creates the delivery lane of a subscriber that has no other subscriptions
+	 * @return A new registry with the subscription added, or this registry if it already existed
+	 */
+	SubscriptionRegistry withSubscription(int topic,DispatchConsumer subscriber,Function<DispatchConsumer,DispatchNotificationWorker> laneFactory) {
+		Subscription current = subscriptions.get(subscriber);
+		if(current != null && current.topics().contains(topic)) {
+			return this;
+		}
+
+		DispatchNotificationWorker lane = current != null ? current.lane() : laneFactory.apply(subscriber);
+		HashSet<Integer> topics = current != null ? new HashSet<Integer>(current.topics()) : new HashSet<Integer>();
+		topics.add(topic);
+		HashMap<DispatchConsumer,Subscription> newSubscriptions = new HashMap<DispatchConsumer,Subscription>(subscriptions);
+		newSubscriptions.put(subscriber, new Subscription(lane,Collections.unmodifiableSet(topics)));
+
+		DispatchNotificationWorker[] oldLanes = lanesFor(topic);
+		DispatchNotificationWorker[] newLanes = new DispatchNotificationWorker[oldLanes.length+1];
+		System.arraycopy(oldLanes, 0, newLanes, 0, oldLanes.length);
+		newLanes[oldLanes.length] = lane;
+		DispatchNotificationWorker[][] newTopicLanes = Arrays.copyOf(topicLanes, Math.max(topicLanes.length, topic+1));
+		newTopicLanes[topic] = newLanes;
+
+		return new SubscriptionRegistry(newTopicLanes,newSubscriptions);
+	}
+
+	/**
+	 * Removes a subscription. Once a subscriber has no subscriptions left its lane is dropped,
+	 * messages already in the lane are still delivered.
+	 * @param topic The DispatchTopics ID of the topic to unsubscribe from
+	 * @param subscriber The subscriber
+	 * @return A new registry with the subscription removed, or this registry if it did not exist
+	 */
+	SubscriptionRegistry withoutSubscription(int topic,DispatchConsumer subscriber) {
+		Subscription current = subscriptions.get(subscriber);
+		if(current == null || !current.topics().contains(topic)) {
+			return this;
+		}
+
+		HashSet<Integer> topics = new HashSet<Integer>(current.topics());
+		topics.remove(topic);
+		HashMap<DispatchConsumer,Subscription> newSubscriptions = new HashMap<DispatchConsumer,Subscription>(subscriptions);
+		if(topics.isEmpty()) {
+			newSubscriptions.remove(subscriber);
+		}
+		else {
+			newSubscriptions.put(subscriber, new Subscription(current.lane(),Collections.unmodifiableSet(topics)));
+		}
+
+		DispatchNotificationWorker[] oldLanes = lanesFor(topic);
+		DispatchNotificationWorker[][] newTopicLanes = topicLanes.clone();
+		if(oldLanes.length == 1) {
+			newTopicLanes[topic] = null;
+		}
+		else {
+			DispatchNotificationWorker[] newLanes = new DispatchNotificationWorker[oldLanes.length-1];
+			int i = 0;
+			for(DispatchNotificationWorker lane : oldLanes) {
+				if(lane != current.lane()) {
+					newLanes[i++] = lane;
+				}
+			}
+			newTopicLanes[topic] = newLanes;
+		}
+
+		return new SubscriptionRegistry(newTopicLanes,newSubscriptions);
+	}
+
+	/**
+	 * @return A copy of the topics of each subscriber
+	 */
+	HashMap<DispatchConsumer,HashSet<String>> getSubscribers() {
+		HashMap<DispatchConsumer,HashSet<String>> copy = new HashMap<DispatchConsumer,HashSet<String>>();
+		subscriptions.forEach((subscriber,subscription) -> {
+			HashSet<String> topics = new HashSet<String>();
+			for(int topic : subscription.topics()) {
+				topics.add(DispatchTopics.nameOf(topic));
+			}
+			copy.put(subscriber, topics);
+		});
+		return copy;
+	}
+
+	/**
+	 * @return A copy of the subscribers of each topic
+	 */
+	HashMap<String,HashSet<DispatchConsumer>> getTopicSubscribers() {
+		HashMap<String,HashSet<DispatchConsumer>> copy = new HashMap<String,HashSet<DispatchConsumer>>();
+		subscriptions.forEach((subscriber,subscription) -> {
+			for(int topic : subscription.topics()) {
+				copy.computeIfAbsent(DispatchTopics.nameOf(topic), t -> new HashSet<DispatchConsumer>()).add(subscriber);
+			}
+		});
+		return copy;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  Runs the whole system (Scheduler, FloorSystem and ElevatorSystem, as they are) in one program on a DiscreteEventSimulator, so a
+ *  scenario runs in virtual time as fast as the CPU allows and always plays out the same way. Run main for a scenario of any length.
+ *
+ * More details:
+ *  The elevators, the floors' passenger arrivals and the scheduler's main loop are all scheduled on the simulator instead of running
+ *  on threads of their own, and the systems talk through a SimulatedNetwork with Dispatchers that deliver on the calling thread
+ *  (DispatchExecutionModes.CALLER_THREAD). So everything runs on the thread running the simulator, one event at a time, in an order
+ *  that only depends on the scenario. The systems run at real speed (no acceleration), the simulator just doesn't wait.
+ *
+ *  The systems connect to each other while they are made, before the simulation runs, just like they do over UDP. The dispatchers'
+ *  threads only wait for their transports to close. BatchAssignment's time budget is timed on the simulator too, so it never runs
+ *  out however slow the run is.
+ */
+public final class SystemSimulation {
+
+	static final long NETWORK_LATENCY_MICROS = 500;	// How long a message takes between two systems
+	static final long MAX_SIMULATED_HOURS = 48;	// A scenario still running by then is stopped
+
+	private final DiscreteEventSimulator simulator = new DiscreteEventSimulator();
+	private final int passengers;
+	private final ElevatorSystem elevatorSystem;
+	private final Scheduler scheduler;
+
+	/*** What happened in a simulation ***/
+	public record Result(
+			int  passengers,
+			int  requestsReceived,
+			int  requestsComplete,
+			boolean finished,	// The scheduler shut the systems down after completing every request
+			long simulatedMillis,
+			long events,
+			long wallMillis
+	) {
+		public String row() {
+			return String.format("%d/%d requests complete (%d received), %s after %.1f simulated minutes. %d events in %d ms.", requestsComplete, passengers, requestsReceived,
+					finished ? "finished" : "STOPPED", simulatedMillis / 60000.0, events, wallMillis);
+		}
+	}
+
+	/*
+	 * Makes the systems and connects them for the given scenario.
+	 * INPUT: scenario - the passenger requests, sorted by time (PassengerRequest.generateScenario()).
+	 */
+	SystemSimulation(ArrayList<PassengerRequest> scenario) throws SocketException {
+		SimulatedNetwork network = new SimulatedNetwork(simulator, NETWORK_LATENCY_MICROS, TimeUnit.MICROSECONDS);
+		Dispatcher elevatorDispatcher = new Dispatcher(Destinations.ELEVATOR_SYSTEM, null, network.open(), DispatchExecutionModes.CALLER_THREAD);
+		Dispatcher floorDispatcher = new Dispatcher(null, "FloorSystemDispatcher", network.open(), DispatchExecutionModes.CALLER_THREAD);
+		Dispatcher schedulerDispatcher = new Dispatcher(Destinations.SCHEDULER, null, network.open(), DispatchExecutionModes.CALLER_THREAD);
+
+		passengers = scenario.size();
+		elevatorSystem = new ElevatorSystem(CONFIG.ELEVATORS, 1, elevatorDispatcher, simulator);
+		FloorSystem floorSystem = new FloorSystem(CONFIG.FLOORS, 1, floorDispatcher, simulator, scenario);
+		elevatorSystem.start();
+		floorSystem.start();
+
+		String address = InetAddress.getLoopbackAddress().getHostAddress();
+		scheduler = new Scheduler(address, floorDispatcher.getPort(), address, elevatorDispatcher.getPort(), schedulerDispatcher, simulator);
+		scheduler.scenarioRequests = passengers;
+	}
+
+	/*** The scheduler, for looking at its "MASTER SHEET" after a run ***/
+	Scheduler scheduler() {
+		return scheduler;
+	}
+
+	/*
+	 * Runs the scenario until the scheduler shuts the systems down, or MAX_SIMULATED_HOURS have been simulated.
+	 * OUTPUT: What happened.
+	 */
+	Result run() {
+		long wallStart = System.nanoTime();
+		scheduler.start();
+		simulator.runUntil(TimeUnit.HOURS.toNanos(MAX_SIMULATED_HOURS));
+
+		boolean finished = !scheduler.isRunning();
+		if (!finished) {
+			scheduler.shutdown();	// Not on the simulator's thread, so the other systems are told straight away
+		}
+		elevatorSystem.shutdown();
+		return new Result(passengers, scheduler.requestIDCounter, scheduler.requestsComplete.size(), finished,
+				TimeUnit.NANOSECONDS.toMillis(simulator.nanoTime()), simulator.getEventsRun(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart));
+	}
+
+	/*
+	 * Runs a generated scenario. Arguments (all optional): seed, number of passengers, scenario length in minutes.
+	 */
+	public static void main(String[] args) throws Exception {
+		long seed    = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+		int people   = (args.length > 1) ? Integer.parseInt(args[1]) : CONFIG.MAX_PEOPLE;
+		long minutes = (args.length > 2) ? Long.parseLong(args[2]) : TimeUnit.MILLISECONDS.toMinutes(CONFIG.MAX_SCENARIO_DURATION_MILLS);
+
+		ArrayList<PassengerRequest> scenario = PassengerRequest.generateScenario(people, TimeUnit.MINUTES.toMillis(Math.max(minutes, 1)), new Random(seed));
+		System.out.println(String.format("%d floors, %d elevators, %d passengers over %d minutes (seed %d).", CONFIG.FLOORS, CONFIG.ELEVATORS, scenario.size(), minutes, seed));
+		System.out.println(new SystemSimulation(scenario).run().row());
+	}
+}
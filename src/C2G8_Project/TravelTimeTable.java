@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The time, in seconds, for an elevator to travel between two floors and stop there, looked up instead of worked out from
+ *  ElevatorTimes every time. SchedulingAlgorithm looks these up for every eligible elevator and every stop on its way to a request.
+ *
+ * More details:
+ *  The time only depends on how many floors apart the two floors are, so the table holds one entry per distance, built once for the
+ *  number of floors in the building. There are two sets of entries, matching how ElevatorSubsystem moves:
+ *   From rest: the first floor takes MOVING (speeding up), the floors after it MOVING_MAX and the floor it stops at STOP.
+ *   At cruise: the elevator is already moving towards the floor at full speed, so the first floor takes MOVING_MAX instead of MOVING.
+ *  A single floor takes STOP either way, since the elevator stops as soon as it leaves. Distances larger than the building (only
+ *  possible with made up floors) are worked out the same way.
+ */
+public final class TravelTimeTable {
+	public static final TravelTimeTable BUILDING = new TravelTimeTable(CONFIG.FLOORS);	// The table for this building
+
+	private final int[] fromRest;	// By number of floors
+	private final int[] atCruise;	// By number of floors
+	private final int doors;
+
+	public TravelTimeTable(int floors) {
+		fromRest = new int[Math.max(floors, 1)];
+		atCruise = new int[Math.max(floors, 1)];
+		for (int distance = 0; distance < fromRest.length; distance++) {
+			fromRest[distance] = timeFromRest(distance);
+			atCruise[distance] = timeAtCruise(distance);
+		}
+		doors = 2 * ElevatorTimes.DOORS;
+	}
+
+	private static int timeFromRest(int distance) {
+		if (distance == 0) { return 0; }
+		if (distance == 1) { return ElevatorTimes.STOP; }
+		return ElevatorTimes.MOVING + (distance - 2) * ElevatorTimes.MOVING_MAX + ElevatorTimes.STOP;
+	}
+
+	private static int timeAtCruise(int distance) {
+		if (distance <= 1) { return timeFromRest(distance); }
+		return (distance - 1) * ElevatorTimes.MOVING_MAX + ElevatorTimes.STOP;
+	}
+
+	/*** Time to travel from location to destination and stop, starting from rest ***/
+	public int fromRest(int location, int destination) {
+		int distance = Math.abs(destination - location);
+		return (distance < fromRest.length) ? fromRest[distance] : timeFromRest(distance);
+	}
+
+	/*** Time to travel from location to destination and stop, already moving towards it at full speed ***/
+	public int atCruise(int location, int destination) {
+		int distance = Math.abs(destination - location);
+		return (distance < atCruise.length) ? atCruise[distance] : timeAtCruise(distance);
+	}
+
+	/*** Time to open and close the doors ***/
+	public int doors() {
+		return doors;
+	}
+}
@@ -18,6 +18,6 @@ public record ViewData(
 		HashMap<Integer, ArrayList<ViewRequestData>> requestsActive,
 		ArrayList<ViewRequestData>                   requestsComplete,
 		HashMap<Integer, ViewElevatorData>           elevatorLatestData,
-		HashMap<Integer, HashMap<Direction,Boolean>> floorButtonLamp,	// Changes when button pressed by passengers
-		HashMap<Integer, HashMap<Direction,Boolean>> floorDirectionLamp	// Changes on arrival/departure of elevator
+		FloorLampState                               floorButtonLamp,	// Changes when button pressed by passengers
+		FloorLampState                               floorDirectionLamp	// Changes on arrival/departure of elevator
 ) {}
@@ -0,0 +1,37 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @author agent
+ *
+ * The changes to the scheduler's "Master Sheet" since the last ViewDelta that was sent to the monitor (or view). Every field
+ * holds the same kind of data as ViewData, but only the requests, elevators and lamps that changed are included. The monitor
+ * keeps a replica of the Master Sheet (see ViewReplica) and applies each delta to it in sequence order.
+ *
+ * A keyframe holds the entire Master Sheet instead of only the changes, and replaces the replica rather than updating it.
+ * Keyframes are sent periodically and when the monitor asks for one after missing a delta. Completed requests never change, so a
+ * keyframe only holds the most recently completed ones and the replica keeps the ones it already has.
+ */
+public record ViewDelta(
+		long                                         sequence,	// One more than the sequence of the delta sent before it
+		boolean                                      keyframe,	// Holds the entire Master Sheet
+		ArrayList<ViewRequestData>                   requestsAwaitingElevatorAssignment,	// Requests that were added or changed
+		HashMap<Integer, ArrayList<ViewRequestData>> requestsActive,	// Requests that were added or changed, by elevator
+		ArrayList<ViewRequestData>                   requestsComplete,	// Requests that were completed (the latest ones in a keyframe)
+		ArrayList<Integer>                           requestsRemoved,	// IDs of requests that are no longer in any list
+		HashMap<Integer, ViewElevatorData>           elevatorLatestData,	// Elevators with new data
+		FloorLampState                               floorButtonLamp,	// Lamps that turned on or off (a full state in a keyframe)
+		FloorLampState                               floorDirectionLamp	// Lamps that turned on or off (a full state in a keyframe)
+) {
+
+	/*** True if the delta has nothing for the monitor to apply ***/
+	boolean isEmpty() {
+		return !keyframe && requestsAwaitingElevatorAssignment.isEmpty() && requestsActive.isEmpty() && requestsComplete.isEmpty()
+				&& requestsRemoved.isEmpty() && elevatorLatestData.isEmpty() && floorButtonLamp.isEmpty() && floorDirectionLamp.isEmpty();
+	}
+}
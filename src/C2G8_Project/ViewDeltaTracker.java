@@ -0,0 +1,171 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  Remembers what the monitor (or view) was last sent of the scheduler's "Master Sheet" so the UpdateView state only has to send
+ *  what changed. Each call to nextDelta compares the Master Sheet against what was last sent and returns a ViewDelta holding the
+ *  requests, elevators and floors that are different, or null if nothing is.
+ *
+ * More details:
+ *  Complete requests are never changed or removed once they are complete, so only the requests completed since the last delta are
+ *  looked at. A keyframe holding the entire Master Sheet is made every CONFIG.VIEW_KEYFRAME_INTERVAL deltas so a monitor that missed
+ *  a delta catches up even if its request for a keyframe is lost. requestKeyframe can be called from any thread.
+ *
+ *  The completed requests keep growing for the whole scenario, so a keyframe only sends the last CONFIG.VIEW_KEYFRAME_COMPLETE_REQUESTS
+ *  of them again (plus any not sent yet) instead of all of them, to stay within a datagram. The monitor keeps the ones it already has.
+ */
+class ViewDeltaTracker {
+
+	/*** Which list a request was in when it was last sent. Elevator IDs start at 1 so these can't be confused with an active list ***/
+	private static final int AWAITING = 0;
+	private static final int COMPLETE = -1;
+
+	/*** The parts of a request that can change, as they were last sent ***/
+	private record SentRequest(int list, int elevatorID, boolean pickedUpPassenger, boolean requestComplete, boolean faultHandled) {
+
+		static SentRequest of(int list, RequestData request) {
+			ElevatorFault fault = request.fault();
+			return new SentRequest(list, request.elevatorID(), request.pickedUpPassenger(), request.requestComplete(), fault != null && fault.isFaultHandled());
+		}
+	}
+
+	private final int keyframeInterval;
+	private final int keyframeCompleteRequests;
+	private long sequence = 0;
+	private int deltasSinceKeyframe = 0;
+	private volatile boolean keyframeRequested = false;
+
+	private final HashMap<Integer, SentRequest> sentRequests = new HashMap<Integer, SentRequest>();
+	private int sentCompleteCount = 0;
+	private final HashMap<Integer, ViewElevatorData> sentElevators = new HashMap<Integer, ViewElevatorData>();
+	private FloorLampState sentButtonLamps = null;	// Null until the first keyframe
+	private FloorLampState sentDirectionLamps = null;
+
+	ViewDeltaTracker() {
+		this(CONFIG.VIEW_KEYFRAME_INTERVAL, CONFIG.VIEW_KEYFRAME_COMPLETE_REQUESTS);
+	}
+
+	ViewDeltaTracker(int keyframeInterval, int keyframeCompleteRequests) {
+		this.keyframeInterval = keyframeInterval;
+		this.keyframeCompleteRequests = keyframeCompleteRequests;
+	}
+
+	/*** Getters ***/
+	long sequence()               { return sequence; }
+	boolean isKeyframeRequested() { return keyframeRequested; }
+
+	/*** Makes the next delta a keyframe. Used when the monitor has missed a delta and needs the entire Master Sheet ***/
+	void requestKeyframe() { keyframeRequested = true; }
+
+	/**
+	 * Compares the Master Sheet against what was last sent and returns the changes.
+	 * @return The delta to send to the monitor, or null if nothing changed and no keyframe is due
+	 */
+	ViewDelta nextDelta(List<RequestData> requestsAwaitingElevatorAssignment, Map<Integer, ? extends ArrayList<RequestData>> requestsActive,
+			List<RequestData> requestsComplete, Map<Integer, ElevatorData> elevatorLatestData,
+			FloorLampState floorButtonLamp, FloorLampState floorDirectionLamp) {
+
+		boolean keyframe = sequence == 0 || keyframeRequested || deltasSinceKeyframe >= keyframeInterval;	// The first delta is always a keyframe
+		keyframeRequested = false;	// Cleared before reading the Master Sheet so a request made while reading is kept for the next delta
+		if (keyframe) {
+			sentRequests.clear();
+			sentCompleteCount = Math.min(sentCompleteCount, Math.max(0, requestsComplete.size() - keyframeCompleteRequests));
+			sentElevators.clear();
+			sentButtonLamps = null;
+			sentDirectionLamps = null;
+		}
+
+		// Requests that were added or changed. Anything seen here is removed from notSeen, leaving the requests no longer in any list
+		HashSet<Integer> notSeen = new HashSet<Integer>(sentRequests.keySet());
+		ArrayList<ViewRequestData> awaiting = new ArrayList<ViewRequestData>();
+		for (RequestData request : requestsAwaitingElevatorAssignment) {
+			addIfChanged(AWAITING, request, awaiting, notSeen);
+		}
+		HashMap<Integer, ArrayList<ViewRequestData>> active = new HashMap<Integer, ArrayList<ViewRequestData>>();
+		for (Map.Entry<Integer, ? extends ArrayList<RequestData>> entry : requestsActive.entrySet()) {
+			ArrayList<ViewRequestData> list = new ArrayList<ViewRequestData>();
+			if (entry.getValue() != null) {
+				for (RequestData request : entry.getValue()) {
+					addIfChanged(entry.getKey(), request, list, notSeen);
+				}
+			}
+			if (keyframe || !list.isEmpty()) { active.put(entry.getKey(), list); }	// A keyframe lists every elevator so the monitor knows about the empty ones
+		}
+		ArrayList<ViewRequestData> complete = new ArrayList<ViewRequestData>();
+		for (int i = sentCompleteCount; i < requestsComplete.size(); i++) {
+			RequestData request = requestsComplete.get(i);
+			complete.add(toView(request));
+			sentRequests.put(request.requestID(), SentRequest.of(COMPLETE, request));
+			notSeen.remove(request.requestID());
+		}
+		sentCompleteCount = requestsComplete.size();
+
+		ArrayList<Integer> removed = new ArrayList<Integer>();
+		for (int requestID : notSeen) {
+			if (sentRequests.get(requestID).list() != COMPLETE) {
+				sentRequests.remove(requestID);
+				removed.add(requestID);
+			}
+		}
+
+		// Elevators with new data. The signal's collections and the target locations are copied since the scheduler changes them in place
+		HashMap<Integer, ViewElevatorData> elevators = new HashMap<Integer, ViewElevatorData>();
+		for (Map.Entry<Integer, ElevatorData> entry : elevatorLatestData.entrySet()) {
+			ElevatorData elevator = entry.getValue();
+			ViewElevatorData current = new ViewElevatorData(copyOf(elevator.signal()), new ArrayList<Integer>(elevator.targetLocations()));
+			if (!current.equals(sentElevators.get(entry.getKey()))) {
+				sentElevators.put(entry.getKey(), current);
+				elevators.put(entry.getKey(), current);
+			}
+		}
+
+		// The lamps are compared a word at a time, and a keyframe (nothing sent) gets a full copy
+		FloorLampState buttonLamps = floorButtonLamp.changesSince(sentButtonLamps);
+		FloorLampState directionLamps = floorDirectionLamp.changesSince(sentDirectionLamps);
+
+		ViewDelta delta = new ViewDelta(sequence + 1, keyframe, awaiting, active, complete, removed, elevators, buttonLamps, directionLamps);
+		if (delta.isEmpty()) {
+			return null;
+		}
+		sentButtonLamps = floorButtonLamp.copy();
+		sentDirectionLamps = floorDirectionLamp.copy();
+		sequence++;
+		deltasSinceKeyframe = keyframe ? 0 : deltasSinceKeyframe + 1;
+		return delta;
+	}
+
+	/*** Adds the request to the delta's list if it moved lists or changed since it was last sent ***/
+	private void addIfChanged(int list, RequestData request, ArrayList<ViewRequestData> deltaList, HashSet<Integer> notSeen) {
+		notSeen.remove(request.requestID());
+		SentRequest current = SentRequest.of(list, request);
+		if (!current.equals(sentRequests.get(request.requestID()))) {
+			sentRequests.put(request.requestID(), current);
+			deltaList.add(toView(request));
+		}
+	}
+
+	private static ViewRequestData toView(RequestData data) {
+		return new ViewRequestData(data.requestID(), data.request(), data.elevatorID(), data.pickedUpPassenger(), data.requestComplete());
+	}
+
+	private static ElevatorSignal copyOf(ElevatorSignal signal) {
+		if (signal == null) {
+			return null;
+		}
+		return new ElevatorSignal(signal.state(), signal.id(), signal.location(),
+				signal.newCarBttns() == null ? null : new ArrayList<Integer>(signal.newCarBttns()),
+				signal.carBttns() == null ? null : new HashSet<Integer>(signal.carBttns()),
+				signal.faultType());
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  Sends the monitor (or view) updates without holding up the scheduler. The UPDATE_VIEW state tells the publisher that the
+ *  "Master Sheet" changed, and the publisher only takes a delta of the changes once per frame (CONFIG.VIEW_FRAME_MILLS) no matter
+ *  how many changes were made. Serializing and sending the delta happens on the publisher's own thread.
+ *
+ * More details:
+ *  The first change after a quiet frame is published straight away. Changes made during the frame after it are held until the frame
+ *  ends, and the LISTENING state comes back to UPDATE_VIEW when isFrameDue says so (the main loop's sleep is cut short by
+ *  nanosUntilFrame). When no monitor is registered nothing is taken or serialized at all. A monitor that registers later asks for a
+ *  keyframe, which is what brings it up to date.
+ *
+ *  The times passed in are from the scheduler's clock, which starts at 0 on a DiscreteEventSimulator, so they are only compared with
+ *  each other. Everything other than the sending is only called from the scheduler's thread.
+ */
+class ViewPublisher {
+	private final ViewDeltaTracker tracker;
+	private final long frameNanos;
+	private final BooleanSupplier isMonitorRegistered;
+	private final Consumer<ViewDelta> send;
+	private final ExecutorService sender;
+
+	private boolean hasChanges = false;	// Changes waiting for the next frame
+	private boolean framesStarted = false;	// Set by the first publish, the time only comes from the caller's clock
+	private long nextFrameNanos;
+	private long framesPublished = 0;
+	private long changesCoalesced = 0;	// Changes held for the next frame instead of being sent on their own
+
+	/**
+	 * @param name The name of the scheduler, used to name the publisher's thread
+	 * @param tracker Makes the deltas and holds keyframe requests from the monitor
+	 * @param frameMills The shortest time between two updates
+	 * @param isMonitorRegistered True when there is a monitor to send updates to
+	 * @param send Sends a delta to the monitor, called on the publisher's thread
+	 */
+	ViewPublisher(String name, ViewDeltaTracker tracker, long frameMills, BooleanSupplier isMonitorRegistered, Consumer<ViewDelta> send) {
+		this.tracker = tracker;
+		this.frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMills);
+		this.isMonitorRegistered = isMonitorRegistered;
+		this.send = send;
+		this.sender = Executors.newSingleThreadExecutor(runnable -> {
+			Thread td = new Thread(runnable);
+			td.setName(String.format("%s_ViewPublisher", name));
+			td.setDaemon(true);
+			return td;
+		});
+	}
+
+	/*** Getters ***/
+	long getFramesPublished()  { return framesPublished; }
+	long getChangesCoalesced() { return changesCoalesced; }
+
+	/*** True if there is something to send the monitor and its frame has started ***/
+	boolean isFrameDue(long nowNanos) {
+		return nanosUntilFrame(nowNanos) == 0;
+	}
+
+	/*** How long until there is something to send the monitor, Long.MAX_VALUE if there is nothing waiting to be sent ***/
+	long nanosUntilFrame(long nowNanos) {
+		if (!(hasChanges || tracker.isKeyframeRequested()) || !isMonitorRegistered.getAsBoolean()) {
+			return Long.MAX_VALUE;
+		}
+		return framesStarted ? Math.max(0, nextFrameNanos - nowNanos) : 0;
+	}
+
+	/**
+	 * Records that the "Master Sheet" changed and, if the frame has started, takes the delta and sends it on the publisher's thread.
+	 * @param nextDelta Takes the delta of the "Master Sheet", only called when it is going to be sent
+	 * @return True if a delta was sent
+	 */
+	boolean publish(long nowNanos, Supplier<ViewDelta> nextDelta) {
+		if (!isMonitorRegistered.getAsBoolean()) {
+			hasChanges = false;	// A monitor that registers later asks for a keyframe, so there is nothing to catch up on
+			return false;
+		}
+		if (framesStarted && nowNanos - nextFrameNanos < 0) {
+			hasChanges = true;
+			changesCoalesced++;
+			return false;
+		}
+		hasChanges = false;
+		framesStarted = true;
+		nextFrameNanos = nowNanos + frameNanos;
+
+		ViewDelta delta = nextDelta.get();
+		if (delta == null) {
+			return false;
+		}
+		framesPublished++;
+		sender.execute(() -> send.accept(delta));
+		return true;
+	}
+
+	/*** Stops the publisher's thread once the deltas already handed to it are sent ***/
+	void shutdown() {
+		sender.shutdown();
+		try {
+			sender.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author agent
+ *
+ * Overview:
+ *  The monitor's (or view's) copy of the scheduler's "Master Sheet". It is built up by applying the ViewDeltas sent by the scheduler
+ *  in sequence order, and can be turned into a ViewData for displaying.
+ *
+ * More details:
+ *  A delta can only be applied on top of the delta before it. When a delta is missing, the replica stops applying deltas until the
+ *  next keyframe arrives and apply returns false once so the owner can ask the scheduler for a keyframe straight away. Deltas that
+ *  are older than the replica (delayed or duplicated by the network) are ignored. A keyframe replaces everything but the complete
+ *  requests, which never change and are only partly resent. Not thread safe.
+ */
+public class ViewReplica {
+	private long sequence = 0;
+	private boolean isSynchronized = false;	// False until the first keyframe and after a missing delta
+
+	private final LinkedHashMap<Integer, ViewRequestData> requestsAwaitingElevatorAssignment = new LinkedHashMap<Integer, ViewRequestData>();
+	private final HashMap<Integer, LinkedHashMap<Integer, ViewRequestData>> requestsActive = new HashMap<Integer, LinkedHashMap<Integer, ViewRequestData>>();
+	private final LinkedHashMap<Integer, ViewRequestData> requestsComplete = new LinkedHashMap<Integer, ViewRequestData>();
+	private final HashMap<Integer, ViewElevatorData> elevatorLatestData = new HashMap<Integer, ViewElevatorData>();
+	private FloorLampState floorButtonLamp = null;	// Null until the first keyframe
+	private FloorLampState floorDirectionLamp = null;
+
+	/*** Getters ***/
+	public long getSequence()       { return sequence; }
+	public boolean isSynchronized() { return isSynchronized; }
+
+	/**
+	 * Applies a delta from the scheduler, or starts over from it if it is a keyframe.
+	 * @param delta The delta received from the scheduler
+	 * @return False if the delta showed that one was missed and a keyframe should be requested, otherwise true
+	 */
+	public boolean apply(ViewDelta delta) {
+		if (delta.keyframe()) {
+			if (isSynchronized && delta.sequence() <= sequence) {
+				return true;	// An old keyframe that arrived late
+			}
+			requestsAwaitingElevatorAssignment.clear();
+			requestsActive.clear();
+			elevatorLatestData.clear();	// Complete requests are kept, a keyframe only holds the latest ones
+			floorButtonLamp = delta.floorButtonLamp().copy();
+			floorDirectionLamp = delta.floorDirectionLamp().copy();
+		}
+		else if (!isSynchronized || delta.sequence() <= sequence) {
+			return true;	// Waiting for a keyframe, or an old delta that arrived late
+		}
+		else if (delta.sequence() != sequence + 1) {
+			isSynchronized = false;
+			return false;
+		}
+
+		for (int requestID : delta.requestsRemoved()) {
+			remove(requestID);
+		}
+		for (ViewRequestData request : delta.requestsAwaitingElevatorAssignment()) {
+			remove(request.requestID());
+			requestsAwaitingElevatorAssignment.put(request.requestID(), request);
+		}
+		for (Map.Entry<Integer, ArrayList<ViewRequestData>> entry : delta.requestsActive().entrySet()) {
+			LinkedHashMap<Integer, ViewRequestData> list = requestsActive.computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<Integer, ViewRequestData>());
+			for (ViewRequestData request : entry.getValue()) {
+				remove(request.requestID());
+				list.put(request.requestID(), request);
+			}
+		}
+		for (ViewRequestData request : delta.requestsComplete()) {
+			remove(request.requestID());
+			requestsComplete.put(request.requestID(), request);
+		}
+		elevatorLatestData.putAll(delta.elevatorLatestData());
+		if (!delta.keyframe()) {
+			floorButtonLamp.apply(delta.floorButtonLamp());
+			floorDirectionLamp.apply(delta.floorDirectionLamp());
+		}
+
+		sequence = delta.sequence();
+		isSynchronized = true;
+		return true;
+	}
+
+	/*** Removes a request from whichever awaiting or active list it is in ***/
+	private void remove(int requestID) {
+		if (requestsAwaitingElevatorAssignment.remove(requestID) != null) {
+			return;
+		}
+		for (LinkedHashMap<Integer, ViewRequestData> list : requestsActive.values()) {
+			if (list.remove(requestID) != null) {
+				return;
+			}
+		}
+	}
+
+	/*** Copies the replica into a ViewData. The copy is not changed by later deltas so it can be handed to another thread ***/
+	public ViewData toViewData() {
+		HashMap<Integer, ArrayList<ViewRequestData>> active = new HashMap<Integer, ArrayList<ViewRequestData>>();
+		for (Map.Entry<Integer, LinkedHashMap<Integer, ViewRequestData>> entry : requestsActive.entrySet()) {
+			active.put(entry.getKey(), new ArrayList<ViewRequestData>(entry.getValue().values()));
+		}
+
+		return new ViewData(
+				new ArrayList<ViewRequestData>(requestsAwaitingElevatorAssignment.values()),
+				active,
+				new ArrayList<ViewRequestData>(requestsComplete.values()),
+				new HashMap<Integer, ViewElevatorData>(elevatorLatestData),
+				floorButtonLamp == null ? new FloorLampState(CONFIG.FLOORS) : floorButtonLamp.copy(),
+				floorDirectionLamp == null ? new FloorLampState(CONFIG.FLOORS) : floorDirectionLamp.copy()
+				);
+	}
+}
@@ -0,0 +1,63 @@
+package C2G8_Project;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Makes the threads the systems run their elevators, floors and dispatch deliveries on.
+ *
+ * When CONFIG.USE_VIRTUAL_THREADS is set the elevators and floors that run on a thread each get a virtual thread, so a
+ * building with thousands of them doesn't need thousands of platform threads. The Dispatchers then deliver on virtual
+ * threads too (DispatchExecutionModes.VIRTUAL_THREAD_PER_TASK).
+ *
+ * Virtual threads are looked up reflectively so the project still compiles against releases without them. Platform
+ * threads are used when the runtime does not support them.
+ *
+ * @author agent
+ *
+ */
+final class VirtualThreads {
+	private static final ThreadFactory VIRTUAL_FACTORY = createVirtualThreadFactory();
+
+	private VirtualThreads() {}
+
+	/**
+	 * @return True if the runtime supports virtual threads
+	 */
+	static boolean isSupported() {
+		return VIRTUAL_FACTORY != null;
+	}
+
+	/**
+	 * Makes an unstarted thread for an elevator's or floor's loop, a virtual one if CONFIG.USE_VIRTUAL_THREADS is set and supported
+	 * @param name The name of the thread
+	 * @param task What the thread runs
+	 * @return The thread, not yet started
+	 */
+	static Thread newThread(final String name,final Runnable task) {
+		Thread td = CONFIG.USE_VIRTUAL_THREADS && isSupported() ? VIRTUAL_FACTORY.newThread(task) : new Thread(task);
+		td.setName(name);
+		return td;
+	}
+
+	/**
+	 * @return An executor that runs each task on its own virtual thread or null if the runtime does not support virtual threads
+	 */
+	static ExecutorService newPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	private static ThreadFactory createVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+}
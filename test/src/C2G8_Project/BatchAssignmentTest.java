@@ -0,0 +1,128 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * JUnit5 Test Cases for BatchAssignment.java (Matching the requests awaiting an elevator to elevators all together)
+ *
+ * Overview:
+ *  These test cases check that the Hungarian algorithm finds the lowest total cost, and that matching requests together beats
+ *  assigning them one at a time when an older request takes the elevator a younger one needed.
+ */
+class BatchAssignmentTest {
+
+	/*** The lowest total cost of matching every row of the smaller side, by trying every match ***/
+	private static long bruteForce(long[][] cost, int row, boolean[] usedColumns) {
+		if (row == cost.length) { return 0; }
+		boolean rowsLeftOver = cost.length > cost[0].length;
+		long best = Long.MAX_VALUE;
+		if (rowsLeftOver) {
+			int matched = 0;
+			for (boolean used : usedColumns) { if (used) { matched++; } }
+			if (cost.length - row > cost[0].length - matched) { best = bruteForce(cost, row + 1, usedColumns); }	// Leave this row unmatched
+		}
+		for (int column = 0; column < cost[0].length; column++) {
+			if (usedColumns[column]) { continue; }
+			usedColumns[column] = true;
+			long rest = bruteForce(cost, row + 1, usedColumns);
+			usedColumns[column] = false;
+			if (rest != Long.MAX_VALUE) { best = Math.min(best, cost[row][column] + rest); }
+		}
+		return best;
+	}
+
+	@Test
+	public void testSolveFindsLowestTotalCost() {
+		Random random = new Random(3);
+		for (int trial = 0; trial < 200; trial++) {
+			int rows = 1 + random.nextInt(5);
+			int columns = 1 + random.nextInt(5);
+			long[][] cost = new long[rows][columns];
+			for (long[] row : cost) {
+				for (int column = 0; column < columns; column++) { row[column] = random.nextInt(50); }
+			}
+			int[] rowToColumn = BatchAssignment.solve(cost);
+			long total = 0;
+			HashSet<Integer> usedColumns = new HashSet<Integer>();
+			int matched = 0;
+			for (int row = 0; row < rows; row++) {
+				if (rowToColumn[row] == -1) { continue; }
+				assertTrue(usedColumns.add(rowToColumn[row]), "A column is matched once");
+				total += cost[row][rowToColumn[row]];
+				matched++;
+			}
+			assertEquals(Math.min(rows, columns), matched);
+			assertEquals(bruteForce(cost, 0, new boolean[columns]), total, String.format("Trial %d, %dx%d", trial, rows, columns));
+		}
+	}
+
+	@Test
+	public void testBatchBeatsOneAtATime() {
+		HashMap<Integer, ArrayList<RequestData>> requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		HashMap<Integer, ElevatorData> elevatorLatestData = new HashMap<Integer, ElevatorData>();
+		for (int elevatorID = 1; elevatorID <= 2; elevatorID++) {
+			requestsActive.put(elevatorID, new RequestList());
+			elevatorLatestData.put(elevatorID, new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, elevatorID, 1, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		}
+		RequestData older = new RequestData(new FloorRequest(2, 5, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 1);
+		RequestData younger = new RequestData(new FloorRequest(8, 1, Direction.DOWN, new ElevatorFault(ScenarioFaults.NONE)), 2);
+
+		// The older request is a little cheaper with elevator 1, the younger is much cheaper with it. An elevator takes one request.
+		long[][] costs = {{1, 1}, {2, 100}};	// [requestID-1][elevatorID-1]
+		DispatchPolicy policy = new DispatchPolicy() {
+			@Override
+			public int cost(RequestData request, int elevatorID, HashMap<Integer, ? extends ArrayList<RequestData>> active, HashMap<Integer, ElevatorData> latest) {
+				return active.get(elevatorID).isEmpty() ? (int) costs[elevatorID-1][request.requestID()-1] : UNAVAILABLE;
+			}
+
+			@Override
+			public int assign(RequestData request, HashMap<Integer, ? extends ArrayList<RequestData>> active, HashMap<Integer, ElevatorData> latest) {
+				int best = -1;
+				for (int elevatorID = 1; elevatorID <= latest.size(); elevatorID++) {
+					if (cost(request, elevatorID, active, latest) != UNAVAILABLE && (best == -1 || cost(request, elevatorID, active, latest) < cost(request, best, active, latest))) { best = elevatorID; }
+				}
+				return best;
+			}
+		};
+		BatchAssignment.Assigner assigner = (request, elevatorID) -> {
+			request.setElevatorID(elevatorID);
+			return requestsActive.get(elevatorID).add(request);
+		};
+
+		// Out of time before the first round, so they're assigned one at a time: the older request takes elevator 1
+		List<RequestData> assigned = BatchAssignment.assign(List.of(older, younger), requestsActive, elevatorLatestData, policy, RealTimeClock.SYSTEM, 0, assigner);
+		assertEquals(List.of(older, younger), assigned);
+		assertEquals(1, older.elevatorID());
+		assertEquals(2, younger.elevatorID());
+
+		requestsActive.values().forEach(ArrayList::clear);
+		assigned = BatchAssignment.assign(List.of(older, younger), requestsActive, elevatorLatestData, policy, RealTimeClock.SYSTEM, Long.MAX_VALUE / 2, assigner);
+		assertEquals(List.of(older, younger), assigned, "Assigned oldest first");
+		assertEquals(2, older.elevatorID(), "The older request gives up elevator 1 for a total cost of 3 instead of 101");
+		assertEquals(1, younger.elevatorID());
+
+		// No time passes on a simulator while assigning, so the smallest budget still matches them together
+		requestsActive.values().forEach(ArrayList::clear);
+		assigned = BatchAssignment.assign(List.of(older, younger), requestsActive, elevatorLatestData, policy, new DiscreteEventSimulator(), 1, assigner);
+		assertEquals(List.of(older, younger), assigned);
+		assertEquals(2, older.elevatorID());
+		assertEquals(1, younger.elevatorID());
+
+		// Nothing left to take them
+		RequestData third = new RequestData(new FloorRequest(3, 4, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 1);
+		assertTrue(BatchAssignment.assign(List.of(third), requestsActive, elevatorLatestData, policy, RealTimeClock.SYSTEM, Long.MAX_VALUE / 2, assigner).isEmpty());
+	}
+}
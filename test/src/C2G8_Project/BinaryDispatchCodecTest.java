@@ -0,0 +1,116 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests that every message type supported by the binary codec survives a round trip
+ * and that frames of either codec are recognized when received.
+ * @author agent
+ *
+ */
+class BinaryDispatchCodecTest {
+	private final DispatchCodec codec = DispatchCodecs.BINARY.codec();
+	private final ObjectMapper objMap = new ObjectMapper();
+
+	private DispatcherMessage roundTrip(String topic,Object data) throws IOException {
+		byte[] frame = codec.encode(topic, data);
+		return DispatchCodecs.decodeFrame(ByteBuffer.wrap(frame));
+	}
+
+	@Test
+	void testSignals() throws IOException {
+		ElevatorSignal elevatorSignal = new ElevatorSignal(ElevatorStates.MOVING_UP,2,5,new ArrayList<Integer>(List.of(7,9)),new HashSet<Integer>(Set.of(7,9,12)),ScenarioFaults.DOOR_STUCK);
+		DispatcherMessage msg = roundTrip("ELEVATOR_SIGNAL_2",elevatorSignal);
+		assertEquals("ELEVATOR_SIGNAL_2",msg.topic());
+		assertEquals(elevatorSignal,msg.payload(ElevatorSignal.class, objMap));
+		assertEquals(elevatorSignal,objMap.readValue(msg.jsonData(), ElevatorSignal.class));
+
+		ElevatorSignal emptySignal = new ElevatorSignal(ElevatorStates.START,1,1,null,null,null);
+		assertEquals(emptySignal,roundTrip("ELEVATOR_SIGNAL",emptySignal).payload(ElevatorSignal.class, objMap));
+
+		FloorSignal floorSignal = new FloorSignal(FloorSignals.BTN_LAMP_OFF,22,Direction.DOWN);
+		assertEquals(floorSignal,roundTrip("FLOOR_SIGNAL_22",floorSignal).payload(FloorSignal.class, objMap));
+
+		RawFloorRequest request = new RawFloorRequest(3,15,Direction.UP,ScenarioFaults.NONE);
+		assertEquals(request,roundTrip("FLOOR_REQUEST",request).payload(RawFloorRequest.class, objMap));
+	}
+
+	@Test
+	void testViewData() throws IOException {
+		FloorRequest floorRequest = new FloorRequest(4,1,Direction.DOWN,new ElevatorFault(ScenarioFaults.ELEVATOR_STUCK,true));
+		ViewRequestData awaiting = new ViewRequestData(1,floorRequest,-1,false,false);
+		ViewRequestData active = new ViewRequestData(2,new FloorRequest(1,8,Direction.UP,null),3,true,false);
+		HashMap<Integer,ArrayList<ViewRequestData>> requestsActive = new HashMap<Integer,ArrayList<ViewRequestData>>();
+		requestsActive.put(3, new ArrayList<ViewRequestData>(List.of(active)));
+		requestsActive.put(4, new ArrayList<ViewRequestData>());
+		HashMap<Integer,ViewElevatorData> elevators = new HashMap<Integer,ViewElevatorData>();
+		elevators.put(3, new ViewElevatorData(new ElevatorSignal(ElevatorStates.OPEN_DOORS,3,1,new ArrayList<Integer>(),new HashSet<Integer>(Set.of(8)),null),new ArrayList<Integer>(List.of(8))));
+		FloorLampState lamps = new FloorLampState(CONFIG.FLOORS);
+		for(int floor=1;floor<=CONFIG.FLOORS;++floor) {
+			lamps.set(floor, Direction.UP, floor%2==0);
+			lamps.set(floor, Direction.DOWN, floor%3==0);
+		}
+		ViewData view = new ViewData(new ArrayList<ViewRequestData>(List.of(awaiting)),requestsActive,new ArrayList<ViewRequestData>(),elevators,lamps,lamps);
+
+		byte[] binaryFrame = codec.encode("SCHEDULER_UPDATE", view);
+		byte[] jsonFrame = DispatchCodecs.JSON.codec().encode("SCHEDULER_UPDATE", view);
+		assertTrue(binaryFrame.length < jsonFrame.length);
+
+		ViewData received = DispatchCodecs.decodeFrame(ByteBuffer.wrap(binaryFrame)).payload(ViewData.class, objMap);
+		assertEquals(view.requestsActive().keySet(),received.requestsActive().keySet());
+		assertEquals(view.elevatorLatestData(),received.elevatorLatestData());
+		assertEquals(view.floorButtonLamp(),received.floorButtonLamp());
+		assertEquals(view.floorDirectionLamp(),received.floorDirectionLamp());
+		assertEquals(view.floorButtonLamp(),DispatchCodecs.decodeFrame(ByteBuffer.wrap(jsonFrame)).payload(ViewData.class, objMap).floorButtonLamp());
+		ViewRequestData receivedAwaiting = received.requestsAwaitingElevatorAssignment().get(0);
+		assertEquals(awaiting.requestID(),receivedAwaiting.requestID());
+		assertEquals(ScenarioFaults.ELEVATOR_STUCK,receivedAwaiting.request().fault().faultType());
+		assertTrue(receivedAwaiting.request().fault().isFaultHandled());
+		assertEquals(active,received.requestsActive().get(3).get(0));
+	}
+
+	@Test
+	void testStringsAndFallback() throws IOException {
+		assertEquals("MyMESSAGE",roundTrip("test","MyMESSAGE").data());
+		assertEquals("",roundTrip("test",null).data());
+
+		DispatcherConnectRequest request = new DispatcherConnectRequest(Destinations.SCHEDULER,Destinations.FLOOR_SYSTEM,DispatchCodecs.BINARY,DispatcherConnectRequest.FEATURE_BATCHES);
+		assertEquals(request,roundTrip("test",request).payload(DispatcherConnectRequest.class, objMap));
+
+		DispatcherMessage jsonMsg = DispatchCodecs.decodeFrame(ByteBuffer.wrap(DispatchCodecs.JSON.codec().encode("test", request)));
+		assertEquals(request,jsonMsg.payload(DispatcherConnectRequest.class, objMap));
+
+		assertThrows(IOException.class,() -> DispatchCodecs.decodeFrame(ByteBuffer.wrap(new byte[] {BinaryDispatchCodec.MAGIC,BinaryDispatchCodec.VERSION,0})));
+	}
+
+	@Test
+	void testOversizedCounts() {
+		//A view whose first request list claims more requests than any frame could hold
+		ByteBuffer requests = ByteBuffer.allocate(64);
+		requests.put(BinaryDispatchCodec.MAGIC).put(BinaryDispatchCodec.VERSION).putInt(1).put((byte) 't').put((byte) 6).putInt(Integer.MAX_VALUE).putInt(0).flip();
+		assertThrows(IOException.class,() -> DispatchCodecs.decodeFrame(requests));
+
+		//A string longer than the frame, in a buffer without a backing array
+		ByteBuffer string = ByteBuffer.allocateDirect(64);
+		string.put(BinaryDispatchCodec.MAGIC).put(BinaryDispatchCodec.VERSION).putInt(Integer.MAX_VALUE).put((byte) 't').flip();
+		assertThrows(IOException.class,() -> DispatchCodecs.decodeFrame(string));
+
+		//Lamps for more floors than the frame holds words for, after an empty view
+		ByteBuffer lamps = ByteBuffer.allocate(64);
+		lamps.put(BinaryDispatchCodec.MAGIC).put(BinaryDispatchCodec.VERSION).putInt(1).put((byte) 't').put((byte) 6)
+			.putInt(-1).putInt(-1).putInt(-1).putInt(-1).putInt(Integer.MAX_VALUE).putLong(0).putLong(0).flip();
+		assertThrows(IOException.class,() -> DispatchCodecs.decodeFrame(lamps));
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * JUnit5 Test Cases for DispatchPolicies.java and DispatchPolicySimulator.java
+ *
+ * Overview:
+ *  These test cases check that the simulated trip times agree with SchedulingAlgorithm's times, that every policy delivers every
+ *  passenger of a random workload, that the policies pick the elevators they say they do, and that destination dispatch shortens
+ *  trips during up-peak.
+ */
+class DispatchPolicySimulatorTest {
+
+	@Test
+	public void testSinglePassengerTimes() {
+		DispatchPolicySimulator simulator = new DispatchPolicySimulator(CONFIG.FLOORS, 1);
+		DispatchPolicySimulator.Result result = simulator.run("ON_THE_WAY", DispatchPolicies.ON_THE_WAY.policy(), List.of(new DispatchPolicySimulator.Passenger(0, 1, 3)), false);
+		assertEquals(1, result.served());
+		assertEquals(0, result.waitMax(), "The elevator starts at the passenger's floor");
+		assertEquals(SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors() + SchedulingAlgorithm.calculateTimeTakenToMove(1, 3), result.tripP50());
+	}
+
+	@Test
+	public void testEveryPolicyServesEveryPassenger() {
+		ArrayList<DispatchPolicySimulator.Passenger> passengers = DispatchPolicySimulator.randomPassengers(1, 100, 30 * 60, CONFIG.FLOORS);
+		DispatchPolicySimulator simulator = new DispatchPolicySimulator(CONFIG.FLOORS, CONFIG.ELEVATORS);
+		ArrayList<DispatchPolicySimulator.Result> results = simulator.compare(passengers);
+		assertEquals(2 * DispatchPolicies.values().length, results.size(), "Every policy one at a time and batched");
+		for (DispatchPolicySimulator.Result result : results) {
+			assertEquals(passengers.size(), result.served(), result.policy());
+			assertTrue(result.waitP50() <= result.waitP90() && result.waitP90() <= result.waitP99() && result.waitP99() <= result.waitMax(), result.row());
+			assertTrue(result.tripP50() >= result.waitP50(), result.row());
+		}
+		assertEquals(results, simulator.compare(passengers), "The same passengers give the same results");
+	}
+
+	@Test
+	public void testPoliciesPickTheirElevator() {
+		HashMap<Integer, ArrayList<RequestData>> requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		HashMap<Integer, ElevatorData> elevatorLatestData = new HashMap<Integer, ElevatorData>();
+		for (int elevatorID = 1; elevatorID <= CONFIG.ELEVATORS; elevatorID++) {
+			requestsActive.put(elevatorID, new RequestList());
+			elevatorLatestData.put(elevatorID, new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, elevatorID, 1, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		}
+		RequestData request = new RequestData(new FloorRequest(CONFIG.FLOORS, 1, Direction.DOWN, new ElevatorFault(ScenarioFaults.NONE)), 1);
+
+		assertEquals(1, DispatchPolicies.ON_THE_WAY.policy().assign(request, requestsActive, elevatorLatestData), "A tie goes to the lowest elevatorID");
+		assertEquals(CONFIG.ELEVATORS, DispatchPolicies.ZONED.policy().assign(request, requestsActive, elevatorLatestData), "The top floor is in the last elevator's zone");
+
+		// The zones are split between the elevators of the bank being assigned for, whatever its size
+		HashMap<Integer, ArrayList<RequestData>> largeBankActive = new HashMap<Integer, ArrayList<RequestData>>();
+		HashMap<Integer, ElevatorData> largeBankData = new HashMap<Integer, ElevatorData>();
+		for (int elevatorID = 1; elevatorID <= 2 * CONFIG.ELEVATORS; elevatorID++) {
+			largeBankActive.put(elevatorID, new RequestList());
+			largeBankData.put(elevatorID, new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, elevatorID, 1, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		}
+		assertEquals(2 * CONFIG.ELEVATORS, DispatchPolicies.ZONED.policy().assign(request, largeBankActive, largeBankData), "The top floor is in the last elevator's zone");
+
+		// Elevator 2 is closer but is carrying a passenger up past the request floor, so it isn't eligible
+		elevatorLatestData.put(2, new ElevatorData(new ElevatorSignal(ElevatorStates.MOVING_UP, 2, CONFIG.FLOORS - 2, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		RequestData carried = new RequestData(new FloorRequest(1, CONFIG.FLOORS, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 2, 2);
+		carried.setPickedUpPassenger(true);
+		requestsActive.get(2).add(carried);
+		elevatorLatestData.put(3, new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, 3, CONFIG.FLOORS / 2, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		for (DispatchPolicies policy : List.of(DispatchPolicies.ON_THE_WAY, DispatchPolicies.NEAREST_CAR, DispatchPolicies.ESTIMATED_TIME_TO_DESTINATION)) {
+			assertEquals(3, policy.policy().assign(request, requestsActive, elevatorLatestData), policy.name());
+		}
+
+		elevatorLatestData.put(3, new ElevatorData(new ElevatorSignal(ElevatorStates.DEAD, 3, CONFIG.FLOORS / 2, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		assertEquals(1, DispatchPolicies.NEAREST_CAR.policy().assign(request, requestsActive, elevatorLatestData), "A dead elevator never gets a request");
+	}
+
+	@Test
+	public void testDestinationDispatchGroupsByTargetFloor() {
+		HashMap<Integer, ArrayList<RequestData>> requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		HashMap<Integer, ElevatorData> elevatorLatestData = new HashMap<Integer, ElevatorData>();
+		for (int elevatorID = 1; elevatorID <= 2; elevatorID++) {
+			requestsActive.put(elevatorID, new RequestList());
+			elevatorLatestData.put(elevatorID, new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, elevatorID, 1, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		}
+		requestsActive.get(2).add(new RequestData(new FloorRequest(1, 15, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 1, 2));	// Elevator 2 is taking a passenger from the lobby to 15
+		DispatchPolicy policy = DispatchPolicies.DESTINATION_DISPATCH.policy();
+
+		RequestData toFifteen = new RequestData(new FloorRequest(1, 15, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 2);
+		RequestData toFourteen = new RequestData(new FloorRequest(1, 14, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 3);
+		assertEquals(policy.cost(toFifteen, 1, requestsActive, elevatorLatestData), policy.cost(toFifteen, 2, requestsActive, elevatorLatestData), "Going to a floor elevator 2 already stops at adds no stop");
+		assertEquals(1, policy.assign(toFourteen, requestsActive, elevatorLatestData), "Stopping elevator 2 at 14 would hold up the passenger going to 15");
+		assertEquals(policy.cost(toFourteen, 1, requestsActive, elevatorLatestData) + SchedulingAlgorithm.calculateTimeTakenToOpenAndCloseDoors() + ElevatorTimes.STOP + ElevatorTimes.MOVING - 2 * ElevatorTimes.MOVING_MAX,
+				policy.cost(toFourteen, 2, requestsActive, elevatorLatestData));
+		assertEquals(DispatchPolicies.ON_THE_WAY.policy().cost(toFourteen, 1, requestsActive, elevatorLatestData), DispatchPolicies.ON_THE_WAY.policy().cost(toFourteen, 2, requestsActive, elevatorLatestData), "Without the target floor, both elevators pick up at once");
+	}
+
+	@Test
+	public void testDestinationDispatchShortensUpPeakTrips() {
+		ArrayList<DispatchPolicySimulator.Passenger> passengers = DispatchPolicySimulator.upPeakPassengers(3, 40, 120, CONFIG.FLOORS);
+		DispatchPolicySimulator simulator = new DispatchPolicySimulator(CONFIG.FLOORS, CONFIG.ELEVATORS);
+		DispatchPolicySimulator.Result onTheWay = simulator.run("ON_THE_WAY", DispatchPolicies.ON_THE_WAY.policy(), passengers, false);
+		DispatchPolicySimulator.Result destination = simulator.run("DESTINATION_DISPATCH", DispatchPolicies.DESTINATION_DISPATCH.policy(), passengers, false);
+		assertEquals(passengers.size(), destination.served());
+		assertTrue(destination.tripP90() < onTheWay.tripP90(), String.format("%n%s%n%s", onTheWay.row(), destination.row()));
+		assertTrue(destination.tripP50() < onTheWay.tripP50(), String.format("%n%s%n%s", onTheWay.row(), destination.row()));
+	}
+
+	@Test
+	public void testPercentile() {
+		int[] values = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+		assertEquals(5, DispatchPolicySimulator.percentile(values, 50));
+		assertEquals(9, DispatchPolicySimulator.percentile(values, 90));
+		assertEquals(10, DispatchPolicySimulator.percentile(values, 99));
+		assertEquals(1, DispatchPolicySimulator.percentile(values, 0));
+		assertEquals(0, DispatchPolicySimulator.percentile(new int[0], 50));
+	}
+}
@@ -0,0 +1,48 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that topic IDs agree with topic names and that received topics are routed
+ * back to the topic enum they were built from.
+ * @author agent
+ *
+ */
+class DispatchTopicsTest {
+
+	@Test
+	void testTopicIds() {
+		int floorSignal = DispatchTopics.idOf(FloorTopics.FLOOR_SIGNAL);
+		assertEquals(floorSignal,DispatchTopics.idOf("FLOOR_SIGNAL"));
+		assertEquals("FLOOR_SIGNAL",DispatchTopics.nameOf(floorSignal));
+
+		int floorSignal5 = DispatchTopics.idOf(FloorTopics.FLOOR_SIGNAL,5);
+		assertEquals(floorSignal5,DispatchTopics.idOf(FloorTopics.FLOOR_SIGNAL,5));
+		assertEquals(floorSignal5,DispatchTopics.idOf("FLOOR_SIGNAL_5"));
+		assertEquals("FLOOR_SIGNAL_5",DispatchTopics.nameOf(floorSignal5));
+		assertNotEquals(floorSignal5,DispatchTopics.idOf(FloorTopics.SCENARIO_START,5));
+		assertEquals("ELEVATOR_SIGNAL_40",DispatchTopics.nameOf(DispatchTopics.idOf(ElevatorTopics.ELEVATOR_SIGNAL,40)));
+
+		assertEquals(DispatchTopics.NO_TOPIC,DispatchTopics.find("NEVER_REGISTERED_TOPIC"));
+		assertEquals(DispatchTopics.NO_TOPIC,new DispatcherMessage("NEVER_REGISTERED_TOPIC","").topicId());
+		assertEquals(floorSignal5,new DispatcherMessage("FLOOR_SIGNAL_5","").topicId());
+
+		assertEquals("",DispatchTopics.nameOf(DispatchTopics.NO_TOPIC));
+		assertEquals("",DispatchTopics.nameOf(Integer.MAX_VALUE));
+	}
+
+	@Test
+	void testEnumOf() {
+		int elevatorSignal3 = DispatchTopics.idOf(ElevatorTopics.ELEVATOR_SIGNAL,3);
+		assertEquals(ElevatorTopics.ELEVATOR_SIGNAL,DispatchTopics.enumOf(elevatorSignal3, ElevatorTopics.class));
+		assertEquals(SchedulerTopics.ELEVATOR_SIGNAL,DispatchTopics.enumOf(elevatorSignal3, SchedulerTopics.class));
+		assertNull(DispatchTopics.enumOf(elevatorSignal3, FloorTopics.class));
+
+		assertEquals(FloorTopics.SCENARIO_START,DispatchTopics.enumOf(DispatchTopics.idOf("SCENARIO_START_12"), FloorTopics.class));
+		assertEquals(SchedulerTopics.FLOOR_REQUEST,DispatchTopics.enumOf(DispatchTopics.idOf(SchedulerTopics.FLOOR_REQUEST), SchedulerTopics.class));
+		assertNull(DispatchTopics.enumOf(DispatchTopics.idOf("MONITOR_ONLY_TOPIC"), SchedulerTopics.class));
+		assertNull(DispatchTopics.enumOf(DispatchTopics.NO_TOPIC, SchedulerTopics.class));
+	}
+}
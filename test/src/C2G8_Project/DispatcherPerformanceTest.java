@@ -0,0 +1,185 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A microbenchmark of the cost of dispatching a received message to its subscribers.
+ *
+ * Messages are dispatched directly on the calling thread so only the subscription lookup and
+ * the delivery lanes are measured. The cost of a delivery should stay flat as subscribers are added,
+ * both to other topics and to the topic being dispatched.
+ *
+ * @author agent
+ *
+ */
+class DispatcherPerformanceTest {
+
+	boolean runTest = false; /*** MAKE THIS TRUE TO RUN THE TEST (false so it doesn't run while running the test suite) ***/
+
+	private static final String HOT_TOPIC = "HOT_TOPIC";
+	private static final int[] SUBSCRIBER_COUNTS = {1,16,256,4096};
+	private static final int WARMUP_MESSAGES = 200000;
+	private static final int MEASURED_MESSAGES = 1000000;
+
+	private Dispatcher dispatcher;
+	private ArrayList<Thread> threads;
+	private Level logLevel;
+
+	private static class CountingConsumer implements DispatchConsumer {
+		private final String name;
+		long received = 0;
+
+		CountingConsumer(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void receiveDispatch(String topic, String data) {
+			++received;
+		}
+
+		@Override
+		public void receiveDispatch(DispatcherMessage msg) {
+			++received;
+		}
+
+		@Override
+		public String getSubscriberNameIdentifier() {
+			return name;
+		}
+	}
+
+	@BeforeEach
+	void setUp() throws SocketException {
+		if(runTest) {
+			//Per delivery logging would otherwise dominate the measurement
+			logLevel = LogManager.getLogger(DispatchNotificationWorker.class).getLevel();
+			Configurator.setLevel(DispatchNotificationWorker.class, Level.WARN);
+			dispatcher = new Dispatcher(null,"PERF",Dispatcher.NO_PORT,500,DispatchExecutionModes.CALLER_THREAD);
+			threads = new ArrayList<Thread>();
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		if(runTest) {
+			dispatcher.shutdown();
+			Configurator.setLevel(DispatchNotificationWorker.class, logLevel);
+		}
+	}
+
+	/**
+	 * One subscriber of the dispatched topic while subscribers of other topics are added
+	 */
+	@Test
+	void testDispatchCostWithUnrelatedSubscribers() {
+		if(!runTest) {
+			return;
+		}
+
+		CountingConsumer hot = new CountingConsumer("HOT");
+		dispatcher.subscribe(HOT_TOPIC, hot);
+
+		double[] nanosPerDelivery = new double[SUBSCRIBER_COUNTS.length];
+		int subscribed = 0;
+		for(int i=0;i<SUBSCRIBER_COUNTS.length;++i) {
+			for(;subscribed<SUBSCRIBER_COUNTS[i];++subscribed) {
+				dispatcher.subscribe(String.format("TOPIC_%d", subscribed), new CountingConsumer(String.format("SUB_%d", subscribed)));
+			}
+			nanosPerDelivery[i] = measure(1);
+			System.out.printf("%d other subscribers: %.1f ns per delivery%n", SUBSCRIBER_COUNTS[i], nanosPerDelivery[i]);
+		}
+
+		assertEquals(SUBSCRIBER_COUNTS.length*(long)(WARMUP_MESSAGES+MEASURED_MESSAGES),hot.received);
+		assertFlat(nanosPerDelivery);
+	}
+
+	/**
+	 * Every subscriber is subscribed to the dispatched topic
+	 */
+	@Test
+	void testDispatchCostWithFanOut() {
+		if(!runTest) {
+			return;
+		}
+
+		double[] nanosPerDelivery = new double[SUBSCRIBER_COUNTS.length];
+		int subscribed = 0;
+		for(int i=0;i<SUBSCRIBER_COUNTS.length;++i) {
+			for(;subscribed<SUBSCRIBER_COUNTS[i];++subscribed) {
+				dispatcher.subscribe(HOT_TOPIC, new CountingConsumer(String.format("SUB_%d", subscribed)));
+			}
+			nanosPerDelivery[i] = measure(SUBSCRIBER_COUNTS[i]);
+			System.out.printf("%d subscribers of the topic: %.1f ns per delivery%n", SUBSCRIBER_COUNTS[i], nanosPerDelivery[i]);
+		}
+
+		assertFlat(nanosPerDelivery);
+	}
+
+	/**
+	 * Subscribing and unsubscribing while messages are dispatched must not lose deliveries to a steady subscriber
+	 */
+	@Test
+	void testDispatchCostWhileSubscribing() throws InterruptedException {
+		if(!runTest) {
+			return;
+		}
+
+		CountingConsumer hot = new CountingConsumer("HOT");
+		dispatcher.subscribe(HOT_TOPIC, hot);
+
+		Thread churn = new Thread(() -> {
+			CountingConsumer transient1 = new CountingConsumer("TRANSIENT");
+			while(!Thread.currentThread().isInterrupted()) {
+				dispatcher.subscribe(HOT_TOPIC, transient1);
+				dispatcher.unSubscribe(HOT_TOPIC, transient1);
+			}
+		});
+		threads.add(churn);
+		churn.start();
+
+		double nanos = measure(1);
+		churn.interrupt();
+		churn.join();
+		System.out.printf("While subscribing: %.1f ns per message%n", nanos);
+		assertEquals(WARMUP_MESSAGES+MEASURED_MESSAGES,hot.received);
+	}
+
+	/**
+	 * Dispatches messages to HOT_TOPIC
+	 * @param deliveriesPerMessage The number of subscribers of HOT_TOPIC
+	 * @return The average nanoseconds per delivery
+	 */
+	private double measure(int deliveriesPerMessage) {
+		DispatcherMessage msg = new DispatcherMessage(HOT_TOPIC,null,"payload");
+		int warmup = WARMUP_MESSAGES/deliveriesPerMessage;
+		int measured = MEASURED_MESSAGES/deliveriesPerMessage;
+
+		for(int i=0;i<warmup;++i) {
+			dispatcher.dispatchMessageToSubscribers(msg, System.nanoTime());
+		}
+		long start = System.nanoTime();
+		for(int i=0;i<measured;++i) {
+			dispatcher.dispatchMessageToSubscribers(msg, System.nanoTime());
+		}
+		return (System.nanoTime()-start)/(double)(measured*(long)deliveriesPerMessage);
+	}
+
+	/**
+	 * The largest registry may cost a few times the smallest, a copying registry grows with it
+	 */
+	private void assertFlat(double[] nanosPerDelivery) {
+		assertTrue(nanosPerDelivery[nanosPerDelivery.length-1] < nanosPerDelivery[0]*3 + 100,
+				String.format("Dispatch cost grew from %.1f ns to %.1f ns per delivery", nanosPerDelivery[0], nanosPerDelivery[nanosPerDelivery.length-1]));
+	}
+}
@@ -3,9 +3,15 @@ package C2G8_Project;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.net.InetAddress;
+import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -135,6 +141,212 @@ class DispatcherTest {
 		},"The expected condition never occured");
 	}
 	
+	@Test
+	void testOrderedDeliveryPerSubscriber() throws UnregisteredDispatcherDestination, UnknownHostException {
+		registerDestinationsManually();
+		final int numMessages = 200;
+		String testTopic = "ordered";
+		DispatchSubscriberTester floorSub = DispatchSubscriberTester.createSubscriberTester(floorDispatcher);
+		DispatchSubscriberTester floorSub2 = DispatchSubscriberTester.createSubscriberTester(floorDispatcher);
+		floorDispatcher.subscribe(testTopic, floorSub);
+		floorDispatcher.subscribe(testTopic, floorSub2);
+		for(int i=0;i<numMessages;++i) {
+			schedulerDispatcher.sendData(Destinations.FLOOR_SYSTEM, testTopic, Integer.toString(i));
+		}
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while(floorSub.size() < numMessages || floorSub2.size() < numMessages) {}
+		},"The expected condition never occured");
+		
+		for(DispatchSubscriberTester sub : new DispatchSubscriberTester[] {floorSub,floorSub2}) {
+			int expected = 0;
+			for(DispatcherMessage msg : sub) {
+				assertEquals(Integer.toString(expected++),msg.data());
+			}
+		}
+	}
+	
+	@Test
+	void testDispatchExecutionModes() throws SocketException, UnknownHostException, UnregisteredDispatcherDestination {
+		for(DispatchExecutionModes mode : DispatchExecutionModes.values()) {
+			Dispatcher dis = new Dispatcher(Destinations.SCHEDULER,null,Dispatcher.NO_PORT,500,mode);
+			Thread td = new Thread(dis);
+			td.start();
+			while(!dis.isRunning()) {}
+			try {
+				dis.registerDestination(Destinations.SCHEDULER, "localhost", dis.getPort());
+				String testTopic = String.format("test_%s", mode);
+				DispatchSubscriberTester sub = DispatchSubscriberTester.createSubscriberTester(dis);
+				dis.subscribe(testTopic, sub);
+				dis.sendData(Destinations.SCHEDULER, testTopic, "MyMESSAGE");
+				assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+					DispatcherMessage msg = sub.receiveData();
+					assertEquals(testTopic,msg.topic());
+					assertEquals("MyMESSAGE",msg.data());
+				},"The expected condition never occured");
+				
+				DispatchMetrics metrics = dis.getDispatchMetrics();
+				if(mode != DispatchExecutionModes.VIRTUAL_THREAD_PER_TASK) {
+					assertEquals(mode,metrics.mode());
+				}
+				assertEquals(1,metrics.deliveries());
+				assertEquals(0,metrics.queueDepth());
+				assertEquals(0,metrics.rejections());
+			}
+			finally {
+				dis.shutdown();
+			}
+		}
+	}
+	
+	@Test
+	void testMixedTransports() throws SocketException, UnknownHostException, UnregisteredDispatcherDestination {
+		Dispatcher socketDispatcher = new Dispatcher(Destinations.MONITOR_SYSTEMS,null,Dispatcher.NO_PORT,500,CONFIG.DISPATCH_EXECUTION_MODE,CONFIG.DISPATCH_CODEC,DispatchTransports.DATAGRAM_SOCKET);
+		Dispatcher nioDispatcher = new Dispatcher(Destinations.SCHEDULER,null,Dispatcher.NO_PORT,500,CONFIG.DISPATCH_EXECUTION_MODE,CONFIG.DISPATCH_CODEC,DispatchTransports.NIO_SELECTOR);
+		new Thread(socketDispatcher).start();
+		new Thread(nioDispatcher).start();
+		while(!socketDispatcher.isRunning() || !nioDispatcher.isRunning()) {}
+		try {
+			socketDispatcher.connectNewDestination(Destinations.SCHEDULER, "localhost", nioDispatcher.getPort());
+			assertTrue(nioDispatcher.isDestinationRegistered(Destinations.MONITOR_SYSTEMS));
+			
+			String testTopic = "transport";
+			DispatchSubscriberTester socketSub = DispatchSubscriberTester.createSubscriberTester(socketDispatcher);
+			DispatchSubscriberTester nioSub = DispatchSubscriberTester.createSubscriberTester(nioDispatcher);
+			socketDispatcher.subscribe(testTopic, socketSub);
+			nioDispatcher.subscribe(testTopic, nioSub);
+			socketDispatcher.sendData(Destinations.SCHEDULER, testTopic, "toNio");
+			nioDispatcher.sendData(Destinations.MONITOR_SYSTEMS, testTopic, "toSocket");
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				assertEquals("toNio",nioSub.receiveData().data());
+				assertEquals("toSocket",socketSub.receiveData().data());
+			},"The expected condition never occured");
+		}
+		finally {
+			socketDispatcher.shutdown();
+			nioDispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testNioReceivesOffTheSelectorThread() throws SocketException, UnknownHostException, UnregisteredDispatcherDestination, InterruptedException {
+		Dispatcher blockedDispatcher = new Dispatcher(Destinations.MONITOR_SYSTEMS,null,Dispatcher.NO_PORT,500,DispatchExecutionModes.CALLER_THREAD,CONFIG.DISPATCH_CODEC,DispatchTransports.NIO_SELECTOR);
+		Dispatcher nioDispatcher = new Dispatcher(Destinations.SCHEDULER,null,Dispatcher.NO_PORT,500,DispatchExecutionModes.CALLER_THREAD,CONFIG.DISPATCH_CODEC,DispatchTransports.NIO_SELECTOR);
+		new Thread(blockedDispatcher).start();
+		new Thread(nioDispatcher).start();
+		while(!blockedDispatcher.isRunning() || !nioDispatcher.isRunning()) {}
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			nioDispatcher.registerDestination(Destinations.MONITOR_SYSTEMS, "localhost", blockedDispatcher.getPort());
+			nioDispatcher.registerDestination(Destinations.SCHEDULER, "localhost", nioDispatcher.getPort());
+			
+			String testTopic = "blocking";
+			LinkedBlockingQueue<DispatcherMessage> blockedReceived = new LinkedBlockingQueue<DispatcherMessage>();
+			blockedDispatcher.subscribe(testTopic, new DispatchConsumer() {
+				@Override
+				public void receiveDispatch(DispatcherMessage msg) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					blockedReceived.add(msg);
+				}
+				@Override
+				public void receiveDispatch(String topic, String data) {}
+				@Override
+				public String getSubscriberNameIdentifier() { return "BlockedSubscriber"; }
+			});
+			DispatchSubscriberTester nioSub = DispatchSubscriberTester.createSubscriberTester(nioDispatcher);
+			nioDispatcher.subscribe(testTopic, nioSub);
+			
+			//More than fit in the blocked dispatcher's inbox, the rest wait in its socket buffer
+			int burst = 1100;
+			for(int i=0;i<burst;++i) {
+				nioDispatcher.sendData(Destinations.MONITOR_SYSTEMS, testTopic, Integer.toString(i));
+			}
+			nioDispatcher.sendData(Destinations.SCHEDULER, testTopic, "notBlocked");
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				assertEquals("notBlocked",nioSub.receiveData().data());
+			},"A blocked subscriber of another dispatcher held up receiving");
+			
+			release.countDown();
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				for(int i=0;i<burst;++i) {
+					assertEquals(Integer.toString(i),blockedReceived.take().data());
+				}
+			},"The burst was not received in full once the subscriber was released");
+		}
+		finally {
+			release.countDown();
+			blockedDispatcher.shutdown();
+			nioDispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testLoopbackTransports() throws SocketException, UnknownHostException, UnregisteredDispatcherDestination {
+		for(DispatchTransports transport : new DispatchTransports[] {DispatchTransports.LOOPBACK,DispatchTransports.LOOPBACK_MESSAGES}) {
+			Dispatcher monitorDispatcher = new Dispatcher(Destinations.MONITOR_SYSTEMS,null,Dispatcher.NO_PORT,500,CONFIG.DISPATCH_EXECUTION_MODE,CONFIG.DISPATCH_CODEC,transport);
+			Dispatcher loopbackDispatcher = new Dispatcher(Destinations.SCHEDULER,null,Dispatcher.NO_PORT,500,CONFIG.DISPATCH_EXECUTION_MODE,CONFIG.DISPATCH_CODEC,transport);
+			new Thread(monitorDispatcher).start();
+			new Thread(loopbackDispatcher).start();
+			while(!monitorDispatcher.isRunning() || !loopbackDispatcher.isRunning()) {}
+			try {
+				monitorDispatcher.connectNewDestination(Destinations.SCHEDULER, "localhost", loopbackDispatcher.getPort());
+				assertTrue(loopbackDispatcher.isDestinationRegistered(Destinations.MONITOR_SYSTEMS));
+				
+				String testTopic = FloorSignals.BTN_LAMP_ON.toString();
+				FloorSignal testMessage = new FloorSignal(FloorSignals.BTN_LAMP_ON,3,Direction.UP);
+				LinkedBlockingQueue<DispatcherMessage> received = new LinkedBlockingQueue<DispatcherMessage>();
+				DispatchSubscriberTester monitorSub = DispatchSubscriberTester.createSubscriberTester(monitorDispatcher);
+				loopbackDispatcher.subscribe(testTopic, new DispatchConsumer() {
+					@Override
+					public void receiveDispatch(DispatcherMessage msg) { received.add(msg); }
+					@Override
+					public void receiveDispatch(String topic, String data) {}
+					@Override
+					public String getSubscriberNameIdentifier() { return "LoopbackSubscriber"; }
+				});
+				monitorDispatcher.subscribe(testTopic, monitorSub);
+				monitorDispatcher.sendData(Destinations.SCHEDULER, testTopic, testMessage);
+				loopbackDispatcher.sendData(Destinations.MONITOR_SYSTEMS, testTopic, "toMonitor");
+				assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+					DispatcherMessage msg = received.take();
+					assertEquals(testMessage,msg.payload(FloorSignal.class, objMap));
+					assertNotSame(testMessage,msg.payload(),"The receiver gets its own copy");
+					assertEquals("toMonitor",monitorSub.receiveData().data());
+				},"The expected condition never occured");
+				
+				//The sender can keep changing what it sent, like an elevator's car buttons
+				String signalTopic = "loopbackSignal";
+				LinkedBlockingQueue<DispatcherMessage> signals = new LinkedBlockingQueue<DispatcherMessage>();
+				loopbackDispatcher.subscribe(signalTopic, new DispatchConsumer() {
+					@Override
+					public void receiveDispatch(DispatcherMessage msg) { signals.add(msg); }
+					@Override
+					public void receiveDispatch(String topic, String data) {}
+					@Override
+					public String getSubscriberNameIdentifier() { return "LoopbackSignalSubscriber"; }
+				});
+				ArrayList<Integer> carButtons = new ArrayList<Integer>(List.of(4,7));
+				monitorDispatcher.sendData(Destinations.SCHEDULER, signalTopic, new ElevatorSignal(ElevatorStates.IDLE,1,1,carButtons,new HashSet<Integer>(carButtons),ScenarioFaults.NONE));
+				carButtons.clear();
+				assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+					assertEquals(List.of(4,7),signals.take().payload(ElevatorSignal.class, objMap).newCarBttns());
+				},"The expected condition never occured");
+				
+				//Ports belong to the loopback network, a UDP dispatcher can use the same number and a loopback one can't
+				Dispatcher udpDispatcher = new Dispatcher(Destinations.FLOOR_SYSTEM,null,loopbackDispatcher.getPort(),500,CONFIG.DISPATCH_EXECUTION_MODE,CONFIG.DISPATCH_CODEC,DispatchTransports.DATAGRAM_SOCKET);
+				udpDispatcher.shutdown();
+				assertThrows(SocketException.class, () -> new Dispatcher(Destinations.FLOOR_SYSTEM,null,loopbackDispatcher.getPort(),500,CONFIG.DISPATCH_EXECUTION_MODE,CONFIG.DISPATCH_CODEC,transport));
+			}
+			finally {
+				monitorDispatcher.shutdown();
+				loopbackDispatcher.shutdown();
+			}
+		}
+	}
+	
 	@Test
 	void testDispatcherConnect() throws UnknownHostException, UnregisteredDispatcherDestination {
 		assertFalse(schedulerDispatcher.isDestinationRegistered(Destinations.FLOOR_SYSTEM));
@@ -148,4 +360,101 @@ class DispatcherTest {
 		assertTrue(schedulerDispatcher.isDestinationRegistered(Destinations.ELEVATOR_SYSTEM));
 		assertTrue(elevatorDispatcher.isDestinationRegistered(Destinations.SCHEDULER));
 	}
+	
+	@Test
+	void testCodecNegotiation() throws UnknownHostException, UnregisteredDispatcherDestination {
+		schedulerDispatcher.connectNewDestination(Destinations.FLOOR_SYSTEM, "localhost", floorDispatcher.getPort());
+		assertEquals(CONFIG.DISPATCH_CODEC,schedulerDispatcher.getDestinationCodec(Destinations.FLOOR_SYSTEM));
+		assertEquals(CONFIG.DISPATCH_CODEC,floorDispatcher.getDestinationCodec(Destinations.SCHEDULER));
+		
+		registerDestinationsManually();
+		assertEquals(DispatchCodecs.JSON,schedulerDispatcher.getDestinationCodec(Destinations.ELEVATOR_SYSTEM));
+		
+		String testTopic = FloorSignals.DIR_LAMP_ON.toString();
+		FloorSignal testMessage = new FloorSignal(FloorSignals.DIR_LAMP_ON,7,Direction.DOWN);
+		DispatchSubscriberTester floorSub = DispatchSubscriberTester.createSubscriberTester(floorDispatcher);
+		floorDispatcher.subscribe(testTopic, floorSub);
+		schedulerDispatcher.sendData(Destinations.FLOOR_SYSTEM, testTopic, testMessage);
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			DispatcherMessage msg = floorSub.receiveData();
+			assertEquals(testTopic,msg.topic());
+			assertEquals(testMessage,objMap.readValue(msg.data(), FloorSignal.class));
+		},"The expected condition never occured");
+	}
+	
+	@Test
+	void testBatching() throws UnknownHostException, UnregisteredDispatcherDestination, JsonProcessingException {
+		schedulerDispatcher.connectNewDestination(Destinations.FLOOR_SYSTEM, "localhost", floorDispatcher.getPort());
+		registerDestinationsManually();
+		final int numMessages = 20;
+		String testTopic = "batched";
+		DispatchSubscriberTester floorSub = DispatchSubscriberTester.createSubscriberTester(floorDispatcher);
+		DispatchSubscriberTester elevatorSub = DispatchSubscriberTester.createSubscriberTester(elevatorDispatcher);
+		floorDispatcher.subscribe(testTopic, floorSub);
+		elevatorDispatcher.subscribe(testTopic, elevatorSub);
+		
+		schedulerDispatcher.setBatching(true);
+		int sentBefore = schedulerDispatcher.getPacketsSent();
+		for(int i=0;i<numMessages;++i) {
+			schedulerDispatcher.sendData(Destinations.FLOOR_SYSTEM, testTopic, new FloorSignal(FloorSignals.BTN_LAMP_ON,i,Direction.UP));
+			schedulerDispatcher.sendData(Destinations.ELEVATOR_SYSTEM, testTopic, Integer.toString(i)); //Registered without connecting so never batched
+		}
+		schedulerDispatcher.flush();
+		int floorPackets = schedulerDispatcher.getPacketsSent()-sentBefore-numMessages;
+		assertTrue(floorPackets >= 1 && floorPackets < numMessages/2,String.format("%d messages were sent in %d packets",numMessages,floorPackets)); //Windows may end during the loop
+		
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while(floorSub.size() < numMessages || elevatorSub.size() < numMessages) {}
+		},"The expected condition never occured");
+		int expected = 0;
+		for(DispatcherMessage msg : floorSub) {
+			assertEquals(expected++,objMap.readValue(msg.data(), FloorSignal.class).floor());
+		}
+		
+		//Without a flush the batch is sent once its window ends
+		schedulerDispatcher.sendData(Destinations.FLOOR_SYSTEM, testTopic, new FloorSignal(FloorSignals.BTN_LAMP_OFF,1,Direction.UP));
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while(floorSub.size() < numMessages+1) {}
+		},"The expected condition never occured");
+	}
+	
+	@Test
+	void testReliableDelivery() throws UnknownHostException, UnregisteredDispatcherDestination, JsonProcessingException {
+		schedulerDispatcher.connectNewDestination(Destinations.FLOOR_SYSTEM, "localhost", floorDispatcher.getPort());
+		registerDestinationsManually();
+		final int numMessages = 50;
+		String testTopic = "reliable";
+		DispatchSubscriberTester floorSub = DispatchSubscriberTester.createSubscriberTester(floorDispatcher);
+		DispatchSubscriberTester elevatorSub = DispatchSubscriberTester.createSubscriberTester(elevatorDispatcher);
+		floorDispatcher.subscribe(testTopic, floorSub);
+		elevatorDispatcher.subscribe(testTopic, elevatorSub);
+		
+		schedulerDispatcher.setReliable(true);
+		for(int i=0;i<numMessages;++i) {
+			schedulerDispatcher.sendData(Destinations.FLOOR_SYSTEM, testTopic, new FloorSignal(FloorSignals.BTN_LAMP_ON,i,Direction.UP));
+			schedulerDispatcher.sendData(Destinations.ELEVATOR_SYSTEM, testTopic, Integer.toString(i)); //Registered without connecting so never reliable
+			if(i == numMessages/2) {
+				schedulerDispatcher.setBatching(true); //Batches are sent reliably too
+			}
+		}
+		schedulerDispatcher.flush();
+		
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while(floorSub.size() < numMessages || elevatorSub.size() < numMessages) {}
+		},"The expected condition never occured");
+		
+		//Retransmissions that raced their acknowledgement must not be delivered twice
+		try {
+			Thread.sleep(CONFIG.DISPATCH_RELIABLE_INITIAL_RTO_MILLS*2);
+		} catch (InterruptedException e) {
+			fail(e);
+		}
+		assertEquals(numMessages,floorSub.size());
+		assertEquals(schedulerDispatcher.getPacketsRetransmitted(),floorDispatcher.getDuplicatesDropped());
+		HashSet<Integer> floors = new HashSet<Integer>();
+		for(DispatcherMessage msg : floorSub) {
+			floors.add(objMap.readValue(msg.data(), FloorSignal.class).floor());
+		}
+		assertEquals(numMessages,floors.size());
+	}
 }
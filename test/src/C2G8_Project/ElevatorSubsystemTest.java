@@ -73,6 +73,7 @@ class ElevatorSubsystemTest {
 
 	@AfterEach
 	void tearDown() throws Exception {
+		elevatorSys.shutdown();
 		schedulerDispatcher.shutdown();
 	}
 	
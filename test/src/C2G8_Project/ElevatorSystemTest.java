@@ -2,6 +2,11 @@ package C2G8_Project;
 
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -72,6 +77,66 @@ class ElevatorSystemTest {
 		elevSubsystemActive(e);
 	}
 
+	/**
+	 * Test that a large number of elevators share the elevator timer instead of getting a thread each, and that the timer
+	 * stops with the system
+	 */
+	@Test
+	void sharedTimerTest() throws Exception {
+		if (!CONFIG.ELEVATOR_TIMER_DRIVEN) {
+			return;
+		}
+		ElevatorSystem e = new ElevatorSystem(200,50);
+		Thread th = new Thread(e);
+		th.setName("Elevator System");
+		th.start();
+		while(!e.isRunning()); //Wait for the elevators to be started
+		
+		assertEquals(200, numElevatorTest(e));
+		assertEquals(0, e.getElevatorThreads().size());
+		assertTrue(e.getClock() instanceof RealTimeClock, "The elevators run on a timer of their own");
+		assertTrue(((RealTimeClock) e.getClock()).getPoolSize() <= CONFIG.ELEVATOR_TIMER_THREADS);
+		
+		e.shutdown();
+		th.join(5000);
+		assertFalse(th.isAlive());
+		for(int i=0; i<numElevatorTest(e); i++){
+			assertTrue(e.getElevator(i).getShutdown());
+		}
+	}
+
+	/**
+	 * Test that elevators run on a thread each wait for a signal instead of checking their state over and over,
+	 * and that the threads end with the system
+	 */
+	@Test
+	void ownThreadsWaitTest() throws Exception {
+		ElevatorSystem e = new ElevatorSystem(20, 50, new Dispatcher(Destinations.ELEVATOR_SYSTEM), null);
+		Thread th = new Thread(e);
+		th.setName("Elevator System");
+		th.start();
+		while(!e.isRunning());
+		
+		Thread.sleep(500); //Past the START state's time, the elevators are now idle
+		List<Thread> elevators = List.copyOf(e.getElevatorThreads());
+		assertEquals(20, elevators.size());
+		for(int i=0; i<10; i++){
+			for(Thread t : elevators){
+				Thread.State state = t.getState();
+				assertTrue(state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING, t.getName() + " is " + state);
+			}
+			Thread.sleep(10);
+		}
+		
+		e.shutdown();
+		th.join(5000);
+		assertFalse(th.isAlive());
+		for(Thread t : elevators) {
+			t.join(5000);
+			assertFalse(t.isAlive());
+		}
+	}
+
 	int numElevatorTest(ElevatorSystem e){
 		return e.getNumElevators();
 	}
@@ -0,0 +1,60 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * JUnit5 Test Cases for FloorLampState.java (The bitset of floor lamps kept in the scheduler's "Master Sheet")
+ *
+ * Overview:
+ *  These test cases check setting lamps across word boundaries, and that the changes between two states bring a copy of the older
+ *  state up to date.
+ */
+class FloorLampStateTest {
+	private static final int FLOORS = 100;	// Enough floors for the lamps to take more than one word
+
+	@Test
+	public void testSetLamps() {
+		FloorLampState lamps = new FloorLampState(FLOORS);
+		assertEquals(4, lamps.lamps().length);
+		assertTrue(lamps.set(32, Direction.DOWN, true), "Floor 32's DOWN lamp is the last bit of the first word");
+		assertTrue(lamps.set(33, Direction.UP, true));
+		assertFalse(lamps.set(33, Direction.UP, true), "Turning on a lamp that is on doesn't change it");
+		assertTrue(lamps.isOn(32, Direction.DOWN));
+		assertFalse(lamps.isOn(32, Direction.UP));
+		assertTrue(lamps.isOn(33, Direction.UP));
+		assertTrue(lamps.holds(FLOORS, Direction.DOWN));
+		assertThrows(IllegalArgumentException.class, () -> lamps.isOn(FLOORS+1, Direction.UP));
+		assertThrows(IllegalArgumentException.class, () -> lamps.set(0, Direction.UP, true));
+	}
+
+	@Test
+	public void testChangesBringCopyUpToDate() {
+		FloorLampState lamps = new FloorLampState(FLOORS);
+		lamps.set(1, Direction.UP, true);
+		lamps.set(70, Direction.DOWN, true);
+		FloorLampState replica = lamps.changesSince(null);
+		assertEquals(lamps, replica);
+
+		FloorLampState sent = lamps.copy();
+		lamps.set(1, Direction.UP, false);
+		lamps.set(64, Direction.UP, true);
+		lamps.set(99, Direction.DOWN, true);
+		lamps.set(99, Direction.DOWN, false);
+		FloorLampState changes = lamps.changesSince(sent);
+		assertEquals(List.of(1, 64), changes.heldFloors(), "A lamp turned on and back off didn't change");
+		assertFalse(changes.holds(70, Direction.DOWN));
+
+		replica.apply(changes);
+		assertEquals(lamps, replica);
+		assertTrue(lamps.changesSince(lamps.copy()).isEmpty());
+	}
+}
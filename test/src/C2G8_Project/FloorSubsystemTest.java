@@ -33,7 +33,7 @@ class FloorSubsystemTest {
 
 	@BeforeEach
 	void setUp() throws Exception {
-		parent = new FloorSystem(CONFIG.FLOORS);
+		parent = new FloorSystem(CONFIG.FLOORS,CONFIG.SCENARIO_ACCELERATION_MULTIPLIER); //Any available port, a FloorSystem is made for every test
 		floors = parent.getFloors();
 		floorThreads = new HashMap<FloorSubsystem,Thread>();
 		
@@ -49,6 +49,7 @@ class FloorSubsystemTest {
 
 	@AfterEach
 	void tearDown() throws Exception {
+		floorThreads.forEach((k,v) -> k.shutdown());
 	}
 	
 	@Test
@@ -60,5 +61,35 @@ class FloorSubsystemTest {
 		},"The expected condition never occured");
 		assertTrue(floors.get(0).getDirectionLampOn().get(Direction.UP));
 	}
+	
+	@Test
+	void testSignalsOnClock() throws Exception {
+		DiscreteEventSimulator clock = new DiscreteEventSimulator();
+		Dispatcher dispatcher = new Dispatcher(Destinations.FLOOR_SYSTEM);
+		try {
+			FloorSubsystem floor = new FloorSubsystem("Clock Floor", 5, parent, dispatcher, Direction.values());
+			floor.start(clock);
+			
+			floor.receiveSignal(new FloorSignal(FloorSignals.BTN_LAMP_ON,5,Direction.UP));
+			floor.receiveSignal(new FloorSignal(FloorSignals.DIR_LAMP_ON,5,Direction.UP));
+			floor.receiveSignal(new FloorSignal(FloorSignals.BTN_LAMP_ON,5,Direction.DOWN));
+			assertFalse(floor.getDirectionLampOn().get(Direction.UP),"Signals are handled on the clock, not by the sender");
+			assertEquals(1,clock.getPendingEvents(),"One task handles every signal received until it runs");
+			
+			clock.runUntilIdle();
+			assertTrue(floor.getDirectionLampOn().get(Direction.UP));
+			assertFalse(floor.getDirectionBtnOn().get(Direction.UP),"The lamp turned off the button pressed before it");
+			assertTrue(floor.getDirectionBtnOn().get(Direction.DOWN),"Handled in the order received");
+			
+			floor.receiveSignal(new FloorSignal(FloorSignals.DIR_LAMP_ON,5,Direction.DOWN));
+			clock.runUntilIdle();
+			assertTrue(floor.getDirectionLampOn().get(Direction.DOWN));
+			assertFalse(floor.getDirectionLampOn().get(Direction.UP));
+			floor.shutdown();
+		}
+		finally {
+			dispatcher.shutdown();
+		}
+	}
 
 }
@@ -96,12 +96,23 @@ class FloorSystemTest {
 		schedulerDispatcher.subscribe(SchedulerTopics.SCENARIO_COMPLETE.toString(), endScenarioSubcriber);
 		while(!floorSystem.isScenarioRunning()) {}
 		assertTrue(floorSystem.isScenarioRunning());
+		if(CONFIG.FLOOR_TIMER_DRIVEN) {
+			assertEquals(0,floorSystem.getFloorThreads().size(),"The floors share a timer instead of a thread each");
+			assertTrue(floorSystem.getClock() instanceof RealTimeClock,"The floors run on a timer of their own");
+			assertTrue(((RealTimeClock) floorSystem.getClock()).getPoolSize() <= CONFIG.FLOOR_TIMER_THREADS);
+		}
 		while(endScenarioSubcriber.size() < 1) {};
 		assertEquals(1,endScenarioSubcriber.size());
 		assertFalse(floorSystem.isScenarioRunning());
 		sendWithDispatcher(schedulerDispatcher,Destinations.FLOOR_SYSTEM,FloorTopics.SCENARIO_END.toString(),null);
 		while(floorSystem.isRunning()) {}
 		assertFalse(floorSystem.isRunning());
+		if(CONFIG.FLOOR_TIMER_DRIVEN) {
+			RealTimeClock timer = (RealTimeClock) floorSystem.getClock();
+			long giveUp = System.currentTimeMillis() + 5000;
+			while(timer.getPoolSize() > 0 && System.currentTimeMillis() < giveUp) {}
+			assertEquals(0,timer.getPoolSize(),"The timer's threads end with the floor system");
+		}
 	}
 
 }
@@ -0,0 +1,166 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import C2G8_Project.ReliableChannel.Receipt;
+
+/**
+ * Tests the acknowledgement, retransmission and duplicate suppression of a reliable channel
+ * by passing datagrams between a sending and a receiving channel and dropping some of them.
+ * @author agent
+ *
+ */
+class ReliableChannelTest {
+	private static final long MILLS = 1000000L;
+
+	private ReliableChannel newChannel(int maxAttempts) {
+		return new ReliableChannel(200,10,2000,maxAttempts);
+	}
+
+	private static ByteBuffer frame(int i) {
+		return ByteBuffer.wrap(String.format("frame %d", i).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Receives a datagram and checks the frame it carries when it is new
+	 */
+	private static Receipt deliver(ReliableChannel receiver,byte[] datagram,int expectedFrame) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(datagram);
+		assertTrue(ReliableChannel.isReliable(buffer));
+		assertFalse(ReliableChannel.isAck(buffer));
+		Receipt receipt = receiver.receiveData(buffer);
+		if(receipt == Receipt.NEW) {
+			assertEquals(frame(expectedFrame),buffer);
+		}
+		return receipt;
+	}
+
+	private static void acknowledge(ReliableChannel sender,ReliableChannel receiver,long nowNanos) throws IOException {
+		ByteBuffer ack = receiver.ack();
+		assertTrue(ReliableChannel.isReliable(ack));
+		assertTrue(ReliableChannel.isAck(ack));
+		sender.receiveAck(ack, nowNanos);
+	}
+
+	@Test
+	void testOnlyLostDatagramsAreRetransmitted() throws IOException {
+		ReliableChannel sender = newChannel(10);
+		ReliableChannel receiver = newChannel(10);
+		final int numFrames = 10;
+
+		byte[][] datagrams = new byte[numFrames][];
+		for(int i=0;i<numFrames;++i) {
+			datagrams[i] = sender.send(frame(i), 0);
+			if(i != 2 && i != 5) {
+				assertEquals(Receipt.NEW,deliver(receiver,datagrams[i],i));
+			}
+		}
+		acknowledge(sender,receiver,MILLS);
+		assertEquals(2,sender.getOutstanding());
+
+		ArrayList<byte[]> resend = new ArrayList<byte[]>();
+		assertEquals(0,sender.collectRetransmissions(100*MILLS, resend));
+		assertTrue(resend.isEmpty(),"Retransmitted before the timeout");
+		assertEquals(0,sender.collectRetransmissions(1000*MILLS, resend));
+		assertEquals(2,resend.size());
+		assertSame(datagrams[2],resend.get(0));
+		assertSame(datagrams[5],resend.get(1));
+
+		assertEquals(Receipt.NEW,deliver(receiver,resend.get(0),2));
+		assertEquals(Receipt.NEW,deliver(receiver,resend.get(1),5));
+		acknowledge(sender,receiver,1001*MILLS);
+		assertEquals(0,sender.getOutstanding());
+	}
+
+	@Test
+	void testDuplicatesAreDropped() throws IOException {
+		ReliableChannel sender = newChannel(10);
+		ReliableChannel receiver = newChannel(10);
+
+		byte[] first = sender.send(frame(0), 0);
+		byte[] second = sender.send(frame(1), 0);
+		assertEquals(Receipt.NEW,deliver(receiver,second,1));
+		assertEquals(Receipt.DUPLICATE,deliver(receiver,second,1));
+		assertEquals(Receipt.NEW,deliver(receiver,first,0));
+		assertEquals(Receipt.DUPLICATE,deliver(receiver,first,0));
+		assertEquals(Receipt.DUPLICATE,deliver(receiver,second,1));
+
+		//A restarted sender on the same address starts a new session rather than repeating old sequences
+		ReliableChannel restarted = newChannel(10);
+		assertEquals(Receipt.NEW,deliver(receiver,restarted.send(frame(7), 0),7));
+	}
+
+	@Test
+	void testTimeoutAdaptsToRoundTripTime() throws IOException {
+		ReliableChannel sender = newChannel(10);
+		ReliableChannel receiver = newChannel(10);
+		assertEquals(200,sender.getRtoMills(),0.001);
+
+		long now = 0;
+		for(int i=0;i<20;++i) {
+			deliver(receiver,sender.send(frame(i), now),i);
+			now += MILLS;
+			acknowledge(sender,receiver,now);
+		}
+		assertEquals(10,sender.getRtoMills(),0.001,"Fast round trips should reach the smallest timeout");
+
+		for(int i=20;i<60;++i) {
+			deliver(receiver,sender.send(frame(i), now),i);
+			now += 100*MILLS;
+			acknowledge(sender,receiver,now);
+		}
+		assertTrue(sender.getRtoMills() >= 100 && sender.getRtoMills() < 200,String.format("Timeout of %.1f ms for 100 ms round trips",sender.getRtoMills()));
+
+		//A retransmitted datagram's acknowledgement is ambiguous and must not be sampled
+		double rto = sender.getRtoMills();
+		sender.send(frame(60), now);
+		ArrayList<byte[]> resend = new ArrayList<byte[]>();
+		sender.collectRetransmissions(now+1000*MILLS, resend);
+		deliver(receiver,resend.get(0),60);
+		acknowledge(sender,receiver,now+1001*MILLS);
+		assertEquals(rto,sender.getRtoMills(),0.001);
+	}
+
+	@Test
+	void testGivenUpDatagramsAreSkipped() throws IOException {
+		ReliableChannel sender = newChannel(3);
+		ReliableChannel receiver = newChannel(3);
+
+		assertEquals(Receipt.NEW,deliver(receiver,sender.send(frame(0), 0),0));
+		sender.send(frame(1), 0); //Never arrives
+		acknowledge(sender,receiver,MILLS);
+
+		ArrayList<byte[]> resend = new ArrayList<byte[]>();
+		long now = 0;
+		int givenUp = 0;
+		for(int i=0;i<10 && givenUp == 0;++i) {
+			now += 5000*MILLS;
+			givenUp = sender.collectRetransmissions(now, resend);
+		}
+		assertEquals(1,givenUp);
+		assertEquals(2,resend.size(),"Should be sent 3 times in total");
+		assertEquals(0,sender.getOutstanding());
+
+		//The receiver stops waiting for the lost datagram once the sender moves on
+		assertEquals(Receipt.NEW,deliver(receiver,sender.send(frame(2), now),2));
+		acknowledge(sender,receiver,now+MILLS);
+		assertEquals(0,sender.getOutstanding());
+		for(int i=3;i<100;++i) {
+			assertEquals(Receipt.NEW,deliver(receiver,sender.send(frame(i), now),i));
+		}
+	}
+
+	@Test
+	void testCorruptedDatagrams() {
+		ReliableChannel receiver = newChannel(3);
+		assertThrows(IOException.class, () -> receiver.receiveData(ByteBuffer.wrap(new byte[] {ReliableChannel.MAGIC,0,1,2})));
+		assertThrows(IOException.class, () -> receiver.receiveAck(ByteBuffer.wrap(new byte[] {ReliableChannel.MAGIC,1,1,2}),0));
+	}
+}
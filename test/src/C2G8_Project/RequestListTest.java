@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * JUnit5 Test Cases for RequestList.java and StopList.java (The indexed lists used by the scheduler's "Master Sheet")
+ *
+ * Overview:
+ *  These test cases check that the indexes give the same answers as scanning the list would, however the list is changed.
+ */
+class RequestListTest {
+
+	private static RequestData request(int requestID, int requestFloor, int targetFloor) {
+		Direction direction = targetFloor > requestFloor ? Direction.UP : Direction.DOWN;
+		return new RequestData(new FloorRequest(requestFloor, targetFloor, direction, new ElevatorFault(ScenarioFaults.NONE)), requestID);
+	}
+
+	/*** Checks every floor's index against a scan of the list ***/
+	private static void assertIndexMatchesList(RequestList requests) {
+		for (int floor = 1; floor <= CONFIG.FLOORS; floor++) {
+			final int f = floor;
+			assertEquals(requests.stream().filter(r -> r.requestFloor() == f).toList(), requests.pickupsAt(floor), String.format("Pickups at %d", floor));
+			assertEquals(requests.stream().filter(r -> r.targetFloor() == f).toList(), requests.dropOffsAt(floor), String.format("Drop-offs at %d", floor));
+		}
+	}
+
+	@Test
+	public void testRequestIndexFollowsChanges() {
+		RequestList requests = new RequestList();
+		for (int i = 1; i <= 12; i++) {
+			requests.add(request(i, 1 + i % 3, 4 + i % 2));
+		}
+		assertIndexMatchesList(requests);
+		assertEquals(4, requests.pickupsAt(2).size());
+		assertEquals(Direction.UP, requests.pickupDirectionAt(2));
+		assertNull(requests.pickupDirectionAt(CONFIG.FLOORS));
+
+		RequestData removed = requests.remove(3);
+		assertFalse(requests.pickupsAt(removed.requestFloor()).contains(removed));
+		assertFalse(requests.dropOffsAt(removed.targetFloor()).contains(removed));
+		assertIndexMatchesList(requests);
+
+		requests.add(0, request(20, 2, 1));	// Inserting at the front changes the order of floor 2's pickups
+		assertEquals(Direction.UP, requests.pickupDirectionAt(2), "The last request picked up at floor 2 is still going up");
+		assertEquals(20, requests.pickupsAt(2).get(0).requestID());
+		assertIndexMatchesList(requests);
+
+		requests.removeIf(r -> r.requestID() % 2 == 0);
+		assertIndexMatchesList(requests);
+
+		Iterator<RequestData> iterator = requests.iterator();
+		iterator.next();
+		iterator.remove();
+		requests.set(0, request(30, 3, 1));
+		assertIndexMatchesList(requests);
+		assertThrows(UnsupportedOperationException.class, () -> requests.subList(0, 1).clear());
+
+		RequestList copy = new RequestList(requests);
+		requests.clear();
+		assertTrue(requests.pickupsAt(3).isEmpty());
+		assertTrue(copy.pickupsAt(3).stream().anyMatch(r -> r.requestID() == 30));
+		assertIndexMatchesList(copy);
+	}
+
+	@Test
+	public void testStopListRemovesEveryStopAtAFloor() {
+		StopList stops = new StopList(List.of(5, 2, 5, 7));
+		assertTrue(stops.contains(5));
+		assertTrue(stops.removeFloor(5));
+		assertEquals(List.of(2, 7), stops);
+		assertFalse(stops.contains(5));
+		assertFalse(stops.removeFloor(5));
+
+		stops.remove(Integer.valueOf(2));
+		assertFalse(stops.contains(2));
+		stops.add(2);
+		stops.add(2);
+		stops.remove(Integer.valueOf(2));
+		assertTrue(stops.contains(2), "One of the stops at floor 2 is left");
+
+		ArrayList<Integer> plain = new ArrayList<Integer>(List.of(1, 3));
+		assertNotSame(plain, StopList.of(plain));
+		assertSame(stops, StopList.of(stops));
+		assertNull(StopList.of(null));
+	}
+}
@@ -840,7 +840,7 @@ class SchedulerStateTest {
 	 */
 	void prepareElevatorStateMessage_HandleDoorStuckElevatorFaultMessageTest() {
 		// Setup
-		scheduler.requestsActive.put(1, new ArrayList<RequestData>());
+		scheduler.requestsActive.put(1, new RequestList());
 		scheduler.elevatorLatestData.put(1, null);
 
 		/*** TEST 1: Going from STOP -> OPEN_DOOR without picking up error'd passenger request (NO ERROR should exist) ***/
@@ -1081,7 +1081,7 @@ class SchedulerStateTest {
 	 */
 	void prepareElevatorStateMessage_HandleElevatorStuckElevatorFaultMessageTest() {
 		// Setup
-		scheduler.requestsActive.put(1, new ArrayList<RequestData>());
+		scheduler.requestsActive.put(1, new RequestList());
 		scheduler.elevatorLatestData.put(1, null);
 
 		/*** TEST 1: Going from IDLE -> MOVING_UP without picking up error'd passenger request (NO ERROR should exist) ***/
@@ -1496,6 +1496,45 @@ class SchedulerStateTest {
 	
 	
 	
+	@Test
+	/*
+	 * Several dispatcher workers deliver elevator messages to the scheduler at once. Every message should be parsed and end up in the
+	 * "received" queue without being lost, and each worker's messages should stay in the order it delivered them.
+	 */
+	void receivedQueues_ConcurrentDeliveryTest() throws InterruptedException {
+		final int nOfWorkers = 8;
+		final int messagesPerWorker = 500;
+		
+		// Each worker plays one elevator (the elevator ID) and counts its messages with the location
+		ArrayList<Thread> workers = new ArrayList<Thread>();
+		for (int worker = 1; worker <= nOfWorkers; worker++) {
+			final int elevatorID = worker;
+			workers.add(new Thread(() -> {
+				for (int location = 0; location < messagesPerWorker; location++) {
+					String data = String.format("{\"state\":\"MOVING_UP\",\"id\":%d,\"location\":%d,\"newCarBttns\":[],\"carBttns\":[],\"faultType\":null}", elevatorID, location);
+					scheduler.receiveDispatch(new DispatcherMessage(SchedulerTopics.ELEVATOR_SIGNAL.toString(), data));
+				}
+			}));
+		}
+		workers.forEach(Thread::start);
+		for (Thread worker : workers) { worker.join(); }
+		
+		// Drain the queue the same way the states do, checking that every worker's messages are all there and in order
+		assertEquals(nOfWorkers * messagesPerWorker, scheduler.elevatorSignalQueue.size());
+		HashMap<Integer, Integer> nextLocation = new HashMap<Integer, Integer>();
+		ElevatorSignal signal;
+		while ((signal = scheduler.elevatorSignalQueue.poll()) != null) {
+			int expectedLocation = nextLocation.getOrDefault(signal.id(), 0);
+			assertEquals(expectedLocation, signal.location());
+			nextLocation.put(signal.id(), expectedLocation + 1);
+		}
+		for (int worker = 1; worker <= nOfWorkers; worker++) {
+			assertEquals(messagesPerWorker, nextLocation.get(worker));
+		}
+	}
+	
+	
+	
 //	@Test
 //	/*
 //	 * Rigs a received elevator message being added to the system and check if the "Prepare Elevator State Message" State can handle it.
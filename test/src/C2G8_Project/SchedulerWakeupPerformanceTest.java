@@ -0,0 +1,131 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * A benchmark of the scheduler's main loop while it has nothing to do.
+ *
+ * Overview:
+ *  The main loop sleeps until a message arrives instead of running the LISTENING state over and over. These tests measure how often
+ *  the scheduler thread runs its state while idle, and how long it takes the thread to wake up and run its state once work is signalled.
+ */
+class SchedulerWakeupPerformanceTest {
+
+	boolean runTest = false; /*** MAKE THIS TRUE TO RUN THE TEST (false so it doesn't run while running the test suite) ***/
+
+	private static final int WARMUP_WAKEUPS = 1000;
+	private static final int MEASURED_WAKEUPS = 5000;
+	private static final long IDLE_MEASUREMENT_MILLS = 3000;
+
+	Scheduler scheduler;
+	Thread schedulerThread;
+	HashMap<Dispatcher,Thread> threads;
+
+	/*** A state that records when it runs and then goes back to waiting ***/
+	private static class WakeupProbe implements SchedulerState {
+		volatile long wakeups = 0;
+		volatile long lastWakeupNanos = 0;
+
+		@Override
+		public SchedulerState doAction(Scheduler context) {
+			lastWakeupNanos = System.nanoTime();
+			wakeups = wakeups + 1;	// Only the scheduler thread writes this
+			return null;
+		}
+
+		public String toString() { return "WAKEUP_PROBE"; }
+	}
+
+	@BeforeEach
+	void setUp() throws SocketException {
+		if (runTest) {
+			threads = new HashMap<Dispatcher,Thread>();
+			Dispatcher elevatorDispatcher = new Dispatcher(Destinations.ELEVATOR_SYSTEM);
+			threads.put(elevatorDispatcher,new Thread(elevatorDispatcher));
+			Dispatcher floorDispatcher = new Dispatcher(Destinations.FLOOR_SYSTEM);
+			threads.put(floorDispatcher,new Thread(floorDispatcher));
+			threads.forEach( (k,v) -> v.start());
+			while(!elevatorDispatcher.isRunning() || !floorDispatcher.isRunning()) {};
+			scheduler = new Scheduler("127.0.0.1", floorDispatcher.getPort(), "127.0.0.1", elevatorDispatcher.getPort(), Dispatcher.NO_PORT);
+			schedulerThread = new Thread(scheduler);
+			schedulerThread.setName(Scheduler.SCHEDULER_NAME);
+			schedulerThread.start();
+			while(!scheduler.isRunning()) {};
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		if (runTest) {
+			scheduler.shutdown();
+			schedulerThread.join(5000);
+			threads.forEach((k,v) -> k.shutdown());
+		}
+	}
+
+
+
+	@Test
+	/*
+	 * With nothing to do the scheduler should only run its state when its idle timeout passes, where busy-spinning ran it millions of times.
+	 */
+	void idleWakeupsTest() throws InterruptedException {
+		if (!runTest) {
+			return;
+		}
+
+		WakeupProbe probe = new WakeupProbe();
+		Thread.sleep(200);	// Let the scheduler settle into LISTENING and go to sleep
+		scheduler.setState(probe);
+		Thread.sleep(IDLE_MEASUREMENT_MILLS);
+		long wakeups = probe.wakeups;
+
+		long expected = IDLE_MEASUREMENT_MILLS / CONFIG.SCHEDULER_IDLE_WAKEUP_MILLS;
+		System.out.println(String.format("Idle scheduler ran its state %d times in %d ms", wakeups, IDLE_MEASUREMENT_MILLS));
+		assertTrue(wakeups <= expected + 1, String.format("Idle scheduler ran its state %d times", wakeups));
+	}
+
+
+
+	@Test
+	/*
+	 * Measures the time from signalling work to the scheduler's state running, while the scheduler is asleep each time.
+	 */
+	void wakeupLatencyTest() throws InterruptedException {
+		if (!runTest) {
+			return;
+		}
+
+		WakeupProbe probe = new WakeupProbe();
+		Thread.sleep(200);	// Let the scheduler settle into LISTENING and go to sleep
+		scheduler.setState(probe);	// Safe since the scheduler is asleep, it runs the probe the next time it wakes
+
+		long[] latencies = new long[MEASURED_WAKEUPS];
+		for (int i = 0; i < WARMUP_WAKEUPS + MEASURED_WAKEUPS; i++) {
+			long expectedWakeups = probe.wakeups + 1;
+			Thread.sleep(0, 200000);	// Give the scheduler time to go back to sleep
+			long signalledNanos = System.nanoTime();
+			scheduler.signalWork();
+			while (probe.wakeups < expectedWakeups) { Thread.onSpinWait(); }
+			if (i >= WARMUP_WAKEUPS) {
+				latencies[i - WARMUP_WAKEUPS] = probe.lastWakeupNanos - signalledNanos;
+			}
+		}
+
+		Arrays.sort(latencies);
+		long median = latencies[latencies.length/2];
+		long p99 = latencies[(int)(latencies.length*0.99)];
+		System.out.println(String.format("Wakeup latency over %d wakeups: median %.1f us, p99 %.1f us, max %.1f us", MEASURED_WAKEUPS, median/1e3, p99/1e3, latencies[latencies.length-1]/1e3));
+		assertTrue(median < 1000000, String.format("Median wakeup took %.1f us", median/1e3));
+	}
+}
@@ -0,0 +1,114 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * A benchmark of assigning a request to an elevator.
+ *
+ * Overview:
+ *  assignSingleRequestToAnElevator runs for every request waiting for an elevator each time an elevator goes IDLE, so with a busy
+ *  building it is the scheduler's hottest code. This measures how long one call takes when every elevator has several active requests
+ *  to sort, which is the case that used to build and sort lists of pairs for every elevator.
+ *  
+ *  The crossover test compares checking the elevators one after another to checking them in parallel (ForkJoinPool) for banks of
+ *  elevators from CONFIG.ELEVATORS up to a multi-tower simulation, to find where CONFIG.SCHEDULER_PARALLEL_ELEVATORS should be.
+ */
+class SchedulingAlgorithmPerformanceTest {
+
+	boolean runTest = false; /*** MAKE THIS TRUE TO RUN THE TEST (false so it doesn't run while running the test suite) ***/
+
+	private static final int ELEVATORS = 8;
+	private static final int REQUESTS_PER_ELEVATOR = 6;
+	private static final int WARMUP_CALLS = 200000;
+	private static final int MEASURED_CALLS = 1000000;
+
+	HashMap<Integer, ArrayList<RequestData>> requestsActive;
+	HashMap<Integer, ElevatorData> elevatorLatestData;
+
+	@BeforeEach
+	void setUp() {
+		setUp(ELEVATORS);
+	}
+
+	void setUp(int elevators) {
+		// Every elevator is on its way up from floor 1 to pick up passengers spread over the building
+		Random random = new Random(1);
+		requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		elevatorLatestData = new HashMap<Integer, ElevatorData>();
+		int requestID = 0;
+		for (int elevatorID = 1; elevatorID <= elevators; elevatorID++) {
+			ArrayList<RequestData> requests = new ArrayList<RequestData>();
+			for (int i = 0; i < REQUESTS_PER_ELEVATOR; i++) {
+				requests.add(new RequestData(new FloorRequest(2 + random.nextInt(CONFIG.FLOORS - 2), CONFIG.FLOORS, Direction.UP, null), ++requestID));
+			}
+			requestsActive.put(elevatorID, requests);
+			elevatorLatestData.put(elevatorID, new ElevatorData(new ElevatorSignal(ElevatorStates.MOVING_UP, elevatorID, 1, new ArrayList<Integer>(), new HashSet<Integer>(), null)));
+		}
+	}
+
+	@Test
+	/*
+	 * Measures the average time for one assignment. Every elevator is eligible, so each call sorts every elevator's requests.
+	 */
+	public void assignSingleRequestLatencyTest() {
+		if (runTest) {
+			RequestData request = new RequestData(new FloorRequest(CONFIG.FLOORS / 2, CONFIG.FLOORS, Direction.UP, null), 0);
+			int expectedElevatorID = SchedulingAlgorithm.assignSingleRequestToAnElevator(request, requestsActive, elevatorLatestData);
+			assertNotEquals(-1, expectedElevatorID);
+
+			for (int i = 0; i < WARMUP_CALLS; i++) {
+				SchedulingAlgorithm.assignSingleRequestToAnElevator(request, requestsActive, elevatorLatestData);
+			}
+			long start = System.nanoTime();
+			for (int i = 0; i < MEASURED_CALLS; i++) {
+				assertEquals(expectedElevatorID, SchedulingAlgorithm.assignSingleRequestToAnElevator(request, requestsActive, elevatorLatestData));
+			}
+			long nanosPerCall = (System.nanoTime() - start) / MEASURED_CALLS;
+
+			System.out.println(String.format("assignSingleRequestToAnElevator: %d elevators with %d active requests each, %d ns per call", ELEVATORS, REQUESTS_PER_ELEVATOR, nanosPerCall));
+		}
+	}
+
+	/*** Average time of one assignment, checking the elevators in parallel from parallelElevators elevators ***/
+	private long nanosPerAssignment(RequestData request, int parallelElevators, int expectedElevatorID, int calls) {
+		for (int i = 0; i < calls / 5; i++) {
+			SchedulingAlgorithm.assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, SchedulingAlgorithm.TIME_TO_PICK_UP, parallelElevators);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			assertEquals(expectedElevatorID, SchedulingAlgorithm.assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, SchedulingAlgorithm.TIME_TO_PICK_UP, parallelElevators));
+		}
+		return (System.nanoTime() - start) / calls;
+	}
+
+	@Test
+	/*
+	 * Measures one assignment for growing banks of elevators, checked one after another and in parallel. Parallel pays for handing the
+	 * ranges to the pool's threads, so it only wins once there are enough elevators to check.
+	 */
+	public void parallelCrossoverTest() {
+		if (runTest) {
+			RequestData request = new RequestData(new FloorRequest(CONFIG.FLOORS / 2, CONFIG.FLOORS, Direction.UP, null), 0);
+			System.out.println(String.format("%d processors, %d active requests per elevator", Runtime.getRuntime().availableProcessors(), REQUESTS_PER_ELEVATOR));
+			System.out.println(String.format("%10s %15s %15s", "ELEVATORS", "SEQUENTIAL ns", "PARALLEL ns"));
+			for (int elevators : new int[] {4, 8, 16, 24, 32, 48, 64, 128}) {
+				setUp(elevators);
+				int expectedElevatorID = SchedulingAlgorithm.assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, SchedulingAlgorithm.TIME_TO_PICK_UP, Integer.MAX_VALUE);
+				int calls = Math.max(20000, 2000000 / elevators);
+				long sequential = nanosPerAssignment(request, Integer.MAX_VALUE, expectedElevatorID, calls);
+				long parallel = nanosPerAssignment(request, 1, expectedElevatorID, calls);
+				System.out.println(String.format("%10d %15d %15d%s", elevators, sequential, parallel, (parallel < sequential) ? "  <- parallel wins" : ""));
+			}
+		}
+	}
+}
@@ -7,6 +7,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
@@ -910,5 +912,42 @@ class SchedulingAlgorithmTest {
 			assertEquals(expectedTimes[i], SchedulingAlgorithm.calculateTimeTakenToMove(input[i][0], input[i][1]));
 		}
 	}
+	
+	
+	
+	@Test
+	/*
+	 * Tests that checking a large bank of elevators in parallel picks the same elevator as checking them one after another, including
+	 * the lowest ID when several elevators tie.
+	 */
+	public void parallelAssignmentMatchesSequentialTest() {
+		HashMap<Integer, ArrayList<RequestData>> requestsActive = new HashMap<Integer, ArrayList<RequestData>>();
+		HashMap<Integer, ElevatorData> elevatorLatestData = new HashMap<Integer, ElevatorData>();
+		Random random = new Random(7);
+		int elevators = 100;
+		int requestID = 1;
+		
+		// Elevators spread over a few floors (so many tie), some dead, some moving with requests
+		for (int elevatorID = 1; elevatorID <= elevators; elevatorID++) {
+			ElevatorStates state = (elevatorID % 10 == 0) ? ElevatorStates.DEAD : (random.nextBoolean() ? ElevatorStates.IDLE : ElevatorStates.MOVING_UP);
+			int location = 1 + 5 * random.nextInt(4);
+			requestsActive.put(elevatorID, new RequestList());
+			elevatorLatestData.put(elevatorID, new ElevatorData(new ElevatorSignal(state, elevatorID, location, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+			if (state == ElevatorStates.MOVING_UP) {
+				requestsActive.get(elevatorID).add(new RequestData(new FloorRequest(location + 1 + random.nextInt(CONFIG.FLOORS - location), CONFIG.FLOORS, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), requestID++, elevatorID));
+			}
+		}
+		
+		for (int i = 0; i < 200; i++) {
+			int requestFloor = 1 + random.nextInt(CONFIG.FLOORS - 1);
+			RequestData request = new RequestData(new FloorRequest(requestFloor, requestFloor + 1, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), requestID++);
+			for (DispatchPolicies policy : DispatchPolicies.values()) {
+				int sequential = SchedulingAlgorithm.assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, (r, id, e, a, t) -> policy.policy().cost(r, id, requestsActive, elevatorLatestData), Integer.MAX_VALUE);
+				int parallel = SchedulingAlgorithm.assignToCheapestEligibleElevator(request, requestsActive, elevatorLatestData, (r, id, e, a, t) -> policy.policy().cost(r, id, requestsActive, elevatorLatestData), 1);
+				assertEquals(sequential, parallel, String.format("%s %s", policy, request));
+				assertEquals(policy.policy().assign(request, requestsActive, elevatorLatestData), sequential, String.format("%s %s", policy, request));
+			}
+		}
+	}
 
 }
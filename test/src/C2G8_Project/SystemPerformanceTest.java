@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.net.SocketException;
 import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -100,8 +101,8 @@ class SystemPerformanceTest {
 				// Create Floor and Elevator systems in new threads
 				threads = new ArrayList<Thread>();
 				try {
-					threads.add(new Thread(new FloorSystem(CONFIG.FLOORS,CONFIG.FLOOR_SYSTEM_PORT+portOffset, CONFIG.SCENARIO_ACCELERATION_MULTIPLIER)));
-					threads.add(new Thread(new ElevatorSystem(CONFIG.ELEVATORS,CONFIG.ELEVATOR_SYSTEM_PORT+portOffset,CONFIG.SCENARIO_ACCELERATION_MULTIPLIER)));
+					threads.add(new Thread(new FloorSystem(CONFIG.FLOORS, CONFIG.SCENARIO_ACCELERATION_MULTIPLIER, loopbackDispatcher(null, "FloorSystemDispatcher", CONFIG.FLOOR_SYSTEM_PORT+portOffset), PassengerRequest.loadScenario())));
+					threads.add(new Thread(new ElevatorSystem(CONFIG.ELEVATORS, CONFIG.SCENARIO_ACCELERATION_MULTIPLIER, loopbackDispatcher(Destinations.ELEVATOR_SYSTEM, null, CONFIG.ELEVATOR_SYSTEM_PORT+portOffset))));
 				} catch (Exception e) {
 					System.out.println("Exception in SystemPerformanceTest: "+e);
 				}
@@ -112,7 +113,7 @@ class SystemPerformanceTest {
 				
 				// Create Scheduler in new thread
 				try {
-					threads.add(new Thread(new Scheduler(floorAddress,CONFIG.FLOOR_SYSTEM_PORT+portOffset,elevatorAddress,CONFIG.ELEVATOR_SYSTEM_PORT+portOffset,CONFIG.SCHEDULER_PORT+portOffset)));
+					threads.add(new Thread(new Scheduler(floorAddress,CONFIG.FLOOR_SYSTEM_PORT+portOffset,elevatorAddress,CONFIG.ELEVATOR_SYSTEM_PORT+portOffset,loopbackDispatcher(Destinations.SCHEDULER, null, CONFIG.SCHEDULER_PORT+portOffset),RealTimeClock.SYSTEM)));
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
@@ -149,6 +150,11 @@ class SystemPerformanceTest {
 		}
 	}
 	
+	/*** The systems all run in this program, so they talk through the LOOPBACK transport instead of UDP sockets ***/
+	Dispatcher loopbackDispatcher(Destinations destination, String name, int port) throws SocketException {
+		return new Dispatcher(destination, name, port, 500, CONFIG.DISPATCH_EXECUTION_MODE, CONFIG.DISPATCH_CODEC, DispatchTransports.LOOPBACK);
+	}
+	
 	boolean renameAndDeleteOriginalFile(File originalFile, File newFile) {
 		boolean renamedResult = renameFile(originalFile, newFile);
 		if (renamedResult) {
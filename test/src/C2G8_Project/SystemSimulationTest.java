@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * JUnit5 Test Cases for SystemSimulation.java and DiscreteEventSimulator.java (The whole system in virtual time)
+ *
+ * Overview:
+ *  These test cases check the simulator runs events in order, and that a scenario run on it completes and plays out the same way every time.
+ */
+class SystemSimulationTest {
+
+	/*** Which elevator served each request, in the order they completed ***/
+	private static String completionOrder(SystemSimulation simulation) {
+		StringBuilder order = new StringBuilder();
+		for (RequestData request : simulation.scheduler().requestsComplete) {
+			order.append(request.requestID()).append(':').append(request.elevatorID()).append(' ');
+		}
+		return order.toString();
+	}
+
+	@Test
+	public void testEventOrder() {
+		DiscreteEventSimulator simulator = new DiscreteEventSimulator();
+		ArrayList<String> ran = new ArrayList<String>();
+		simulator.schedule(() -> ran.add("late"), 2, TimeUnit.SECONDS);
+		simulator.schedule(() -> ran.add("first"), 1, TimeUnit.SECONDS);
+		simulator.schedule(() -> ran.add("second"), 1, TimeUnit.SECONDS);
+		simulator.schedule(() -> ran.add("cancelled"), 1, TimeUnit.SECONDS).cancel();
+		simulator.schedule(() -> simulator.schedule(() -> ran.add("scheduled by an event"), 0, TimeUnit.SECONDS), 1500, TimeUnit.MILLISECONDS);
+
+		assertEquals(4, simulator.runUntil(TimeUnit.MILLISECONDS.toNanos(1500)), "Events due up to the end run, including ones they schedule");
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1500), simulator.nanoTime());
+		assertEquals(1, simulator.getPendingEvents(), "Only the late one is left");
+		simulator.runUntilIdle();
+		assertEquals(List.of("first", "second", "scheduled by an event", "late"), ran);
+		assertEquals(TimeUnit.SECONDS.toNanos(2), simulator.nanoTime());
+	}
+
+	@Test
+	public void testManyCancelledEvents() {
+		DiscreteEventSimulator simulator = new DiscreteEventSimulator();
+		ArrayList<Integer> ran = new ArrayList<Integer>();
+		for (int i = 0; i < 200; i++) {
+			int event = i;
+			SimulationClock.Scheduled scheduled = simulator.schedule(() -> ran.add(event), i, TimeUnit.MILLISECONDS);
+			if (i % 4 != 0) {
+				scheduled.cancel();
+				scheduled.cancel();	// Cancelling twice changes nothing
+			}
+		}
+		assertEquals(50, simulator.getPendingEvents(), "Cancelled events are not pending, whether or not they were cleared out yet");
+		assertEquals(50, simulator.runUntilIdle());
+		assertEquals(0, simulator.getPendingEvents());
+		for (int i = 0; i < ran.size(); i++) {
+			assertEquals(i * 4, ran.get(i));
+		}
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(196), simulator.nanoTime(), "Skipped events don't move the clock");
+	}
+
+	@Test
+	public void testScenarioCompletes() throws Exception {
+		ArrayList<PassengerRequest> scenario = PassengerRequest.generateScenario(20, TimeUnit.MINUTES.toMillis(2), new Random(1));
+		SystemSimulation.Result result = new SystemSimulation(scenario).run();
+		System.out.println(result.row());
+
+		assertTrue(result.finished(), "The scheduler shuts down after the last request");
+		assertEquals(scenario.size(), result.requestsReceived());
+		assertEquals(scenario.size(), result.requestsComplete());
+		assertTrue(result.simulatedMillis() >= scenario.stream().mapToLong(PassengerRequest::getScenarioDurationMills).max().getAsLong(), "Runs until after the last passenger arrives");
+	}
+
+	@Test
+	public void testSameScenarioSameResult() throws Exception {
+		ArrayList<PassengerRequest> scenario = PassengerRequest.generateScenario(20, TimeUnit.MINUTES.toMillis(2), new Random(2));
+		SystemSimulation first = new SystemSimulation(scenario);
+		SystemSimulation.Result firstResult = first.run();
+		SystemSimulation second = new SystemSimulation(scenario);
+		SystemSimulation.Result secondResult = second.run();
+
+		assertTrue(firstResult.finished() && secondResult.finished());
+		assertEquals(firstResult.simulatedMillis(), secondResult.simulatedMillis());
+		assertEquals(firstResult.events(), secondResult.events());
+		assertEquals(completionOrder(first), completionOrder(second));
+	}
+}
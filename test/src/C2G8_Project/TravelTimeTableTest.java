@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * JUnit5 Test Cases for TravelTimeTable.java (The floor to floor travel times used by SchedulingAlgorithm)
+ *
+ * Overview:
+ *  These test cases check the table against the times ElevatorSubsystem takes for each floor, both from rest and at cruise.
+ */
+class TravelTimeTableTest {
+
+	/*** The time ElevatorSubsystem takes to go a number of floors and stop: MOVING (or MOVING_MAX when cruising), MOVING_MAX, ..., STOP ***/
+	private static int elevatorSubsystemTime(int floors, boolean cruising) {
+		int time = 0;
+		for (int floor = 1; floor < floors; floor++) {
+			time += (floor == 1 && !cruising) ? ElevatorTimes.MOVING : ElevatorTimes.MOVING_MAX;
+		}
+		return (floors == 0) ? 0 : time + ElevatorTimes.STOP;
+	}
+
+	@Test
+	public void testTableMatchesElevatorSubsystem() {
+		TravelTimeTable table = new TravelTimeTable(CONFIG.FLOORS);
+		for (int location = 1; location <= CONFIG.FLOORS; location++) {
+			for (int destination = 1; destination <= CONFIG.FLOORS; destination++) {
+				int floors = Math.abs(destination - location);
+				assertEquals(elevatorSubsystemTime(floors, false), table.fromRest(location, destination), String.format("From rest, %d to %d", location, destination));
+				assertEquals(elevatorSubsystemTime(floors, true), table.atCruise(location, destination), String.format("At cruise, %d to %d", location, destination));
+			}
+		}
+		assertEquals(elevatorSubsystemTime(99, false), table.fromRest(1, 100), "Past the top of the building");
+		assertEquals(2 * ElevatorTimes.DOORS, table.doors());
+	}
+
+	@Test
+	public void testMovingElevatorIsAtCruise() {
+		ElevatorData movingUp = new ElevatorData(new ElevatorSignal(ElevatorStates.MOVING_UP, 1, 5, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE));
+		ElevatorData idle = new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, 1, 5, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE));
+		assertEquals(SchedulingAlgorithm.calculateTimeTakenToMove(5, 10) - (ElevatorTimes.MOVING - ElevatorTimes.MOVING_MAX), SchedulingAlgorithm.calculateTimeTakenToMove(movingUp, 10));
+		assertEquals(SchedulingAlgorithm.calculateTimeTakenToMove(5, 10), SchedulingAlgorithm.calculateTimeTakenToMove(idle, 10));
+		assertEquals(SchedulingAlgorithm.calculateTimeTakenToMove(5, 1), SchedulingAlgorithm.calculateTimeTakenToMove(movingUp, 1), "Going the other way starts from rest");
+	}
+}
@@ -0,0 +1,210 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ *
+ * Tests that the deltas made by a ViewDeltaTracker keep a ViewReplica the same as the "Master Sheet" they were made from, after
+ * passing through either codec, and that a replica that misses a delta waits for a keyframe.
+ */
+class ViewDeltaTest {
+	private static final int KEYFRAME_INTERVAL = 10;
+	private static final int KEYFRAME_COMPLETE_REQUESTS = 3;
+
+	private final ObjectMapper objMap = new ObjectMapper();
+
+	ArrayList<RequestData> awaiting;
+	HashMap<Integer, ArrayList<RequestData>> active;
+	ArrayList<RequestData> complete;
+	HashMap<Integer, ElevatorData> elevators;
+	FloorLampState buttonLamps;
+	FloorLampState directionLamps;
+	ViewDeltaTracker tracker;
+
+	@BeforeEach
+	void setUp() {
+		awaiting = new ArrayList<RequestData>();
+		active = new HashMap<Integer, ArrayList<RequestData>>();
+		complete = new ArrayList<RequestData>();
+		elevators = new HashMap<Integer, ElevatorData>();
+		buttonLamps = new FloorLampState(CONFIG.FLOORS);
+		directionLamps = new FloorLampState(CONFIG.FLOORS);
+		for (int elevatorID = 1; elevatorID <= 2; elevatorID++) {
+			active.put(elevatorID, new ArrayList<RequestData>());
+			elevators.put(elevatorID, new ElevatorData(new ElevatorSignal(ElevatorStates.IDLE, elevatorID, 1, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE)));
+		}
+		tracker = new ViewDeltaTracker(KEYFRAME_INTERVAL, KEYFRAME_COMPLETE_REQUESTS);
+	}
+
+	private ViewDelta nextDelta() {
+		return tracker.nextDelta(awaiting, active, complete, elevators, buttonLamps, directionLamps);
+	}
+
+	/*** Sends the delta through a codec the way the dispatcher would ***/
+	private ViewDelta send(ViewDelta delta, DispatchCodecs codec) throws IOException {
+		byte[] frame = codec.codec().encode("SCHEDULER_UPDATE", delta);
+		return DispatchCodecs.decodeFrame(ByteBuffer.wrap(frame)).payload(ViewDelta.class, objMap);
+	}
+
+	private static List<Integer> ids(List<ViewRequestData> requests) {
+		return requests.stream().map(ViewRequestData::requestID).toList();
+	}
+
+	/*** Checks the replica holds the same requests, elevators and lamps as the "Master Sheet" ***/
+	private void assertReplicaMatches(ViewReplica replica) {
+		ViewData view = replica.toViewData();
+		assertEquals(awaiting.stream().map(RequestData::requestID).toList(), ids(view.requestsAwaitingElevatorAssignment()));
+		assertEquals(active.keySet(), view.requestsActive().keySet());
+		for (int elevatorID : active.keySet()) {
+			assertEquals(active.get(elevatorID).stream().map(RequestData::requestID).toList(), ids(view.requestsActive().get(elevatorID)));
+			for (ViewRequestData request : view.requestsActive().get(elevatorID)) {
+				assertEquals(elevatorID, request.elevatorID());
+			}
+		}
+		assertEquals(complete.stream().map(RequestData::requestID).toList(), ids(view.requestsComplete()));
+		for (int elevatorID : elevators.keySet()) {
+			assertEquals(elevators.get(elevatorID).signal(), view.elevatorLatestData().get(elevatorID).signal());
+			assertEquals(elevators.get(elevatorID).targetLocations(), view.elevatorLatestData().get(elevatorID).targetLocations());
+		}
+		assertEquals(buttonLamps, view.floorButtonLamp());
+		assertEquals(directionLamps, view.floorDirectionLamp());
+	}
+
+	/*** Moves a request through the scheduler's lists one step for every delta ***/
+	private void runScenario(ViewReplica replica, DispatchCodecs codec) throws IOException {
+		RequestData request = new RequestData(new FloorRequest(3, 9, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), 1);
+		ArrayList<Runnable> steps = new ArrayList<Runnable>();
+		steps.add(() -> { awaiting.add(request); buttonLamps.set(3, Direction.UP, true); });
+		steps.add(() -> { awaiting.remove(request); request.setElevatorID(2); active.get(2).add(request); elevators.get(2).targetLocations().add(3); });
+		steps.add(() -> elevators.put(2, new ElevatorData(new ElevatorSignal(ElevatorStates.MOVING_UP, 2, 2, new ArrayList<Integer>(), new HashSet<Integer>(), ScenarioFaults.NONE), elevators.get(2).targetLocations())));
+		steps.add(() -> { request.setPickedUpPassenger(true); buttonLamps.set(3, Direction.UP, false); directionLamps.set(3, Direction.UP, true); });
+		steps.add(() -> { active.get(2).remove(request); request.setRequestComplete(true); complete.add(request); elevators.get(2).targetLocations().clear(); });
+
+		replica.apply(send(nextDelta(), codec));
+		assertReplicaMatches(replica);
+		for (Runnable step : steps) {
+			step.run();
+			ViewDelta delta = nextDelta();
+			assertFalse(delta.keyframe());
+			assertTrue(replica.apply(send(delta, codec)));
+			assertReplicaMatches(replica);
+		}
+		assertNull(nextDelta(), "Nothing changed so there should be nothing to send");
+	}
+
+	@Test
+	void testDeltasKeepReplicaUpToDate() throws IOException {
+		runScenario(new ViewReplica(), DispatchCodecs.BINARY);
+	}
+
+	@Test
+	void testDeltasKeepReplicaUpToDateAsJson() throws IOException {
+		runScenario(new ViewReplica(), DispatchCodecs.JSON);
+	}
+
+	@Test
+	void testDeltasOnlyHoldChanges() {
+		ViewDelta keyframe = nextDelta();
+		assertTrue(keyframe.keyframe());
+		assertEquals(2, keyframe.requestsActive().size());
+		assertEquals(buttonLamps, keyframe.floorButtonLamp());
+
+		awaiting.add(new RequestData(new FloorRequest(5, 1, Direction.DOWN, new ElevatorFault(ScenarioFaults.NONE)), 1));
+		buttonLamps.set(5, Direction.DOWN, true);
+		ViewDelta delta = nextDelta();
+		assertEquals(keyframe.sequence()+1, delta.sequence());
+		assertEquals(List.of(1), ids(delta.requestsAwaitingElevatorAssignment()));
+		assertTrue(delta.requestsActive().isEmpty());
+		assertTrue(delta.elevatorLatestData().isEmpty());
+		assertEquals(List.of(5), delta.floorButtonLamp().heldFloors());
+		assertTrue(delta.floorDirectionLamp().isEmpty());
+
+		//A fault being handled changes the request even though the scheduler changes the fault in place
+		awaiting.get(0).fault().setIsFaultHandled(true);
+		assertEquals(List.of(1), ids(nextDelta().requestsAwaitingElevatorAssignment()));
+
+		awaiting.clear();
+		assertEquals(List.of(1), nextDelta().requestsRemoved());
+	}
+
+	@Test
+	void testMissedDeltaWaitsForKeyframe() throws IOException {
+		ViewReplica replica = new ViewReplica();
+		assertTrue(replica.apply(send(nextDelta(), DispatchCodecs.BINARY)));
+		assertTrue(replica.isSynchronized());
+
+		buttonLamps.set(1, Direction.UP, true);
+		nextDelta();	// Lost
+		buttonLamps.set(2, Direction.UP, true);
+		ViewDelta afterGap = nextDelta();
+		assertFalse(replica.apply(afterGap), "The missed delta should be noticed");
+		assertFalse(replica.isSynchronized());
+
+		buttonLamps.set(3, Direction.UP, true);
+		assertTrue(replica.apply(nextDelta()), "Only the first delta after a gap asks for a keyframe");
+		assertFalse(replica.isSynchronized());
+
+		tracker.requestKeyframe();
+		ViewDelta keyframe = nextDelta();
+		assertTrue(keyframe.keyframe());
+		assertTrue(replica.apply(send(keyframe, DispatchCodecs.BINARY)));
+		assertTrue(replica.isSynchronized());
+		assertReplicaMatches(replica);
+
+		//A delta delayed by the network is ignored rather than seen as a gap
+		assertTrue(replica.apply(afterGap));
+		assertEquals(keyframe.sequence(), replica.getSequence());
+		assertReplicaMatches(replica);
+	}
+
+	@Test
+	void testPeriodicKeyframes() {
+		assertTrue(nextDelta().keyframe());
+		for (int i = 1; i <= KEYFRAME_INTERVAL * 3; i++) {
+			buttonLamps.set(1, Direction.UP, i % 2 == 1);
+			ViewDelta delta = nextDelta();
+			assertEquals(i % (KEYFRAME_INTERVAL+1) == 0, delta.keyframe(), String.format("Delta %d", delta.sequence()));
+		}
+	}
+
+	@Test
+	void testKeyframeOnlyResendsLatestCompleteRequests() throws IOException {
+		ViewReplica replica = new ViewReplica();
+		replica.apply(send(nextDelta(), DispatchCodecs.BINARY));
+		for (int requestID = 1; requestID <= 10; requestID++) {
+			RequestData request = new RequestData(new FloorRequest(2, 7, Direction.UP, new ElevatorFault(ScenarioFaults.NONE)), requestID);
+			request.setRequestComplete(true);
+			complete.add(request);
+		}
+		ViewDelta completed = nextDelta();
+		assertEquals(10, completed.requestsComplete().size(), "Requests are all sent when they complete");
+		assertTrue(replica.apply(send(completed, DispatchCodecs.BINARY)));
+		
+		tracker.requestKeyframe();
+		ViewDelta keyframe = nextDelta();
+		assertTrue(keyframe.keyframe());
+		assertEquals(List.of(8, 9, 10), ids(keyframe.requestsComplete()));
+		
+		//Lost the delta with the completed requests, the keyframe only brings back the latest ones
+		ViewReplica missed = new ViewReplica();
+		assertTrue(missed.apply(send(keyframe, DispatchCodecs.BINARY)));
+		assertEquals(List.of(8, 9, 10), ids(missed.toViewData().requestsComplete()));
+		
+		//Received the delta, so the replica keeps all of them
+		assertTrue(replica.apply(send(keyframe, DispatchCodecs.BINARY)));
+		assertReplicaMatches(replica);
+	}
+}
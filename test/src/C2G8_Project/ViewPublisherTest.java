@@ -0,0 +1,102 @@
+package C2G8_Project;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author agent
+ *
+ * Tests that the view publisher sends at most one update per frame no matter how many changes are made, and that it does no work
+ * at all while there is no monitor to send to.
+ */
+class ViewPublisherTest {
+	private static final long FRAME_MILLS = 50;
+	private static final long MILLS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	ViewDeltaTracker tracker;
+	ViewPublisher publisher;
+	ConcurrentLinkedQueue<ViewDelta> sent;
+	volatile boolean isMonitorRegistered;
+	int deltasTaken;
+
+	@BeforeEach
+	void setUp() {
+		tracker = new ViewDeltaTracker();
+		sent = new ConcurrentLinkedQueue<ViewDelta>();
+		isMonitorRegistered = true;
+		deltasTaken = 0;
+		publisher = new ViewPublisher("Test", tracker, FRAME_MILLS, () -> isMonitorRegistered, sent::add);
+	}
+
+	@AfterEach
+	void tearDown() {
+		publisher.shutdown();
+	}
+
+	/*** Stands in for the tracker, a new delta each time ***/
+	private ViewDelta nextDelta() {
+		deltasTaken++;
+		return new ViewDelta(deltasTaken, false, new ArrayList<ViewRequestData>(), new HashMap<Integer, ArrayList<ViewRequestData>>(), new ArrayList<ViewRequestData>(),
+				new ArrayList<Integer>(), new HashMap<Integer, ViewElevatorData>(), new FloorLampState(CONFIG.FLOORS), new FloorLampState(CONFIG.FLOORS));
+	}
+
+	@Test
+	void testChangesAreCoalescedIntoOneUpdatePerFrame() {
+		long start = System.nanoTime();
+		assertTrue(publisher.publish(start, this::nextDelta), "The first change after a quiet frame is sent straight away");
+
+		for (int i = 1; i < 100; i++) {
+			assertFalse(publisher.publish(start + i * FRAME_MILLS * MILLS / 100, this::nextDelta));
+		}
+		assertEquals(1, deltasTaken, "Changes during a frame should not take a delta");
+		assertEquals(99, publisher.getChangesCoalesced());
+		assertFalse(publisher.isFrameDue(start + (FRAME_MILLS - 1) * MILLS));
+		assertEquals(MILLS, publisher.nanosUntilFrame(start + (FRAME_MILLS - 1) * MILLS));
+
+		long frameEnd = start + FRAME_MILLS * MILLS;
+		assertTrue(publisher.isFrameDue(frameEnd), "The held changes should be sent when the frame ends");
+		assertTrue(publisher.publish(frameEnd, this::nextDelta));
+		assertFalse(publisher.isFrameDue(frameEnd + FRAME_MILLS * MILLS), "Nothing changed since the last update");
+		assertEquals(Long.MAX_VALUE, publisher.nanosUntilFrame(frameEnd));
+
+		publisher.shutdown();
+		assertEquals(2, publisher.getFramesPublished());
+		assertEquals(2, sent.size());
+	}
+
+	@Test
+	void testNothingIsTakenWithoutMonitor() {
+		isMonitorRegistered = false;
+		long now = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			assertFalse(publisher.publish(now + i * MILLS, this::nextDelta));
+		}
+		tracker.requestKeyframe();
+		assertFalse(publisher.isFrameDue(now + FRAME_MILLS * MILLS), "Without a monitor the scheduler should not be woken to publish");
+		assertEquals(Long.MAX_VALUE, publisher.nanosUntilFrame(now));
+		assertEquals(0, deltasTaken);
+
+		//A monitor that registers asks for a keyframe, which is sent without waiting for another change
+		isMonitorRegistered = true;
+		assertTrue(publisher.isFrameDue(now + FRAME_MILLS * MILLS));
+		assertTrue(publisher.publish(now + FRAME_MILLS * MILLS, this::nextDelta));
+		publisher.shutdown();
+		assertEquals(1, sent.size());
+	}
+
+	@Test
+	void testVirtualTimeFromZero() {
+		assertTrue(publisher.publish(0, this::nextDelta), "A clock starting at 0 should not hold the first update");
+		assertFalse(publisher.publish(MILLS, this::nextDelta));
+		assertEquals((FRAME_MILLS - 1) * MILLS, publisher.nanosUntilFrame(MILLS));
+		assertTrue(publisher.publish(FRAME_MILLS * MILLS, this::nextDelta));
+	}
+}